@@ -35,6 +35,7 @@ import android.telephony.TelephonyManager;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.applications.ProcStatsData;
+import com.android.settings.core.instrumentation.ControllerLatencyTracker;
 import com.android.settings.fuelgauge.batterytip.AnomalyConfigJobService;
 import com.android.settingslib.net.DataUsageController;
 
@@ -60,6 +61,8 @@ public class SettingsDumpService extends Service {
     @VisibleForTesting
     static final String KEY_ANOMALY_DETECTION = "anomaly_detection";
     @VisibleForTesting
+    static final String KEY_CONTROLLER_LATENCY = "controller_latency";
+    @VisibleForTesting
     static final Intent BROWSER_INTENT =
             new Intent("android.intent.action.VIEW", Uri.parse("http://"));
 
@@ -79,6 +82,7 @@ public class SettingsDumpService extends Service {
             dump.put(KEY_MEMORY, dumpMemory());
             dump.put(KEY_DEFAULT_BROWSER_APP, dumpDefaultBrowser());
             dump.put(KEY_ANOMALY_DETECTION, dumpAnomalyDetection());
+            dump.put(KEY_CONTROLLER_LATENCY, ControllerLatencyTracker.getInstance().dumpToJson());
         } catch (Exception e) {
             e.printStackTrace();
         }
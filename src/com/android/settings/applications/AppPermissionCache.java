@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.app.AppGlobals;
+import android.app.AppOpsManager;
+import android.app.AppOpsManager.PackageOps;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.IPackageManager;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ParceledListSlice;
+import android.os.RemoteException;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.SparseArray;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A process-wide cache of the package and app op data read by the {@link AppStateBaseBridge}
+ * subclasses, so moving between the special app access screens does not query the same data
+ * again for every package.
+ *
+ * <p>The package data is dropped when a package is added, removed or changed in any user, and
+ * when a permission is granted or revoked. The app op data is dropped when the mode of a cached
+ * op changes. Data loaded before a drop is never cached.
+ */
+public class AppPermissionCache {
+    private static AppPermissionCache sInstance;
+
+    private final IPackageManager mPackageManager;
+    // From the application context, the watched ops keep it referenced for the whole process.
+    private final AppOpsManager mAppOpsManager;
+    private final AppOpsManager.OnOpChangedListener mOpChangedListener =
+            (op, packageName) -> invalidateAppOps();
+    private final PackageManager.OnPermissionsChangedListener mPermissionsChangedListener =
+            uid -> invalidatePackages();
+
+    // All fields below are guarded by this.
+    private final Map<String, String[]> mAppOpPermissionPackages = new ArrayMap<>();
+    private final SparseArray<Map<String, Boolean>> mAvailablePackages = new SparseArray<>();
+    private final SparseArray<Map<String, PackageInfo>> mPackageInfos = new SparseArray<>();
+    private final SparseArray<Map<String, List<PackageInfo>>> mPackagesHoldingPermissions =
+            new SparseArray<>();
+    private final Map<String, List<PackageOps>> mPackagesForOps = new ArrayMap<>();
+    private final Set<Integer> mWatchedOps = new ArraySet<>();
+    private int mPackageGeneration;
+    private int mAppOpsGeneration;
+
+    /**
+     * @return the shared cache, which starts listening to the package changes on first use.
+     */
+    public static synchronized AppPermissionCache getInstance(Context context) {
+        if (sInstance == null) {
+            final Context appContext = context.getApplicationContext();
+            sInstance = new AppPermissionCache(AppGlobals.getPackageManager(),
+                    appContext.getSystemService(AppOpsManager.class));
+            sInstance.registerPackageListeners(appContext);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    AppPermissionCache(IPackageManager packageManager, AppOpsManager appOpsManager) {
+        mPackageManager = packageManager;
+        mAppOpsManager = appOpsManager;
+    }
+
+    /**
+     * @see IPackageManager#getAppOpPermissionPackages(String)
+     */
+    @WorkerThread
+    public String[] getAppOpPermissionPackages(String permission) throws RemoteException {
+        final int generation;
+        synchronized (this) {
+            if (mAppOpPermissionPackages.containsKey(permission)) {
+                return mAppOpPermissionPackages.get(permission);
+            }
+            generation = mPackageGeneration;
+        }
+        final String[] packages = mPackageManager.getAppOpPermissionPackages(permission);
+        synchronized (this) {
+            if (generation == mPackageGeneration) {
+                mAppOpPermissionPackages.put(permission, packages);
+            }
+        }
+        return packages;
+    }
+
+    /**
+     * @see IPackageManager#isPackageAvailable(String, int)
+     */
+    @WorkerThread
+    public boolean isPackageAvailable(String packageName, int userId) throws RemoteException {
+        final int generation;
+        synchronized (this) {
+            final Boolean available = getUserMap(mAvailablePackages, userId).get(packageName);
+            if (available != null) {
+                return available;
+            }
+            generation = mPackageGeneration;
+        }
+        final boolean available = mPackageManager.isPackageAvailable(packageName, userId);
+        synchronized (this) {
+            if (generation == mPackageGeneration) {
+                getUserMap(mAvailablePackages, userId).put(packageName, available);
+            }
+        }
+        return available;
+    }
+
+    /**
+     * @return the {@link PackageInfo} of {@code packageName} with its requested permissions, as
+     * returned by {@link IPackageManager#getPackageInfo} with {@link PackageManager#GET_PERMISSIONS}
+     * and {@link PackageManager#MATCH_ANY_USER}.
+     */
+    @WorkerThread
+    public PackageInfo getPackageInfoWithPermissions(String packageName, int userId)
+            throws RemoteException {
+        final int generation;
+        synchronized (this) {
+            final Map<String, PackageInfo> packageInfos = getUserMap(mPackageInfos, userId);
+            if (packageInfos.containsKey(packageName)) {
+                return packageInfos.get(packageName);
+            }
+            generation = mPackageGeneration;
+        }
+        final PackageInfo packageInfo = mPackageManager.getPackageInfo(packageName,
+                PackageManager.GET_PERMISSIONS | PackageManager.MATCH_ANY_USER, userId);
+        synchronized (this) {
+            if (generation == mPackageGeneration) {
+                getUserMap(mPackageInfos, userId).put(packageName, packageInfo);
+            }
+        }
+        return packageInfo;
+    }
+
+    /**
+     * @see IPackageManager#getPackagesHoldingPermissions(String[], int, int)
+     */
+    @WorkerThread
+    @SuppressWarnings("unchecked")
+    public List<PackageInfo> getPackagesHoldingPermissions(String[] permissions, int userId)
+            throws RemoteException {
+        final String key = Arrays.toString(permissions);
+        final int generation;
+        synchronized (this) {
+            final Map<String, List<PackageInfo>> packages =
+                    getUserMap(mPackagesHoldingPermissions, userId);
+            if (packages.containsKey(key)) {
+                return packages.get(key);
+            }
+            generation = mPackageGeneration;
+        }
+        final ParceledListSlice<PackageInfo> slice =
+                mPackageManager.getPackagesHoldingPermissions(permissions, 0 /* flags */, userId);
+        final List<PackageInfo> packageInfos = slice != null
+                ? Collections.unmodifiableList(slice.getList()) : null;
+        synchronized (this) {
+            if (generation == mPackageGeneration) {
+                getUserMap(mPackagesHoldingPermissions, userId).put(key, packageInfos);
+            }
+        }
+        return packageInfos;
+    }
+
+    /**
+     * @see AppOpsManager#getPackagesForOps(int[])
+     */
+    @WorkerThread
+    public List<PackageOps> getPackagesForOps(int[] ops) {
+        final String key = Arrays.toString(ops);
+        final int generation;
+        synchronized (this) {
+            if (mPackagesForOps.containsKey(key)) {
+                return mPackagesForOps.get(key);
+            }
+            // Watch the ops before reading them, so a change racing with the read drops it.
+            for (int op : ops) {
+                if (mWatchedOps.add(op)) {
+                    mAppOpsManager.startWatchingMode(op, null /* packageName */,
+                            mOpChangedListener);
+                }
+            }
+            generation = mAppOpsGeneration;
+        }
+        final List<PackageOps> packageOps = mAppOpsManager.getPackagesForOps(ops);
+        final List<PackageOps> result = packageOps != null
+                ? Collections.unmodifiableList(packageOps) : null;
+        synchronized (this) {
+            if (generation == mAppOpsGeneration) {
+                mPackagesForOps.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drops all cached package data.
+     */
+    public synchronized void invalidatePackages() {
+        mPackageGeneration++;
+        mAppOpPermissionPackages.clear();
+        mAvailablePackages.clear();
+        mPackageInfos.clear();
+        mPackagesHoldingPermissions.clear();
+    }
+
+    /**
+     * Drops all cached app op data.
+     */
+    public synchronized void invalidateAppOps() {
+        mAppOpsGeneration++;
+        mPackagesForOps.clear();
+    }
+
+    @VisibleForTesting
+    void registerPackageListeners(Context context) {
+        final IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addDataScheme("package");
+        context.registerReceiverForAllUsers(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                invalidatePackages();
+                // Removing a package resets its app ops without calling the mode listeners.
+                invalidateAppOps();
+            }
+        }, filter, null /* broadcastPermission */, null /* scheduler */);
+        context.getPackageManager().addOnPermissionsChangeListener(mPermissionsChangedListener);
+    }
+
+    private static <T> Map<String, T> getUserMap(SparseArray<Map<String, T>> userMaps,
+            int userId) {
+        Map<String, T> map = userMaps.get(userId);
+        if (map == null) {
+            map = new ArrayMap<>();
+            userMaps.put(userId, map);
+        }
+        return map;
+    }
+}
@@ -18,10 +18,8 @@ package com.android.settings.applications;
 
 import android.Manifest;
 import android.app.AlarmManager;
-import android.app.AppGlobals;
 import android.app.compat.CompatChanges;
 import android.content.Context;
-import android.content.pm.IPackageManager;
 import android.os.RemoteException;
 import android.os.UserHandle;
 import android.util.Log;
@@ -55,9 +53,9 @@ public class AppStateAlarmsAndRemindersBridge extends AppStateBaseBridge {
         super(appState, callback);
 
         mAlarmManager = context.getSystemService(AlarmManager.class);
-        final IPackageManager iPm = AppGlobals.getPackageManager();
         try {
-            mRequesterPackages = iPm.getAppOpPermissionPackages(PERMISSION);
+            mRequesterPackages = AppPermissionCache.getInstance(context)
+                    .getAppOpPermissionPackages(PERMISSION);
         } catch (RemoteException re) {
             Log.e(TAG, "Cannot reach package manager", re);
             mRequesterPackages = EmptyArray.STRING;
@@ -15,13 +15,11 @@
  */
 package com.android.settings.applications;
 
-import android.app.AppGlobals;
 import android.app.AppOpsManager;
 import android.app.AppOpsManager.PackageOps;
 import android.content.Context;
 import android.content.pm.IPackageManager;
 import android.content.pm.PackageInfo;
-import android.content.pm.PackageManager;
 import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.UserManager;
@@ -48,7 +46,7 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
 
     private static final String TAG = "AppStateAppOpsBridge";
 
-    private final IPackageManager mIPackageManager;
+    private final AppPermissionCache mPermissionCache;
     private final UserManager mUserManager;
     private final List<UserHandle> mProfiles;
     private final AppOpsManager mAppOpsManager;
@@ -58,14 +56,13 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
 
     public AppStateAppOpsBridge(Context context, ApplicationsState appState, Callback callback,
             int appOpsOpCode, String[] permissions) {
-        this(context, appState, callback, appOpsOpCode, permissions,
-                AppGlobals.getPackageManager());
+        this(context, appState, callback, new int[]{appOpsOpCode}, permissions);
     }
 
     AppStateAppOpsBridge(Context context, ApplicationsState appState, Callback callback,
             int[] appOpsOpCodes, String[] permissions) {
         this(context, appState, callback, appOpsOpCodes, permissions,
-                AppGlobals.getPackageManager());
+                AppPermissionCache.getInstance(context));
     }
 
     @VisibleForTesting
@@ -77,9 +74,16 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
 
     AppStateAppOpsBridge(Context context, ApplicationsState appState, Callback callback,
             int[] appOpsOpCodes, String[] permissions, IPackageManager packageManager) {
+        this(context, appState, callback, appOpsOpCodes, permissions,
+                new AppPermissionCache(packageManager,
+                        (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE)));
+    }
+
+    private AppStateAppOpsBridge(Context context, ApplicationsState appState, Callback callback,
+            int[] appOpsOpCodes, String[] permissions, AppPermissionCache permissionCache) {
         super(appState, callback);
         mContext = context;
-        mIPackageManager = packageManager;
+        mPermissionCache = permissionCache;
         mUserManager = UserManager.get(context);
         mProfiles = mUserManager.getUserProfiles();
         mAppOpsManager = (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE);
@@ -112,8 +116,7 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
         PermissionState permissionState = new PermissionState(pkg, new UserHandle(UserHandle
                 .getUserId(uid)));
         try {
-            permissionState.packageInfo = mIPackageManager.getPackageInfo(pkg,
-                    PackageManager.GET_PERMISSIONS | PackageManager.MATCH_ANY_USER,
+            permissionState.packageInfo = mPermissionCache.getPackageInfoWithPermissions(pkg,
                     permissionState.userHandle.getIdentifier());
             if (permissionState.packageInfo != null) {
                 // Check static permission state (whatever that is declared in package manifest)
@@ -174,7 +177,7 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
         try {
             Set<String> packagesSet = new HashSet<>();
             for (String permission : mPermissions) {
-                String[] pkgs = mIPackageManager.getAppOpPermissionPackages(permission);
+                String[] pkgs = mPermissionCache.getAppOpPermissionPackages(permission);
                 if (pkgs != null) {
                     packagesSet.addAll(Arrays.asList(pkgs));
                 }
@@ -193,7 +196,7 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
                 final int profileId = profile.getIdentifier();
                 entries.put(profileId, entriesForProfile);
                 for (final String packageName : packagesSet) {
-                    final boolean isAvailable = mIPackageManager.isPackageAvailable(packageName,
+                    final boolean isAvailable = mPermissionCache.isPackageAvailable(packageName,
                             profileId);
                     if (!shouldIgnorePackage(packageName) && isAvailable) {
                         final PermissionState newEntry = new PermissionState(packageName, profile);
@@ -227,10 +230,8 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
                 if (entriesForProfile == null) {
                     continue;
                 }
-                @SuppressWarnings("unchecked") final List<PackageInfo> packageInfos =
-                        mIPackageManager
-                                .getPackagesHoldingPermissions(mPermissions, 0,
-                                        profileId).getList();
+                final List<PackageInfo> packageInfos =
+                        mPermissionCache.getPackagesHoldingPermissions(mPermissions, profileId);
                 final int packageInfoCount = packageInfos != null ? packageInfos.size() : 0;
                 for (int i = 0; i < packageInfoCount; i++) {
                     final PackageInfo packageInfo = packageInfos.get(i);
@@ -258,8 +259,8 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
         }
 
         // Find out which packages have been granted permission from AppOps.
-        final List<AppOpsManager.PackageOps> packageOps = mAppOpsManager.getPackagesForOps(
-                mAppOpsOpCodes);
+        final List<AppOpsManager.PackageOps> packageOps =
+                mPermissionCache.getPackagesForOps(mAppOpsOpCodes);
         final int packageOpsCount = packageOps != null ? packageOps.size() : 0;
         for (int i = 0; i < packageOpsCount; i++) {
             final AppOpsManager.PackageOps packageOp = packageOps.get(i);
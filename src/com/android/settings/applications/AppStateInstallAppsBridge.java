@@ -41,11 +41,13 @@ public class AppStateInstallAppsBridge extends AppStateBaseBridge {
     private static final String TAG = AppStateInstallAppsBridge.class.getSimpleName();
 
     private final IPackageManager mIpm;
+    private final AppPermissionCache mPermissionCache;
     private final AppOpsManager mAppOpsManager;
 
     public AppStateInstallAppsBridge(Context context, ApplicationsState appState,
             Callback callback) {
         super(appState, callback);
+        mPermissionCache = AppPermissionCache.getInstance(context);
         mIpm = AppGlobals.getPackageManager();
         mAppOpsManager = (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE);
     }
@@ -67,7 +69,7 @@ public class AppStateInstallAppsBridge extends AppStateBaseBridge {
 
     private boolean hasRequestedAppOpPermission(String permission, String packageName) {
         try {
-            String[] packages = mIpm.getAppOpPermissionPackages(permission);
+            String[] packages = mPermissionCache.getAppOpPermissionPackages(permission);
             return ArrayUtils.contains(packages, packageName);
         } catch (RemoteException exc) {
             Log.e(TAG, "PackageManager dead. Cannot get permission info");
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import android.util.LongSparseArray;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A DiffCallback to calculate the difference between two lists of {@link AppEntry}.
+ *
+ * <p>The entries are shared and updated in place by ApplicationsState, so the content of an old
+ * entry is the content key it had when the old list was displayed.
+ */
+class AppEntryDiffCallback extends DiffUtil.Callback {
+
+    private final List<AppEntry> mOldEntries;
+    private final List<AppEntry> mNewEntries;
+    private final LongSparseArray<Integer> mOldContentKeys;
+
+    AppEntryDiffCallback(List<AppEntry> oldEntries, List<AppEntry> newEntries,
+            LongSparseArray<Integer> oldContentKeys) {
+        mOldEntries = oldEntries;
+        mNewEntries = newEntries;
+        mOldContentKeys = oldContentKeys;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return mOldEntries.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return mNewEntries.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return mOldEntries.get(oldItemPosition).id == mNewEntries.get(newItemPosition).id;
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        final Integer oldContentKey = mOldContentKeys.get(mOldEntries.get(oldItemPosition).id);
+        return oldContentKey != null
+                && oldContentKey == getContentKey(mNewEntries.get(newItemPosition));
+    }
+
+    /**
+     * @return a key of the displayed content of {@code entry}, which changes with its content.
+     */
+    static int getContentKey(AppEntry entry) {
+        return Objects.hash(entry.label, entry.sizeStr, entry.internalSizeStr,
+                entry.externalSizeStr, entry.extraInfo,
+                entry.info != null ? entry.info.enabled : null);
+    }
+
+    /**
+     * Moves the entry at {@code index} of {@code entries}, sorted by {@code comparator} except
+     * for this entry, to its sorted position.
+     *
+     * @return the new index of the entry.
+     */
+    static int moveToSortedPosition(List<AppEntry> entries, int index,
+            Comparator<AppEntry> comparator) {
+        final AppEntry entry = entries.remove(index);
+        final int position = Collections.binarySearch(entries, entry, comparator);
+        final int newIndex = position >= 0 ? position : -position - 1;
+        entries.add(newIndex, entry);
+        return newIndex;
+    }
+}
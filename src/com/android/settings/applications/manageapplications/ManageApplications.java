@@ -57,6 +57,7 @@ import android.text.TextUtils;
 import android.util.ArraySet;
 import android.util.IconDrawableFactory;
 import android.util.Log;
+import android.util.LongSparseArray;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -75,6 +76,7 @@ import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 import androidx.coordinatorlayout.widget.CoordinatorLayout;
 import androidx.core.view.ViewCompat;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -138,6 +140,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -1004,6 +1007,15 @@ public class ManageApplications extends InstrumentedFragment
         private AppFilterItem mAppFilter;
         private ArrayList<ApplicationsState.AppEntry> mEntries;
         private ArrayList<ApplicationsState.AppEntry> mOriginalEntries;
+        // The comparator mEntries is sorted with, and the content keys of its displayed entries.
+        private Comparator<AppEntry> mEntriesComparator;
+        private final LongSparseArray<Integer> mContentKeys = new LongSparseArray<>();
+        // The entries shown once their difference with mEntries is calculated, and what to run
+        // then.
+        private ArrayList<AppEntry> mPendingEntries;
+        private Runnable mPendingOnShown;
+        // The comparator of the last rebuild requested from the session.
+        private Comparator<AppEntry> mRebuildComparator;
         private boolean mResumed;
         private int mLastSortMode = -1;
         private int mWhichSize = SIZE_TOTAL;
@@ -1229,6 +1241,7 @@ public class ManageApplications extends InstrumentedFragment
 
             final AppFilter finalFilterObj = new CompoundFilter(filterObj,
                     ApplicationsState.FILTER_NOT_HIDE);
+            mRebuildComparator = comparatorObj;
             ThreadUtils.postOnBackgroundThread(() -> {
                 mSession.rebuild(finalFilterObj, comparatorObj, false);
             });
@@ -1282,14 +1295,21 @@ public class ManageApplications extends InstrumentedFragment
             if (DEBUG) {
                 Log.d(TAG, "onRebuildComplete size=" + entries.size());
             }
+            // The session merges the pending rebuilds and drops the results of its inactive
+            // periods, so a result can't be matched to its request. Only rely on the order the
+            // result is actually sorted by.
+            final Comparator<AppEntry> comparator =
+                    isSortedBy(entries, mRebuildComparator) ? mRebuildComparator : null;
             final int filterType = mAppFilter.getFilterType();
             if (filterType == FILTER_APPS_POWER_ALLOWLIST
                     || filterType == FILTER_APPS_POWER_ALLOWLIST_ALL) {
                 entries = removeDuplicateIgnoringUser(entries);
             }
-            mEntries = entries;
             mOriginalEntries = entries;
-            notifyDataSetChanged();
+            setEntries(entries, comparator, this::onRebuiltEntriesShown);
+        }
+
+        private void onRebuiltEntriesShown() {
             if (getItemCount() == 0) {
                 mLoadingViewController.showEmpty(false /* animate */);
             } else {
@@ -1319,6 +1339,82 @@ public class ManageApplications extends InstrumentedFragment
             mManageApplications.setHasInstant(mState.haveInstantApps());
         }
 
+        private static boolean isSortedBy(List<AppEntry> entries,
+                Comparator<AppEntry> comparator) {
+            if (entries == null || comparator == null) {
+                return false;
+            }
+            final int size = entries.size();
+            for (int i = 1; i < size; i++) {
+                if (comparator.compare(entries.get(i - 1), entries.get(i)) > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Shows {@code entries}, sorted by {@code comparator}, then runs {@code onShown} if not
+         * null. Only the rows which moved or changed are updated when both lists are sorted the
+         * same way, their difference being calculated in the background.
+         */
+        private void setEntries(ArrayList<AppEntry> entries, Comparator<AppEntry> comparator,
+                Runnable onShown) {
+            // Still run what was waiting for a list replaced before being shown.
+            final Runnable pendingOnShown = mPendingOnShown;
+            final Runnable allOnShown = pendingOnShown == null ? onShown : () -> {
+                pendingOnShown.run();
+                if (onShown != null) {
+                    onShown.run();
+                }
+            };
+            mPendingEntries = null;
+            mPendingOnShown = null;
+            final ArrayList<AppEntry> oldEntries = mEntries;
+            if (oldEntries == null || entries == null || comparator == null
+                    || comparator != mEntriesComparator) {
+                // A different order moves most of the rows, rebinding all of them is cheaper.
+                showEntries(entries, comparator, null /* diffResult */, allOnShown);
+                return;
+            }
+            mPendingEntries = entries;
+            mPendingOnShown = allOnShown;
+            final LongSparseArray<Integer> oldContentKeys = mContentKeys.clone();
+            ThreadUtils.postOnBackgroundThread(() -> {
+                final DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(
+                        new AppEntryDiffCallback(oldEntries, entries, oldContentKeys));
+                ThreadUtils.postOnMainThread(() -> {
+                    if (mPendingEntries != entries) {
+                        return;
+                    }
+                    mPendingEntries = null;
+                    mPendingOnShown = null;
+                    showEntries(entries, comparator,
+                            mEntries == oldEntries ? diffResult : null, allOnShown);
+                });
+            });
+        }
+
+        private void showEntries(ArrayList<AppEntry> entries, Comparator<AppEntry> comparator,
+                DiffUtil.DiffResult diffResult, Runnable onShown) {
+            mEntries = entries;
+            mEntriesComparator = comparator;
+            if (diffResult != null) {
+                diffResult.dispatchUpdatesTo(this);
+            } else {
+                notifyDataSetChanged();
+            }
+            mContentKeys.clear();
+            if (mEntries != null) {
+                for (AppEntry entry : mEntries) {
+                    mContentKeys.put(entry.id, AppEntryDiffCallback.getContentKey(entry));
+                }
+            }
+            if (onShown != null) {
+                onShown.run();
+            }
+        }
+
         @VisibleForTesting
         void updateLoading() {
             final boolean appLoaded = mHasReceivedLoadEntries && mSession.getAllApps().size() != 0;
@@ -1363,11 +1459,17 @@ public class ManageApplications extends InstrumentedFragment
             if (mEntries == null) {
                 return;
             }
+            if (mLastSortMode == R.id.sort_order_size && mEntriesComparator != null
+                    && mEntriesComparator == mRebuildComparator && mPendingEntries == null) {
+                // Keep the list sorted while the sizes come in, by only moving the changed apps.
+                moveChangedEntries(packageName);
+                return;
+            }
             final int size = mEntries.size();
             for (int i = 0; i < size; i++) {
                 final AppEntry entry = mEntries.get(i);
                 final ApplicationInfo info = entry.info;
-                if (info == null && !TextUtils.equals(packageName, info.packageName)) {
+                if (info == null || !TextUtils.equals(packageName, info.packageName)) {
                     continue;
                 }
                 if (TextUtils.equals(mManageApplications.mCurrentPkgName, info.packageName)) {
@@ -1383,6 +1485,89 @@ public class ManageApplications extends InstrumentedFragment
             }
         }
 
+        private void moveChangedEntries(String packageName) {
+            final boolean isSearchFiltered = mOriginalEntries != mEntries;
+            if (isSearchFiltered && mOriginalEntries != null) {
+                final int[] indexes = findEntries(mOriginalEntries, packageName);
+                if (!isInSortedPositions(mOriginalEntries, indexes)) {
+                    // Move the entries in a copy, the search filter may be reading the list.
+                    mOriginalEntries = new ArrayList<>(mOriginalEntries);
+                    moveToSortedPositions(mOriginalEntries, indexes, false /* notify */);
+                }
+            }
+            final int[] indexes = findEntries(mEntries, packageName);
+            if (!isInSortedPositions(mEntries, indexes)) {
+                mEntries = new ArrayList<>(mEntries);
+                if (!isSearchFiltered) {
+                    mOriginalEntries = mEntries;
+                }
+                moveToSortedPositions(mEntries, indexes, true /* notify */);
+            }
+            for (int index : indexes) {
+                final AppEntry entry = mEntries.get(index);
+                mContentKeys.put(entry.id, AppEntryDiffCallback.getContentKey(entry));
+                mOnScrollListener.postNotifyItemChange(index);
+            }
+        }
+
+        /** Returns the indexes of the entries of {@code packageName} in {@code entries}. */
+        private static int[] findEntries(List<AppEntry> entries, String packageName) {
+            final List<Integer> indexes = new ArrayList<>();
+            final int size = entries.size();
+            for (int i = 0; i < size; i++) {
+                final ApplicationInfo info = entries.get(i).info;
+                if (info != null && TextUtils.equals(packageName, info.packageName)) {
+                    indexes.add(i);
+                }
+            }
+            final int[] result = new int[indexes.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = indexes.get(i);
+            }
+            return result;
+        }
+
+        private boolean isInSortedPositions(List<AppEntry> entries, int[] indexes) {
+            final int lastIndex = entries.size() - 1;
+            for (int index : indexes) {
+                final AppEntry entry = entries.get(index);
+                if ((index > 0 && mEntriesComparator.compare(entries.get(index - 1), entry) > 0)
+                        || (index < lastIndex
+                        && mEntriesComparator.compare(entry, entries.get(index + 1)) > 0)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Moves the entries at {@code indexes} of {@code entries} to their sorted positions,
+         * found by a binary search, and updates {@code indexes} with them.
+         */
+        private void moveToSortedPositions(List<AppEntry> entries, int[] indexes,
+                boolean notify) {
+            for (int i = 0; i < indexes.length; i++) {
+                final int index = indexes[i];
+                final int newIndex = AppEntryDiffCallback.moveToSortedPosition(entries, index,
+                        mEntriesComparator);
+                if (newIndex == index) {
+                    continue;
+                }
+                // The entries between the old and the new position shifted by one.
+                for (int j = 0; j < indexes.length; j++) {
+                    if (j == i) {
+                        continue;
+                    }
+                    final int shifted = indexes[j] > index ? indexes[j] - 1 : indexes[j];
+                    indexes[j] = shifted >= newIndex ? shifted + 1 : shifted;
+                }
+                indexes[i] = newIndex;
+                if (notify) {
+                    notifyItemMoved(index, newIndex);
+                }
+            }
+        }
+
         @Override
         public void onLauncherInfoChanged() {
             if (!mManageApplications.mShowSystem) {
@@ -1573,8 +1758,8 @@ public class ManageApplications extends InstrumentedFragment
 
             @Override
             protected void publishResults(CharSequence constraint, FilterResults results) {
-                mEntries = (ArrayList<ApplicationsState.AppEntry>) results.values;
-                notifyDataSetChanged();
+                setEntries((ArrayList<ApplicationsState.AppEntry>) results.values,
+                        mEntriesComparator, null /* onShown */);
             }
         }
     }
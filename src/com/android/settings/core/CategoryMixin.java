@@ -219,6 +219,12 @@ public class CategoryMixin implements LifecycleObserver {
     private class PackageReceiver extends BroadcastReceiver {
         @Override
         public void onReceive(Context context, Intent intent) {
+            final String packageName = intent.getData() == null
+                    ? null : intent.getData().getSchemeSpecificPart();
+            if (!TextUtils.isEmpty(packageName)) {
+                // Only the tiles of the changed package have to be reloaded.
+                CategoryManager.get(mContext).invalidatePackage(packageName);
+            }
             updateCategories(true /* fromBroadcast */);
         }
     }
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.Pair;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Caches the metadata extracted by {@link PreferenceXmlParserUtils#extractMetadata} in memory and
+ * on disk.
+ *
+ * <p>The metadata is keyed by the package version, the xml res id, the flags and the resource
+ * configuration. The disk cache is dropped when the package version or the build changes, and is
+ * loaded into memory in the background, so the main thread never reads it.
+ */
+class PreferenceMetadataCache {
+    private static final String TAG = "PreferenceMetadataCache";
+    private static final String CACHE_DIR = "preference_metadata";
+    private static final String VERSION_FILE = "version";
+    private static final int MAX_MEMORY_ENTRIES = 256;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final LruCache<String, List<Bundle>> sMemoryCache =
+            new LruCache<>(MAX_MEMORY_ENTRIES);
+    // Written under PreferenceMetadataCache.class, read without it so the main thread never waits
+    // for the disk work holding the lock.
+    private static volatile String sVersionKey;
+    // Guarded by PreferenceMetadataCache.class.
+    private static File sCacheDir;
+
+    private PreferenceMetadataCache() {
+    }
+
+    /**
+     * @return the key of the metadata, or {@code null} if the metadata should not be cached.
+     */
+    static String getKey(Context context, int xmlResId, int flags) {
+        final String versionKey = getVersionKey(context);
+        if (versionKey == null) {
+            return null;
+        }
+        final Configuration config = context.getResources().getConfiguration();
+        return new StringBuilder()
+                .append(versionKey).append('_')
+                .append(context.getPackageName()).append('_')
+                .append(xmlResId).append('_')
+                .append(flags).append('_')
+                .append(config.getLocales().toLanguageTags()).append('_')
+                .append(config.densityDpi).append('_')
+                .append(config.uiMode & Configuration.UI_MODE_NIGHT_MASK).append('_')
+                .append(config.mcc).append('_')
+                .append(config.mnc).append('_')
+                .append(config.smallestScreenWidthDp)
+                .toString();
+    }
+
+    /**
+     * @return a copy of the cached metadata, or {@code null} if it is not cached. On the main
+     * thread only the memory cache is looked up.
+     */
+    static List<Bundle> get(String key) {
+        List<Bundle> metadata = sMemoryCache.get(key);
+        if (metadata == null) {
+            if (ThreadUtils.isMainThread()) {
+                return null;
+            }
+            metadata = readFromDisk(key);
+            if (metadata == null) {
+                return null;
+            }
+            sMemoryCache.put(key, metadata);
+        }
+        return copy(metadata);
+    }
+
+    static void put(String key, List<Bundle> metadata) {
+        final List<Bundle> copy = copy(metadata);
+        sMemoryCache.put(key, copy);
+        ThreadUtils.postOnBackgroundThread(() -> writeToDisk(key, copy));
+    }
+
+    @VisibleForTesting
+    static synchronized void clear() {
+        sMemoryCache.evictAll();
+        if (sCacheDir != null) {
+            deleteFiles(sCacheDir);
+        }
+        sVersionKey = null;
+        sCacheDir = null;
+    }
+
+    private static String getVersionKey(Context context) {
+        final String versionKey = sVersionKey;
+        if (versionKey != null) {
+            return versionKey;
+        }
+        synchronized (PreferenceMetadataCache.class) {
+            return loadVersionKey(context);
+        }
+    }
+
+    private static String loadVersionKey(Context context) {
+        if (sVersionKey != null) {
+            return sVersionKey;
+        }
+        final PackageManager packageManager = context.getPackageManager();
+        final File cacheDir = context.getCacheDir();
+        if (packageManager == null || cacheDir == null) {
+            return null;
+        }
+        final PackageInfo packageInfo;
+        try {
+            packageInfo = packageManager.getPackageInfo(context.getPackageName(), 0 /* flags */);
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.w(TAG, "Cannot find package " + context.getPackageName(), e);
+            return null;
+        }
+        final String versionKey = FORMAT_VERSION + "_" + packageInfo.getLongVersionCode() + "_"
+                + packageInfo.lastUpdateTime + "_" + Build.FINGERPRINT;
+        final File dir = new File(cacheDir, CACHE_DIR);
+        sCacheDir = dir;
+        sVersionKey = versionKey;
+        ThreadUtils.postOnBackgroundThread(() -> {
+            prepareCacheDir(dir, versionKey);
+            loadCacheDir(dir);
+        });
+        return versionKey;
+    }
+
+    /**
+     * Drops the files written by another version of the package.
+     */
+    private static synchronized void prepareCacheDir(File dir, String versionKey) {
+        final File versionFile = new File(dir, VERSION_FILE);
+        try {
+            if (versionFile.exists() && versionKey.equals(new String(
+                    Files.readAllBytes(versionFile.toPath()), StandardCharsets.UTF_8))) {
+                return;
+            }
+            deleteFiles(dir);
+            if (!dir.exists() && !dir.mkdirs()) {
+                Log.w(TAG, "Cannot create " + dir);
+                return;
+            }
+            Files.write(versionFile.toPath(), versionKey.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot prepare " + dir, e);
+        }
+    }
+
+    /**
+     * Loads the files written by this version of the package into the memory cache.
+     */
+    private static synchronized void loadCacheDir(File dir) {
+        if (dir != sCacheDir) {
+            // Cleared in the meantime.
+            return;
+        }
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        int loaded = 0;
+        for (File file : files) {
+            if (loaded >= MAX_MEMORY_ENTRIES) {
+                break;
+            }
+            if (VERSION_FILE.equals(file.getName())) {
+                continue;
+            }
+            final Pair<String, List<Bundle>> entry = readFile(file);
+            if (entry != null && sMemoryCache.get(entry.first) == null) {
+                sMemoryCache.put(entry.first, entry.second);
+                loaded++;
+            }
+        }
+    }
+
+    private static synchronized List<Bundle> readFromDisk(String key) {
+        final File file = getFile(key);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        final Pair<String, List<Bundle>> entry = readFile(file);
+        if (entry == null || !key.equals(entry.first)) {
+            // Hash collision of the file name.
+            return null;
+        }
+        return entry.second;
+    }
+
+    /**
+     * @return the key and the metadata stored in {@code file}, or {@code null} if it is corrupted.
+     */
+    private static Pair<String, List<Bundle>> readFile(File file) {
+        final Parcel parcel = Parcel.obtain();
+        try (FileInputStream in = new FileInputStream(file)) {
+            final byte[] data = new byte[(int) file.length()];
+            if (in.read(data) != data.length) {
+                return null;
+            }
+            parcel.unmarshall(data, 0, data.length);
+            parcel.setDataPosition(0);
+            final String key = parcel.readString();
+            final int size = parcel.readInt();
+            final List<Bundle> metadata = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                metadata.add(parcel.readBundle(PreferenceMetadataCache.class.getClassLoader()));
+            }
+            return Pair.create(key, metadata);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Cannot read " + file, e);
+            file.delete();
+            return null;
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static synchronized void writeToDisk(String key, List<Bundle> metadata) {
+        final File file = getFile(key);
+        if (file == null || !file.getParentFile().exists()) {
+            return;
+        }
+        final Parcel parcel = Parcel.obtain();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            parcel.writeString(key);
+            parcel.writeInt(metadata.size());
+            for (Bundle bundle : metadata) {
+                parcel.writeBundle(bundle);
+            }
+            out.write(parcel.marshall());
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write " + file, e);
+            file.delete();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static void deleteFiles(File dir) {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private static File getFile(String key) {
+        if (sCacheDir == null) {
+            return null;
+        }
+        return new File(sCacheDir, Integer.toHexString(key.hashCode()));
+    }
+
+    private static List<Bundle> copy(List<Bundle> metadata) {
+        final List<Bundle> copy = new ArrayList<>(metadata.size());
+        for (Bundle bundle : metadata) {
+            copy.add(new Bundle(bundle));
+        }
+        return copy;
+    }
+}
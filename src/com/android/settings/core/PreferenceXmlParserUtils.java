@@ -168,7 +168,8 @@ public class PreferenceXmlParserUtils {
     }
 
     /**
-     * Extracts metadata from preference xml and put them into a {@link Bundle}.
+     * Extracts metadata from preference xml and put them into a {@link Bundle}. The metadata is
+     * cached per resource configuration, so the same xml is only parsed once.
      *
      * @param xmlResId xml res id of a preference screen
      * @param flags    Should be one or more of {@link MetadataFlag}.
@@ -176,11 +177,25 @@ public class PreferenceXmlParserUtils {
     @NonNull
     public static List<Bundle> extractMetadata(Context context, @XmlRes int xmlResId, int flags)
             throws IOException, XmlPullParserException {
-        final List<Bundle> metadata = new ArrayList<>();
         if (xmlResId <= 0) {
             Log.d(TAG, xmlResId + " is invalid.");
-            return metadata;
+            return new ArrayList<>();
+        }
+        final String cacheKey = PreferenceMetadataCache.getKey(context, xmlResId, flags);
+        if (cacheKey == null) {
+            return parseMetadata(context, xmlResId, flags);
         }
+        List<Bundle> metadata = PreferenceMetadataCache.get(cacheKey);
+        if (metadata == null) {
+            metadata = parseMetadata(context, xmlResId, flags);
+            PreferenceMetadataCache.put(cacheKey, metadata);
+        }
+        return metadata;
+    }
+
+    private static List<Bundle> parseMetadata(Context context, @XmlRes int xmlResId, int flags)
+            throws IOException, XmlPullParserException {
+        final List<Bundle> metadata = new ArrayList<>();
         final XmlResourceParser parser = context.getResources().getXml(xmlResId);
 
         int type;
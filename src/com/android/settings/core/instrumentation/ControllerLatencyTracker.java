@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core.instrumentation;
+
+import android.app.settings.SettingsEnums;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Keeps the recent latency of the preference controllers of each page.
+ *
+ * <p>The samples are kept in fixed size ring buffers keyed by the metrics category of the page
+ * and the controller class, so recording a sample does not allocate once a controller has been
+ * seen. The percentiles are reported through {@code SettingsDumpService}.
+ *
+ * <p>All the pages share one latency budget, set from
+ * {@code config_controller_latency_budget_ms}. Only the slow {@code updateState()} calls are
+ * reported to the metrics, as {@link SettingsEnums#ACTION_CONTROLLER_UPDATE_STATE}; the slow
+ * calls of the other phases are logged and counted in the dump.
+ */
+public class ControllerLatencyTracker {
+    private static final String TAG = "ControllerLatency";
+
+    @VisibleForTesting
+    static final int SAMPLE_SIZE = 32;
+    @VisibleForTesting
+    static final int DEFAULT_BUDGET_MS = 50;
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({PHASE_AVAILABILITY, PHASE_DISPLAY_PREFERENCE, PHASE_UPDATE_STATE, PHASE_DETECT})
+    public @interface Phase {
+    }
+
+    /** The controller's getAvailabilityStatus(), measured through isAvailable(). */
+    public static final int PHASE_AVAILABILITY = 0;
+    /** The controller's displayPreference(). */
+    public static final int PHASE_DISPLAY_PREFERENCE = 1;
+    /** The controller's updateState(). */
+    public static final int PHASE_UPDATE_STATE = 2;
+    /** The detect() of a battery tip detector, recorded as a controller. */
+    public static final int PHASE_DETECT = 3;
+
+    private static final String[] PHASE_NAMES = {
+            "getAvailabilityStatus", "displayPreference", "updateState", "detect"};
+
+    /**
+     * The category of the battery tip detectors, which are shared by the battery pages and
+     * slices. It isn't a metrics category, so it never mixes with the controllers of a page.
+     */
+    public static final int CATEGORY_BATTERY_TIP_DETECTORS = -1;
+
+    private static ControllerLatencyTracker sInstance;
+
+    // Metrics category -> controller class -> stats. Guarded by this.
+    private final SparseArray<Map<Class<?>, ControllerStats>> mStats = new SparseArray<>();
+    private volatile int mBudgetMs = DEFAULT_BUDGET_MS;
+
+    public static synchronized ControllerLatencyTracker getInstance() {
+        if (sInstance == null) {
+            sInstance = new ControllerLatencyTracker();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    ControllerLatencyTracker() {
+    }
+
+    /**
+     * Sets the latency over which a controller call is flagged as slow.
+     */
+    public void setBudgetMs(int budgetMs) {
+        mBudgetMs = budgetMs;
+    }
+
+    /**
+     * @return the timestamp to be passed to {@link #end}.
+     */
+    public static long begin() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    /**
+     * Records a controller call started at {@code beginNanos}. A call over the budget is
+     * logged, and a slow {@code updateState()} is also reported to {@code metricsFeature} if
+     * it is not {@code null}.
+     */
+    public void end(int metricsCategory, Object controller, @Phase int phase, long beginNanos,
+            MetricsFeatureProvider metricsFeature) {
+        final long elapsedNanos = SystemClock.elapsedRealtimeNanos() - beginNanos;
+        final int elapsedUs = (int) Math.min(Integer.MAX_VALUE, elapsedNanos / 1000);
+        final Class<?> clazz = controller.getClass();
+        final boolean overBudget = elapsedUs > mBudgetMs * 1000;
+        synchronized (this) {
+            Map<Class<?>, ControllerStats> statsByClass = mStats.get(metricsCategory);
+            if (statsByClass == null) {
+                statsByClass = new ArrayMap<>();
+                mStats.put(metricsCategory, statsByClass);
+            }
+            ControllerStats stats = statsByClass.get(clazz);
+            if (stats == null) {
+                stats = new ControllerStats();
+                statsByClass.put(clazz, stats);
+            }
+            stats.add(phase, elapsedUs, overBudget);
+        }
+
+        if (!overBudget) {
+            return;
+        }
+        final int elapsedMs = elapsedUs / 1000;
+        Log.w(TAG, "The " + PHASE_NAMES[phase] + " took " + elapsedMs + " ms in Controller "
+                + clazz.getSimpleName());
+        if (metricsFeature != null && phase == PHASE_UPDATE_STATE) {
+            metricsFeature.action(SettingsEnums.PAGE_UNKNOWN,
+                    SettingsEnums.ACTION_CONTROLLER_UPDATE_STATE, metricsCategory,
+                    clazz.getSimpleName(), elapsedMs);
+        }
+    }
+
+    /**
+     * Dumps the percentiles of every recorded controller call.
+     */
+    public synchronized JSONArray dumpToJson() throws JSONException {
+        final JSONArray array = new JSONArray();
+        for (int i = 0; i < mStats.size(); i++) {
+            final int category = mStats.keyAt(i);
+            for (Map.Entry<Class<?>, ControllerStats> entry : mStats.valueAt(i).entrySet()) {
+                for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+                    final LatencyRingBuffer buffer = entry.getValue().mBuffers[phase];
+                    if (buffer.getCount() == 0) {
+                        continue;
+                    }
+                    final int[] sorted = buffer.getSortedSamples();
+                    final JSONObject obj = new JSONObject();
+                    obj.put("category", category);
+                    obj.put("controller", entry.getKey().getName());
+                    obj.put("phase", PHASE_NAMES[phase]);
+                    obj.put("count", buffer.getCount());
+                    obj.put("p50_us", percentile(sorted, 50));
+                    obj.put("p90_us", percentile(sorted, 90));
+                    obj.put("p99_us", percentile(sorted, 99));
+                    obj.put("max_us", sorted[sorted.length - 1]);
+                    obj.put("over_budget", entry.getValue().mOverBudgetCounts[phase]);
+                    array.put(obj);
+                }
+            }
+        }
+        return array;
+    }
+
+    @VisibleForTesting
+    synchronized void clear() {
+        mStats.clear();
+    }
+
+    @VisibleForTesting
+    static int percentile(int[] sorted, int percentile) {
+        final int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static class ControllerStats {
+        private final LatencyRingBuffer[] mBuffers = new LatencyRingBuffer[PHASE_NAMES.length];
+        private final int[] mOverBudgetCounts = new int[PHASE_NAMES.length];
+
+        ControllerStats() {
+            for (int i = 0; i < mBuffers.length; i++) {
+                mBuffers[i] = new LatencyRingBuffer(SAMPLE_SIZE);
+            }
+        }
+
+        void add(int phase, int elapsedUs, boolean overBudget) {
+            mBuffers[phase].add(elapsedUs);
+            if (overBudget) {
+                mOverBudgetCounts[phase]++;
+            }
+        }
+    }
+
+    /**
+     * A fixed size buffer keeping the most recent samples.
+     */
+    @VisibleForTesting
+    static class LatencyRingBuffer {
+        private final int[] mSamples;
+        private int mNext;
+        private long mCount;
+
+        LatencyRingBuffer(int size) {
+            mSamples = new int[size];
+        }
+
+        void add(int sample) {
+            mSamples[mNext] = sample;
+            mNext = (mNext + 1) % mSamples.length;
+            mCount++;
+        }
+
+        /** @return the number of samples recorded so far, including the evicted ones. */
+        long getCount() {
+            return mCount;
+        }
+
+        int[] getSortedSamples() {
+            final int[] sorted = Arrays.copyOf(mSamples, (int) Math.min(mCount, mSamples.length));
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -32,12 +32,22 @@ import com.android.settingslib.drawer.Tile;
 import com.android.settingslib.drawer.TileUtils;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+/**
+ * Loads the tiles injected into Settings and publishes them as an immutable snapshot.
+ *
+ * <p>Readers get the latest snapshot without taking the lock, so they never wait for a reload.
+ * A reload builds a new snapshot and reuses the published {@link DashboardCategory} of every
+ * category whose tiles have not changed. Published categories are never modified, a change
+ * copies them first.
+ */
 public class CategoryManager {
 
     private static final String TAG = "CategoryManager";
@@ -46,13 +56,14 @@ public class CategoryManager {
     private static CategoryManager sInstance;
     private final InterestingConfigChanges mInterestingConfigChanges;
 
-    // Tile cache (key: <packageName, activityName>, value: tile)
+    // Tile cache (key: <packageName, activityName>, value: tile), guarded by this.
     private final Map<Pair<String, String>, Tile> mTileByComponentCache;
 
-    // Tile cache (key: category key, value: category)
-    private final Map<String, DashboardCategory> mCategoryByKeyMap;
+    // Packages whose cached tiles have to be reloaded, guarded by itself so that it can be
+    // updated while a reload holds the lock.
+    private final Set<String> mInvalidatedPackages = new ArraySet<>();
 
-    private List<DashboardCategory> mCategories;
+    private volatile Snapshot mSnapshot;
 
     public static CategoryManager get(Context context) {
         if (sInstance == null) {
@@ -63,27 +74,45 @@ public class CategoryManager {
 
     CategoryManager(Context context) {
         mTileByComponentCache = new ArrayMap<>();
-        mCategoryByKeyMap = new ArrayMap<>();
         mInterestingConfigChanges = new InterestingConfigChanges();
         mInterestingConfigChanges.applyNewConfig(context.getResources());
     }
 
-    public synchronized DashboardCategory getTilesByCategory(Context context, String categoryKey) {
-        tryInitCategories(context);
-
-        return mCategoryByKeyMap.get(categoryKey);
+    public DashboardCategory getTilesByCategory(Context context, String categoryKey) {
+        return getSnapshot(context).mCategoryByKeyMap.get(categoryKey);
     }
 
-    public synchronized List<DashboardCategory> getCategories(Context context) {
-        tryInitCategories(context);
-        return mCategories;
+    public List<DashboardCategory> getCategories(Context context) {
+        return getSnapshot(context).mCategories;
     }
 
+    /**
+     * Reloads the categories. The cached tiles are kept, except the ones of the packages passed
+     * to {@link #invalidatePackage} since the last reload.
+     */
     public synchronized void reloadAllCategories(Context context) {
         final boolean forceClearCache = mInterestingConfigChanges.applyNewConfig(
                 context.getResources());
-        mCategories = null;
-        tryInitCategories(context, forceClearCache);
+        final Set<String> invalidatedPackages;
+        synchronized (mInvalidatedPackages) {
+            invalidatedPackages = new ArraySet<>(mInvalidatedPackages);
+            mInvalidatedPackages.clear();
+        }
+        if (forceClearCache) {
+            mTileByComponentCache.clear();
+        } else if (!invalidatedPackages.isEmpty()) {
+            evictPackageTiles(invalidatedPackages);
+        }
+        loadCategories(context);
+    }
+
+    /**
+     * Drops the cached tiles of {@code packageName} on the next {@link #reloadAllCategories}.
+     */
+    public void invalidatePackage(String packageName) {
+        synchronized (mInvalidatedPackages) {
+            mInvalidatedPackages.add(packageName);
+        }
     }
 
     /**
@@ -91,29 +120,33 @@ public class CategoryManager {
      * @param tileDenylist
      */
     public synchronized void updateCategoryFromDenylist(Set<ComponentName> tileDenylist) {
-        if (mCategories == null) {
+        final Snapshot snapshot = mSnapshot;
+        if (snapshot == null) {
             Log.w(TAG, "Category is null, skipping denylist update");
             return;
         }
-        for (int i = 0; i < mCategories.size(); i++) {
-            DashboardCategory category = mCategories.get(i);
-            for (int j = 0; j < category.getTilesCount(); j++) {
-                Tile tile = category.getTile(j);
-                if (tileDenylist.contains(tile.getIntent().getComponent())) {
-                    category.removeTile(j--);
-                }
-            }
+        final Map<String, DashboardCategory> categoryByKeyMap = new ArrayMap<>();
+        boolean changed = false;
+        for (Entry<String, DashboardCategory> entry : snapshot.mCategoryByKeyMap.entrySet()) {
+            final DashboardCategory category = entry.getValue();
+            final DashboardCategory filteredCategory = removeTiles(category, tileDenylist);
+            changed |= filteredCategory != category;
+            categoryByKeyMap.put(entry.getKey(), filteredCategory);
+        }
+        if (changed) {
+            mSnapshot = new Snapshot(snapshot.mCategories, categoryByKeyMap);
         }
     }
 
     /** Return the current tile map */
-    public synchronized Map<ComponentName, Tile> getTileByComponentMap() {
+    public Map<ComponentName, Tile> getTileByComponentMap() {
         final Map<ComponentName, Tile> result = new ArrayMap<>();
-        if (mCategories == null) {
+        final Snapshot snapshot = mSnapshot;
+        if (snapshot == null) {
             Log.w(TAG, "Category is null, no tiles");
             return result;
         }
-        mCategories.forEach(category -> {
+        snapshot.mCategories.forEach(category -> {
             for (int i = 0; i < category.getTilesCount(); i++) {
                 final Tile tile = category.getTile(i);
                 result.put(tile.getIntent().getComponent(), tile);
@@ -131,30 +164,105 @@ public class CategoryManager {
         }
     }
 
+    private Snapshot getSnapshot(Context context) {
+        final Snapshot snapshot = mSnapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        tryInitCategories(context);
+        return mSnapshot;
+    }
+
     private synchronized void tryInitCategories(Context context) {
         // Keep cached tiles by default. The cache is only invalidated when InterestingConfigChange
-        // happens.
-        tryInitCategories(context, false /* forceClearCache */);
+        // happens or a package changes.
+        if (mSnapshot == null) {
+            loadCategories(context);
+        }
+    }
+
+    private synchronized void loadCategories(Context context) {
+        final boolean firstLoading = mSnapshot == null;
+        final List<DashboardCategory> categories =
+                TileUtils.getCategories(context, mTileByComponentCache);
+        final Map<String, DashboardCategory> categoryByKeyMap = new ArrayMap<>();
+        for (DashboardCategory category : categories) {
+            categoryByKeyMap.put(category.key, category);
+        }
+        backwardCompatCleanupForCategory(mTileByComponentCache, categoryByKeyMap);
+        sortCategories(context, categoryByKeyMap);
+        filterDuplicateTiles(categoryByKeyMap);
+        publishCategories(categories, categoryByKeyMap);
+        if (firstLoading) {
+            logTiles(context);
+        }
+    }
+
+    /**
+     * Publishes a new snapshot of the loaded categories, reusing the published category of every
+     * key whose tiles are the same.
+     */
+    @VisibleForTesting
+    synchronized void publishCategories(List<DashboardCategory> categories,
+            Map<String, DashboardCategory> categoryByKeyMap) {
+        final Snapshot previous = mSnapshot;
+        if (previous != null) {
+            for (Entry<String, DashboardCategory> entry : categoryByKeyMap.entrySet()) {
+                final DashboardCategory previousCategory =
+                        previous.mCategoryByKeyMap.get(entry.getKey());
+                if (previousCategory != null && hasSameTiles(previousCategory, entry.getValue())) {
+                    entry.setValue(previousCategory);
+                }
+            }
+        }
+        mSnapshot = new Snapshot(categories, categoryByKeyMap);
     }
 
-    private synchronized void tryInitCategories(Context context, boolean forceClearCache) {
-        if (mCategories == null) {
-            final boolean firstLoading = mCategoryByKeyMap.isEmpty();
-            if (forceClearCache) {
-                mTileByComponentCache.clear();
+    private void evictPackageTiles(Set<String> packageNames) {
+        final Iterator<Pair<String, String>> iterator =
+                mTileByComponentCache.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (packageNames.contains(iterator.next().first)) {
+                iterator.remove();
             }
-            mCategoryByKeyMap.clear();
-            mCategories = TileUtils.getCategories(context, mTileByComponentCache);
-            for (DashboardCategory category : mCategories) {
-                mCategoryByKeyMap.put(category.key, category);
+        }
+    }
+
+    private static boolean hasSameTiles(DashboardCategory category1,
+            DashboardCategory category2) {
+        final int count = category1.getTilesCount();
+        if (count != category2.getTilesCount()) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (category1.getTile(i) != category2.getTile(i)) {
+                return false;
             }
-            backwardCompatCleanupForCategory(mTileByComponentCache, mCategoryByKeyMap);
-            sortCategories(context, mCategoryByKeyMap);
-            filterDuplicateTiles(mCategoryByKeyMap);
-            if (firstLoading) {
-                logTiles(context);
+        }
+        return true;
+    }
+
+    /**
+     * @return a copy of {@code category} without the tiles of {@code components}, or
+     * {@code category} itself if it has none of them.
+     */
+    private static DashboardCategory removeTiles(DashboardCategory category,
+            Set<ComponentName> components) {
+        DashboardCategory result = category;
+        for (int i = 0; i < category.getTilesCount(); i++) {
+            final Tile tile = category.getTile(i);
+            if (components.contains(tile.getIntent().getComponent())) {
+                if (result == category) {
+                    result = new DashboardCategory(category.key);
+                    for (int j = 0; j < i; j++) {
+                        result.addTile(category.getTile(j));
+                    }
+                }
+            } else if (result != category) {
+                result.addTile(tile);
             }
         }
+        return result;
     }
 
     @VisibleForTesting
@@ -254,4 +362,22 @@ public class CategoryManager {
             }
         }
     }
+
+    /**
+     * The published categories. The list holds the categories of the map with the same keys.
+     */
+    private static final class Snapshot {
+        private final List<DashboardCategory> mCategories;
+        private final Map<String, DashboardCategory> mCategoryByKeyMap;
+
+        Snapshot(List<DashboardCategory> categories,
+                Map<String, DashboardCategory> categoryByKeyMap) {
+            mCategoryByKeyMap = Collections.unmodifiableMap(categoryByKeyMap);
+            final List<DashboardCategory> list = new ArrayList<>(categories.size());
+            for (DashboardCategory category : categories) {
+                list.add(mCategoryByKeyMap.get(category.key));
+            }
+            mCategories = Collections.unmodifiableList(list);
+        }
+    }
 }
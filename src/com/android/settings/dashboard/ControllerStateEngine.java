@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.preference.Preference;
+import androidx.preference.PreferenceScreen;
+
+import com.android.settings.utils.ThreadPoolUtils;
+import com.android.settingslib.core.AbstractPreferenceController;
+import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Updates the state of the preferences managed by a list of controllers in parallel.
+ *
+ * <p>The availability of each controller is checked on a bounded worker pool shared by all
+ * dashboard pages. Once every controller has been checked, the results are committed to the
+ * {@link Preference}s in a single main thread message, so the UI is updated in one frame and the
+ * main thread is never blocked waiting for the workers.
+ */
+public class ControllerStateEngine {
+    private static final String TAG = "ControllerStateEngine";
+    private static final int MAX_POOL_SIZE = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    private static ThreadPoolExecutor sExecutor;
+
+    private final MetricsFeatureProvider mMetricsFeature;
+    private final int mMetricsCategory;
+    private final Executor mExecutor;
+    // Only accessed in the main thread.
+    private int mGeneration;
+
+    public ControllerStateEngine(MetricsFeatureProvider metricsFeature, int metricsCategory) {
+        this(metricsFeature, metricsCategory, getExecutor());
+    }
+
+    @VisibleForTesting
+    ControllerStateEngine(MetricsFeatureProvider metricsFeature, int metricsCategory,
+            Executor executor) {
+        mMetricsFeature = metricsFeature;
+        mMetricsCategory = metricsCategory;
+        mExecutor = executor;
+    }
+
+    /**
+     * Checks the given controllers in the background and updates their preferences in the main
+     * thread. A pending update is dropped when a new one is requested or {@link #cancel()} is
+     * called. This must be called in the main thread.
+     */
+    public void update(PreferenceScreen screen, List<AbstractPreferenceController> controllers) {
+        final int generation = ++mGeneration;
+        if (screen == null || controllers.isEmpty()) {
+            return;
+        }
+
+        final int size = controllers.size();
+        final ControllerTask[] tasks = new ControllerTask[size];
+        final Preference[] results = new Preference[size];
+        final AtomicInteger remaining = new AtomicInteger(size);
+        for (int i = 0; i < size; i++) {
+            tasks[i] = new ControllerTask(controllers.get(i), screen, mMetricsFeature,
+                    mMetricsCategory);
+        }
+        for (int i = 0; i < size; i++) {
+            final int index = i;
+            mExecutor.execute(() -> {
+                try {
+                    results[index] = tasks[index].prepare();
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Failed to check controller "
+                            + tasks[index].getController().getClass().getSimpleName(), e);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    ThreadUtils.postOnMainThread(() -> commit(generation, tasks, results));
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops the pending update, if any. This must be called in the main thread.
+     */
+    public void cancel() {
+        mGeneration++;
+    }
+
+    private void commit(int generation, ControllerTask[] tasks, Preference[] results) {
+        if (generation != mGeneration) {
+            Log.d(TAG, "Drop stale update for category " + mMetricsCategory);
+            return;
+        }
+        // The array writes in the workers happen before the final decrementAndGet(), which
+        // happens before this message is posted, so all results are visible here.
+        for (int i = 0; i < tasks.length; i++) {
+            if (results[i] != null) {
+                tasks[i].commit(results[i]);
+            }
+        }
+    }
+
+    /**
+     * Flattens the controllers in the order they are updated by the serial path.
+     */
+    static List<AbstractPreferenceController> flatten(
+            Iterable<List<AbstractPreferenceController>> controllerLists) {
+        final List<AbstractPreferenceController> controllers = new ArrayList<>();
+        for (List<AbstractPreferenceController> controllerList : controllerLists) {
+            controllers.addAll(controllerList);
+        }
+        return controllers;
+    }
+
+    private static synchronized Executor getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = ThreadPoolUtils.newWorkerPool(MAX_POOL_SIZE, KEEP_ALIVE_SECONDS,
+                    new WorkerThreadFactory());
+        }
+        return sExecutor;
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, TAG + "#" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -16,25 +16,24 @@
 
 package com.android.settings.dashboard;
 
-import android.app.settings.SettingsEnums;
-import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
+import com.android.settings.core.instrumentation.ControllerLatencyTracker;
 import com.android.settingslib.core.AbstractPreferenceController;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.utils.ThreadUtils;
 
 /**
  * A {@link Runnable} controller task. This task handle the visibility of the controller in the
- * background. Also handle the state updating in the main thread.
+ * background. Also handle the state updating in the main thread. The latency of both steps is
+ * recorded by {@link ControllerLatencyTracker}.
  */
 public class ControllerTask implements Runnable {
     private static final String TAG = "ControllerTask";
-    private static final int CONTROLLER_UPDATESTATE_TIME_THRESHOLD = 50;
 
     private final AbstractPreferenceController mController;
     private final PreferenceScreen mScreen;
@@ -51,37 +50,52 @@ public class ControllerTask implements Runnable {
 
     @Override
     public void run() {
-        if (!mController.isAvailable()) {
+        final Preference preference = prepare();
+        if (preference == null) {
             return;
         }
+        ThreadUtils.postOnMainThread(() -> commit(preference));
+    }
+
+    /**
+     * Checks the availability of the controller and resolves its preference. This is safe to be
+     * called in the background.
+     *
+     * @return the {@link Preference} to update, or {@code null} if the controller is skipped.
+     */
+    Preference prepare() {
+        final long t = ControllerLatencyTracker.begin();
+        final boolean available = mController.isAvailable();
+        ControllerLatencyTracker.getInstance().end(mMetricsCategory, mController,
+                ControllerLatencyTracker.PHASE_AVAILABILITY, t, mMetricsFeature);
+        if (!available) {
+            return null;
+        }
 
         final String key = mController.getPreferenceKey();
         if (TextUtils.isEmpty(key)) {
             Log.d(TAG, String.format("Preference key is %s in Controller %s",
                     key, mController.getClass().getSimpleName()));
-            return;
+            return null;
         }
 
         final Preference preference = mScreen.findPreference(key);
         if (preference == null) {
             Log.d(TAG, String.format("Cannot find preference with key %s in Controller %s",
                     key, mController.getClass().getSimpleName()));
-            return;
+            return null;
         }
-        ThreadUtils.postOnMainThread(() -> {
-            final long t = SystemClock.elapsedRealtime();
-            mController.updateState(preference);
-            final int elapsedTime = (int) (SystemClock.elapsedRealtime() - t);
-            if (elapsedTime > CONTROLLER_UPDATESTATE_TIME_THRESHOLD) {
-                Log.w(TAG, "The updateState took " + elapsedTime + " ms in Controller "
-                        + mController.getClass().getSimpleName());
-                if (mMetricsFeature != null) {
-                    mMetricsFeature.action(SettingsEnums.PAGE_UNKNOWN,
-                            SettingsEnums.ACTION_CONTROLLER_UPDATE_STATE, mMetricsCategory,
-                            mController.getClass().getSimpleName(), elapsedTime);
-                }
-            }
-        });
+        return preference;
+    }
+
+    /**
+     * Updates the state of the given preference. This must be called in the main thread.
+     */
+    void commit(Preference preference) {
+        final long t = ControllerLatencyTracker.begin();
+        mController.updateState(preference);
+        ControllerLatencyTracker.getInstance().end(mMetricsCategory, mController,
+                ControllerLatencyTracker.PHASE_UPDATE_STATE, t, mMetricsFeature);
     }
 
     AbstractPreferenceController getController() {
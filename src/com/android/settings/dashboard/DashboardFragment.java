@@ -38,16 +38,17 @@ import com.android.settings.core.BasePreferenceController;
 import com.android.settings.core.CategoryMixin.CategoryHandler;
 import com.android.settings.core.CategoryMixin.CategoryListener;
 import com.android.settings.core.PreferenceControllerListHelper;
+import com.android.settings.core.instrumentation.ControllerLatencyTracker;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.widget.PrimarySwitchPreference;
 import com.android.settingslib.core.AbstractPreferenceController;
+import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.core.lifecycle.Lifecycle;
 import com.android.settingslib.core.lifecycle.LifecycleObserver;
 import com.android.settingslib.drawer.DashboardCategory;
 import com.android.settingslib.drawer.ProviderTile;
 import com.android.settingslib.drawer.Tile;
 import com.android.settingslib.search.Indexable;
-import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -56,7 +57,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
 
 /**
  * Base fragment for dashboard style UI containing a list of static and dynamic setting items.
@@ -75,16 +75,27 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     private final List<AbstractPreferenceController> mControllers = new ArrayList<>();
     @VisibleForTesting
     UiBlockerController mBlockerController;
+    @VisibleForTesting
+    ControllerStateEngine mStateEngine;
     private DashboardFeatureProvider mDashboardFeatureProvider;
     private DashboardTilePlaceholderPreferenceController mPlaceholderPreferenceController;
     private boolean mListeningToCategoryChange;
     private List<String> mSuppressInjectedTileKeys;
+    // Whether the slow controllers of the serial update are reported to the metrics.
+    private boolean mLogControllerLatency;
 
     @Override
     public void onAttach(Context context) {
         super.onAttach(context);
         mSuppressInjectedTileKeys = Arrays.asList(context.getResources().getStringArray(
                 R.array.config_suppress_injected_tile_keys));
+        final int latencyBudgetMs =
+                context.getResources().getInteger(R.integer.config_controller_latency_budget_ms);
+        if (latencyBudgetMs > 0) {
+            ControllerLatencyTracker.getInstance().setBudgetMs(latencyBudgetMs);
+        }
+        mLogControllerLatency = context.getResources().getBoolean(
+                R.bool.config_log_controller_latency);
         mDashboardFeatureProvider = FeatureFactory.getFactory(context).
                 getDashboardFeatureProvider(context);
         // Load preference controllers from code
@@ -216,7 +227,11 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     @Override
     public void onResume() {
         super.onResume();
-        updatePreferenceStates();
+        if (isParalleledControllers()) {
+            updatePreferenceStatesInParallel();
+        } else {
+            updatePreferenceStates();
+        }
         writeElapsedTimeMetric(SettingsEnums.ACTION_DASHBOARD_VISIBLE_TIME,
                 "isParalleledControllers:" + isParalleledControllers());
     }
@@ -240,6 +255,9 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     @Override
     public void onStop() {
         super.onStop();
+        if (mStateEngine != null) {
+            mStateEngine.cancel();
+        }
         unregisterDynamicDataObservers(new ArrayList<>(mRegisteredObservers));
         if (mListeningToCategoryChange) {
             final Activity activity = getActivity();
@@ -335,8 +353,16 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
      * on all {@link AbstractPreferenceController}s.
      */
     protected void displayResourceTilesToScreen(PreferenceScreen screen) {
+        final ControllerLatencyTracker tracker = ControllerLatencyTracker.getInstance();
+        final int metricsCategory = getMetricsCategory();
         mPreferenceControllers.values().stream().flatMap(Collection::stream).forEach(
-                controller -> controller.displayPreference(screen));
+                controller -> {
+                    final long t = ControllerLatencyTracker.begin();
+                    controller.displayPreference(screen);
+                    tracker.end(metricsCategory, controller,
+                            ControllerLatencyTracker.PHASE_DISPLAY_PREFERENCE, t,
+                            null /* metricsFeature */);
+                });
     }
 
     /**
@@ -359,11 +385,19 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
      */
     protected void updatePreferenceStates() {
         final PreferenceScreen screen = getPreferenceScreen();
+        final ControllerLatencyTracker tracker = ControllerLatencyTracker.getInstance();
+        final int metricsCategory = getMetricsCategory();
+        final MetricsFeatureProvider latencyMetricsFeature =
+                mLogControllerLatency ? mMetricsFeatureProvider : null;
         Collection<List<AbstractPreferenceController>> controllerLists =
                 mPreferenceControllers.values();
         for (List<AbstractPreferenceController> controllerList : controllerLists) {
             for (AbstractPreferenceController controller : controllerList) {
-                if (!controller.isAvailable()) {
+                long t = ControllerLatencyTracker.begin();
+                final boolean available = controller.isAvailable();
+                tracker.end(metricsCategory, controller,
+                        ControllerLatencyTracker.PHASE_AVAILABILITY, t, null /* metricsFeature */);
+                if (!available) {
                     continue;
                 }
 
@@ -380,39 +414,27 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
                             key, controller.getClass().getSimpleName()));
                     continue;
                 }
+                t = ControllerLatencyTracker.begin();
                 controller.updateState(preference);
+                tracker.end(metricsCategory, controller,
+                        ControllerLatencyTracker.PHASE_UPDATE_STATE, t, latencyMetricsFeature);
             }
         }
     }
 
     /**
      * Use parallel method to update state of each preference managed by PreferenceController.
+     * The availability of the controllers is checked in the background, and all preferences are
+     * then updated together in the main thread.
      */
     @VisibleForTesting
-    // To use this parallel approach will cause the side effect of the UI flicker. Such as
-    // the thumb sliding of the toggle button.
     void updatePreferenceStatesInParallel() {
-        final PreferenceScreen screen = getPreferenceScreen();
-        final Collection<List<AbstractPreferenceController>> controllerLists =
-                mPreferenceControllers.values();
-        final List<ControllerFutureTask> taskList = new ArrayList<>();
-        for (List<AbstractPreferenceController> controllerList : controllerLists) {
-            for (AbstractPreferenceController controller : controllerList) {
-                final ControllerFutureTask task = new ControllerFutureTask(
-                        new ControllerTask(controller, screen, mMetricsFeatureProvider,
-                                getMetricsCategory()), null /* result */);
-                taskList.add(task);
-                ThreadUtils.postOnBackgroundThread(task);
-            }
-        }
-
-        for (ControllerFutureTask task : taskList) {
-            try {
-                task.get();
-            } catch (InterruptedException | ExecutionException e) {
-                Log.w(TAG, task.getController().getPreferenceKey() + " " + e.getMessage());
-            }
+        if (mStateEngine == null) {
+            mStateEngine = new ControllerStateEngine(mMetricsFeatureProvider,
+                    getMetricsCategory());
         }
+        mStateEngine.update(getPreferenceScreen(),
+                ControllerStateEngine.flatten(mPreferenceControllers.values()));
     }
 
     /**
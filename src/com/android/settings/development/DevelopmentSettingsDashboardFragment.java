@@ -380,6 +380,11 @@ public class DevelopmentSettingsDashboardFragment extends RestrictedDashboardFra
         return TAG;
     }
 
+    @Override
+    protected boolean isParalleledControllers() {
+        return true;
+    }
+
     @Override
     public int getHelpResource() {
         return 0;
@@ -39,6 +39,7 @@ import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.dashboard.profileselector.ProfileSelectFragment;
 import com.android.settings.deviceinfo.storage.SecondaryUserController;
 import com.android.settings.deviceinfo.storage.StorageAsyncLoader;
+import com.android.settings.deviceinfo.storage.StorageCacheHelper;
 import com.android.settings.deviceinfo.storage.StorageEntry;
 import com.android.settings.deviceinfo.storage.StorageItemPreferenceController;
 import com.android.settings.deviceinfo.storage.UserIconLoader;
@@ -50,6 +51,7 @@ import com.android.settingslib.core.AbstractPreferenceController;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.deviceinfo.PrivateStorageInfo;
 import com.android.settingslib.deviceinfo.StorageManagerVolumeProvider;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -85,6 +87,8 @@ public class StorageCategoryFragment extends DashboardFragment
     private StorageEntry mSelectedStorageEntry;
     private PrivateStorageInfo mStorageInfo;
     private SparseArray<StorageAsyncLoader.StorageResult> mAppsResult;
+    // The sizes cached by StorageCacheHelper, shown until the loaders measure them again.
+    private SparseArray<StorageAsyncLoader.StorageResult> mCachedAppsResult;
 
     private StorageItemPreferenceController mPreferenceController;
     private List<AbstractPreferenceController> mSecondaryUsers;
@@ -115,6 +119,7 @@ public class StorageCategoryFragment extends DashboardFragment
         if (mSelectedStorageEntry.isPrivate()) {
             mStorageInfo = null;
             mAppsResult = null;
+            mCachedAppsResult = null;
             maybeSetLoading(isQuotaSupported());
 
             // To prevent flicker, sets null volume to hide category preferences.
@@ -126,6 +131,7 @@ public class StorageCategoryFragment extends DashboardFragment
             getLoaderManager()
                  .restartLoader(VOLUME_SIZE_JOB_ID, Bundle.EMPTY, new VolumeSizeCallbacks());
             getLoaderManager().restartLoader(ICON_JOB_ID, Bundle.EMPTY, new IconLoaderCallbacks());
+            loadCachedSizes();
         } else {
             mPreferenceController.setVolume(mSelectedStorageEntry.getVolumeInfo());
         }
@@ -269,7 +275,32 @@ public class StorageCategoryFragment extends DashboardFragment
     @Override
     public void onLoadFinished(Loader<SparseArray<StorageAsyncLoader.StorageResult>> loader,
             SparseArray<StorageAsyncLoader.StorageResult> data) {
-        mAppsResult = data;
+        // The measured sizes replace the cached ones as they arrive.
+        mAppsResult = StorageAsyncLoader.StorageResult.withFallback(data, mCachedAppsResult);
+        onReceivedSizes();
+    }
+
+    /**
+     * Shows the sizes of the previous visit, read in the background, while they are measured
+     * again.
+     */
+    private void loadCachedSizes() {
+        final StorageEntry storageEntry = mSelectedStorageEntry;
+        StorageCacheHelper.loadCachedSizes(getContext(), storageEntry.getFsUuid(),
+                mUserManager.getUsers(), (storageInfo, appsResult) ->
+                        onCachedSizesLoaded(storageEntry, storageInfo, appsResult));
+    }
+
+    private void onCachedSizesLoaded(StorageEntry storageEntry, PrivateStorageInfo storageInfo,
+            SparseArray<StorageAsyncLoader.StorageResult> appsResult) {
+        if (getView() == null || storageEntry != mSelectedStorageEntry) {
+            return;
+        }
+        mCachedAppsResult = appsResult;
+        if (mStorageInfo == null) {
+            mStorageInfo = storageInfo;
+        }
+        mAppsResult = StorageAsyncLoader.StorageResult.withFallback(mAppsResult, appsResult);
         onReceivedSizes();
     }
 
@@ -400,6 +431,10 @@ public class StorageCategoryFragment extends DashboardFragment
             }
 
             mStorageInfo = privateStorageInfo;
+            final StorageCacheHelper cacheHelper = new StorageCacheHelper(getContext(),
+                    mSelectedStorageEntry.getFsUuid());
+            ThreadUtils.postOnBackgroundThread(
+                    () -> cacheHelper.cachePrivateStorageInfo(privateStorageInfo));
             onReceivedSizes();
         }
     }
@@ -47,6 +47,7 @@ import com.android.settings.deviceinfo.storage.AutomaticStorageManagementSwitchP
 import com.android.settings.deviceinfo.storage.DiskInitFragment;
 import com.android.settings.deviceinfo.storage.SecondaryUserController;
 import com.android.settings.deviceinfo.storage.StorageAsyncLoader;
+import com.android.settings.deviceinfo.storage.StorageCacheHelper;
 import com.android.settings.deviceinfo.storage.StorageEntry;
 import com.android.settings.deviceinfo.storage.StorageItemPreferenceController;
 import com.android.settings.deviceinfo.storage.StorageSelectionPreferenceController;
@@ -63,6 +64,7 @@ import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.deviceinfo.PrivateStorageInfo;
 import com.android.settingslib.deviceinfo.StorageManagerVolumeProvider;
 import com.android.settingslib.search.SearchIndexable;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -101,6 +103,8 @@ public class StorageDashboardFragment extends DashboardFragment
     private StorageEntry mSelectedStorageEntry;
     private PrivateStorageInfo mStorageInfo;
     private SparseArray<StorageAsyncLoader.StorageResult> mAppsResult;
+    // The sizes cached by StorageCacheHelper, shown until the loaders measure them again.
+    private SparseArray<StorageAsyncLoader.StorageResult> mCachedAppsResult;
 
     private StorageItemPreferenceController mPreferenceController;
     private VolumeOptionMenuController mOptionMenuController;
@@ -243,6 +247,7 @@ public class StorageDashboardFragment extends DashboardFragment
         if (mSelectedStorageEntry.isPrivate()) {
             mStorageInfo = null;
             mAppsResult = null;
+            mCachedAppsResult = null;
             maybeSetLoading(isQuotaSupported());
 
             // To prevent flicker, sets null volume to hide category preferences.
@@ -254,6 +259,7 @@ public class StorageDashboardFragment extends DashboardFragment
             getLoaderManager()
                  .restartLoader(VOLUME_SIZE_JOB_ID, Bundle.EMPTY, new VolumeSizeCallbacks());
             getLoaderManager().restartLoader(ICON_JOB_ID, Bundle.EMPTY, new IconLoaderCallbacks());
+            loadCachedSizes();
         } else {
             mPreferenceController.setVolume(mSelectedStorageEntry.getVolumeInfo());
         }
@@ -469,7 +475,32 @@ public class StorageDashboardFragment extends DashboardFragment
     @Override
     public void onLoadFinished(Loader<SparseArray<StorageAsyncLoader.StorageResult>> loader,
             SparseArray<StorageAsyncLoader.StorageResult> data) {
-        mAppsResult = data;
+        // The measured sizes replace the cached ones as they arrive.
+        mAppsResult = StorageAsyncLoader.StorageResult.withFallback(data, mCachedAppsResult);
+        onReceivedSizes();
+    }
+
+    /**
+     * Shows the sizes of the previous visit, read in the background, while they are measured
+     * again.
+     */
+    private void loadCachedSizes() {
+        final StorageEntry storageEntry = mSelectedStorageEntry;
+        StorageCacheHelper.loadCachedSizes(getContext(), storageEntry.getFsUuid(),
+                mUserManager.getUsers(), (storageInfo, appsResult) ->
+                        onCachedSizesLoaded(storageEntry, storageInfo, appsResult));
+    }
+
+    private void onCachedSizesLoaded(StorageEntry storageEntry, PrivateStorageInfo storageInfo,
+            SparseArray<StorageAsyncLoader.StorageResult> appsResult) {
+        if (getView() == null || storageEntry != mSelectedStorageEntry) {
+            return;
+        }
+        mCachedAppsResult = appsResult;
+        if (mStorageInfo == null) {
+            mStorageInfo = storageInfo;
+        }
+        mAppsResult = StorageAsyncLoader.StorageResult.withFallback(mAppsResult, appsResult);
         onReceivedSizes();
     }
 
@@ -600,6 +631,10 @@ public class StorageDashboardFragment extends DashboardFragment
             }
 
             mStorageInfo = privateStorageInfo;
+            final StorageCacheHelper cacheHelper = new StorageCacheHelper(getContext(),
+                    mSelectedStorageEntry.getFsUuid());
+            ThreadUtils.postOnBackgroundThread(
+                    () -> cacheHelper.cachePrivateStorageInfo(privateStorageInfo));
             onReceivedSizes();
         }
     }
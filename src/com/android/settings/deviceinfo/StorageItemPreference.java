@@ -57,6 +57,14 @@ public class StorageItemPreference extends Preference {
         updateProgressBar();
     }
 
+    /** Shows the size as being calculated, e.g. until a partial storage result measures it. */
+    public void setStorageSizePending() {
+        mStorageSize = 0L;
+        setSummary(R.string.memory_calculating_size);
+        mProgressPercent = 0;
+        updateProgressBar();
+    }
+
     public long getStorageSize() {
         return mStorageSize;
     }
@@ -184,7 +184,8 @@ public class SecondaryUserController extends AbstractPreferenceController implem
     @Override
     public void handleResult(SparseArray<StorageAsyncLoader.StorageResult> stats) {
         final StorageAsyncLoader.StorageResult result = stats.get(getUser().id);
-        if (result != null) {
+        // The external stats are not measured yet in a partial result.
+        if (result != null && result.externalStats != null) {
             setSize(result.externalStats.totalBytes);
         }
     }
@@ -24,49 +24,118 @@ import static android.content.pm.ApplicationInfo.CATEGORY_VIDEO;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
+import android.content.pm.ChangedPackages;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.pm.UserInfo;
 import android.database.Cursor;
-import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.provider.MediaStore;
 import android.provider.MediaStore.Files.FileColumns;
 import android.provider.MediaStore.MediaColumns;
-import android.util.ArraySet;
+import android.util.ArrayMap;
 import android.util.Log;
 import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseLongArray;
 
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.utils.ThreadPoolUtils;
 import com.android.settingslib.applications.StorageStatsSource;
 import com.android.settingslib.utils.AsyncLoaderCompat;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 /**
  * StorageAsyncLoader is a Loader which loads categorized app information and external stats for all
  * users
+ *
+ * <p>The apps and the files of every user are measured in parallel. Each measurement delivers a
+ * partial result as soon as it is done, where the sizes still being measured are marked pending.
+ * The sizes cached by {@link StorageCacheHelper} which are still valid are not measured again.
  */
 public class StorageAsyncLoader
         extends AsyncLoaderCompat<SparseArray<StorageAsyncLoader.StorageResult>> {
     private UserManager mUserManager;
     private static final String TAG = "StorageAsyncLoader";
+    private static final int MAX_POOL_SIZE = 4;
+    private static final long KEEP_ALIVE_SECONDS = 10L;
+
+    // Only plain columns and the sum the provider already served, since MediaProvider rejects
+    // the other expressions. There are a few mime types per media type, so few groups.
+    private static final String[] FILES_SIZE_PROJECTION = {
+            FileColumns.MEDIA_TYPE,
+            MediaColumns.IS_TRASHED,
+            FileColumns.MIME_TYPE,
+            "sum(" + MediaColumns.SIZE + ")"};
+    private static final String FILES_SIZE_GROUP_BY = FileColumns.MEDIA_TYPE + ", "
+            + MediaColumns.IS_TRASHED + ", " + FileColumns.MIME_TYPE;
+
+    private static Executor sExecutor;
+    // The last package sequence number read, only the packages changed since are queried.
+    private static int sPackageSequence;
 
     private String mUuid;
     private StorageStatsSource mStatsManager;
     private PackageManager mPackageManager;
-    private ArraySet<String> mSeenPackages;
+    private final Executor mExecutor;
+    private final StorageCacheHelper mCacheHelper;
+
+    // The fields below are guarded by this.
+    private int mLoadGeneration;
+    private int mCompletedGeneration;
+    // The result of the current load, updated as the measurements finish.
+    private SparseArray<StorageResult> mResults;
+
+    // Only accessed in the main thread.
+    private SparseArray<StorageResult> mPartialResult;
 
     public StorageAsyncLoader(Context context, UserManager userManager,
             String uuid, StorageStatsSource source, PackageManager pm) {
+        this(context, userManager, uuid, source, pm, getSharedExecutor(),
+                new StorageCacheHelper(context, uuid));
+    }
+
+    @VisibleForTesting
+    StorageAsyncLoader(Context context, UserManager userManager, String uuid,
+            StorageStatsSource source, PackageManager pm, Executor executor,
+            StorageCacheHelper cacheHelper) {
         super(context);
         mUserManager = userManager;
         mUuid = uuid;
         mStatsManager = source;
         mPackageManager = pm;
+        mExecutor = executor;
+        mCacheHelper = cacheHelper;
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mPartialResult != null) {
+            // The load was stopped before its complete result, measure again.
+            onContentChanged();
+        }
+        super.onStartLoading();
+    }
+
+    @Override
+    public void deliverResult(SparseArray<StorageResult> result) {
+        if (result != mPartialResult) {
+            mPartialResult = null;
+        }
+        super.deliverResult(result);
     }
 
     @Override
@@ -75,73 +144,272 @@ public class StorageAsyncLoader
     }
 
     private SparseArray<StorageResult> getStorageResultsForUsers() {
-        mSeenPackages = new ArraySet<>();
-        final SparseArray<StorageResult> results = new SparseArray<>();
         final List<UserInfo> infos = mUserManager.getUsers();
 
         // Sort the users by user id ascending.
         Collections.sort(infos,
                 (userInfo, otherUser) -> Integer.compare(userInfo.id, otherUser.id));
 
+        // Listing the apps is cheap compared to measuring them. List them upfront, so the code
+        // size shared with a previous user does not depend on the order the users finish in.
+        final SparseArray<List<ApplicationInfo>> appsByUser = new SparseArray<>();
+        final Map<String, Integer> firstUserByPackage = new ArrayMap<>();
         for (UserInfo info : infos) {
-            final StorageResult result = getAppsAndGamesSize(info.id);
+            final List<ApplicationInfo> applicationInfos =
+                    mPackageManager.getInstalledApplicationsAsUser(0, info.id);
+            appsByUser.put(info.id, applicationInfos);
+            for (int i = 0, size = applicationInfos.size(); i < size; i++) {
+                firstUserByPackage.putIfAbsent(applicationInfos.get(i).packageName, info.id);
+            }
+        }
 
-            result.imagesSize = getFilesSize(info.id, MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                    null /* queryArgs */);
-            result.videosSize = getFilesSize(info.id, MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
-                    null /* queryArgs */);
-            result.audioSize = getFilesSize(info.id, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
-                    null /* queryArgs */);
+        final int generation;
+        synchronized (this) {
+            generation = ++mLoadGeneration;
+            mResults = new SparseArray<>();
+            for (UserInfo info : infos) {
+                final StorageResult result = new StorageResult();
+                result.appsSizePending = true;
+                result.filesSizePending = true;
+                mResults.put(info.id, result);
+            }
+        }
 
-            final Bundle documentsAndOtherQueryArgs = new Bundle();
-            documentsAndOtherQueryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
-                    FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_IMAGE
-                    + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_VIDEO
-                    + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_AUDIO
-                    + " AND " + FileColumns.MIME_TYPE + " IS NOT NULL");
-            result.documentsAndOtherSize = getFilesSize(info.id,
-                    MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL),
-                    documentsAndOtherQueryArgs);
+        // Read what the sizes depend on before measuring them, so a change while measuring
+        // invalidates them.
+        final long now = SystemClock.elapsedRealtime();
+        final long packageSequence = mCacheHelper == null
+                ? StorageCacheHelper.UNKNOWN : getPackageSequence();
+        final SparseLongArray mediaGenerations = new SparseLongArray();
+        final SparseBooleanArray appsSizeReused = new SparseBooleanArray();
 
-            final Bundle trashQueryArgs = new Bundle();
-            trashQueryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_ONLY);
-            result.trashSize = getFilesSize(info.id,
-                    MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL), trashQueryArgs);
+        final List<FutureTask<StorageResult>> tasks = new ArrayList<>();
+        for (UserInfo info : infos) {
+            final int userId = info.id;
+            StorageResult cached = null;
+            if (mCacheHelper != null) {
+                mediaGenerations.put(userId, getMediaGeneration(userId));
+                // The package sequence number only tracks the packages of the calling user.
+                cached = mCacheHelper.retrieveValidStorageResult(userId,
+                        mediaGenerations.get(userId), userId == UserHandle.myUserId()
+                                ? packageSequence : StorageCacheHelper.UNKNOWN, now);
+            }
+            if (cached != null) {
+                synchronized (this) {
+                    mResults.get(userId).merge(cached);
+                }
+                appsSizeReused.put(userId, !cached.appsSizePending);
+            }
+            if (cached == null || cached.appsSizePending) {
+                tasks.add(new FutureTask<>(() -> publish(generation, userId,
+                        getAppsAndGamesSize(userId, appsByUser.get(userId), firstUserByPackage))));
+            }
+            if (cached == null || cached.filesSizePending) {
+                tasks.add(new FutureTask<>(() -> publish(generation, userId,
+                        getFilesSizes(userId))));
+            }
+        }
+        tasks.forEach(mExecutor::execute);
 
-            results.put(info.id, result);
+        for (FutureTask<StorageResult> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                Log.w(TAG, "Failed to measure storage", e);
+            }
+        }
+
+        synchronized (this) {
+            mCompletedGeneration = generation;
+            if (mCacheHelper != null) {
+                for (int i = 0, size = mResults.size(); i < size; i++) {
+                    final int userId = mResults.keyAt(i);
+                    final StorageResult result = mResults.valueAt(i);
+                    if (result.appsSizePending || result.filesSizePending) {
+                        // Do not cache a failed measurement.
+                        continue;
+                    }
+                    mCacheHelper.cacheStorageResult(userId, result, mediaGenerations.get(userId),
+                            userId == UserHandle.myUserId()
+                                    ? packageSequence : StorageCacheHelper.UNKNOWN,
+                            appsSizeReused.get(userId)
+                                    ? mCacheHelper.getAppsTimestamp(userId) : now);
+                }
+            }
+            final SparseArray<StorageResult> results = copyResultsLocked();
+            for (int i = 0, size = results.size(); i < size; i++) {
+                // A failed measurement is reported as empty rather than pending forever.
+                results.valueAt(i).appsSizePending = false;
+                results.valueAt(i).filesSizePending = false;
+            }
+            return results;
         }
-        return results;
     }
 
-    private long getFilesSize(int userId, Uri uri, Bundle queryArgs) {
-        final Context perUserContext;
-        try {
-            perUserContext = getContext().createPackageContextAsUser(
-                getContext().getApplicationContext().getPackageName(),
-                0 /* flags= */,
-                UserHandle.of(userId));
-        } catch (NameNotFoundException e) {
-            Log.e(TAG, "Not able to get Context for user ID " + userId);
-            return 0L;
+    /**
+     * Merges the measured sizes of {@code userId} into the current result and delivers a copy of
+     * it as a partial result.
+     */
+    private StorageResult publish(int generation, int userId, StorageResult measured) {
+        final SparseArray<StorageResult> partialResults;
+        synchronized (this) {
+            if (generation != mLoadGeneration) {
+                return measured;
+            }
+            mResults.get(userId).merge(measured);
+            partialResults = copyResultsLocked();
+        }
+        ThreadUtils.postOnMainThread(() -> deliverPartialResult(generation, partialResults));
+        return measured;
+    }
+
+    private void deliverPartialResult(int generation, SparseArray<StorageResult> partialResults) {
+        synchronized (this) {
+            // Drop the partial results of an old load or arriving after the complete result.
+            if (generation != mLoadGeneration || generation == mCompletedGeneration) {
+                return;
+            }
+        }
+        if (isStarted()) {
+            mPartialResult = partialResults;
+            deliverResult(partialResults);
+        }
+    }
+
+    private SparseArray<StorageResult> copyResultsLocked() {
+        final SparseArray<StorageResult> copy = new SparseArray<>(mResults.size());
+        for (int i = 0, size = mResults.size(); i < size; i++) {
+            final StorageResult result = new StorageResult();
+            result.appsSizePending = true;
+            result.filesSizePending = true;
+            result.merge(mResults.valueAt(i));
+            copy.put(mResults.keyAt(i), result);
+        }
+        return copy;
+    }
+
+    private StorageResult getFilesSizes(int userId) {
+        Log.d(TAG, "Loading files");
+        final StorageResult result = new StorageResult();
+        result.appsSizePending = true;
+        final Context perUserContext = createPerUserContext(userId);
+        if (perUserContext == null) {
+            return result;
         }
 
-        try (Cursor cursor = perUserContext.getContentResolver().query(
-                uri,
-                new String[] {"sum(" + MediaColumns.SIZE + ")"},
+        queryFilesSize(perUserContext.getContentResolver(), result);
+        return result;
+    }
+
+    /**
+     * Adds the sizes of the files of {@code contentResolver} to {@code result}, with a single
+     * pass over the files summing their sizes per bucket.
+     */
+    @VisibleForTesting
+    static void queryFilesSize(ContentResolver contentResolver, StorageResult result) {
+        final Bundle queryArgs = new Bundle();
+        queryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_INCLUDE);
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_GROUP_BY, FILES_SIZE_GROUP_BY);
+        try (Cursor cursor = contentResolver.query(
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL),
+                FILES_SIZE_PROJECTION,
                 queryArgs,
                 null /* cancellationSignal */)) {
             if (cursor == null) {
-                return 0L;
+                return;
+            }
+            while (cursor.moveToNext()) {
+                addFilesSize(result, cursor.getInt(0 /* media_type */),
+                        cursor.getInt(1 /* is_trashed */) != 0,
+                        !cursor.isNull(2 /* mime_type */),
+                        cursor.getLong(3 /* size */));
+            }
+        }
+    }
+
+    /**
+     * Adds the {@code size} of the files of a bucket to the file category they belong to.
+     */
+    @VisibleForTesting
+    static void addFilesSize(StorageResult result, int mediaType, boolean isTrashed,
+            boolean hasMimeType, long size) {
+        if (isTrashed) {
+            result.trashSize += size;
+            return;
+        }
+        switch (mediaType) {
+            case FileColumns.MEDIA_TYPE_IMAGE:
+                result.imagesSize += size;
+                break;
+            case FileColumns.MEDIA_TYPE_VIDEO:
+                result.videosSize += size;
+                break;
+            case FileColumns.MEDIA_TYPE_AUDIO:
+                result.audioSize += size;
+                break;
+            default:
+                // Files without a mime type, e.g. directories, are not counted.
+                if (hasMimeType) {
+                    result.documentsAndOtherSize += size;
+                }
+                break;
+        }
+    }
+
+    private long getPackageSequence() {
+        synchronized (StorageAsyncLoader.class) {
+            // Null when no package changed since the last sequence number read.
+            final ChangedPackages changedPackages =
+                    mPackageManager.getChangedPackages(sPackageSequence);
+            if (changedPackages != null) {
+                sPackageSequence = changedPackages.getSequenceNumber();
             }
-            return cursor.moveToFirst() ? cursor.getLong(0) : 0L;
+            return sPackageSequence;
         }
     }
 
-    private StorageResult getAppsAndGamesSize(int userId) {
+    /**
+     * Returns a number changing with any change of the MediaStore of {@code userId}, or
+     * {@link StorageCacheHelper#UNKNOWN}.
+     */
+    private long getMediaGeneration(int userId) {
+        final Context perUserContext = createPerUserContext(userId);
+        if (perUserContext == null) {
+            return StorageCacheHelper.UNKNOWN;
+        }
+        try {
+            // The generation of a volume only grows, the sum changes with any of them.
+            long generation = 0;
+            for (String volumeName : MediaStore.getExternalVolumeNames(perUserContext)) {
+                generation += MediaStore.getGeneration(perUserContext, volumeName);
+            }
+            return generation;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Not able to get the MediaStore generation for user ID " + userId, e);
+            return StorageCacheHelper.UNKNOWN;
+        }
+    }
+
+    private Context createPerUserContext(int userId) {
+        try {
+            return getContext().createPackageContextAsUser(
+                getContext().getApplicationContext().getPackageName(),
+                0 /* flags= */,
+                UserHandle.of(userId));
+        } catch (NameNotFoundException e) {
+            Log.e(TAG, "Not able to get Context for user ID " + userId);
+            return null;
+        }
+    }
+
+    private StorageResult getAppsAndGamesSize(int userId, List<ApplicationInfo> applicationInfos,
+            Map<String, Integer> firstUserByPackage) {
         Log.d(TAG, "Loading apps");
-        final List<ApplicationInfo> applicationInfos =
-                mPackageManager.getInstalledApplicationsAsUser(0, userId);
         final StorageResult result = new StorageResult();
+        result.filesSizePending = true;
         final UserHandle myUser = UserHandle.of(userId);
         for (int i = 0, size = applicationInfos.size(); i < size; i++) {
             final ApplicationInfo app = applicationInfos.get(i);
@@ -169,10 +437,8 @@ public class StorageAsyncLoader
 
             // Code bytes may share between different profiles. To know all the duplicate code size
             // and we can get a reasonable system size in StorageItemPreferenceController.
-            if (mSeenPackages.contains(app.packageName)) {
+            if (firstUserByPackage.get(app.packageName) != userId) {
                 result.duplicateCodeSize += stats.getCodeBytes();
-            } else {
-                mSeenPackages.add(app.packageName);
             }
 
             switch (app.category) {
@@ -210,6 +476,13 @@ public class StorageAsyncLoader
     protected void onDiscardResult(SparseArray<StorageResult> result) {
     }
 
+    private static synchronized Executor getSharedExecutor() {
+        if (sExecutor == null) {
+            sExecutor = ThreadPoolUtils.newWorkerPool(MAX_POOL_SIZE, KEEP_ALIVE_SECONDS);
+        }
+        return sExecutor;
+    }
+
     /** Storage result for displaying file categories size in Storage Settings. */
     public static class StorageResult {
         // APP based sizes.
@@ -226,6 +499,70 @@ public class StorageAsyncLoader
         public long cacheSize;
         public long duplicateCodeSize;
         public StorageStatsSource.ExternalStorageStats externalStats;
+
+        // Whether the sizes are still being measured. Only set in a partial result.
+        public boolean appsSizePending;
+        public boolean filesSizePending;
+
+        /** Returns whether all the sizes of every user in {@code results} are measured. */
+        public static boolean isComplete(SparseArray<StorageResult> results) {
+            for (int i = 0, size = results.size(); i < size; i++) {
+                final StorageResult result = results.valueAt(i);
+                if (result.appsSizePending || result.filesSizePending) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns {@code results} with the sizes still pending taken from {@code fallback}, e.g.
+         * the cached sizes of a previous visit. The sizes measured in {@code results} always
+         * replace the fallback ones. Either of them may be {@code null}.
+         */
+        public static SparseArray<StorageResult> withFallback(SparseArray<StorageResult> results,
+                SparseArray<StorageResult> fallback) {
+            if (results == null || fallback == null) {
+                return results == null ? fallback : results;
+            }
+            final SparseArray<StorageResult> merged = new SparseArray<>(results.size());
+            for (int i = 0, size = results.size(); i < size; i++) {
+                final StorageResult result = results.valueAt(i);
+                final StorageResult fallbackResult = fallback.get(results.keyAt(i));
+                if (fallbackResult == null
+                        || (!result.appsSizePending && !result.filesSizePending)) {
+                    merged.put(results.keyAt(i), result);
+                    continue;
+                }
+                final StorageResult mergedResult = new StorageResult();
+                mergedResult.appsSizePending = true;
+                mergedResult.filesSizePending = true;
+                mergedResult.merge(fallbackResult);
+                mergedResult.merge(result);
+                merged.put(results.keyAt(i), mergedResult);
+            }
+            return merged;
+        }
+
+        /** Copies the measured sizes of {@code other} into this result. */
+        void merge(StorageResult other) {
+            if (!other.appsSizePending) {
+                gamesSize = other.gamesSize;
+                allAppsExceptGamesSize = other.allAppsExceptGamesSize;
+                cacheSize = other.cacheSize;
+                duplicateCodeSize = other.duplicateCodeSize;
+                externalStats = other.externalStats;
+                appsSizePending = false;
+            }
+            if (!other.filesSizePending) {
+                audioSize = other.audioSize;
+                imagesSize = other.imagesSize;
+                videosSize = other.videosSize;
+                documentsAndOtherSize = other.documentsAndOtherSize;
+                trashSize = other.trashSize;
+                filesSizePending = false;
+            }
+        }
     }
 
     /**
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.UserInfo;
+import android.provider.Settings;
+import android.text.TextUtils;
+import android.text.format.DateUtils;
+import android.util.SparseArray;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.applications.StorageStatsSource;
+import com.android.settingslib.deviceinfo.PrivateStorageInfo;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.List;
+
+/**
+ * Persists the storage sizes of a volume per user, so the storage page can show the sizes of the
+ * previous visit while they are measured again.
+ *
+ * <p>The file sizes are kept with the MediaStore generation they were measured at, the app sizes
+ * with the package sequence number. A size is only reused by {@link StorageAsyncLoader} while
+ * these are unchanged. The app sizes also expire after {@link #APPS_SIZE_MAX_AGE_MS}, since the
+ * data of the apps grows without any package change.
+ */
+public class StorageCacheHelper {
+    private static final String SHARED_PREFERENCE_NAME = "storage_size_cache";
+    private static final String INTERNAL_VOLUME_KEY = "internal";
+
+    private static final String TOTAL_BYTES_KEY = "total_bytes";
+    private static final String FREE_BYTES_KEY = "free_bytes";
+
+    private static final String BOOT_COUNT_KEY = "boot_count";
+    private static final String MEDIA_GENERATION_KEY = "media_generation";
+    private static final String PACKAGE_SEQUENCE_KEY = "package_sequence";
+    private static final String APPS_TIMESTAMP_KEY = "apps_timestamp";
+    private static final String GAMES_SIZE_KEY = "games_size";
+    private static final String APPS_SIZE_KEY = "apps_size";
+    private static final String CACHE_SIZE_KEY = "cache_size";
+    private static final String DUPLICATE_CODE_SIZE_KEY = "duplicate_code_size";
+    private static final String EXTERNAL_TOTAL_BYTES_KEY = "external_total_bytes";
+    private static final String EXTERNAL_AUDIO_BYTES_KEY = "external_audio_bytes";
+    private static final String EXTERNAL_VIDEO_BYTES_KEY = "external_video_bytes";
+    private static final String EXTERNAL_IMAGE_BYTES_KEY = "external_image_bytes";
+    private static final String EXTERNAL_APP_BYTES_KEY = "external_app_bytes";
+    private static final String AUDIO_SIZE_KEY = "audio_size";
+    private static final String IMAGES_SIZE_KEY = "images_size";
+    private static final String VIDEOS_SIZE_KEY = "videos_size";
+    private static final String DOCUMENTS_AND_OTHER_SIZE_KEY = "documents_and_other_size";
+    private static final String TRASH_SIZE_KEY = "trash_size";
+
+    /** Receives the cached sizes read by {@link #loadCachedSizes}. */
+    public interface OnCachedSizesLoadedListener {
+        /** Called on the main thread with the cached sizes of the volume and of every user. */
+        void onCachedSizesLoaded(PrivateStorageInfo storageInfo,
+                SparseArray<StorageAsyncLoader.StorageResult> appsResult);
+    }
+
+    /** The generation or sequence number of a state which could not be read. */
+    public static final long UNKNOWN = -1L;
+
+    @VisibleForTesting
+    static final long APPS_SIZE_MAX_AGE_MS = DateUtils.HOUR_IN_MILLIS;
+
+    private final Context mContext;
+    private final SharedPreferences mSharedPreferences;
+    private final String mVolumeKey;
+
+    public StorageCacheHelper(Context context, String uuid) {
+        mContext = context.getApplicationContext();
+        mSharedPreferences = mContext.getSharedPreferences(SHARED_PREFERENCE_NAME,
+                Context.MODE_PRIVATE);
+        mVolumeKey = TextUtils.isEmpty(uuid) ? INTERNAL_VOLUME_KEY : uuid;
+    }
+
+    /** Caches the total and free bytes of the volume. */
+    public void cachePrivateStorageInfo(PrivateStorageInfo info) {
+        mSharedPreferences.edit()
+                .putLong(getVolumeKey(TOTAL_BYTES_KEY), info.totalBytes)
+                .putLong(getVolumeKey(FREE_BYTES_KEY), info.freeBytes)
+                .apply();
+    }
+
+    /** Returns the cached total and free bytes of the volume, or {@code null} if not cached. */
+    public PrivateStorageInfo retrievePrivateStorageInfo() {
+        if (!mSharedPreferences.contains(getVolumeKey(TOTAL_BYTES_KEY))) {
+            return null;
+        }
+        return new PrivateStorageInfo(mSharedPreferences.getLong(getVolumeKey(FREE_BYTES_KEY), 0L),
+                mSharedPreferences.getLong(getVolumeKey(TOTAL_BYTES_KEY), 0L));
+    }
+
+    /**
+     * Returns the cached sizes of every user of {@code users}, whatever their validity, or
+     * {@code null} if a user has none.
+     */
+    public SparseArray<StorageAsyncLoader.StorageResult> retrieveStorageResults(
+            List<UserInfo> users) {
+        final SparseArray<StorageAsyncLoader.StorageResult> results = new SparseArray<>();
+        for (UserInfo user : users) {
+            if (!mSharedPreferences.contains(getUserKey(user.id, APPS_TIMESTAMP_KEY))) {
+                return null;
+            }
+            final StorageAsyncLoader.StorageResult result = new StorageAsyncLoader.StorageResult();
+            readAppsSize(user.id, result);
+            readFilesSize(user.id, result);
+            results.put(user.id, result);
+        }
+        return results;
+    }
+
+    /**
+     * Reads the cached sizes of the volume {@code uuid} and of {@code users} in the background.
+     * The listener isn't called if the volume or a user has no cached sizes.
+     */
+    public static void loadCachedSizes(Context context, String uuid, List<UserInfo> users,
+            OnCachedSizesLoadedListener listener) {
+        final Context appContext = context.getApplicationContext();
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final StorageCacheHelper cacheHelper = new StorageCacheHelper(appContext, uuid);
+            final PrivateStorageInfo storageInfo = cacheHelper.retrievePrivateStorageInfo();
+            final SparseArray<StorageAsyncLoader.StorageResult> appsResult =
+                    cacheHelper.retrieveStorageResults(users);
+            if (storageInfo == null || appsResult == null) {
+                return;
+            }
+            ThreadUtils.postOnMainThread(
+                    () -> listener.onCachedSizesLoaded(storageInfo, appsResult));
+        });
+    }
+
+    /**
+     * Returns the cached sizes of {@code userId} which are still valid, with the other sizes
+     * pending, or {@code null} if none is valid.
+     */
+    StorageAsyncLoader.StorageResult retrieveValidStorageResult(int userId, long mediaGeneration,
+            long packageSequence, long now) {
+        if (!mSharedPreferences.contains(getUserKey(userId, APPS_TIMESTAMP_KEY))
+                || mSharedPreferences.getInt(getUserKey(userId, BOOT_COUNT_KEY), -1)
+                != getBootCount()) {
+            // The generation and the sequence number restart with the device.
+            return null;
+        }
+        final StorageAsyncLoader.StorageResult result = new StorageAsyncLoader.StorageResult();
+        result.appsSizePending = true;
+        result.filesSizePending = true;
+        final long appsTimestamp = mSharedPreferences.getLong(
+                getUserKey(userId, APPS_TIMESTAMP_KEY), 0L);
+        if (packageSequence != UNKNOWN
+                && packageSequence == mSharedPreferences.getLong(
+                        getUserKey(userId, PACKAGE_SEQUENCE_KEY), UNKNOWN)
+                && appsTimestamp <= now && now - appsTimestamp < APPS_SIZE_MAX_AGE_MS) {
+            readAppsSize(userId, result);
+            result.appsSizePending = false;
+        }
+        if (mediaGeneration != UNKNOWN
+                && mediaGeneration == mSharedPreferences.getLong(
+                        getUserKey(userId, MEDIA_GENERATION_KEY), UNKNOWN)) {
+            readFilesSize(userId, result);
+            result.filesSizePending = false;
+        }
+        return result.appsSizePending && result.filesSizePending ? null : result;
+    }
+
+    /**
+     * Caches the sizes of {@code userId}, measured at {@code mediaGeneration} and
+     * {@code packageSequence}.
+     *
+     * @param appsTimestamp the time the app sizes were measured at, in
+     *                      {@link android.os.SystemClock#elapsedRealtime()}
+     */
+    void cacheStorageResult(int userId, StorageAsyncLoader.StorageResult result,
+            long mediaGeneration, long packageSequence, long appsTimestamp) {
+        final SharedPreferences.Editor editor = mSharedPreferences.edit()
+                .putInt(getUserKey(userId, BOOT_COUNT_KEY), getBootCount())
+                .putLong(getUserKey(userId, MEDIA_GENERATION_KEY), mediaGeneration)
+                .putLong(getUserKey(userId, PACKAGE_SEQUENCE_KEY), packageSequence)
+                .putLong(getUserKey(userId, APPS_TIMESTAMP_KEY), appsTimestamp)
+                .putLong(getUserKey(userId, GAMES_SIZE_KEY), result.gamesSize)
+                .putLong(getUserKey(userId, APPS_SIZE_KEY), result.allAppsExceptGamesSize)
+                .putLong(getUserKey(userId, CACHE_SIZE_KEY), result.cacheSize)
+                .putLong(getUserKey(userId, DUPLICATE_CODE_SIZE_KEY), result.duplicateCodeSize)
+                .putLong(getUserKey(userId, AUDIO_SIZE_KEY), result.audioSize)
+                .putLong(getUserKey(userId, IMAGES_SIZE_KEY), result.imagesSize)
+                .putLong(getUserKey(userId, VIDEOS_SIZE_KEY), result.videosSize)
+                .putLong(getUserKey(userId, DOCUMENTS_AND_OTHER_SIZE_KEY),
+                        result.documentsAndOtherSize)
+                .putLong(getUserKey(userId, TRASH_SIZE_KEY), result.trashSize);
+        if (result.externalStats != null) {
+            editor.putLong(getUserKey(userId, EXTERNAL_TOTAL_BYTES_KEY),
+                            result.externalStats.totalBytes)
+                    .putLong(getUserKey(userId, EXTERNAL_AUDIO_BYTES_KEY),
+                            result.externalStats.audioBytes)
+                    .putLong(getUserKey(userId, EXTERNAL_VIDEO_BYTES_KEY),
+                            result.externalStats.videoBytes)
+                    .putLong(getUserKey(userId, EXTERNAL_IMAGE_BYTES_KEY),
+                            result.externalStats.imageBytes)
+                    .putLong(getUserKey(userId, EXTERNAL_APP_BYTES_KEY),
+                            result.externalStats.appBytes);
+        } else {
+            editor.remove(getUserKey(userId, EXTERNAL_TOTAL_BYTES_KEY));
+        }
+        editor.apply();
+    }
+
+    /** Returns the time the cached app sizes of {@code userId} were measured at. */
+    long getAppsTimestamp(int userId) {
+        return mSharedPreferences.getLong(getUserKey(userId, APPS_TIMESTAMP_KEY), 0L);
+    }
+
+    private void readAppsSize(int userId, StorageAsyncLoader.StorageResult result) {
+        result.gamesSize = mSharedPreferences.getLong(getUserKey(userId, GAMES_SIZE_KEY), 0L);
+        result.allAppsExceptGamesSize =
+                mSharedPreferences.getLong(getUserKey(userId, APPS_SIZE_KEY), 0L);
+        result.cacheSize = mSharedPreferences.getLong(getUserKey(userId, CACHE_SIZE_KEY), 0L);
+        result.duplicateCodeSize =
+                mSharedPreferences.getLong(getUserKey(userId, DUPLICATE_CODE_SIZE_KEY), 0L);
+        if (mSharedPreferences.contains(getUserKey(userId, EXTERNAL_TOTAL_BYTES_KEY))) {
+            result.externalStats = new StorageStatsSource.ExternalStorageStats(
+                    mSharedPreferences.getLong(getUserKey(userId, EXTERNAL_TOTAL_BYTES_KEY), 0L),
+                    mSharedPreferences.getLong(getUserKey(userId, EXTERNAL_AUDIO_BYTES_KEY), 0L),
+                    mSharedPreferences.getLong(getUserKey(userId, EXTERNAL_VIDEO_BYTES_KEY), 0L),
+                    mSharedPreferences.getLong(getUserKey(userId, EXTERNAL_IMAGE_BYTES_KEY), 0L),
+                    mSharedPreferences.getLong(getUserKey(userId, EXTERNAL_APP_BYTES_KEY), 0L));
+        }
+    }
+
+    private void readFilesSize(int userId, StorageAsyncLoader.StorageResult result) {
+        result.audioSize = mSharedPreferences.getLong(getUserKey(userId, AUDIO_SIZE_KEY), 0L);
+        result.imagesSize = mSharedPreferences.getLong(getUserKey(userId, IMAGES_SIZE_KEY), 0L);
+        result.videosSize = mSharedPreferences.getLong(getUserKey(userId, VIDEOS_SIZE_KEY), 0L);
+        result.documentsAndOtherSize =
+                mSharedPreferences.getLong(getUserKey(userId, DOCUMENTS_AND_OTHER_SIZE_KEY), 0L);
+        result.trashSize = mSharedPreferences.getLong(getUserKey(userId, TRASH_SIZE_KEY), 0L);
+    }
+
+    private int getBootCount() {
+        return Settings.Global.getInt(mContext.getContentResolver(), Settings.Global.BOOT_COUNT,
+                0);
+    }
+
+    private String getVolumeKey(String key) {
+        return mVolumeKey + "_" + key;
+    }
+
+    private String getUserKey(int userId, String key) {
+        return mVolumeKey + "_" + userId + "_" + key;
+    }
+}
@@ -360,40 +360,66 @@ public class StorageItemPreferenceController extends AbstractPreferenceControlle
         mTrashPreference = screen.findPreference(TRASH_KEY);
     }
 
-    /** Fragments use it to set storage result and update UI of this controller. */
+    /**
+     * Fragments use it to set storage result and update UI of this controller. The result may be
+     * partial, the sizes still pending are shown as being calculated.
+     */
     public void onLoadFinished(SparseArray<StorageAsyncLoader.StorageResult> result, int userId) {
         final StorageAsyncLoader.StorageResult data = result.get(userId);
-
-        mImagesPreference.setStorageSize(data.imagesSize, mTotalSize);
-        mVideosPreference.setStorageSize(data.videosSize, mTotalSize);
-        mAudioPreference.setStorageSize(data.audioSize, mTotalSize);
-        mAppsPreference.setStorageSize(data.allAppsExceptGamesSize, mTotalSize);
-        mGamesPreference.setStorageSize(data.gamesSize, mTotalSize);
-        mDocumentsAndOtherPreference.setStorageSize(data.documentsAndOtherSize, mTotalSize);
-        mTrashPreference.setStorageSize(data.trashSize, mTotalSize);
+        final boolean isComplete = StorageAsyncLoader.StorageResult.isComplete(result);
+
+        if (data.filesSizePending) {
+            mImagesPreference.setStorageSizePending();
+            mVideosPreference.setStorageSizePending();
+            mAudioPreference.setStorageSizePending();
+            mDocumentsAndOtherPreference.setStorageSizePending();
+            mTrashPreference.setStorageSizePending();
+        } else {
+            mImagesPreference.setStorageSize(data.imagesSize, mTotalSize);
+            mVideosPreference.setStorageSize(data.videosSize, mTotalSize);
+            mAudioPreference.setStorageSize(data.audioSize, mTotalSize);
+            mDocumentsAndOtherPreference.setStorageSize(data.documentsAndOtherSize, mTotalSize);
+            mTrashPreference.setStorageSize(data.trashSize, mTotalSize);
+        }
+        if (data.appsSizePending) {
+            mAppsPreference.setStorageSizePending();
+            mGamesPreference.setStorageSizePending();
+        } else {
+            mAppsPreference.setStorageSize(data.allAppsExceptGamesSize, mTotalSize);
+            mGamesPreference.setStorageSize(data.gamesSize, mTotalSize);
+        }
 
         if (mSystemPreference != null) {
-            // Everything else that hasn't already been attributed is tracked as
-            // belonging to system.
-            long attributedSize = 0;
-            for (int i = 0; i < result.size(); i++) {
-                final StorageAsyncLoader.StorageResult otherData = result.valueAt(i);
-                attributedSize +=
-                        otherData.gamesSize
-                                + otherData.audioSize
-                                + otherData.videosSize
-                                + otherData.imagesSize
-                                + otherData.documentsAndOtherSize
-                                + otherData.trashSize
-                                + otherData.allAppsExceptGamesSize;
-                attributedSize -= otherData.duplicateCodeSize;
-            }
+            if (!isComplete) {
+                // The system size is what the other users and categories leave unattributed.
+                mSystemPreference.setStorageSizePending();
+            } else {
+                // Everything else that hasn't already been attributed is tracked as
+                // belonging to system.
+                long attributedSize = 0;
+                for (int i = 0; i < result.size(); i++) {
+                    final StorageAsyncLoader.StorageResult otherData = result.valueAt(i);
+                    attributedSize +=
+                            otherData.gamesSize
+                                    + otherData.audioSize
+                                    + otherData.videosSize
+                                    + otherData.imagesSize
+                                    + otherData.documentsAndOtherSize
+                                    + otherData.trashSize
+                                    + otherData.allAppsExceptGamesSize;
+                    attributedSize -= otherData.duplicateCodeSize;
+                }
 
-            final long systemSize = Math.max(TrafficStats.GB_IN_BYTES, mUsedBytes - attributedSize);
-            mSystemPreference.setStorageSize(systemSize, mTotalSize);
+                final long systemSize =
+                        Math.max(TrafficStats.GB_IN_BYTES, mUsedBytes - attributedSize);
+                mSystemPreference.setStorageSize(systemSize, mTotalSize);
+            }
         }
 
-        updatePrivateStorageCategoryPreferencesOrder();
+        if (isComplete) {
+            // Only sort by size once, the order would keep changing with partial results.
+            updatePrivateStorageCategoryPreferencesOrder();
+        }
         setPrivateStorageCategoryPreferencesVisibility(true);
     }
 
@@ -27,6 +27,7 @@ import android.os.Looper;
 import android.text.TextUtils;
 import android.text.format.DateFormat;
 import android.text.format.DateUtils;
+import android.util.ArraySet;
 import android.util.Log;
 import android.util.Pair;
 
@@ -57,6 +58,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /** Controls the update for chart graph and the list items. */
 public class BatteryChartPreferenceController extends AbstractPreferenceController
@@ -81,6 +83,8 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
 
     @VisibleForTesting
     Map<Integer, List<BatteryDiffEntry>> mBatteryIndexedMap;
+    @VisibleForTesting
+    BatteryUsageSlots mBatteryUsageSlots;
 
     @VisibleForTesting Context mPrefContext;
     @VisibleForTesting BatteryUtils mBatteryUtils;
@@ -97,6 +101,8 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
     private boolean mIsFooterPrefAdded = false;
     private PreferenceScreen mPreferenceScreen;
     private FooterPreference mFooterPreference;
+    // The battery history snapshot which the usage data is computed from.
+    private Map<Long, Map<String, BatteryHistEntry>> mBatteryHistorySnapshot;
 
     private final String mPreferenceKey;
     private final SettingsActivity mActivity;
@@ -260,11 +266,19 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
         // Resets all battery history data relative variables.
         if (batteryHistoryMap == null || batteryHistoryMap.isEmpty()) {
             mBatteryIndexedMap = null;
+            mBatteryUsageSlots = null;
+            mBatteryHistorySnapshot = null;
             mBatteryHistoryKeys = null;
             mBatteryHistoryLevels = null;
             addFooterPreferenceIfNeeded(false);
             return;
         }
+        // The usage data of the same snapshot is already computed or being computed.
+        if (batteryHistoryMap == mBatteryHistorySnapshot) {
+            Log.d(TAG, "setBatteryHistoryMap() ignore the same battery history");
+            return;
+        }
+        mBatteryHistorySnapshot = batteryHistoryMap;
         mBatteryHistoryKeys = getBatteryHistoryKeys(batteryHistoryMap);
         mBatteryHistoryLevels = new int[CHART_LEVEL_ARRAY_SIZE];
         for (int index = 0; index < CHART_LEVEL_ARRAY_SIZE; index++) {
@@ -334,7 +348,6 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
         mTrapezoidIndex = trapezoidIndex;
         mHandler.post(() -> {
             final long start = System.currentTimeMillis();
-            removeAndCacheAllPrefs();
             addAllPreferences();
             refreshCategoryTitle();
             Log.d(TAG, String.format("refreshUi is finished in %d/ms",
@@ -344,40 +357,23 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
     }
 
     private void addAllPreferences() {
-        final List<BatteryDiffEntry> entries =
-            mBatteryIndexedMap.get(Integer.valueOf(mTrapezoidIndex));
-        addFooterPreferenceIfNeeded(!entries.isEmpty());
-        if (entries == null) {
+        if (mBatteryUsageSlots == null || !mBatteryUsageSlots.contains(mTrapezoidIndex)) {
             Log.w(TAG, "cannot find BatteryDiffEntry for:" + mTrapezoidIndex);
             return;
         }
-        // Separates data into two groups and sort them individually.
-        final List<BatteryDiffEntry> appEntries = new ArrayList<>();
+        // Both lists are filtered and sorted in the background once per snapshot.
+        final List<BatteryDiffEntry> appEntries =
+            mBatteryUsageSlots.getAppEntries(mTrapezoidIndex);
         mSystemEntries.clear();
-        entries.forEach(entry -> {
-            final String packageName = entry.getPackageName();
-            if (!isValidToShowEntry(packageName)) {
-                Log.w(TAG, "ignore showing item:" + packageName);
-                return;
-            }
-            if (entry.isSystemEntry()) {
-                mSystemEntries.add(entry);
-            } else {
-                appEntries.add(entry);
-            }
-            // Validates the usage time if users click a specific slot.
-            if (mTrapezoidIndex >= 0) {
-                validateUsageTime(entry);
-            }
-        });
-        Collections.sort(appEntries, BatteryDiffEntry.COMPARATOR);
-        Collections.sort(mSystemEntries, BatteryDiffEntry.COMPARATOR);
+        mSystemEntries.addAll(mBatteryUsageSlots.getSystemEntries(mTrapezoidIndex));
+        addFooterPreferenceIfNeeded(!appEntries.isEmpty() || !mSystemEntries.isEmpty());
         Log.d(TAG, String.format("addAllPreferences() app=%d system=%d",
             appEntries.size(), mSystemEntries.size()));
 
+        removeAndCacheStalePrefs(appEntries);
         // Adds app entries to the list if it is not empty.
         if (!appEntries.isEmpty()) {
-            addPreferenceToScreen(appEntries);
+            addPreferenceToScreen(appEntries, /*startOrder=*/ 0);
         }
         // Adds the expabable divider if we have system entries data.
         if (!mSystemEntries.isEmpty()) {
@@ -386,32 +382,41 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
                 mExpandDividerPreference.setOnExpandListener(this);
                 mExpandDividerPreference.setIsExpanded(mIsExpanded);
             }
-            mExpandDividerPreference.setOrder(
-                mAppListPrefGroup.getPreferenceCount());
-            mAppListPrefGroup.addPreference(mExpandDividerPreference);
+            mExpandDividerPreference.setOrder(appEntries.size());
+            if (mAppListPrefGroup.findPreference(mExpandDividerPreference.getKey()) == null) {
+                mAppListPrefGroup.addPreference(mExpandDividerPreference);
+            }
         }
         refreshExpandUi();
     }
 
     @VisibleForTesting
     void addPreferenceToScreen(List<BatteryDiffEntry> entries) {
+        if (mAppListPrefGroup == null) {
+            return;
+        }
+        addPreferenceToScreen(entries, mAppListPrefGroup.getPreferenceCount());
+    }
+
+    // Adds or updates the preferences of the entries, ordered from startOrder.
+    private void addPreferenceToScreen(List<BatteryDiffEntry> entries, int startOrder) {
         if (mAppListPrefGroup == null || entries.isEmpty()) {
             return;
         }
-        int prefIndex = mAppListPrefGroup.getPreferenceCount();
+        int prefIndex = startOrder;
         for (BatteryDiffEntry entry : entries) {
             boolean isAdded = false;
-            final String appLabel = entry.getAppLabel();
-            final Drawable appIcon = entry.getAppIcon();
-            if (TextUtils.isEmpty(appLabel) || appIcon == null) {
+            if (!hasAppResource(entry)) {
                 Log.w(TAG, "cannot find app resource for:" + entry.getPackageName());
                 continue;
             }
+            final String appLabel = entry.getAppLabel();
+            final Drawable appIcon = entry.getAppIcon();
             final String prefKey = entry.mBatteryHistEntry.getKey();
+            // Keeps the preference shown in the previous slot and only updates it.
             PowerGaugePreference pref = mAppListPrefGroup.findPreference(prefKey);
             if (pref != null) {
                 isAdded = true;
-                Log.w(TAG, "preference should be removed for:" + entry.getPackageName());
             } else {
                 pref = (PowerGaugePreference) mPreferenceCache.get(prefKey);
             }
@@ -437,25 +442,57 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
         }
     }
 
-    private void removeAndCacheAllPrefs() {
+    // Removes and recycles the preferences which are not shown in the selected slot.
+    @VisibleForTesting
+    void removeAndCacheStalePrefs(List<BatteryDiffEntry> appEntries) {
         if (mAppListPrefGroup == null
                 || mAppListPrefGroup.getPreferenceCount() == 0) {
             return;
         }
-        final int prefsCount = mAppListPrefGroup.getPreferenceCount();
-        for (int index = 0; index < prefsCount; index++) {
+        final Set<String> keptKeys = new ArraySet<>();
+        for (BatteryDiffEntry entry : appEntries) {
+            if (hasAppResource(entry)) {
+                keptKeys.add(entry.mBatteryHistEntry.getKey());
+            }
+        }
+        if (!mSystemEntries.isEmpty()) {
+            if (mExpandDividerPreference != null) {
+                keptKeys.add(mExpandDividerPreference.getKey());
+            }
+            if (mIsExpanded) {
+                for (BatteryDiffEntry entry : mSystemEntries) {
+                    if (hasAppResource(entry)) {
+                        keptKeys.add(entry.mBatteryHistEntry.getKey());
+                    }
+                }
+            }
+        }
+        for (int index = mAppListPrefGroup.getPreferenceCount() - 1; index >= 0; index--) {
             final Preference pref = mAppListPrefGroup.getPreference(index);
-            if (TextUtils.isEmpty(pref.getKey())) {
+            final String prefKey = pref.getKey();
+            if (keptKeys.contains(prefKey)) {
                 continue;
             }
-            mPreferenceCache.put(pref.getKey(), pref);
+            mAppListPrefGroup.removePreference(pref);
+            if (!TextUtils.isEmpty(prefKey)) {
+                mPreferenceCache.put(prefKey, pref);
+            }
         }
-        mAppListPrefGroup.removeAll();
+    }
+
+    // Entries without a label or an icon are not added to the screen.
+    private static boolean hasAppResource(BatteryDiffEntry entry) {
+        return !TextUtils.isEmpty(entry.getAppLabel()) && entry.getAppIcon() != null;
     }
 
     private void refreshExpandUi() {
         if (mIsExpanded) {
-            addPreferenceToScreen(mSystemEntries);
+            if (mExpandDividerPreference != null) {
+                addPreferenceToScreen(
+                    mSystemEntries, mExpandDividerPreference.getOrder() + 1);
+            } else {
+                addPreferenceToScreen(mSystemEntries);
+            }
         } else {
             // Removes and recycles all system entries to hide all of them.
             for (BatteryDiffEntry entry : mSystemEntries) {
@@ -652,6 +689,7 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
 
         private long[] mBatteryHistoryKeysCache;
         private Map<Long, Map<String, BatteryHistEntry>> mBatteryHistoryMap;
+        private BatteryUsageSlots mBatteryUsageSlotsCache;
 
         private LoadAllItemsInfoTask(
                 Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap) {
@@ -671,9 +709,23 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
                     mBatteryHistoryKeysCache, mBatteryHistoryMap,
                     /*purgeLowPercentageAndFakeData=*/ true);
             // Pre-loads each BatteryDiffEntry relative icon and label for all slots.
-            for (List<BatteryDiffEntry> entries : indexedUsageMap.values()) {
-                entries.forEach(entry -> entry.loadLabelAndIcon());
+            final List<BatteryDiffEntry> allEntries = new ArrayList<>();
+            for (Map.Entry<Integer, List<BatteryDiffEntry>> slot : indexedUsageMap.entrySet()) {
+                allEntries.addAll(slot.getValue());
+                // Validates the usage time if users click a specific slot.
+                if (slot.getKey() >= 0) {
+                    slot.getValue().forEach(entry -> validateUsageTime(entry));
+                }
             }
+            BatteryNameAndIconLoader.loadLabelAndIcons(allEntries);
+            mBatteryUsageSlotsCache = BatteryUsageSlots.create(indexedUsageMap, entry -> {
+                final String packageName = entry.getPackageName();
+                if (!isValidToShowEntry(packageName)) {
+                    Log.w(TAG, "ignore showing item:" + packageName);
+                    return false;
+                }
+                return true;
+            });
             Log.d(TAG, String.format("execute LoadAllItemsInfoTask in %d/ms",
                 (System.currentTimeMillis() - startTime)));
             return indexedUsageMap;
@@ -682,14 +734,23 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
         @Override
         protected void onPostExecute(
                 Map<Integer, List<BatteryDiffEntry>> indexedUsageMap) {
+            final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap =
+                mBatteryHistoryMap;
+            final BatteryUsageSlots batteryUsageSlots = mBatteryUsageSlotsCache;
             mBatteryHistoryMap = null;
             mBatteryHistoryKeysCache = null;
+            mBatteryUsageSlotsCache = null;
             if (indexedUsageMap == null) {
                 return;
             }
             // Posts results back to main thread to refresh UI.
             mHandler.post(() -> {
+                // Ignores the result if a newer snapshot has arrived in the meantime.
+                if (batteryHistoryMap != mBatteryHistorySnapshot) {
+                    return;
+                }
                 mBatteryIndexedMap = indexedUsageMap;
+                mBatteryUsageSlots = batteryUsageSlots;
                 forceRefreshUi();
             });
         }
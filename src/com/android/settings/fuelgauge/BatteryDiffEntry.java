@@ -28,7 +28,6 @@ import androidx.annotation.VisibleForTesting;
 import com.android.settingslib.utils.StringUtil;
 
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 
@@ -36,11 +35,14 @@ import java.util.Map;
 public class BatteryDiffEntry {
     private static final String TAG = "BatteryDiffEntry";
 
+    // Guarded by sResourceCache, since the entries are loaded on several threads.
     static Locale sCurrentLocale = null;
     // Caches app label and icon to improve loading performance.
-    static final Map<String, BatteryEntry.NameAndIcon> sResourceCache = new HashMap<>();
+    static final Map<String, BatteryEntry.NameAndIcon> sResourceCache =
+            BatteryNameAndIconLoader.newLruCache(BatteryNameAndIconLoader.MAX_CACHE_SIZE);
     // Whether a specific item is valid to launch restriction page?
-    static final Map<String, Boolean> sValidForRestriction = new HashMap<>();
+    static final Map<String, Boolean> sValidForRestriction =
+            BatteryNameAndIconLoader.newLruCache(BatteryNameAndIconLoader.MAX_CACHE_SIZE);
 
     /** A comparator for {@link BatteryDiffEntry} based on consumed percentage. */
     public static final Comparator<BatteryDiffEntry> COMPARATOR =
@@ -169,11 +171,11 @@ public class BatteryDiffEntry {
         if (validForRestriction != null) {
             mValidForRestriction = validForRestriction;
         }
+        mIsLoaded = true;
         // Both nameAndIcon and restriction configuration have cached data.
         if (nameAndIcon != null && validForRestriction != null) {
             return;
         }
-        mIsLoaded = true;
 
         // Configures whether we can launch restriction page or not.
         updateRestrictionFlagState();
@@ -225,6 +227,15 @@ public class BatteryDiffEntry {
         }
     }
 
+    /** Uses the label and icon loaded by {@code entry}, which has the same key. */
+    void copyLabelAndIcon(BatteryDiffEntry entry) {
+        mAppLabel = entry.mAppLabel;
+        mAppIcon = entry.mAppIcon;
+        mAppIconId = entry.mAppIconId;
+        mValidForRestriction = entry.mValidForRestriction;
+        mIsLoaded = entry.mIsLoaded;
+    }
+
     @VisibleForTesting
     String getKey() {
         return mBatteryHistEntry.getKey();
@@ -261,11 +272,13 @@ public class BatteryDiffEntry {
 
     private BatteryEntry.NameAndIcon getCache() {
         final Locale locale = Locale.getDefault();
-        if (sCurrentLocale != locale) {
-            Log.d(TAG, String.format("clearCache() locale is changed from %s to %s",
-                sCurrentLocale, locale));
-            sCurrentLocale = locale;
-            clearCache();
+        synchronized (sResourceCache) {
+            if (sCurrentLocale != locale) {
+                Log.d(TAG, String.format("clearCache() locale is changed from %s to %s",
+                    sCurrentLocale, locale));
+                sCurrentLocale = locale;
+                clearCache();
+            }
         }
         return sResourceCache.get(getKey());
     }
@@ -306,8 +319,6 @@ public class BatteryDiffEntry {
             BatteryEntry.loadNameAndIcon(
                 mContext, uid, /*handler=*/ null, /*batteryEntry=*/ null,
                 packageName, mAppLabel, mAppIcon);
-        // Clears BatteryEntry internal cache since we will have another one.
-        BatteryEntry.clearUidCache();
         if (nameAndIcon != null) {
             mAppLabel = nameAndIcon.name;
             mAppIcon = nameAndIcon.icon;
@@ -41,10 +41,9 @@ import androidx.annotation.NonNull;
 import com.android.settings.R;
 import com.android.settingslib.Utils;
 
-import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * Wraps the power usage data of a BatterySipper with information about package name
@@ -77,77 +76,28 @@ public class BatteryEntry {
     private static final String TAG = "BatteryEntry";
     private static final String PACKAGE_SYSTEM = "android";
 
-    static final HashMap<String, UidToDetail> sUidCache = new HashMap<>();
+    // Bounded, since the uids of all users are cached for the whole process.
+    static final Map<String, UidToDetail> sUidCache =
+            BatteryNameAndIconLoader.newLruCache(BatteryNameAndIconLoader.MAX_CACHE_SIZE);
 
-    static final ArrayList<BatteryEntry> sRequestQueue = new ArrayList<BatteryEntry>();
     static Handler sHandler;
 
+    // Guarded by sUidCache, since the entries are loaded on several threads.
     static Locale sCurrentLocale = null;
 
-    static private class NameAndIconLoader extends Thread {
-        private boolean mAbort = false;
-
-        public NameAndIconLoader() {
-            super("BatteryUsage Icon Loader");
-        }
-
-        public void abort() {
-            mAbort = true;
-        }
-
-        @Override
-        public void run() {
-            while (true) {
-                BatteryEntry be;
-                synchronized (sRequestQueue) {
-                    if (sRequestQueue.isEmpty() || mAbort) {
-                        if (sHandler != null) {
-                            sHandler.sendEmptyMessage(MSG_REPORT_FULLY_DRAWN);
-                        }
-                        return;
-                    }
-                    be = sRequestQueue.remove(0);
-                }
-                final NameAndIcon nameAndIcon =
-                    BatteryEntry.loadNameAndIcon(
-                        be.mContext, be.getUid(), sHandler, be,
-                        be.mDefaultPackageName, be.name, be.icon);
-                if (nameAndIcon != null) {
-                    be.icon = nameAndIcon.icon;
-                    be.name = nameAndIcon.name;
-                    be.mDefaultPackageName = nameAndIcon.packageName;
-                }
-            }
-        }
-    }
-
-    private static NameAndIconLoader mRequestThread;
-
+    /**
+     * Starts loading the labels and icons of the entries created since the last call, on a
+     * small worker pool.
+     */
     public static void startRequestQueue() {
         if (sHandler != null) {
-            synchronized (sRequestQueue) {
-                if (!sRequestQueue.isEmpty()) {
-                    if (mRequestThread != null) {
-                        mRequestThread.abort();
-                    }
-                    mRequestThread = new NameAndIconLoader();
-                    mRequestThread.setPriority(Thread.MIN_PRIORITY);
-                    mRequestThread.start();
-                    sRequestQueue.notify();
-                }
-            }
+            BatteryNameAndIconLoader.start(sHandler);
         }
     }
 
     public static void stopRequestQueue() {
-        synchronized (sRequestQueue) {
-            if (mRequestThread != null) {
-                mRequestThread.abort();
-                mRequestThread = null;
-                sRequestQueue.clear();
-                sHandler = null;
-            }
-        }
+        BatteryNameAndIconLoader.stop();
+        sHandler = null;
     }
 
     public static void clearUidCache() {
@@ -309,14 +259,16 @@ public class BatteryEntry {
             final int uid, final String[] packages, final boolean loadDataInBackground) {
         // Locale sync to system config in Settings
         final Locale locale = Locale.getDefault();
-        if (sCurrentLocale != locale) {
-            clearUidCache();
-            sCurrentLocale = locale;
+        synchronized (sUidCache) {
+            if (sCurrentLocale != locale) {
+                clearUidCache();
+                sCurrentLocale = locale;
+            }
         }
 
         final String uidString = Integer.toString(uid);
-        if (sUidCache.containsKey(uidString)) {
-            UidToDetail utd = sUidCache.get(uidString);
+        final UidToDetail utd = sUidCache.get(uidString);
+        if (utd != null) {
             mDefaultPackageName = utd.packageName;
             name = utd.name;
             icon = utd.icon;
@@ -333,12 +285,24 @@ public class BatteryEntry {
 
         // Avoids post the loading icon and label in the background request.
         if (sHandler != null && loadDataInBackground) {
-            synchronized (sRequestQueue) {
-                sRequestQueue.add(this);
-            }
+            BatteryNameAndIconLoader.enqueue(this);
         }
     }
 
+    /**
+     * Loads the app label and icon of this entry and stores them into the cache.
+     */
+    NameAndIcon loadNameAndIcon() {
+        return loadNameAndIcon(mContext, getUid(), /*handler=*/ null, /*batteryEntry=*/ null,
+                mDefaultPackageName, name, icon);
+    }
+
+    void setNameAndIcon(NameAndIcon nameAndIcon) {
+        icon = nameAndIcon.icon;
+        name = nameAndIcon.name;
+        mDefaultPackageName = nameAndIcon.packageName;
+    }
+
     /**
      * Loads the app label and icon image and stores into the cache.
      */
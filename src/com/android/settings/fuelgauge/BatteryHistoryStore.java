@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.android.settings.fuelgauge;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A columnar copy of the battery history at a list of timestamps.
+ *
+ * <p>Each consumer key is interned once, and its usage data is stored in primitive arrays
+ * indexed by {@code keyIndex * getTimestampCount() + timestampIndex}, so the usage diffs of a
+ * consumer between timestamps are read without any map lookup or boxing.
+ */
+final class BatteryHistoryStore {
+
+    private final int mTimestampCount;
+    // Sorted, so the consumers are always visited in the same order.
+    private final String[] mKeys;
+    private final boolean[] mHasData;
+    private final BatteryHistEntry[] mEntries;
+    private final long[] mForegroundUsageTimes;
+    private final long[] mBackgroundUsageTimes;
+    private final double[] mConsumePowers;
+
+    private BatteryHistoryStore(int timestampCount, String[] keys) {
+        mTimestampCount = timestampCount;
+        mKeys = keys;
+        mHasData = new boolean[timestampCount];
+        final int size = keys.length * timestampCount;
+        mEntries = new BatteryHistEntry[size];
+        mForegroundUsageTimes = new long[size];
+        mBackgroundUsageTimes = new long[size];
+        mConsumePowers = new double[size];
+    }
+
+    /**
+     * Copies the entries of {@code batteryHistoryMap} recorded at {@code timestamps}.
+     */
+    @SuppressWarnings("unchecked")
+    static BatteryHistoryStore create(long[] timestamps,
+            Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap) {
+        final Map<String, BatteryHistEntry>[] entryMaps = new Map[timestamps.length];
+        final Map<String, Integer> keyIndexes = new HashMap<>();
+        for (int i = 0; i < timestamps.length; i++) {
+            entryMaps[i] = batteryHistoryMap.get(timestamps[i]);
+            if (entryMaps[i] != null) {
+                for (String key : entryMaps[i].keySet()) {
+                    keyIndexes.put(key, 0);
+                }
+            }
+        }
+        final String[] keys = keyIndexes.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            keyIndexes.put(keys[i], i);
+        }
+
+        final BatteryHistoryStore store = new BatteryHistoryStore(timestamps.length, keys);
+        for (int i = 0; i < timestamps.length; i++) {
+            if (entryMaps[i] == null || entryMaps[i].isEmpty()) {
+                continue;
+            }
+            store.mHasData[i] = true;
+            for (Map.Entry<String, BatteryHistEntry> entry : entryMaps[i].entrySet()) {
+                final int index = keyIndexes.get(entry.getKey()) * timestamps.length + i;
+                final BatteryHistEntry histEntry = entry.getValue();
+                store.mEntries[index] = histEntry;
+                store.mForegroundUsageTimes[index] = histEntry.mForegroundUsageTimeInMs;
+                store.mBackgroundUsageTimes[index] = histEntry.mBackgroundUsageTimeInMs;
+                store.mConsumePowers[index] = histEntry.mConsumePower;
+            }
+        }
+        return store;
+    }
+
+    int getTimestampCount() {
+        return mTimestampCount;
+    }
+
+    int getKeyCount() {
+        return mKeys.length;
+    }
+
+    String getKey(int keyIndex) {
+        return mKeys[keyIndex];
+    }
+
+    /** Whether any entry is recorded at the timestamp. */
+    boolean hasData(int timestampIndex) {
+        return mHasData[timestampIndex];
+    }
+
+    /** @return the entry of the consumer at the timestamp, or {@code null} if none. */
+    BatteryHistEntry getEntry(int keyIndex, int timestampIndex) {
+        return mEntries[keyIndex * mTimestampCount + timestampIndex];
+    }
+
+    long getForegroundUsageTimeInMs(int keyIndex, int timestampIndex) {
+        return mForegroundUsageTimes[keyIndex * mTimestampCount + timestampIndex];
+    }
+
+    long getBackgroundUsageTimeInMs(int keyIndex, int timestampIndex) {
+        return mBackgroundUsageTimes[keyIndex * mTimestampCount + timestampIndex];
+    }
+
+    double getConsumePower(int keyIndex, int timestampIndex) {
+        return mConsumePowers[keyIndex * mTimestampCount + timestampIndex];
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.android.settings.fuelgauge;
+
+import android.os.Handler;
+import android.os.Process;
+import android.util.ArrayMap;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.utils.ThreadPoolUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the labels and icons of the battery usage entries on a small shared pool.
+ *
+ * <p>The {@link BatteryEntry} requests are coalesced by uid, so each uid is loaded once however
+ * many entries wait for it, and the result is delivered to all of them. The loaded data is kept
+ * in bounded LRU caches created by {@link #newLruCache(int)}.
+ */
+final class BatteryNameAndIconLoader {
+    private static final String TAG = "BatteryNameAndIconLoader";
+    private static final int MAX_POOL_SIZE = 3;
+    private static final long KEEP_ALIVE_SECONDS = 10L;
+
+    /** The maximum number of labels and icons kept by each cache. */
+    static final int MAX_CACHE_SIZE = 256;
+
+    private static final Object sLock = new Object();
+    // All fields below are guarded by sLock.
+    private static final SparseArray<List<BatteryEntry>> sPendingRequests = new SparseArray<>();
+    private static final SparseArray<List<BatteryEntry>> sLoadingRequests = new SparseArray<>();
+    private static Handler sHandler;
+    private static int sGeneration;
+    private static ExecutorService sExecutor;
+
+    private BatteryNameAndIconLoader() {
+    }
+
+    /**
+     * @return a thread-safe map which evicts its least recently used entry beyond
+     * {@code maxSize} entries.
+     */
+    static <K, V> Map<K, V> newLruCache(int maxSize) {
+        return Collections.synchronizedMap(
+                new LinkedHashMap<K, V>(/*initialCapacity=*/ 16, /*loadFactor=*/ 0.75f,
+                        /*accessOrder=*/ true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                        return size() > maxSize;
+                    }
+                });
+    }
+
+    /**
+     * Queues the entry until {@link #start(Handler)}, to load its label and icon.
+     */
+    static void enqueue(BatteryEntry entry) {
+        final int uid = entry.getUid();
+        // Nothing to load for the entries which are not an app.
+        if (uid == 0 || uid == Process.INVALID_UID) {
+            return;
+        }
+        synchronized (sLock) {
+            List<BatteryEntry> entries = sPendingRequests.get(uid);
+            if (entries == null) {
+                entries = new ArrayList<>();
+                sPendingRequests.put(uid, entries);
+            }
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * Starts loading the queued entries. The {@code handler} receives
+     * {@link BatteryEntry#MSG_UPDATE_NAME_ICON} for each loaded entry, then
+     * {@link BatteryEntry#MSG_REPORT_FULLY_DRAWN} once nothing is left to load.
+     */
+    static void start(Handler handler) {
+        synchronized (sLock) {
+            sHandler = handler;
+            if (sPendingRequests.size() == 0) {
+                return;
+            }
+            for (int index = 0; index < sPendingRequests.size(); index++) {
+                final int uid = sPendingRequests.keyAt(index);
+                final List<BatteryEntry> entries = sPendingRequests.valueAt(index);
+                final List<BatteryEntry> loadingEntries = sLoadingRequests.get(uid);
+                // Joins the request of the same uid which is already loading.
+                if (loadingEntries != null) {
+                    loadingEntries.addAll(entries);
+                    continue;
+                }
+                sLoadingRequests.put(uid, entries);
+                final int generation = sGeneration;
+                final BatteryEntry entry = entries.get(0);
+                getExecutor().execute(() -> load(uid, entry, generation));
+            }
+            sPendingRequests.clear();
+        }
+    }
+
+    /**
+     * Drops the queued entries and the results of the ones being loaded.
+     */
+    static void stop() {
+        synchronized (sLock) {
+            sGeneration++;
+            sPendingRequests.clear();
+            sLoadingRequests.clear();
+            sHandler = null;
+        }
+    }
+
+    /**
+     * Runs {@link BatteryDiffEntry#loadLabelAndIcon()} once per key of {@code entries} on the
+     * pool, then copies the loaded labels and icons into the other entries of the same key. They
+     * are not read back from the cache, which may hold fewer entries than the batch.
+     */
+    static void loadLabelAndIcons(Collection<BatteryDiffEntry> entries) {
+        final Map<String, BatteryDiffEntry> distinctEntries = new ArrayMap<>();
+        for (BatteryDiffEntry entry : entries) {
+            distinctEntries.putIfAbsent(entry.getKey(), entry);
+        }
+        final List<Future<?>> futures = new ArrayList<>(distinctEntries.size());
+        for (BatteryDiffEntry entry : distinctEntries.values()) {
+            futures.add(getExecutor().submit(entry::loadLabelAndIcon));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Log.w(TAG, "failed to load label and icon", e);
+            } catch (InterruptedException e) {
+                Log.w(TAG, "interrupted while loading labels and icons", e);
+                Thread.currentThread().interrupt();
+                // The entries load their own label and icon when shown.
+                return;
+            }
+        }
+        for (BatteryDiffEntry entry : entries) {
+            final BatteryDiffEntry loadedEntry = distinctEntries.get(entry.getKey());
+            if (loadedEntry != entry) {
+                entry.copyLabelAndIcon(loadedEntry);
+            }
+        }
+    }
+
+    private static void load(int uid, BatteryEntry entry, int generation) {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        final BatteryEntry.NameAndIcon nameAndIcon = entry.loadNameAndIcon();
+        synchronized (sLock) {
+            if (generation != sGeneration) {
+                return;
+            }
+            final List<BatteryEntry> entries = sLoadingRequests.get(uid);
+            sLoadingRequests.remove(uid);
+            if (nameAndIcon != null && entries != null) {
+                for (BatteryEntry loadedEntry : entries) {
+                    loadedEntry.setNameAndIcon(nameAndIcon);
+                    if (sHandler != null) {
+                        sHandler.sendMessage(sHandler.obtainMessage(
+                                BatteryEntry.MSG_UPDATE_NAME_ICON, loadedEntry));
+                    }
+                }
+            }
+            if (sLoadingRequests.size() == 0 && sHandler != null) {
+                sHandler.sendEmptyMessage(BatteryEntry.MSG_REPORT_FULLY_DRAWN);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    static int getPendingCount() {
+        synchronized (sLock) {
+            return sPendingRequests.size();
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = ThreadPoolUtils.newWorkerPool(MAX_POOL_SIZE, KEEP_ALIVE_SECONDS);
+        }
+        return sExecutor;
+    }
+}
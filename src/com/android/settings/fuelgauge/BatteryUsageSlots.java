@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.android.settings.fuelgauge;
+
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * The app and system usage lists of every battery chart slot, filtered and sorted once per
+ * battery history snapshot so selecting a slot is only a lookup.
+ */
+final class BatteryUsageSlots {
+
+    private final SparseArray<List<BatteryDiffEntry>> mAppEntries = new SparseArray<>();
+    private final SparseArray<List<BatteryDiffEntry>> mSystemEntries = new SparseArray<>();
+
+    private BatteryUsageSlots() {
+    }
+
+    /**
+     * Splits the entries of each slot of {@code indexedUsageMap} into app and system entries,
+     * keeping the ones accepted by {@code entryFilter}, each list sorted by
+     * {@link BatteryDiffEntry#COMPARATOR}.
+     */
+    static BatteryUsageSlots create(Map<Integer, List<BatteryDiffEntry>> indexedUsageMap,
+            Predicate<BatteryDiffEntry> entryFilter) {
+        final BatteryUsageSlots slots = new BatteryUsageSlots();
+        for (Map.Entry<Integer, List<BatteryDiffEntry>> slot : indexedUsageMap.entrySet()) {
+            final List<BatteryDiffEntry> appEntries = new ArrayList<>();
+            final List<BatteryDiffEntry> systemEntries = new ArrayList<>();
+            for (BatteryDiffEntry entry : slot.getValue()) {
+                if (!entryFilter.test(entry)) {
+                    continue;
+                }
+                if (entry.isSystemEntry()) {
+                    systemEntries.add(entry);
+                } else {
+                    appEntries.add(entry);
+                }
+            }
+            Collections.sort(appEntries, BatteryDiffEntry.COMPARATOR);
+            Collections.sort(systemEntries, BatteryDiffEntry.COMPARATOR);
+            slots.mAppEntries.put(slot.getKey(), Collections.unmodifiableList(appEntries));
+            slots.mSystemEntries.put(slot.getKey(), Collections.unmodifiableList(systemEntries));
+        }
+        return slots;
+    }
+
+    /** Whether the slot is computed, even if it has no entry to show. */
+    boolean contains(int slotIndex) {
+        return mAppEntries.indexOfKey(slotIndex) >= 0;
+    }
+
+    /** @return the sorted app entries of the slot, or an empty list if none. */
+    List<BatteryDiffEntry> getAppEntries(int slotIndex) {
+        return mAppEntries.get(slotIndex, Collections.emptyList());
+    }
+
+    /** @return the sorted system entries of the slot, or an empty list if none. */
+    List<BatteryDiffEntry> getSystemEntries(int slotIndex) {
+        return mSystemEntries.get(slotIndex, Collections.emptyList());
+    }
+}
@@ -33,21 +33,16 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 import java.util.TimeZone;
 
 /** A utility class to convert data into another types. */
 public final class ConvertUtils {
     private static final boolean DEBUG = false;
     private static final String TAG = "ConvertUtils";
-    private static final Map<String, BatteryHistEntry> EMPTY_BATTERY_MAP = new HashMap<>();
-    private static final BatteryHistEntry EMPTY_BATTERY_HIST_ENTRY =
-        new BatteryHistEntry(new ContentValues());
     // Maximum total time value for each slot cumulative data at most 2 hours.
     private static final float TOTAL_TIME_THRESHOLD = DateUtils.HOUR_IN_MILLIS * 2;
 
@@ -181,70 +176,52 @@ public final class ConvertUtils {
             return new HashMap<>();
         }
         final Map<Integer, List<BatteryDiffEntry>> resultMap = new HashMap<>();
+        // Copies the data of the used timestamps into primitive arrays once, instead of looking
+        // up every consumer in three maps for every time slot.
+        final BatteryHistoryStore store =
+            BatteryHistoryStore.create(batteryHistoryKeys, batteryHistoryMap);
+        final int keyCount = store.getKeyCount();
         // Each time slot usage diff data =
         //     Math.abs(timestamp[i+2] data - timestamp[i+1] data) +
         //     Math.abs(timestamp[i+1] data - timestamp[i] data);
         // since we want to aggregate every two hours data into a single time slot.
         final int timestampStride = 2;
         for (int index = 0; index < timeSlotSize; index++) {
-            final Long currentTimestamp =
-                Long.valueOf(batteryHistoryKeys[index * timestampStride]);
-            final Long nextTimestamp =
-                Long.valueOf(batteryHistoryKeys[index * timestampStride + 1]);
-            final Long nextTwoTimestamp =
-                Long.valueOf(batteryHistoryKeys[index * timestampStride + 2]);
-            // Fetches BatteryHistEntry data from corresponding time slot.
-            final Map<String, BatteryHistEntry> currentBatteryHistMap =
-                batteryHistoryMap.getOrDefault(currentTimestamp, EMPTY_BATTERY_MAP);
-            final Map<String, BatteryHistEntry> nextBatteryHistMap =
-                batteryHistoryMap.getOrDefault(nextTimestamp, EMPTY_BATTERY_MAP);
-            final Map<String, BatteryHistEntry> nextTwoBatteryHistMap =
-                batteryHistoryMap.getOrDefault(nextTwoTimestamp, EMPTY_BATTERY_MAP);
+            final int current = index * timestampStride;
+            final int next = current + 1;
+            final int nextTwo = current + 2;
             // We should not get the empty list since we have at least one fake data to record
             // the battery level and status in each time slot, the empty list is used to
             // represent there is no enough data to apply interpolation arithmetic.
-            if (currentBatteryHistMap.isEmpty()
-                    || nextBatteryHistMap.isEmpty()
-                    || nextTwoBatteryHistMap.isEmpty()) {
+            if (!store.hasData(current) || !store.hasData(next) || !store.hasData(nextTwo)) {
                 resultMap.put(Integer.valueOf(index), new ArrayList<BatteryDiffEntry>());
                 continue;
             }
 
-            // Collects all keys in these three time slot records as all populations.
-            final Set<String> allBatteryHistEntryKeys = new HashSet<>();
-            allBatteryHistEntryKeys.addAll(currentBatteryHistMap.keySet());
-            allBatteryHistEntryKeys.addAll(nextBatteryHistMap.keySet());
-            allBatteryHistEntryKeys.addAll(nextTwoBatteryHistMap.keySet());
-
             double totalConsumePower = 0.0;
             final List<BatteryDiffEntry> batteryDiffEntryList = new ArrayList<>();
             // Adds a specific time slot BatteryDiffEntry list into result map.
             resultMap.put(Integer.valueOf(index), batteryDiffEntryList);
 
-            // Calculates all packages diff usage data in a specific time slot.
-            for (String key : allBatteryHistEntryKeys) {
-                final BatteryHistEntry currentEntry =
-                    currentBatteryHistMap.getOrDefault(key, EMPTY_BATTERY_HIST_ENTRY);
-                final BatteryHistEntry nextEntry =
-                    nextBatteryHistMap.getOrDefault(key, EMPTY_BATTERY_HIST_ENTRY);
-                final BatteryHistEntry nextTwoEntry =
-                    nextTwoBatteryHistMap.getOrDefault(key, EMPTY_BATTERY_HIST_ENTRY);
+            // Calculates all packages diff usage data in a specific time slot. A consumer
+            // without data in this time slot has no usage, it is excluded below.
+            for (int keyIndex = 0; keyIndex < keyCount; keyIndex++) {
                 // Cumulative values is a specific time slot for a specific app.
                 long foregroundUsageTimeInMs =
                     getDiffValue(
-                        currentEntry.mForegroundUsageTimeInMs,
-                        nextEntry.mForegroundUsageTimeInMs,
-                        nextTwoEntry.mForegroundUsageTimeInMs);
+                        store.getForegroundUsageTimeInMs(keyIndex, current),
+                        store.getForegroundUsageTimeInMs(keyIndex, next),
+                        store.getForegroundUsageTimeInMs(keyIndex, nextTwo));
                 long backgroundUsageTimeInMs =
                     getDiffValue(
-                        currentEntry.mBackgroundUsageTimeInMs,
-                        nextEntry.mBackgroundUsageTimeInMs,
-                        nextTwoEntry.mBackgroundUsageTimeInMs);
+                        store.getBackgroundUsageTimeInMs(keyIndex, current),
+                        store.getBackgroundUsageTimeInMs(keyIndex, next),
+                        store.getBackgroundUsageTimeInMs(keyIndex, nextTwo));
                 double consumePower =
                     getDiffValue(
-                        currentEntry.mConsumePower,
-                        nextEntry.mConsumePower,
-                        nextTwoEntry.mConsumePower);
+                        store.getConsumePower(keyIndex, current),
+                        store.getConsumePower(keyIndex, next),
+                        store.getConsumePower(keyIndex, nextTwo));
                 // Excludes entry since we don't have enough data to calculate.
                 if (foregroundUsageTimeInMs == 0
                         && backgroundUsageTimeInMs == 0
@@ -252,7 +229,10 @@ public final class ConvertUtils {
                     continue;
                 }
                 final BatteryHistEntry selectedBatteryEntry =
-                    selectBatteryHistEntry(currentEntry, nextEntry, nextTwoEntry);
+                    selectBatteryHistEntry(
+                        store.getEntry(keyIndex, current),
+                        store.getEntry(keyIndex, next),
+                        store.getEntry(keyIndex, nextTwo));
                 if (selectedBatteryEntry == null) {
                     continue;
                 }
@@ -266,7 +246,7 @@ public final class ConvertUtils {
                         Log.w(TAG, String.format("abnormal usage time %d|%d for:\n%s",
                                 Duration.ofMillis(foregroundUsageTimeInMs).getSeconds(),
                                 Duration.ofMillis(backgroundUsageTimeInMs).getSeconds(),
-                                currentEntry));
+                                selectedBatteryEntry));
                     }
                     foregroundUsageTimeInMs =
                         Math.round(foregroundUsageTimeInMs * ratio);
@@ -365,14 +345,10 @@ public final class ConvertUtils {
             BatteryHistEntry entry1,
             BatteryHistEntry entry2,
             BatteryHistEntry entry3) {
-        if (entry1 != null && entry1 != EMPTY_BATTERY_HIST_ENTRY) {
+        if (entry1 != null) {
             return entry1;
-        } else if (entry2 != null && entry2 != EMPTY_BATTERY_HIST_ENTRY) {
-            return entry2;
-        } else {
-            return entry3 != null && entry3 != EMPTY_BATTERY_HIST_ENTRY
-                ? entry3 : null;
         }
+        return entry2 != null ? entry2 : entry3;
     }
 
     @VisibleForTesting
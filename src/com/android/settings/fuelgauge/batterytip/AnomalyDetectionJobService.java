@@ -103,12 +103,18 @@ public class AnomalyDetectionJobService extends JobService {
             final MetricsFeatureProvider metricsFeatureProvider = FeatureFactory
                     .getFactory(this).getMetricsFeatureProvider();
 
+            final List<JobWorkItem> items = new ArrayList<>();
             for (JobWorkItem item = dequeueWork(params); item != null; item = dequeueWork(params)) {
                 saveAnomalyToDatabase(context, userManager,
                         batteryDatabaseManager, batteryUtils, policy, powerAllowlistBackend,
                         contentResolver, powerUsageFeatureProvider, metricsFeatureProvider,
                         item.getIntent().getExtras());
+                items.add(item);
+            }
 
+            // Writes the whole burst in one transaction before the work is completed.
+            batteryDatabaseManager.flushPendingWrites();
+            for (JobWorkItem item : items) {
                 completeWork(params, item);
             }
         });
@@ -162,11 +168,11 @@ public class AnomalyDetectionJobService extends JobService {
                     // Auto restrict this app
                     batteryUtils.setForceAppStandby(uid, packageName,
                             AppOpsManager.MODE_IGNORED);
-                    databaseManager.insertAnomaly(uid, packageName, anomalyInfo.anomalyType,
+                    databaseManager.enqueueAnomaly(uid, packageName, anomalyInfo.anomalyType,
                             AnomalyDatabaseHelper.State.AUTO_HANDLED,
                             timeMs);
                 } else {
-                    databaseManager.insertAnomaly(uid, packageName, anomalyInfo.anomalyType,
+                    databaseManager.enqueueAnomaly(uid, packageName, anomalyInfo.anomalyType,
                             AnomalyDatabaseHelper.State.NEW,
                             timeMs);
                 }
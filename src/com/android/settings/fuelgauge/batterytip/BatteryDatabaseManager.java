@@ -33,6 +33,7 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.text.TextUtils;
 import android.util.ArrayMap;
+import android.util.Log;
 import android.util.SparseLongArray;
 
 import androidx.annotation.VisibleForTesting;
@@ -43,18 +44,29 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Database manager for battery data. Now it only contains anomaly data stored in {@link AppInfo}.
  *
- * This manager may be accessed by multi-threads. All the database related methods are synchronized
- * so each operation won't be interfered by other threads.
+ * This manager may be accessed by multi-threads. All the database writing methods are
+ * synchronized so each operation won't be interfered by other threads. The queries are not, and
+ * run alongside the writes since the database is in write-ahead logging mode.
+ *
+ * Bursts of anomaly logs can be queued with {@link #enqueueAnomaly}. The caller writes them in
+ * order in a single transaction with {@link #flushPendingWrites} at the end of the burst. The
+ * other anomaly writes and queries flush them first.
  */
 public class BatteryDatabaseManager {
+    private static final String TAG = "BatteryDatabaseManager";
+
     private static BatteryDatabaseManager sSingleton;
 
     private AnomalyDatabaseHelper mDatabaseHelper;
 
+    // The queued anomaly writes, in order. Guarded by mPendingWrites.
+    private final List<Consumer<SQLiteDatabase>> mPendingWrites = new ArrayList<>();
+
     private BatteryDatabaseManager(Context context) {
         mDatabaseHelper = AnomalyDatabaseHelper.getInstance(context);
     }
@@ -84,7 +96,51 @@ public class BatteryDatabaseManager {
     public synchronized boolean insertAnomaly(int uid, String packageName, int type,
             int anomalyState,
             long timestampMs) {
+        // Keeps the queued writes before this one.
+        flushPendingWrites();
+        final SQLiteDatabase db = mDatabaseHelper.getWritableDatabase();
+        return insertAnomaly(db, uid, packageName, type, anomalyState, timestampMs);
+    }
+
+    /**
+     * Queues an anomaly log, which is written by the next {@link #flushPendingWrites} together
+     * with the other queued writes. See {@link #insertAnomaly} for the parameters.
+     */
+    public void enqueueAnomaly(int uid, String packageName, int type, int anomalyState,
+            long timestampMs) {
+        synchronized (mPendingWrites) {
+            mPendingWrites.add(
+                    db -> insertAnomaly(db, uid, packageName, type, anomalyState, timestampMs));
+        }
+    }
+
+    /**
+     * Writes all the queued writes in a single transaction.
+     */
+    public synchronized void flushPendingWrites() {
+        final List<Consumer<SQLiteDatabase>> writes;
+        synchronized (mPendingWrites) {
+            if (mPendingWrites.isEmpty()) {
+                return;
+            }
+            writes = new ArrayList<>(mPendingWrites);
+            mPendingWrites.clear();
+        }
         final SQLiteDatabase db = mDatabaseHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (Consumer<SQLiteDatabase> write : writes) {
+                write.accept(db);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.d(TAG, "Flushed " + writes.size() + " anomaly writes");
+    }
+
+    private static boolean insertAnomaly(SQLiteDatabase db, int uid, String packageName,
+            int type, int anomalyState, long timestampMs) {
         ContentValues values = new ContentValues();
         values.put(UID, uid);
         values.put(PACKAGE_NAME, packageName);
@@ -98,7 +154,9 @@ public class BatteryDatabaseManager {
     /**
      * Query all the anomalies that happened after {@code timestampMsAfter} and with {@code state}.
      */
-    public synchronized List<AppInfo> queryAllAnomalies(long timestampMsAfter, int state) {
+    public List<AppInfo> queryAllAnomalies(long timestampMsAfter, int state) {
+        // Sees the queued anomalies too.
+        flushPendingWrites();
         final List<AppInfo> appInfos = new ArrayList<>();
         final SQLiteDatabase db = mDatabaseHelper.getReadableDatabase();
         final String[] projection = {PACKAGE_NAME, ANOMALY_TYPE, UID};
@@ -132,6 +190,7 @@ public class BatteryDatabaseManager {
     }
 
     public synchronized void deleteAllAnomaliesBeforeTimeStamp(long timestampMs) {
+        flushPendingWrites();
         final SQLiteDatabase db = mDatabaseHelper.getWritableDatabase();
         db.delete(TABLE_ANOMALY, TIME_STAMP_MS + " < ?",
                 new String[]{String.valueOf(timestampMs)});
@@ -144,6 +203,11 @@ public class BatteryDatabaseManager {
      * @param state    which state to update to
      */
     public synchronized void updateAnomalies(List<AppInfo> appInfos, int state) {
+        flushPendingWrites();
+        updateAnomalies(mDatabaseHelper.getWritableDatabase(), appInfos, state);
+    }
+
+    private static void updateAnomalies(SQLiteDatabase db, List<AppInfo> appInfos, int state) {
         if (!appInfos.isEmpty()) {
             final int size = appInfos.size();
             final String[] whereArgs = new String[size];
@@ -151,7 +215,6 @@ public class BatteryDatabaseManager {
                 whereArgs[i] = appInfos.get(i).packageName;
             }
 
-            final SQLiteDatabase db = mDatabaseHelper.getWritableDatabase();
             final ContentValues values = new ContentValues();
             values.put(ANOMALY_STATE, state);
             db.update(TABLE_ANOMALY, values, PACKAGE_NAME + " IN (" + TextUtils.join(",",
@@ -165,7 +228,7 @@ public class BatteryDatabaseManager {
      * @param type of action been performed
      * @return {@link SparseLongArray} where key is uid and value is timestamp
      */
-    public synchronized SparseLongArray queryActionTime(
+    public SparseLongArray queryActionTime(
             @AnomalyDatabaseHelper.ActionType int type) {
         final SparseLongArray timeStamps = new SparseLongArray();
         final SQLiteDatabase db = mDatabaseHelper.getReadableDatabase();
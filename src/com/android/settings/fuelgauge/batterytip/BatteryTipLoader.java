@@ -18,12 +18,17 @@ package com.android.settings.fuelgauge.batterytip;
 
 import android.content.Context;
 import android.os.BatteryUsageStats;
+import android.os.SystemClock;
+import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
 
+import com.android.settings.core.instrumentation.ControllerLatencyTracker;
 import com.android.settings.fuelgauge.BatteryInfo;
 import com.android.settings.fuelgauge.BatteryUtils;
 import com.android.settings.fuelgauge.batterytip.detectors.BatteryDefenderDetector;
+import com.android.settings.fuelgauge.batterytip.detectors.BatteryTipDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.EarlyWarningDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.HighUsageDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.LowBatteryDetector;
@@ -31,52 +36,151 @@ import com.android.settings.fuelgauge.batterytip.detectors.SmartBatteryDetector;
 import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
 import com.android.settings.fuelgauge.batterytip.tips.LowBatteryTip;
 import com.android.settings.fuelgauge.batterytip.tips.SummaryTip;
+import com.android.settings.utils.ThreadPoolUtils;
 import com.android.settingslib.fuelgauge.EstimateKt;
 import com.android.settingslib.utils.AsyncLoaderCompat;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Loader to compute and return a battery tip list. It will always return a full length list even
  * though some tips may have state {@code BaseBatteryTip.StateType.INVISIBLE}.
+ *
+ * <p>The detectors run concurrently, each with its own time budget. The tips of the detectors
+ * over budget are left out of the loaded list, and delivered as an updated full list once they
+ * are detected. Callers using the list directly instead of the loader results should call
+ * {@link #loadAllTips()}, which waits for every detector.
+ *
+ * <p>The latency of every detector, late or not, is recorded by {@link ControllerLatencyTracker}
+ * under {@link ControllerLatencyTracker#CATEGORY_BATTERY_TIP_DETECTORS}.
  */
 public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
     private static final String TAG = "BatteryTipLoader";
 
     private static final boolean USE_FAKE_DATA = false;
+    private static final int MAX_POOL_SIZE = 4;
+    private static final long KEEP_ALIVE_SECONDS = 10L;
+    // The budget of the detectors reading local state only.
+    @VisibleForTesting
+    static final long DETECTOR_TIMEOUT_MS = 100L;
+    // The budget of the detectors making binder or provider calls.
+    @VisibleForTesting
+    static final long SLOW_DETECTOR_TIMEOUT_MS = 300L;
+
+    private static Executor sExecutor;
 
     private BatteryUsageStats mBatteryUsageStats;
     @VisibleForTesting
     BatteryUtils mBatteryUtils;
+    @VisibleForTesting
+    Executor mExecutor;
+
+    // The fields below are guarded by this.
+    private int mLoadGeneration;
+    // The tips detected by the current load, including the late ones.
+    private List<BatteryTip> mTips = new ArrayList<>();
 
     public BatteryTipLoader(Context context, BatteryUsageStats batteryUsageStats) {
         super(context);
         mBatteryUsageStats = batteryUsageStats;
         mBatteryUtils = BatteryUtils.getInstance(context);
+        mExecutor = getSharedExecutor();
     }
 
     @Override
     public List<BatteryTip> loadInBackground() {
+        return loadTips(true /* withBudget */);
+    }
+
+    /**
+     * Detect the battery tips without the time budgets, so the list has the tip of every
+     * detector.
+     */
+    @WorkerThread
+    public List<BatteryTip> loadAllTips() {
+        return loadTips(false /* withBudget */);
+    }
+
+    private List<BatteryTip> loadTips(boolean withBudget) {
         if (USE_FAKE_DATA) {
             return getFakeData();
         }
-        final List<BatteryTip> tips = new ArrayList<>();
         final BatteryTipPolicy policy = new BatteryTipPolicy(getContext());
         final BatteryInfo batteryInfo = mBatteryUtils.getBatteryInfo(TAG);
         final Context context = getContext();
 
-        tips.add(new LowBatteryDetector(context, policy, batteryInfo).detect());
-        tips.add(new HighUsageDetector(context, policy, mBatteryUsageStats, batteryInfo).detect());
-        tips.add(new SmartBatteryDetector(
-                context, policy, batteryInfo, context.getContentResolver()).detect());
-        tips.add(new EarlyWarningDetector(policy, context).detect());
-        tips.add(new BatteryDefenderDetector(batteryInfo).detect());
+        final List<BatteryTipDetector> detectors = new ArrayList<>();
+        detectors.add(new LowBatteryDetector(context, policy, batteryInfo));
+        detectors.add(new HighUsageDetector(context, policy, mBatteryUsageStats, batteryInfo));
+        detectors.add(new SmartBatteryDetector(
+                context, policy, batteryInfo, context.getContentResolver()));
+        detectors.add(new EarlyWarningDetector(policy, context));
+        detectors.add(new BatteryDefenderDetector(batteryInfo));
         // Disable this feature now since it introduces false positive cases. We will try to improve
         // it in the future.
-        // tips.add(new RestrictAppDetector(context, policy).detect());
+        // detectors.add(new RestrictAppDetector(context, policy));
+
+        final int generation;
+        synchronized (this) {
+            generation = ++mLoadGeneration;
+            mTips = new ArrayList<>();
+        }
+        final long startMs = SystemClock.elapsedRealtime();
+        final List<DetectorTask> tasks = new ArrayList<>(detectors.size());
+        for (BatteryTipDetector detector : detectors) {
+            final DetectorTask task = new DetectorTask(detector, generation);
+            tasks.add(task);
+            mExecutor.execute(task);
+        }
 
+        final List<BatteryTip> tips = new ArrayList<>();
+        for (DetectorTask task : tasks) {
+            BatteryTip tip = null;
+            try {
+                if (withBudget) {
+                    final long timeoutMs = getTimeoutMs(task.mDetector)
+                            - (SystemClock.elapsedRealtime() - startMs);
+                    tip = task.get(Math.max(0L, timeoutMs), TimeUnit.MILLISECONDS);
+                } else {
+                    tip = task.get();
+                }
+            } catch (TimeoutException | InterruptedException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                synchronized (this) {
+                    // Collects it now if it finished right after the timeout, since done() has
+                    // not seen it as late.
+                    if (task.isDone()) {
+                        tip = task.getTipOrNull();
+                    } else {
+                        task.mLate = true;
+                        Log.w(TAG, "Timeout detecting battery tip, delivering it later: "
+                                + task.mDetector.getClass().getSimpleName());
+                    }
+                }
+            } catch (ExecutionException e) {
+                Log.w(TAG, "Failed to detect battery tip", e);
+            }
+            if (tip != null) {
+                tips.add(tip);
+            }
+        }
+
+        synchronized (this) {
+            if (generation == mLoadGeneration) {
+                mTips.addAll(tips);
+            }
+        }
         Collections.sort(tips);
         return tips;
     }
@@ -85,6 +189,59 @@ public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
     protected void onDiscardResult(List<BatteryTip> result) {
     }
 
+    private void onLateTipDetected(DetectorTask task) {
+        final BatteryTip tip = task.getTipOrNull();
+        if (tip == null) {
+            return;
+        }
+        synchronized (this) {
+            if (task.mGeneration != mLoadGeneration) {
+                return;
+            }
+            mTips.add(tip);
+        }
+        ThreadUtils.postOnMainThread(() -> deliverLateTip(task.mGeneration));
+    }
+
+    private void deliverLateTip(int generation) {
+        if (!isStarted()) {
+            return;
+        }
+        final List<BatteryTip> tips;
+        synchronized (this) {
+            if (generation != mLoadGeneration) {
+                return;
+            }
+            tips = new ArrayList<>(mTips);
+        }
+        Collections.sort(tips);
+        deliverResult(tips);
+    }
+
+    private static long getTimeoutMs(BatteryTipDetector detector) {
+        return detector instanceof HighUsageDetector || detector instanceof EarlyWarningDetector
+                ? SLOW_DETECTOR_TIMEOUT_MS
+                : DETECTOR_TIMEOUT_MS;
+    }
+
+    private static BatteryTip detect(BatteryTipDetector detector) {
+        final long begin = ControllerLatencyTracker.begin();
+        try {
+            return detector.detect();
+        } finally {
+            ControllerLatencyTracker.getInstance().end(
+                    ControllerLatencyTracker.CATEGORY_BATTERY_TIP_DETECTORS, detector,
+                    ControllerLatencyTracker.PHASE_DETECT, begin, null /* metricsFeature */);
+        }
+    }
+
+    private static synchronized Executor getSharedExecutor() {
+        if (sExecutor == null) {
+            sExecutor = ThreadPoolUtils.newWorkerPool(MAX_POOL_SIZE, KEEP_ALIVE_SECONDS);
+        }
+        return sExecutor;
+    }
+
     private List<BatteryTip> getFakeData() {
         final List<BatteryTip> tips = new ArrayList<>();
         tips.add(new SummaryTip(BatteryTip.StateType.NEW,
@@ -94,4 +251,36 @@ public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
         return tips;
     }
 
+    private class DetectorTask extends FutureTask<BatteryTip> {
+        private final BatteryTipDetector mDetector;
+        private final int mGeneration;
+        // Whether the load gave up waiting for it. Guarded by BatteryTipLoader.this.
+        private boolean mLate;
+
+        DetectorTask(BatteryTipDetector detector, int generation) {
+            super(() -> detect(detector));
+            mDetector = detector;
+            mGeneration = generation;
+        }
+
+        @Override
+        protected void done() {
+            synchronized (BatteryTipLoader.this) {
+                if (!mLate) {
+                    // Collected by loadInBackground().
+                    return;
+                }
+            }
+            onLateTipDetected(this);
+        }
+
+        BatteryTip getTipOrNull() {
+            try {
+                return get();
+            } catch (InterruptedException | ExecutionException | CancellationException e) {
+                Log.w(TAG, "Failed to detect battery tip", e);
+                return null;
+            }
+        }
+    }
 }
@@ -33,6 +33,8 @@ import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.widget.CardPreference;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -99,16 +101,27 @@ public class BatteryTipPreferenceController extends BasePreferenceController {
             return;
         }
         if (mBatteryTips == null) {
-            mBatteryTips = batteryTips;
+            mBatteryTips = new ArrayList<>(batteryTips);
         } else {
-            // mBatteryTips and batteryTips always have the same length and same sequence.
-            for (int i = 0, size = batteryTips.size(); i < size; i++) {
-                mBatteryTips.get(i).updateState(batteryTips.get(i));
+            // batteryTips may miss the tips whose detector is still running, so the tips are
+            // matched by type.
+            boolean isTipAdded = false;
+            for (BatteryTip batteryTip : batteryTips) {
+                final BatteryTip currentTip = findBatteryTip(batteryTip.getType());
+                if (currentTip != null) {
+                    currentTip.updateState(batteryTip);
+                } else {
+                    mBatteryTips.add(batteryTip);
+                    isTipAdded = true;
+                }
+            }
+            if (isTipAdded) {
+                Collections.sort(mBatteryTips);
             }
         }
 
         mCardPreference.setVisible(false);
-        for (int i = 0, size = batteryTips.size(); i < size; i++) {
+        for (int i = 0, size = mBatteryTips.size(); i < size; i++) {
             final BatteryTip batteryTip = mBatteryTips.get(i);
             batteryTip.validateCheck(mContext);
             if (batteryTip.getState() != BatteryTip.StateType.INVISIBLE) {
@@ -148,6 +161,15 @@ public class BatteryTipPreferenceController extends BasePreferenceController {
         return super.handlePreferenceTreeClick(preference);
     }
 
+    private BatteryTip findBatteryTip(@BatteryTip.TipType int type) {
+        for (BatteryTip batteryTip : mBatteryTips) {
+            if (batteryTip.getType() == type) {
+                return batteryTip;
+            }
+        }
+        return null;
+    }
+
     public void restoreInstanceState(Bundle bundle) {
         if (bundle != null) {
             List<BatteryTip> batteryTips = bundle.getParcelableArrayList(KEY_BATTERY_TIPS);
@@ -29,9 +29,10 @@ import androidx.annotation.VisibleForTesting;
 public class CardDatabaseHelper extends SQLiteOpenHelper {
     private static final String TAG = "CardDatabaseHelper";
     private static final String DATABASE_NAME = "homepage_cards.db";
-    private static final int DATABASE_VERSION = 7;
+    private static final int DATABASE_VERSION = 9;
 
     public static final String CARD_TABLE = "cards";
+    public static final String CARD_SNAPSHOT_TABLE = "card_snapshot";
 
     public interface CardColumns {
         /**
@@ -75,6 +76,81 @@ public class CardDatabaseHelper extends SQLiteOpenHelper {
         String DISMISSED_TIMESTAMP = "dismissed_timestamp";
     }
 
+    /**
+     * Columns of the last displayed cards, used to draw the homepage before the cards are loaded.
+     */
+    public interface CardSnapshotColumns {
+        /**
+         * Primary key. Name of the card.
+         */
+        String NAME = "name";
+
+        /**
+         * Position of the card in the displayed list.
+         */
+        String POSITION = "position";
+
+        /**
+         * Type of the card.
+         */
+        String TYPE = "type";
+
+        /**
+         * Score of the card.
+         */
+        String SCORE = "score";
+
+        /**
+         * URI of the slice card.
+         */
+        String SLICE_URI = "slice_uri";
+
+        /**
+         * Category of the card.
+         */
+        String CATEGORY = "category";
+
+        /**
+         * Package name of the card.
+         */
+        String PACKAGE_NAME = "package_name";
+
+        /**
+         * Application version of the package.
+         */
+        String APP_VERSION = "app_version";
+
+        /**
+         * Whether the card is displayed as a large card.
+         */
+        String IS_LARGE_CARD = "is_large_card";
+
+        /**
+         * Whether the slice of the card has an inline action.
+         */
+        String HAS_INLINE_ACTION = "has_inline_action";
+
+        /**
+         * View type of the card, one of the stable codes of {@link ContextualCardSnapshot}.
+         */
+        String VIEW_TYPE = "view_type";
+
+        /**
+         * The serialized slice of the card.
+         */
+        String SLICE_CONTENT = "slice_content";
+
+        /**
+         * Language tags of the locales the slice was rendered with.
+         */
+        String LOCALES = "locales";
+
+        /**
+         * Timestamp of the snapshot.
+         */
+        String TIMESTAMP = "timestamp";
+    }
+
     private static final String CREATE_CARD_TABLE =
             "CREATE TABLE "
                     + CARD_TABLE
@@ -97,6 +173,40 @@ public class CardDatabaseHelper extends SQLiteOpenHelper {
                     + " INTEGER"
                     + ");";
 
+    private static final String CREATE_CARD_SNAPSHOT_TABLE =
+            "CREATE TABLE "
+                    + CARD_SNAPSHOT_TABLE
+                    + "("
+                    + CardSnapshotColumns.NAME
+                    + " TEXT NOT NULL PRIMARY KEY, "
+                    + CardSnapshotColumns.POSITION
+                    + " INTEGER NOT NULL, "
+                    + CardSnapshotColumns.TYPE
+                    + " INTEGER NOT NULL, "
+                    + CardSnapshotColumns.SCORE
+                    + " DOUBLE NOT NULL, "
+                    + CardSnapshotColumns.SLICE_URI
+                    + " TEXT NOT NULL, "
+                    + CardSnapshotColumns.CATEGORY
+                    + " INTEGER DEFAULT 0, "
+                    + CardSnapshotColumns.PACKAGE_NAME
+                    + " TEXT, "
+                    + CardSnapshotColumns.APP_VERSION
+                    + " INTEGER, "
+                    + CardSnapshotColumns.IS_LARGE_CARD
+                    + " INTEGER DEFAULT 0, "
+                    + CardSnapshotColumns.HAS_INLINE_ACTION
+                    + " INTEGER DEFAULT 0, "
+                    + CardSnapshotColumns.VIEW_TYPE
+                    + " INTEGER DEFAULT 0, "
+                    + CardSnapshotColumns.SLICE_CONTENT
+                    + " BLOB NOT NULL, "
+                    + CardSnapshotColumns.LOCALES
+                    + " TEXT NOT NULL, "
+                    + CardSnapshotColumns.TIMESTAMP
+                    + " INTEGER NOT NULL"
+                    + ");";
+
     public CardDatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
     }
@@ -104,6 +214,7 @@ public class CardDatabaseHelper extends SQLiteOpenHelper {
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(CREATE_CARD_TABLE);
+        db.execSQL(CREATE_CARD_SNAPSHOT_TABLE);
     }
 
     @Override
@@ -111,6 +222,7 @@ public class CardDatabaseHelper extends SQLiteOpenHelper {
         if (oldVersion < newVersion) {
             Log.d(TAG, "Reconstructing DB from " + oldVersion + " to " + newVersion);
             db.execSQL("DROP TABLE IF EXISTS " + CARD_TABLE);
+            db.execSQL("DROP TABLE IF EXISTS " + CARD_SNAPSHOT_TABLE);
             onCreate(db);
         }
     }
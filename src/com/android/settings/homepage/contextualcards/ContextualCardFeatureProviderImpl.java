@@ -33,6 +33,10 @@ import com.android.settingslib.utils.ThreadUtils;
 public class ContextualCardFeatureProviderImpl implements ContextualCardFeatureProvider {
     private static final String TAG = "ContextualCardFeatureProvider";
 
+    // How long a dismissed card stays hidden.
+    //TODO(b/149542061): Make the dismissal duration configurable.
+    static final long DISMISSAL_DURATION_MS = DateUtils.DAY_IN_MILLIS;
+
     private final Context mContext;
 
     public ContextualCardFeatureProviderImpl(Context context) {
@@ -42,8 +46,7 @@ public class ContextualCardFeatureProviderImpl implements ContextualCardFeatureP
     @Override
     public Cursor getContextualCards() {
         final SQLiteDatabase db = CardDatabaseHelper.getInstance(mContext).getReadableDatabase();
-        //TODO(b/149542061): Make the dismissal duration configurable.
-        final long threshold = System.currentTimeMillis() - DateUtils.DAY_IN_MILLIS;
+        final long threshold = System.currentTimeMillis() - DISMISSAL_DURATION_MS;
         final String selection = CardDatabaseHelper.CardColumns.DISMISSED_TIMESTAMP + " < ? OR "
                 + CardDatabaseHelper.CardColumns.DISMISSED_TIMESTAMP + " IS NULL";
         final String[] selectionArgs = {String.valueOf(threshold)};
@@ -27,6 +27,7 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.Log;
 
@@ -36,17 +37,31 @@ import androidx.annotation.VisibleForTesting;
 import com.android.settings.R;
 import com.android.settings.homepage.contextualcards.logging.ContextualCardLogUtils;
 import com.android.settings.overlay.FeatureFactory;
+import com.android.settings.slices.SliceDataCache;
+import com.android.settings.utils.ThreadPoolUtils;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.utils.AsyncLoaderCompat;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
+/**
+ * Loads the contextual cards from {@link CardContentProvider} and keeps the cards whose slice can
+ * be bound.
+ *
+ * <p>The eligibility of the cards is checked in a bounded pool shared by all the loads. A card
+ * which is not checked within {@link #ELIGIBILITY_CHECKER_TIMEOUT_MS} does not hold back the
+ * others: it is delivered in a streamed result as soon as it is checked, provided it is checked
+ * within {@link #CARD_DEADLINE_MS}.
+ */
 public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>> {
 
     @VisibleForTesting
@@ -56,7 +71,14 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
     static final int CARD_CONTENT_LOADER_ID = 1;
 
     private static final String TAG = "ContextualCardLoader";
-    private static final long ELIGIBILITY_CHECKER_TIMEOUT_MS = 400;
+    @VisibleForTesting
+    static final long ELIGIBILITY_CHECKER_TIMEOUT_MS = 400;
+    @VisibleForTesting
+    static final long CARD_DEADLINE_MS = 1000;
+    private static final int MAX_POOL_SIZE = 4;
+    private static final long KEEP_ALIVE_SECONDS = 10L;
+
+    private static Executor sExecutor;
 
     private final ContentObserver mObserver = new ContentObserver(
             new Handler(Looper.getMainLooper())) {
@@ -73,10 +95,29 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
     Uri mNotifyUri;
 
     private final Context mContext;
+    private final Executor mExecutor;
+
+    // The fields below are guarded by this.
+    private int mLoadGeneration;
+    // The eligible cards of the current load, including the streamed ones.
+    private List<ContextualCard> mEligibleCards = new ArrayList<>();
+    // The checks of the current load which missed ELIGIBILITY_CHECKER_TIMEOUT_MS.
+    private final List<EligibleCardTask> mLateTasks = new ArrayList<>();
+    // The hidden cards of the current load, already logged as not shown.
+    private List<ContextualCard> mHiddenCards = new ArrayList<>();
+
+    // Only accessed in the main thread.
+    private List<ContextualCard> mStreamedResult;
 
     ContextualCardLoader(Context context) {
+        this(context, getSharedExecutor());
+    }
+
+    @VisibleForTesting
+    ContextualCardLoader(Context context, Executor executor) {
         super(context);
         mContext = context.getApplicationContext();
+        mExecutor = executor;
     }
 
     @Override
@@ -93,6 +134,26 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
     protected void onStopLoading() {
         super.onStopLoading();
         mContext.getContentResolver().unregisterContentObserver(mObserver);
+        synchronized (this) {
+            cancelLateTasksLocked();
+        }
+    }
+
+    @Override
+    public void deliverResult(List<ContextualCard> cards) {
+        super.deliverResult(cards);
+        if (cards != mStreamedResult) {
+            // Only stream the late cards once the cards checked in time have been delivered.
+            startStreamingLateCards();
+        }
+    }
+
+    /**
+     * @return whether {@code cards} is a streamed result, i.e. the previous result updated with
+     * the late cards.
+     */
+    boolean isStreamedResult(List<ContextualCard> cards) {
+        return cards != null && cards == mStreamedResult;
     }
 
     @Override
@@ -120,6 +181,10 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
                 }
             }
         }
+        // Read the data of all the Settings slices with one query before they are bound.
+        SliceDataCache.getInstance().prefetch(mContext, result.stream()
+                .map(ContextualCard::getSliceUri)
+                .collect(Collectors.toList()));
         return getDisplayableCards(result);
     }
 
@@ -127,9 +192,32 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
     @VisibleForTesting
     List<ContextualCard> getDisplayableCards(List<ContextualCard> candidates) {
         final List<ContextualCard> eligibleCards = filterEligibleCards(candidates);
+        final List<ContextualCard> hiddenCards = new ArrayList<>();
+        final List<ContextualCard> visibleCards = selectDisplayableCards(eligibleCards,
+                hiddenCards);
+
+        synchronized (this) {
+            mHiddenCards = new ArrayList<>(hiddenCards);
+        }
+        logHiddenCards(hiddenCards);
+        return visibleCards;
+    }
+
+    private void logHiddenCards(List<ContextualCard> hiddenCards) {
+        if (!CardContentProvider.DELETE_CARD_URI.equals(mNotifyUri)) {
+            final MetricsFeatureProvider metricsFeatureProvider =
+                    FeatureFactory.getFactory(mContext).getMetricsFeatureProvider();
+
+            metricsFeatureProvider.action(mContext,
+                    SettingsEnums.ACTION_CONTEXTUAL_CARD_NOT_SHOW,
+                    ContextualCardLogUtils.buildCardListLog(hiddenCards));
+        }
+    }
+
+    private List<ContextualCard> selectDisplayableCards(List<ContextualCard> eligibleCards,
+            List<ContextualCard> hiddenCards) {
         final List<ContextualCard> stickyCards = new ArrayList<>();
         final List<ContextualCard> visibleCards = new ArrayList<>();
-        final List<ContextualCard> hiddenCards = new ArrayList<>();
 
         final int maxCardCount = getCardCount();
         eligibleCards.forEach(card -> {
@@ -155,15 +243,6 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
             }
         });
         visibleCards.addAll(stickyCards);
-
-        if (!CardContentProvider.DELETE_CARD_URI.equals(mNotifyUri)) {
-            final MetricsFeatureProvider metricsFeatureProvider =
-                    FeatureFactory.getFactory(mContext).getMetricsFeatureProvider();
-
-            metricsFeatureProvider.action(mContext,
-                    SettingsEnums.ACTION_CONTEXTUAL_CARD_NOT_SHOW,
-                    ContextualCardLogUtils.buildCardListLog(hiddenCards));
-        }
         return visibleCards;
     }
 
@@ -184,46 +263,147 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
 
     @VisibleForTesting
     List<ContextualCard> filterEligibleCards(List<ContextualCard> candidates) {
+        final int generation;
+        synchronized (this) {
+            cancelLateTasksLocked();
+            generation = ++mLoadGeneration;
+            mEligibleCards = new ArrayList<>();
+        }
         if (candidates.isEmpty()) {
             return candidates;
         }
 
-        final ExecutorService executor = Executors.newFixedThreadPool(candidates.size());
-        final List<ContextualCard> cards = new ArrayList<>();
-        List<Future<ContextualCard>> eligibleCards = new ArrayList<>();
-
-        final List<EligibleCardChecker> checkers = candidates.stream()
-                .map(card -> new EligibleCardChecker(mContext, card))
-                .collect(Collectors.toList());
-        try {
-            eligibleCards = executor.invokeAll(checkers, ELIGIBILITY_CHECKER_TIMEOUT_MS,
-                    TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            Log.w(TAG, "Failed to get eligible states for all cards", e);
-        }
-        executor.shutdown();
-
-        // Collect future and eligible cards
-        for (int i = 0; i < eligibleCards.size(); i++) {
-            final Future<ContextualCard> cardFuture = eligibleCards.get(i);
-            if (cardFuture.isCancelled()) {
-                Log.w(TAG, "Timeout getting eligible state for card: "
-                        + candidates.get(i).getSliceUri());
-                continue;
-            }
+        final List<EligibleCardTask> tasks = new ArrayList<>(candidates.size());
+        for (ContextualCard card : candidates) {
+            final EligibleCardTask task = new EligibleCardTask(
+                    new EligibleCardChecker(mContext, card), card, generation);
+            tasks.add(task);
+            mExecutor.execute(task);
+        }
 
+        // Collect the cards checked in time, in the order of the candidates.
+        final long deadline = SystemClock.uptimeMillis() + ELIGIBILITY_CHECKER_TIMEOUT_MS;
+        final List<EligibleCardTask> lateTasks = new ArrayList<>();
+        final List<ContextualCard> cards = new ArrayList<>();
+        for (EligibleCardTask task : tasks) {
             try {
-                final ContextualCard card = cardFuture.get();
+                final ContextualCard card = task.get(
+                        Math.max(0, deadline - SystemClock.uptimeMillis()), TimeUnit.MILLISECONDS);
                 if (card != null) {
                     cards.add(card);
                 }
-            } catch (Exception e) {
+            } catch (TimeoutException e) {
+                Log.w(TAG, "Timeout getting eligible state for card, checking it later: "
+                        + task.mCandidate.getSliceUri());
+                lateTasks.add(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Log.w(TAG, "Interrupted getting eligible states", e);
+                lateTasks.add(task);
+            } catch (ExecutionException e) {
                 Log.w(TAG, "Failed to get eligible state for card", e);
             }
         }
+
+        synchronized (this) {
+            if (generation == mLoadGeneration) {
+                mEligibleCards.addAll(cards);
+                mLateTasks.addAll(lateTasks);
+            } else {
+                lateTasks.forEach(task -> task.cancel(false /* mayInterruptIfRunning */));
+            }
+        }
         return cards;
     }
 
+    private void startStreamingLateCards() {
+        final List<ContextualCard> newCards = new ArrayList<>();
+        synchronized (this) {
+            for (EligibleCardTask task : new ArrayList<>(mLateTasks)) {
+                task.mStreaming = true;
+                if (task.isDone()) {
+                    collectLateCardLocked(task, newCards);
+                }
+            }
+        }
+        if (!newCards.isEmpty()) {
+            deliverStreamedCards(newCards);
+        }
+    }
+
+    private void onLateCardChecked(EligibleCardTask task) {
+        final List<ContextualCard> newCards = new ArrayList<>(1);
+        synchronized (this) {
+            if (!task.mStreaming || task.mGeneration != mLoadGeneration) {
+                // Not late, or collected by startStreamingLateCards().
+                return;
+            }
+            collectLateCardLocked(task, newCards);
+        }
+        if (!newCards.isEmpty()) {
+            ThreadUtils.postOnMainThread(() -> deliverStreamedCards(newCards));
+        }
+    }
+
+    private void collectLateCardLocked(EligibleCardTask task, List<ContextualCard> newCards) {
+        if (!mLateTasks.remove(task)) {
+            return;
+        }
+        final ContextualCard card = task.getCardOrNull();
+        if (card == null) {
+            return;
+        }
+        if (task.mElapsedMs > CARD_DEADLINE_MS) {
+            Log.w(TAG, "Card missed its deadline: " + card.getSliceUri());
+            return;
+        }
+        mEligibleCards.add(card);
+        newCards.add(card);
+    }
+
+    private void deliverStreamedCards(List<ContextualCard> newCards) {
+        if (!isStarted()) {
+            return;
+        }
+        final List<ContextualCard> eligibleCards;
+        synchronized (this) {
+            eligibleCards = new ArrayList<>(mEligibleCards);
+        }
+        final List<ContextualCard> hiddenCards = new ArrayList<>();
+        final List<ContextualCard> result = selectDisplayableCards(eligibleCards, hiddenCards);
+        final List<ContextualCard> newHiddenCards = new ArrayList<>();
+        synchronized (this) {
+            // Only log the cards hidden by this batch, the others are already logged.
+            for (ContextualCard card : hiddenCards) {
+                if (!mHiddenCards.contains(card)) {
+                    newHiddenCards.add(card);
+                }
+            }
+            mHiddenCards = hiddenCards;
+        }
+        if (!newHiddenCards.isEmpty()) {
+            logHiddenCards(newHiddenCards);
+        }
+        if (Collections.disjoint(result, newCards)) {
+            return;
+        }
+        mStreamedResult = result;
+        deliverResult(result);
+    }
+
+    private void cancelLateTasksLocked() {
+        final List<EligibleCardTask> lateTasks = new ArrayList<>(mLateTasks);
+        mLateTasks.clear();
+        lateTasks.forEach(task -> task.cancel(false /* mayInterruptIfRunning */));
+    }
+
+    private static synchronized Executor getSharedExecutor() {
+        if (sExecutor == null) {
+            sExecutor = ThreadPoolUtils.newWorkerPool(MAX_POOL_SIZE, KEEP_ALIVE_SECONDS);
+        }
+        return sExecutor;
+    }
+
     private boolean isLargeCard(ContextualCard card) {
         return card.getSliceUri().equals(CONTEXTUAL_WIFI_SLICE_URI)
                 || card.getSliceUri().equals(BLUETOOTH_DEVICES_SLICE_URI);
@@ -231,5 +411,52 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
 
     public interface CardContentLoaderListener {
         void onFinishCardLoading(List<ContextualCard> contextualCards);
+
+        /**
+         * Called when cards checked after {@link #ELIGIBILITY_CHECKER_TIMEOUT_MS} update the
+         * result delivered to {@link #onFinishCardLoading}.
+         */
+        default void onStreamedCardLoading(List<ContextualCard> contextualCards) {
+        }
+    }
+
+    private class EligibleCardTask extends FutureTask<ContextualCard> {
+        private final ContextualCard mCandidate;
+        private final int mGeneration;
+        private volatile long mStartTime;
+        private volatile long mElapsedMs;
+        // Guarded by ContextualCardLoader.this.
+        private boolean mStreaming;
+
+        EligibleCardTask(EligibleCardChecker checker, ContextualCard candidate, int generation) {
+            super(checker);
+            mCandidate = candidate;
+            mGeneration = generation;
+        }
+
+        @Override
+        public void run() {
+            // The deadline of the card starts when it is checked, not when it is queued.
+            mStartTime = SystemClock.uptimeMillis();
+            super.run();
+        }
+
+        @Override
+        protected void done() {
+            mElapsedMs = SystemClock.uptimeMillis() - mStartTime;
+            onLateCardChecked(this);
+        }
+
+        ContextualCard getCardOrNull() {
+            if (isCancelled()) {
+                return null;
+            }
+            try {
+                return get();
+            } catch (InterruptedException | ExecutionException e) {
+                Log.w(TAG, "Failed to get eligible state for card", e);
+                return null;
+            }
+        }
     }
 }
@@ -50,6 +50,7 @@ import com.android.settingslib.core.lifecycle.LifecycleObserver;
 import com.android.settingslib.core.lifecycle.events.OnSaveInstanceState;
 import com.android.settingslib.core.lifecycle.events.OnStart;
 import com.android.settingslib.core.lifecycle.events.OnStop;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -85,6 +86,7 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
     private final Context mContext;
     private final Lifecycle mLifecycle;
     private final List<LifecycleObserver> mLifecycleObservers;
+    private final ContextualCardSnapshot mSnapshot;
     private ContextualCardUpdateListener mListener;
 
     @VisibleForTesting
@@ -97,6 +99,8 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
     boolean mIsFirstLaunch;
     @VisibleForTesting
     List<String> mSavedCards;
+    @VisibleForTesting
+    boolean mIsSnapshotShown;
 
     public ContextualCardManager(Context context, Lifecycle lifecycle, Bundle savedInstanceState) {
         mContext = context;
@@ -104,6 +108,7 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
         mContextualCards = new ArrayList<>();
         mLifecycleObservers = new ArrayList<>();
         mControllerRendererPool = new ControllerRendererPool();
+        mSnapshot = new ContextualCardSnapshot(mContext);
         mLifecycle.addObserver(this);
         if (savedInstanceState == null) {
             mIsFirstLaunch = true;
@@ -123,6 +128,10 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
             return;
         }
         mStartTime = System.currentTimeMillis();
+        if (mIsFirstLaunch && mSavedCards == null && mContextualCards.isEmpty()) {
+            // Draw the last displayed cards while the slices are bound again.
+            loadSnapshot();
+        }
         final CardContentLoaderCallbacks cardContentLoaderCallbacks =
                 new CardContentLoaderCallbacks(mContext);
         cardContentLoaderCallbacks.setListener(this);
@@ -139,6 +148,25 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
         }
     }
 
+    private void loadSnapshot() {
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final List<ContextualCard> cards = mSnapshot.load();
+            ThreadUtils.postOnMainThread(() -> onSnapshotLoaded(cards));
+        });
+    }
+
+    @VisibleForTesting
+    void onSnapshotLoaded(List<ContextualCard> cards) {
+        if (!mIsFirstLaunch || cards.isEmpty()) {
+            // The loaded cards are already shown.
+            return;
+        }
+        Log.d(TAG, "Snapshot loaded in " + (System.currentTimeMillis() - mStartTime));
+        mIsSnapshotShown = true;
+        onContextualCardUpdated(cards.stream()
+                .collect(groupingBy(ContextualCard::getCardType)));
+    }
+
     private void loadCardControllers() {
         for (ContextualCard card : mContextualCards) {
             setupController(card.getCardType());
@@ -243,6 +271,7 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
         if (!mIsFirstLaunch) {
             onContextualCardUpdated(cardsToKeep.stream()
                     .collect(groupingBy(ContextualCard::getCardType)));
+            saveSnapshot();
             metricsFeatureProvider.action(mContext,
                     SettingsEnums.ACTION_CONTEXTUAL_CARD_SHOW,
                     ContextualCardLogUtils.buildCardListLog(cardsToKeep));
@@ -250,13 +279,16 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
         }
 
         final long timeoutLimit = getCardLoaderTimeout();
-        if (loadTime <= timeoutLimit) {
+        // Once the snapshot is shown, the loaded cards replace it however long they took.
+        if (loadTime <= timeoutLimit || mIsSnapshotShown) {
             onContextualCardUpdated(cards.stream()
                     .collect(groupingBy(ContextualCard::getCardType)));
+            saveSnapshot();
             metricsFeatureProvider.action(mContext,
                     SettingsEnums.ACTION_CONTEXTUAL_CARD_SHOW,
                     ContextualCardLogUtils.buildCardListLog(cards));
-        } else {
+        }
+        if (loadTime > timeoutLimit) {
             // log timeout occurrence
             metricsFeatureProvider.action(SettingsEnums.PAGE_UNKNOWN,
                     SettingsEnums.ACTION_CONTEXTUAL_CARD_LOAD_TIMEOUT,
@@ -271,6 +303,27 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
         mIsFirstLaunch = false;
     }
 
+    @Override
+    public void onStreamedCardLoading(List<ContextualCard> cards) {
+        if (mIsFirstLaunch) {
+            // No result has been shown yet, e.g. a cached streamed result is redelivered.
+            onFinishCardLoading(cards);
+            return;
+        }
+        Log.d(TAG, "Streamed cards loaded after " + (System.currentTimeMillis() - mStartTime));
+        onContextualCardUpdated(cards.stream()
+                .collect(groupingBy(ContextualCard::getCardType)));
+        saveSnapshot();
+    }
+
+    /**
+     * Saves the displayed cards with their view types, so the next launch can draw them before
+     * they are loaded.
+     */
+    private void saveSnapshot() {
+        mSnapshot.saveInBackground(new ArrayList<>(mContextualCards));
+    }
+
     @Override
     public void onSaveInstanceState(Bundle outState) {
         final ArrayList<String> cards = mContextualCards.stream()
@@ -412,7 +465,13 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
         @Override
         public void onLoadFinished(@NonNull Loader<List<ContextualCard>> loader,
                 List<ContextualCard> contextualCards) {
-            if (mListener != null) {
+            if (mListener == null) {
+                return;
+            }
+            if (loader instanceof ContextualCardLoader
+                    && ((ContextualCardLoader) loader).isStreamedResult(contextualCards)) {
+                mListener.onStreamedCardLoading(contextualCards);
+            } else {
                 mListener.onFinishCardLoading(contextualCards);
             }
         }
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import static com.android.settings.homepage.contextualcards.CardDatabaseHelper.CARD_SNAPSHOT_TABLE;
+import static com.android.settings.homepage.contextualcards.CardDatabaseHelper.CARD_TABLE;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.net.Uri;
+import android.os.LocaleList;
+import android.text.format.DateUtils;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+import androidx.slice.Slice;
+import androidx.slice.SliceUtils;
+
+import com.android.settings.homepage.contextualcards.CardDatabaseHelper.CardColumns;
+import com.android.settings.homepage.contextualcards.CardDatabaseHelper.CardSnapshotColumns;
+import com.android.settings.homepage.contextualcards.slices.SliceContextualCardRenderer;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persists the last displayed slice cards with their serialized slices in
+ * {@link CardDatabaseHelper#CARD_SNAPSHOT_TABLE}, so the homepage can draw them before
+ * {@link ContextualCardLoader} has bound the slices again.
+ *
+ * <p>The actions of a restored slice do nothing, they are replaced as soon as the live slice is
+ * bound. A snapshot taken with other locales or older than {@link #MAX_AGE_MS} is ignored, and
+ * the cards dismissed since the snapshot was taken are not restored.
+ */
+public class ContextualCardSnapshot {
+    private static final String TAG = "ContextualCardSnapshot";
+    private static final String ENCODING = "UTF-8";
+    private static final int MAX_IMAGE_SIZE_PX = 256;
+
+    @VisibleForTesting
+    static final long MAX_AGE_MS = DateUtils.DAY_IN_MILLIS;
+
+    // The stable codes of the view types, the layout ids may change with the package version.
+    private static final int VIEW_TYPE_FULL_WIDTH = 0;
+    private static final int VIEW_TYPE_HALF_WIDTH = 1;
+    private static final int VIEW_TYPE_STICKY = 2;
+
+    // Hides the cards dismissed within ContextualCardFeatureProviderImpl#DISMISSAL_DURATION_MS.
+    private static final String NOT_DISMISSED_SELECTION = CardSnapshotColumns.NAME
+            + " NOT IN (SELECT " + CardColumns.NAME + " FROM " + CARD_TABLE
+            + " WHERE " + CardColumns.DISMISSED_TIMESTAMP + " >= ?)";
+
+    private final Context mContext;
+    private final AtomicInteger mSaveGeneration = new AtomicInteger();
+
+    public ContextualCardSnapshot(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * @return the cards of the snapshot in their displayed order, or an empty list if there is
+     * no valid snapshot.
+     */
+    @WorkerThread
+    public List<ContextualCard> load() {
+        final List<ContextualCard> cards = new ArrayList<>();
+        final String locales = LocaleList.getDefault().toLanguageTags();
+        final long now = System.currentTimeMillis();
+        final long minTimestamp = now - MAX_AGE_MS;
+        final String[] selectionArgs = {String.valueOf(
+                now - ContextualCardFeatureProviderImpl.DISMISSAL_DURATION_MS)};
+        try (Cursor cursor = getDatabase().query(CARD_SNAPSHOT_TABLE, null /* columns */,
+                NOT_DISMISSED_SELECTION, selectionArgs, null /* groupBy */,
+                null /* having */, CardSnapshotColumns.POSITION /* orderBy */)) {
+            while (cursor.moveToNext()) {
+                if (!locales.equals(cursor.getString(
+                        cursor.getColumnIndex(CardSnapshotColumns.LOCALES)))
+                        || cursor.getLong(cursor.getColumnIndex(CardSnapshotColumns.TIMESTAMP))
+                        < minTimestamp) {
+                    return new ArrayList<>();
+                }
+                final ContextualCard card = buildCard(cursor);
+                if (card != null) {
+                    cards.add(card);
+                }
+            }
+        } catch (SQLiteException e) {
+            Log.w(TAG, "Failed to load the card snapshot", e);
+            return new ArrayList<>();
+        }
+        return cards;
+    }
+
+    /**
+     * Replaces the snapshot with {@code cards} in a background thread. A save is skipped when a
+     * later one is requested before it runs.
+     */
+    public void saveInBackground(List<ContextualCard> cards) {
+        final int generation = mSaveGeneration.incrementAndGet();
+        ThreadUtils.postOnBackgroundThread(() -> {
+            synchronized (this) {
+                if (generation == mSaveGeneration.get()) {
+                    save(cards);
+                }
+            }
+        });
+    }
+
+    /**
+     * Replaces the snapshot with {@code cards}. Only the slice cards with a bound slice are kept.
+     */
+    @WorkerThread
+    public void save(List<ContextualCard> cards) {
+        final List<ContentValues> rows = new ArrayList<>(cards.size());
+        final String locales = LocaleList.getDefault().toLanguageTags();
+        final long timestamp = System.currentTimeMillis();
+        for (ContextualCard card : cards) {
+            if (card.getCardType() != ContextualCard.CardType.SLICE || card.getSlice() == null) {
+                continue;
+            }
+            final byte[] content = serializeSlice(card.getSlice());
+            if (content == null) {
+                continue;
+            }
+            final ContentValues values = new ContentValues();
+            values.put(CardSnapshotColumns.NAME, card.getName());
+            values.put(CardSnapshotColumns.POSITION, rows.size());
+            values.put(CardSnapshotColumns.TYPE, card.getCardType());
+            values.put(CardSnapshotColumns.SCORE, card.getRankingScore());
+            values.put(CardSnapshotColumns.SLICE_URI, card.getTextSliceUri());
+            values.put(CardSnapshotColumns.CATEGORY, card.getCategory());
+            values.put(CardSnapshotColumns.PACKAGE_NAME, card.getPackageName());
+            values.put(CardSnapshotColumns.APP_VERSION, card.getAppVersion());
+            values.put(CardSnapshotColumns.IS_LARGE_CARD, card.isLargeCard() ? 1 : 0);
+            values.put(CardSnapshotColumns.HAS_INLINE_ACTION, card.hasInlineAction() ? 1 : 0);
+            values.put(CardSnapshotColumns.VIEW_TYPE, toViewTypeCode(card.getViewType()));
+            values.put(CardSnapshotColumns.SLICE_CONTENT, content);
+            values.put(CardSnapshotColumns.LOCALES, locales);
+            values.put(CardSnapshotColumns.TIMESTAMP, timestamp);
+            rows.add(values);
+        }
+
+        try {
+            final SQLiteDatabase database = getDatabase();
+            database.beginTransaction();
+            try {
+                database.delete(CARD_SNAPSHOT_TABLE, null /* whereClause */,
+                        null /* whereArgs */);
+                for (ContentValues values : rows) {
+                    database.insert(CARD_SNAPSHOT_TABLE, null /* nullColumnHack */, values);
+                }
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+        } catch (SQLiteException e) {
+            Log.w(TAG, "Failed to save the card snapshot", e);
+        }
+    }
+
+    private SQLiteDatabase getDatabase() {
+        return CardDatabaseHelper.getInstance(mContext).getWritableDatabase();
+    }
+
+    private ContextualCard buildCard(Cursor cursor) {
+        final Slice slice = parseSlice(cursor.getBlob(
+                cursor.getColumnIndex(CardSnapshotColumns.SLICE_CONTENT)));
+        if (slice == null) {
+            return null;
+        }
+        return new ContextualCard.Builder()
+                .setName(cursor.getString(cursor.getColumnIndex(CardSnapshotColumns.NAME)))
+                .setCardType(cursor.getInt(cursor.getColumnIndex(CardSnapshotColumns.TYPE)))
+                .setRankingScore(
+                        cursor.getDouble(cursor.getColumnIndex(CardSnapshotColumns.SCORE)))
+                .setSliceUri(Uri.parse(
+                        cursor.getString(cursor.getColumnIndex(CardSnapshotColumns.SLICE_URI))))
+                .setCategory(cursor.getInt(cursor.getColumnIndex(CardSnapshotColumns.CATEGORY)))
+                .setPackageName(
+                        cursor.getString(cursor.getColumnIndex(CardSnapshotColumns.PACKAGE_NAME)))
+                .setAppVersion(
+                        cursor.getLong(cursor.getColumnIndex(CardSnapshotColumns.APP_VERSION)))
+                .setIsLargeCard(
+                        cursor.getInt(cursor.getColumnIndex(CardSnapshotColumns.IS_LARGE_CARD))
+                                == 1)
+                .setHasInlineAction(cursor.getInt(
+                        cursor.getColumnIndex(CardSnapshotColumns.HAS_INLINE_ACTION)) == 1)
+                .setViewType(fromViewTypeCode(
+                        cursor.getInt(cursor.getColumnIndex(CardSnapshotColumns.VIEW_TYPE))))
+                .setSlice(slice)
+                .build();
+    }
+
+    private static int toViewTypeCode(int viewType) {
+        if (viewType == SliceContextualCardRenderer.VIEW_TYPE_HALF_WIDTH) {
+            return VIEW_TYPE_HALF_WIDTH;
+        } else if (viewType == SliceContextualCardRenderer.VIEW_TYPE_STICKY) {
+            return VIEW_TYPE_STICKY;
+        }
+        return VIEW_TYPE_FULL_WIDTH;
+    }
+
+    private static int fromViewTypeCode(int code) {
+        switch (code) {
+            case VIEW_TYPE_HALF_WIDTH:
+                return SliceContextualCardRenderer.VIEW_TYPE_HALF_WIDTH;
+            case VIEW_TYPE_STICKY:
+                return SliceContextualCardRenderer.VIEW_TYPE_STICKY;
+            default:
+                return SliceContextualCardRenderer.VIEW_TYPE_FULL_WIDTH;
+        }
+    }
+
+    @VisibleForTesting
+    byte[] serializeSlice(Slice slice) {
+        final SliceUtils.SerializeOptions options = new SliceUtils.SerializeOptions()
+                .setActionMode(SliceUtils.SerializeOptions.MODE_CONVERT)
+                .setImageMode(SliceUtils.SerializeOptions.MODE_CONVERT)
+                .setMaxImageWidth(MAX_IMAGE_SIZE_PX)
+                .setMaxImageHeight(MAX_IMAGE_SIZE_PX);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            SliceUtils.serializeSlice(mContext, slice, output, options);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to serialize slice " + slice.getUri(), e);
+            return null;
+        }
+        return output.toByteArray();
+    }
+
+    @VisibleForTesting
+    Slice parseSlice(byte[] content) {
+        try {
+            return SliceUtils.parseSlice(mContext, new ByteArrayInputStream(content), ENCODING,
+                    (actionUri, context, intent) -> {
+                        // The live slice replaces the snapshot before any action is needed.
+                    });
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to parse slice", e);
+            return null;
+        }
+    }
+}
@@ -210,7 +210,8 @@ public class BatteryFixSlice implements CustomSliceable {
                 /* includeBatteryHistory */ false);
         final BatteryUsageStats batteryUsageStats = statsLoader.loadInBackground();
         final BatteryTipLoader loader = new BatteryTipLoader(context, batteryUsageStats);
-        final List<BatteryTip> batteryTips = loader.loadInBackground();
+        // Persisted as the current tip, so wait for every detector.
+        final List<BatteryTip> batteryTips = loader.loadAllTips();
         for (BatteryTip batteryTip : batteryTips) {
             if (batteryTip.getState() != BatteryTip.StateType.INVISIBLE) {
                 context.getSharedPreferences(PREFS, MODE_PRIVATE)
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network;
+
+import android.content.Context;
+import android.os.PersistableBundle;
+import android.telephony.CarrierConfigManager;
+import android.telephony.SubscriptionManager;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A process wide cache of the carrier configs, keyed by subscription id.
+ *
+ * <p>Each {@link CarrierConfigManager#getConfigForSubId(int)} is a binder call building a new
+ * {@link PersistableBundle}, so the preferences of a page share one snapshot of the carrier
+ * config of each subscription instead. The snapshot is dropped by
+ * {@link CarrierConfigChangedReceiver} when the carrier config of its subscription changes.
+ *
+ * <p>The returned bundles are shared and must not be modified.
+ */
+public class CarrierConfigCache {
+    private static final String TAG = "CarrierConfigCache";
+
+    private static CarrierConfigCache sInstance;
+
+    private final CarrierConfigManager mCarrierConfigManager;
+    private final Map<Integer, PersistableBundle> mConfigs = new ConcurrentHashMap<>();
+    // Increased on each invalidation, so a config read before it is not cached after it.
+    private volatile int mGeneration;
+
+    /**
+     * Get the cache of the carrier configs
+     *
+     * @return the process wide instance
+     */
+    public static synchronized CarrierConfigCache getInstance(Context context) {
+        if (sInstance == null) {
+            final Context appContext = context.getApplicationContext();
+            sInstance = new CarrierConfigCache(
+                    appContext.getSystemService(CarrierConfigManager.class));
+            new CarrierConfigChangedReceiver(sInstance::invalidate).registerOn(appContext);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Replace the process wide instance by a cache reading the configs from
+     * {@code carrierConfigManager}, which isn't invalidated by the carrier config changes.
+     */
+    @VisibleForTesting
+    public static synchronized void setTestInstance(CarrierConfigManager carrierConfigManager) {
+        sInstance = new CarrierConfigCache(carrierConfigManager);
+    }
+
+    /**
+     * Drop the process wide instance, so the instance set by {@link #setTestInstance} doesn't
+     * leak into the other tests.
+     */
+    @VisibleForTesting
+    public static synchronized void resetInstance() {
+        sInstance = null;
+    }
+
+    private CarrierConfigCache(CarrierConfigManager carrierConfigManager) {
+        mCarrierConfigManager = carrierConfigManager;
+    }
+
+    /**
+     * Get carrier config based on specific subscription id.
+     *
+     * @param subId is the subscription id
+     * @return {@link PersistableBundle} of carrier config, or {@code null} when carrier config
+     * is not available.
+     */
+    public PersistableBundle getConfigForSubId(int subId) {
+        if (mCarrierConfigManager == null) {
+            return null;
+        }
+        if (!SubscriptionManager.isValidSubscriptionId(subId)) {
+            // Not cached, the invalidations are per subscription.
+            return mCarrierConfigManager.getConfigForSubId(subId);
+        }
+        PersistableBundle config = mConfigs.get(subId);
+        if (config != null) {
+            return config;
+        }
+        final int generation = mGeneration;
+        config = mCarrierConfigManager.getConfigForSubId(subId);
+        if (config != null && generation == mGeneration) {
+            mConfigs.put(subId, config);
+        }
+        return config;
+    }
+
+    /**
+     * @return the boolean value of {@code key} in the carrier config of {@code subId}, or
+     * {@code defaultValue} when carrier config is not available.
+     */
+    public boolean getBoolean(int subId, String key, boolean defaultValue) {
+        final PersistableBundle config = getConfigForSubId(subId);
+        return config != null ? config.getBoolean(key, defaultValue) : defaultValue;
+    }
+
+    /**
+     * @return the int value of {@code key} in the carrier config of {@code subId}, or
+     * {@code defaultValue} when carrier config is not available.
+     */
+    public int getInt(int subId, String key, int defaultValue) {
+        final PersistableBundle config = getConfigForSubId(subId);
+        return config != null ? config.getInt(key, defaultValue) : defaultValue;
+    }
+
+    /**
+     * @return the String value of {@code key} in the carrier config of {@code subId}, or
+     * {@code null} when carrier config is not available.
+     */
+    public String getString(int subId, String key) {
+        final PersistableBundle config = getConfigForSubId(subId);
+        return config != null ? config.getString(key) : null;
+    }
+
+    /**
+     * @return the String array value of {@code key} in the carrier config of {@code subId}, or
+     * {@code null} when carrier config is not available.
+     */
+    public String[] getStringArray(int subId, String key) {
+        final PersistableBundle config = getConfigForSubId(subId);
+        return config != null ? config.getStringArray(key) : null;
+    }
+
+    /**
+     * Drop the cached carrier config of {@code subId}, or all of them when {@code subId} isn't
+     * a valid subscription id.
+     */
+    public void invalidate(int subId) {
+        mGeneration++;
+        if (SubscriptionManager.isValidSubscriptionId(subId)) {
+            mConfigs.remove(subId);
+        } else {
+            mConfigs.clear();
+        }
+        Log.d(TAG, "invalidate subId: " + subId);
+    }
+}
@@ -31,10 +31,20 @@ public class CarrierConfigChangedReceiver extends BroadcastReceiver {
     private static final String ACTION_CARRIER_CONFIG_CHANGED =
             CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED;
 
-    private final CountDownLatch mLatch;
+    /** Listener of the carrier config changes. */
+    public interface CarrierConfigChangedListener {
+        /** Called when the carrier config of {@code subId} changed. */
+        void onCarrierConfigChanged(int subId);
+    }
+
+    private final CarrierConfigChangedListener mListener;
 
     public CarrierConfigChangedReceiver(CountDownLatch latch) {
-        mLatch = latch;
+        this(subId -> latch.countDown());
+    }
+
+    public CarrierConfigChangedReceiver(CarrierConfigChangedListener listener) {
+        mListener = listener;
     }
 
     public void registerOn(Context context) {
@@ -56,7 +66,7 @@ public class CarrierConfigChangedReceiver extends BroadcastReceiver {
         if (intent.hasExtra(CarrierConfigManager.EXTRA_SUBSCRIPTION_INDEX)) {
             int subId = intent.getIntExtra(CarrierConfigManager.EXTRA_SUBSCRIPTION_INDEX, -1);
             Log.i(TAG, "subId from config changed: " + subId);
-            mLatch.countDown();
+            mListener.onCarrierConfigChanged(subId);
         }
     }
 }
@@ -58,6 +58,11 @@ public class NetworkDashboardFragment extends DashboardFragment implements
         return TAG;
     }
 
+    @Override
+    protected boolean isParalleledControllers() {
+        return true;
+    }
+
     @Override
     protected int getPreferenceScreenResId() {
         if (Utils.isProviderModelEnabled(getContext())) {
@@ -69,6 +69,7 @@ import com.android.settings.wifi.ConnectedWifiEntryPreference;
 import com.android.settings.wifi.WifiConfigUiBase2;
 import com.android.settings.wifi.WifiConnectListener;
 import com.android.settings.wifi.WifiDialog2;
+import com.android.settings.wifi.WifiEntryPreferenceReconciler;
 import com.android.settings.wifi.WifiPickerTrackerHelper;
 import com.android.settings.wifi.WifiUtils;
 import com.android.settings.wifi.details2.WifiNetworkDetailsFragment2;
@@ -86,6 +87,7 @@ import com.android.wifitrackerlib.WifiEntry;
 import com.android.wifitrackerlib.WifiEntry.ConnectCallback;
 import com.android.wifitrackerlib.WifiPickerTracker;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -806,85 +808,44 @@ public class NetworkProviderSettings extends RestrictedSettingsFragment
             return;
         }
 
-        boolean hasAvailableWifiEntries = false;
         mWifiEntryPreferenceCategory.setVisible(true);
 
         final WifiEntry connectedEntry = mWifiPickerTracker.getConnectedWifiEntry();
         PreferenceCategory connectedWifiPreferenceCategory = getConnectedWifiPreferenceCategory();
         connectedWifiPreferenceCategory.setVisible(connectedEntry != null);
-        if (connectedEntry != null) {
-            final LongPressWifiEntryPreference connectedPref =
-                    connectedWifiPreferenceCategory.findPreference(connectedEntry.getKey());
-            if (connectedPref == null || connectedPref.getWifiEntry() != connectedEntry) {
-                connectedWifiPreferenceCategory.removeAll();
-                final ConnectedWifiEntryPreference pref =
-                        createConnectedWifiEntryPreference(connectedEntry);
-                pref.setKey(connectedEntry.getKey());
-                pref.refresh();
-                connectedWifiPreferenceCategory.addPreference(pref);
-                pref.setOnPreferenceClickListener(preference -> {
-                    if (connectedEntry.canSignIn()) {
-                        connectedEntry.signIn(null /* callback */);
-                    } else {
-                        launchNetworkDetailsFragment(pref);
-                    }
-                    return true;
-                });
-                pref.setOnGearClickListener(preference -> {
-                    launchNetworkDetailsFragment(pref);
-                });
-
-                if (mClickedConnect) {
-                    mClickedConnect = false;
-                    scrollToPreference(connectedWifiPreferenceCategory);
-                }
-            }
-        } else {
-            connectedWifiPreferenceCategory.removeAll();
-        }
-
-        int index = 0;
-        cacheRemoveAllPrefs(mWifiEntryPreferenceCategory);
-        List<WifiEntry> wifiEntries = mWifiPickerTracker.getWifiEntries();
-        for (WifiEntry wifiEntry : wifiEntries) {
-            hasAvailableWifiEntries = true;
-
-            String key = wifiEntry.getKey();
-            LongPressWifiEntryPreference pref =
-                    (LongPressWifiEntryPreference) getCachedPreference(key);
-            if (pref != null) {
-                if (pref.getWifiEntry() == wifiEntry) {
-                    pref.setOrder(index++);
-                    continue;
-                } else {
-                    // Create a new preference if the underlying WifiEntry object has changed
-                    removePreference(key);
-                }
-            }
-
-            pref = createLongPressWifiEntryPreference(wifiEntry);
-            pref.setKey(wifiEntry.getKey());
-            pref.setOrder(index++);
-            pref.refresh();
-
-            if (wifiEntry.getHelpUriString() != null) {
-                pref.setOnButtonClickListener(preference -> {
-                    openSubscriptionHelpPage(wifiEntry);
-                });
-            }
-            mWifiEntryPreferenceCategory.addPreference(pref);
-        }
-        removeCachedPrefs(mWifiEntryPreferenceCategory);
-
+        final int connectedPrefCreated = WifiEntryPreferenceReconciler.reconcile(
+                connectedWifiPreferenceCategory,
+                connectedEntry != null
+                        ? Collections.singletonList(connectedEntry)
+                        : Collections.emptyList(),
+                this::createConnectedPreference);
+        if (connectedPrefCreated > 0 && mClickedConnect) {
+            mClickedConnect = false;
+            scrollToPreference(connectedWifiPreferenceCategory);
+        }
+
+        final List<WifiEntry> wifiEntries = mWifiPickerTracker.getWifiEntries();
+        final boolean hasAvailableWifiEntries = !wifiEntries.isEmpty();
+        WifiEntryPreferenceReconciler.reconcile(mWifiEntryPreferenceCategory, wifiEntries,
+                this::createWifiEntryPreference);
+        int index = wifiEntries.size();
+
+        Preference emptyPref = mWifiEntryPreferenceCategory.findPreference(
+                PREF_KEY_EMPTY_WIFI_LIST);
         if (!hasAvailableWifiEntries) {
             setProgressBarVisible(true);
-            Preference pref = new Preference(getPrefContext());
-            pref.setSelectable(false);
-            pref.setSummary(R.string.wifi_empty_list_wifi_on);
-            pref.setOrder(index++);
-            pref.setKey(PREF_KEY_EMPTY_WIFI_LIST);
-            mWifiEntryPreferenceCategory.addPreference(pref);
+            if (emptyPref == null) {
+                emptyPref = new Preference(getPrefContext());
+                emptyPref.setSelectable(false);
+                emptyPref.setSummary(R.string.wifi_empty_list_wifi_on);
+                emptyPref.setKey(PREF_KEY_EMPTY_WIFI_LIST);
+                mWifiEntryPreferenceCategory.addPreference(emptyPref);
+            }
+            emptyPref.setOrder(index++);
         } else {
+            if (emptyPref != null) {
+                mWifiEntryPreferenceCategory.removePreference(emptyPref);
+            }
             // Continuing showing progress bar for an additional delay to overlap with animation
             getView().postDelayed(mHideProgressBarRunnable, 1700 /* delay millis */);
         }
@@ -915,6 +876,35 @@ public class NetworkProviderSettings extends RestrictedSettingsFragment
         return new FirstWifiEntryPreference(getPrefContext(), wifiEntry, this);
     }
 
+    private LongPressWifiEntryPreference createConnectedPreference(WifiEntry connectedEntry) {
+        final ConnectedWifiEntryPreference pref =
+                createConnectedWifiEntryPreference(connectedEntry);
+        pref.refresh();
+        pref.setOnPreferenceClickListener(preference -> {
+            if (connectedEntry.canSignIn()) {
+                connectedEntry.signIn(null /* callback */);
+            } else {
+                launchNetworkDetailsFragment(pref);
+            }
+            return true;
+        });
+        pref.setOnGearClickListener(preference -> {
+            launchNetworkDetailsFragment(pref);
+        });
+        return pref;
+    }
+
+    private LongPressWifiEntryPreference createWifiEntryPreference(WifiEntry wifiEntry) {
+        final LongPressWifiEntryPreference pref = createLongPressWifiEntryPreference(wifiEntry);
+        pref.refresh();
+        if (wifiEntry.getHelpUriString() != null) {
+            pref.setOnButtonClickListener(preference -> {
+                openSubscriptionHelpPage(wifiEntry);
+            });
+        }
+        return pref;
+    }
+
     private void launchNetworkDetailsFragment(LongPressWifiEntryPreference pref) {
         final WifiEntry wifiEntry = pref.getWifiEntry();
         final Context context = getContext();
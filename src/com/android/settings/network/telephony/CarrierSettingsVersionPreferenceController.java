@@ -17,21 +17,21 @@
 package com.android.settings.network.telephony;
 
 import android.content.Context;
-import android.os.PersistableBundle;
 import android.telephony.CarrierConfigManager;
 import android.telephony.SubscriptionManager;
 import android.text.TextUtils;
 
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.network.CarrierConfigCache;
 
 public class CarrierSettingsVersionPreferenceController extends BasePreferenceController {
 
     private int mSubscriptionId;
-    private CarrierConfigManager mManager;
+    private CarrierConfigCache mCarrierConfigCache;
 
     public CarrierSettingsVersionPreferenceController(Context context, String preferenceKey) {
         super(context, preferenceKey);
-        mManager = context.getSystemService(CarrierConfigManager.class);
+        mCarrierConfigCache = CarrierConfigCache.getInstance(context);
         mSubscriptionId = SubscriptionManager.INVALID_SUBSCRIPTION_ID;
     }
 
@@ -41,11 +41,8 @@ public class CarrierSettingsVersionPreferenceController extends BasePreferenceCo
 
     @Override
     public CharSequence getSummary() {
-        final PersistableBundle config = mManager.getConfigForSubId(mSubscriptionId);
-        if (config == null) {
-            return null;
-        }
-        return config.getString(CarrierConfigManager.KEY_CARRIER_CONFIG_VERSION_STRING);
+        return mCarrierConfigCache.getString(mSubscriptionId,
+                CarrierConfigManager.KEY_CARRIER_CONFIG_VERSION_STRING);
     }
 
     @Override
@@ -73,6 +73,7 @@ import com.android.internal.util.ArrayUtils;
 import com.android.settings.R;
 import com.android.settings.Utils;
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.SubscriptionUtil;
 import com.android.settings.network.ims.WifiCallingQueryImsState;
 import com.android.settings.network.telephony.TelephonyConstants.TelephonyManagerConstants;
@@ -198,17 +199,11 @@ public class MobileNetworkUtils {
      * should be shown to the user, false if the option should be hidden.
      */
     public static boolean isContactDiscoveryVisible(Context context, int subId) {
-        CarrierConfigManager carrierConfigManager = context.getSystemService(
-                CarrierConfigManager.class);
-        if (carrierConfigManager == null) {
-            Log.w(TAG, "isContactDiscoveryVisible: Could not resolve carrier config");
-            return false;
-        }
-        PersistableBundle bundle = carrierConfigManager.getConfigForSubId(subId);
-        return bundle.getBoolean(
+        final CarrierConfigCache carrierConfigCache = CarrierConfigCache.getInstance(context);
+        return carrierConfigCache.getBoolean(subId,
                 CarrierConfigManager.KEY_USE_RCS_PRESENCE_BOOL, false /*default*/)
-                || bundle.getBoolean(CarrierConfigManager.Ims.KEY_RCS_BULK_CAPABILITY_EXCHANGE_BOOL,
-                false /*default*/);
+                || carrierConfigCache.getBoolean(subId,
+                CarrierConfigManager.Ims.KEY_RCS_BULK_CAPABILITY_EXCHANGE_BOOL, false /*default*/);
     }
 
     public static Intent buildPhoneAccountConfigureIntent(
@@ -347,8 +342,8 @@ public class MobileNetworkUtils {
         }
         final TelephonyManager telephonyManager = context.getSystemService(TelephonyManager.class)
                 .createForSubscriptionId(subId);
-        final PersistableBundle carrierConfig = context.getSystemService(
-                CarrierConfigManager.class).getConfigForSubId(subId);
+        final PersistableBundle carrierConfig =
+                CarrierConfigCache.getInstance(context).getConfigForSubId(subId);
 
 
         if (telephonyManager.getPhoneType() == TelephonyManager.PHONE_TYPE_CDMA) {
@@ -412,8 +407,8 @@ public class MobileNetworkUtils {
     private static boolean isGsmBasicOptions(Context context, int subId) {
         final TelephonyManager telephonyManager = context.getSystemService(TelephonyManager.class)
                 .createForSubscriptionId(subId);
-        final PersistableBundle carrierConfig = context.getSystemService(
-                CarrierConfigManager.class).getConfigForSubId(subId);
+        final PersistableBundle carrierConfig =
+                CarrierConfigCache.getInstance(context).getConfigForSubId(subId);
 
         if (telephonyManager.getPhoneType() == TelephonyManager.PHONE_TYPE_GSM) {
             return true;
@@ -432,8 +427,8 @@ public class MobileNetworkUtils {
      * settings
      */
     public static boolean isWorldMode(Context context, int subId) {
-        final PersistableBundle carrierConfig = context.getSystemService(
-                CarrierConfigManager.class).getConfigForSubId(subId);
+        final PersistableBundle carrierConfig =
+                CarrierConfigCache.getInstance(context).getConfigForSubId(subId);
         return carrierConfig == null
                 ? false
                 : carrierConfig.getBoolean(CarrierConfigManager.KEY_WORLD_MODE_ENABLED_BOOL);
@@ -445,8 +440,8 @@ public class MobileNetworkUtils {
     public static boolean shouldDisplayNetworkSelectOptions(Context context, int subId) {
         final TelephonyManager telephonyManager = context.getSystemService(TelephonyManager.class)
                 .createForSubscriptionId(subId);
-        final PersistableBundle carrierConfig = context.getSystemService(
-                CarrierConfigManager.class).getConfigForSubId(subId);
+        final PersistableBundle carrierConfig =
+                CarrierConfigCache.getInstance(context).getConfigForSubId(subId);
         if (subId == SubscriptionManager.INVALID_SUBSCRIPTION_ID
                 || carrierConfig == null
                 || !carrierConfig.getBoolean(
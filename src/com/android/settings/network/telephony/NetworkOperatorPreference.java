@@ -89,6 +89,30 @@ public class NetworkOperatorPreference extends Preference {
         updateCell(cellinfo, CellInfoUtil.getCellIdentity(cellinfo));
     }
 
+    /**
+     * Change cell information, refreshing the preference only if the cell or its signal level
+     * changed.
+     *
+     * @return whether the preference is refreshed
+     */
+    public boolean updateCellIfChanged(CellInfo cellinfo) {
+        final CellSignalStrength signalStrength = getCellSignalStrength(cellinfo);
+        final int level = signalStrength != null ? signalStrength.getLevel() : LEVEL_NONE;
+        if (mCellInfo == null || level != mLevel || !isSameCell(cellinfo)) {
+            updateCell(cellinfo);
+            return true;
+        }
+        mCellInfo = cellinfo;
+        return false;
+    }
+
+    /**
+     * Cell information of this preference, or null if it only has the cell identity
+     */
+    public CellInfo getCellInfo() {
+        return mCellInfo;
+    }
+
     private void updateCell(CellInfo cellinfo, CellIdentity cellId) {
         mCellInfo = cellinfo;
         mCellId = cellId;
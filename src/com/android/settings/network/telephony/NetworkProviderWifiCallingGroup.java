@@ -41,6 +41,7 @@ import androidx.preference.PreferenceGroup;
 import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.SubscriptionUtil;
 import com.android.settings.network.SubscriptionsChangeListener;
 import com.android.settings.network.ims.WifiCallingQueryImsState;
@@ -64,7 +65,7 @@ public class NetworkProviderWifiCallingGroup extends
     private static final String KEY_PREFERENCE_WIFICALLING_GROUP = "provider_model_wfc_group";
 
     @VisibleForTesting
-    protected CarrierConfigManager mCarrierConfigManager;
+    protected CarrierConfigCache mCarrierConfigCache;
     private SubscriptionManager mSubscriptionManager;
 
     private String mPreferenceGroupKey;
@@ -77,7 +78,7 @@ public class NetworkProviderWifiCallingGroup extends
     public NetworkProviderWifiCallingGroup(Context context, Lifecycle lifecycle,
             String preferenceGroupKey) {
         super(context);
-        mCarrierConfigManager = context.getSystemService(CarrierConfigManager.class);
+        mCarrierConfigCache = CarrierConfigCache.getInstance(context);
         mSubscriptionManager = context.getSystemService(SubscriptionManager.class);
 
         mPreferenceGroupKey = preferenceGroupKey;
@@ -272,9 +273,9 @@ public class NetworkProviderWifiCallingGroup extends
 
     private boolean isWifiCallingAvailableForCarrier(int subId) {
         boolean isWifiCallingAvailableForCarrier = false;
-        if (mCarrierConfigManager != null) {
+        if (mCarrierConfigCache != null) {
             final PersistableBundle carrierConfig =
-                    mCarrierConfigManager.getConfigForSubId(subId);
+                    mCarrierConfigCache.getConfigForSubId(subId);
             if (carrierConfig != null) {
                 isWifiCallingAvailableForCarrier = carrierConfig.getBoolean(
                         CarrierConfigManager.KEY_CARRIER_WFC_IMS_AVAILABLE_BOOL);
@@ -33,7 +33,9 @@ import android.telephony.ServiceState;
 import android.telephony.SignalStrength;
 import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyManager;
+import android.util.ArrayMap;
 import android.util.Log;
+import android.util.Pair;
 import android.view.View;
 
 import androidx.annotation.VisibleForTesting;
@@ -43,13 +45,18 @@ import androidx.preference.PreferenceCategory;
 import com.android.internal.telephony.OperatorInfo;
 import com.android.settings.R;
 import com.android.settings.dashboard.DashboardFragment;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -76,6 +83,8 @@ public class NetworkSelectSettings extends DashboardFragment {
     private Preference mStatusMessagePreference;
     @VisibleForTesting
     List<CellInfo> mCellInfoList;
+    // The cells of the current scan, merged from its results by aggregation key.
+    private final Map<Object, CellInfo> mScannedCellInfos = new LinkedHashMap<>();
     private int mSubId = SubscriptionManager.INVALID_SUBSCRIPTION_ID;
     @VisibleForTesting
     TelephonyManager mTelephonyManager;
@@ -107,8 +116,8 @@ public class NetworkSelectSettings extends DashboardFragment {
                 .createForSubscriptionId(mSubId);
         mNetworkScanHelper = new NetworkScanHelper(
                 mTelephonyManager, mCallback, mNetworkScanExecutor);
-        PersistableBundle bundle = ((CarrierConfigManager) getContext().getSystemService(
-                Context.CARRIER_CONFIG_SERVICE)).getConfigForSubId(mSubId);
+        PersistableBundle bundle = CarrierConfigCache.getInstance(getContext())
+                .getConfigForSubId(mSubId);
         if (bundle != null) {
             mShow4GForLTE = bundle.getBoolean(
                     CarrierConfigManager.KEY_SHOW_4G_FOR_LTE_DATA_ICON_BOOL);
@@ -250,7 +259,7 @@ public class NetworkSelectSettings extends DashboardFragment {
                         stopNetworkQuery();
                     }
 
-                    mCellInfoList = doAggregation(results);
+                    mCellInfoList = mergeScanResults(results);
                     Log.d(TAG, "CellInfoList: " + CellInfoUtil.cellInfoListToString(mCellInfoList));
                     if (mCellInfoList != null && mCellInfoList.size() != 0) {
                         final NetworkOperatorPreference connectedPref =
@@ -320,25 +329,44 @@ public class NetworkSelectSettings extends DashboardFragment {
             Log.d(TAG, "no aggregation");
             return new ArrayList<>(cellInfoListInput);
         }
-        ArrayList<CellInfo> aggregatedList = new ArrayList<>();
+        final Set<Object> aggregationKeys = new HashSet<>();
+        final ArrayList<CellInfo> aggregatedList = new ArrayList<>();
         for (CellInfo cellInfo : cellInfoListInput) {
-            String plmn = CellInfoUtil.getNetworkTitle(cellInfo.getCellIdentity(),
-                    CellInfoUtil.getCellIdentityMccMnc(cellInfo.getCellIdentity()));
-            Class className = cellInfo.getClass();
-
-            if (aggregatedList.stream().anyMatch(
-                    item -> {
-                        String itemPlmn = CellInfoUtil.getNetworkTitle(item.getCellIdentity(),
-                                CellInfoUtil.getCellIdentityMccMnc(item.getCellIdentity()));
-                        return itemPlmn.equals(plmn) && item.getClass().equals(className);
-                    })) {
-                continue;
+            // Keeps the first cell of each PLMN and RAT.
+            if (aggregationKeys.add(getAggregationKey(cellInfo))) {
+                aggregatedList.add(cellInfo);
             }
-            aggregatedList.add(cellInfo);
         }
         return aggregatedList;
     }
 
+    /**
+     * Merge a batch of scan results into the cells of the current scan. A cell reported again
+     * replaces the former one in place, and the new cells are appended.
+     *
+     * @return the cells of the current scan
+     */
+    @VisibleForTesting
+    List<CellInfo> mergeScanResults(List<CellInfo> results) {
+        for (CellInfo cellInfo : doAggregation(results)) {
+            mScannedCellInfos.put(getAggregationKey(cellInfo), cellInfo);
+        }
+        return new ArrayList<>(mScannedCellInfos.values());
+    }
+
+    /**
+     * Key of the cells shown as one network operator: the PLMN and the RAT when the aggregation
+     * is enabled, the cell identity otherwise.
+     */
+    private Object getAggregationKey(CellInfo cellInfo) {
+        final CellIdentity cellIdentity = cellInfo.getCellIdentity();
+        if (!mIsAggregationEnabled) {
+            return cellIdentity;
+        }
+        return Pair.create(CellInfoUtil.getNetworkTitle(cellIdentity,
+                CellInfoUtil.getCellIdentityMccMnc(cellIdentity)), cellInfo.getClass());
+    }
+
     private final NetworkScanHelper.NetworkScanCallback mCallback =
             new NetworkScanHelper.NetworkScanCallback() {
                 public void onResults(List<CellInfo> results) {
@@ -365,13 +393,29 @@ public class NetworkSelectSettings extends DashboardFragment {
      */
     @VisibleForTesting
     NetworkOperatorPreference updateAllPreferenceCategory() {
-        int numberOfPreferences = mPreferenceCategory.getPreferenceCount();
-
-        // remove unused preferences
-        while (numberOfPreferences > mCellInfoList.size()) {
-            numberOfPreferences--;
-            mPreferenceCategory.removePreference(
-                    mPreferenceCategory.getPreference(numberOfPreferences));
+        // Matches the preferences to the cells by aggregation key, so only the preferences of
+        // the cells which changed are refreshed.
+        final int numberOfPreferences = mPreferenceCategory.getPreferenceCount();
+        final Map<Object, NetworkOperatorPreference> stalePrefs =
+                new ArrayMap<>(numberOfPreferences);
+        final List<Preference> unusedPrefs = new ArrayList<>();
+        for (int index = 0; index < numberOfPreferences; index++) {
+            final Preference rawPref = mPreferenceCategory.getPreference(index);
+            final CellInfo cellInfo = rawPref instanceof NetworkOperatorPreference
+                    ? ((NetworkOperatorPreference) rawPref).getCellInfo() : null;
+            if (cellInfo == null) {
+                // The status message, or the connected network shown before any scan result
+                unusedPrefs.add(rawPref);
+                continue;
+            }
+            final NetworkOperatorPreference duplicatedPref = stalePrefs.put(
+                    getAggregationKey(cellInfo), (NetworkOperatorPreference) rawPref);
+            if (duplicatedPref != null) {
+                unusedPrefs.add(duplicatedPref);
+            }
+        }
+        for (Preference pref : unusedPrefs) {
+            mPreferenceCategory.removePreference(pref);
         }
 
         // update the content of preference
@@ -379,18 +423,12 @@ public class NetworkSelectSettings extends DashboardFragment {
         for (int index = 0; index < mCellInfoList.size(); index++) {
             final CellInfo cellInfo = mCellInfoList.get(index);
 
-            NetworkOperatorPreference pref = null;
-            if (index < numberOfPreferences) {
-                final Preference rawPref = mPreferenceCategory.getPreference(index);
-                if (rawPref instanceof NetworkOperatorPreference) {
-                    // replace existing preference
-                    pref = (NetworkOperatorPreference) rawPref;
-                    pref.updateCell(cellInfo);
-                } else {
-                    mPreferenceCategory.removePreference(rawPref);
-                }
-            }
-            if (pref == null) {
+            NetworkOperatorPreference pref = stalePrefs.remove(getAggregationKey(cellInfo));
+            if (pref != null) {
+                // reuse existing preference
+                pref.updateCellIfChanged(cellInfo);
+                pref.setOrder(index);
+            } else {
                 // add new preference
                 pref = new NetworkOperatorPreference(getPrefContext(),
                         cellInfo, mForbiddenPlmns, mShow4GForLTE);
@@ -399,24 +437,24 @@ public class NetworkSelectSettings extends DashboardFragment {
             }
             pref.setKey(pref.getOperatorName());
 
-            if (mCellInfoList.get(index).isRegistered()) {
+            if (cellInfo.isRegistered()) {
                 pref.setSummary(R.string.network_connected);
                 connectedPref = pref;
             } else {
                 pref.setSummary(null);
             }
-        }
-
-        // update selected preference instance by index
-        for (int index = 0; index < mCellInfoList.size(); index++) {
-            final CellInfo cellInfo = mCellInfoList.get(index);
 
+            // update selected preference instance
             if ((mSelectedPreference != null) && mSelectedPreference.isSameCell(cellInfo)) {
-                mSelectedPreference = (NetworkOperatorPreference)
-                        (mPreferenceCategory.getPreference(index));
+                mSelectedPreference = pref;
             }
         }
 
+        // remove unused preferences
+        for (NetworkOperatorPreference pref : stalePrefs.values()) {
+            mPreferenceCategory.removePreference(pref);
+        }
+
         return connectedPref;
     }
 
@@ -514,6 +552,7 @@ public class NetworkSelectSettings extends DashboardFragment {
     private void startNetworkQuery() {
         setProgressBarVisible(true);
         if (mNetworkScanHelper != null) {
+            mScannedCellInfos.clear();
             mRequestIdManualNetworkScan = getNewRequestId();
             mWaitingForNumberOfScanResults = MIN_NUMBER_OF_SCAN_REQUIRED;
             mNetworkScanHelper.startNetworkScan(
@@ -19,10 +19,10 @@ package com.android.settings.network.telephony;
 import android.content.Context;
 import android.content.res.Resources;
 import android.os.PersistableBundle;
-import android.telephony.CarrierConfigManager;
 import android.telephony.SubscriptionManager;
 
 import com.android.settings.core.TogglePreferenceController;
+import com.android.settings.network.CarrierConfigCache;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -76,9 +76,7 @@ public abstract class TelephonyTogglePreferenceController extends TogglePreferen
         if (!SubscriptionManager.isValidSubscriptionId(subId)) {
             return null;
         }
-        final CarrierConfigManager carrierConfigMgr =
-                mContext.getSystemService(CarrierConfigManager.class);
-        return carrierConfigMgr.getConfigForSubId(subId);
+        return CarrierConfigCache.getInstance(mContext).getConfigForSubId(subId);
     }
 
     /**
@@ -45,6 +45,7 @@ import androidx.preference.SwitchPreference;
 import com.android.settings.R;
 import com.android.settings.core.SubSettingLauncher;
 import com.android.settings.network.AllowedNetworkTypesListener;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.telephony.MobileNetworkUtils;
 import com.android.settings.network.telephony.NetworkSelectSettings;
 import com.android.settings.network.telephony.TelephonyTogglePreferenceController;
@@ -193,8 +194,8 @@ public class AutoSelectPreferenceController extends TelephonyTogglePreferenceCon
         mSubId = subId;
         mTelephonyManager = mContext.getSystemService(TelephonyManager.class)
                 .createForSubscriptionId(mSubId);
-        final PersistableBundle carrierConfig = mContext.getSystemService(
-                CarrierConfigManager.class).getConfigForSubId(mSubId);
+        final PersistableBundle carrierConfig =
+                CarrierConfigCache.getInstance(mContext).getConfigForSubId(mSubId);
         mOnlyAutoSelectInHome = carrierConfig != null
                 ? carrierConfig.getBoolean(
                 CarrierConfigManager.KEY_ONLY_AUTO_SELECT_IN_HOME_NETWORK_BOOL)
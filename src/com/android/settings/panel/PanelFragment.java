@@ -55,6 +55,7 @@ import com.android.internal.annotations.VisibleForTesting;
 import com.android.settings.R;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.panel.PanelLoggingContract.PanelClosedKeys;
+import com.android.settings.slices.SliceDataCache;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.utils.ThreadUtils;
 
@@ -335,6 +336,8 @@ public class PanelFragment extends Fragment {
         mSliceLiveData.clear();
         final List<Uri> sliceUris = mPanel.getSlices();
         mPanelSlicesLoaderCountdownLatch = new PanelSlicesLoaderCountdownLatch(sliceUris.size());
+        // Read the data of all the slices with one query before they are bound one by one.
+        SliceDataCache.getInstance().prefetch(getActivity(), sliceUris);
 
         for (Uri uri : sliceUris) {
             final LiveData<Slice> sliceLiveData = SliceLiveData.fromUri(getActivity(), uri,
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.utils.ThreadPoolUtils;
+import com.android.settingslib.search.SearchIndexableData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Collects the search data of every {@link SearchIndexableData} in parallel, and caches the data
+ * of each provider with a fingerprint of the state it was computed with.
+ *
+ * <p>The fingerprint of a provider is made of the locales and of the version of the package
+ * shipping the provider, so a provider is only queried again after a locale change or an update
+ * of its own package. Data depending on the runtime state of the controllers, like the
+ * non-indexable keys, is never cached.
+ */
+public class SearchIndexableResultCache {
+    private static final String TAG = "SearchIndexableCache";
+    private static final int MAX_POOL_SIZE = 4;
+    private static final long KEEP_ALIVE_SECONDS = 10L;
+
+    /** Data only depending on the resources and packages. */
+    public static final int TYPE_XML_RESOURCES = 0;
+    /** Data only depending on the resources and packages. */
+    public static final int TYPE_RAW_DATA = 1;
+    /** Data depending on the runtime state of the controllers. */
+    public static final int TYPE_NON_INDEXABLE_KEYS = 2;
+    /** Data depending on the runtime state of the controllers. */
+    public static final int TYPE_DYNAMIC_RAW_DATA = 3;
+
+    /**
+     * Loads the data of a single provider. This is called in a worker thread.
+     */
+    public interface ProviderLoader<T> {
+        List<T> load(SearchIndexableData bundle);
+    }
+
+    private final Context mContext;
+    private final ExecutorService mExecutor;
+    // Guarded by itself.
+    private final Map<String, Entry> mEntries = new ArrayMap<>();
+
+    public SearchIndexableResultCache(Context context) {
+        this(context, createExecutor());
+    }
+
+    @VisibleForTesting
+    SearchIndexableResultCache(Context context, ExecutorService executor) {
+        mContext = context;
+        mExecutor = executor;
+    }
+
+    /**
+     * Returns the data of all providers, in the order of {@code bundles}. Only the providers
+     * without valid cached data are queried, and all of them for the runtime data types.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> collect(int type, Collection<SearchIndexableData> bundles,
+            ProviderLoader<T> loader) {
+        final boolean isCacheable = type == TYPE_XML_RESOURCES || type == TYPE_RAW_DATA;
+        // Package name -> fingerprint, computed once per package.
+        final Map<String, String> fingerprints = new ArrayMap<>();
+        final List<Object> pending = new ArrayList<>(bundles.size());
+        for (SearchIndexableData bundle : bundles) {
+            if (!isCacheable) {
+                pending.add(mExecutor.submit(() -> loader.load(bundle)));
+                continue;
+            }
+            final String cacheKey = type + ":" + bundle.getTargetClass().getName();
+            final String fingerprint = fingerprints.computeIfAbsent(getProviderPackage(bundle),
+                    this::computeFingerprint);
+            final Entry cached;
+            synchronized (mEntries) {
+                cached = mEntries.get(cacheKey);
+            }
+            if (cached != null && cached.mFingerprint.equals(fingerprint)) {
+                pending.add(cached.mData);
+            } else {
+                pending.add(mExecutor.submit(() -> {
+                    final List<T> data = loader.load(bundle);
+                    synchronized (mEntries) {
+                        mEntries.put(cacheKey, new Entry(fingerprint, data));
+                    }
+                    return data;
+                }));
+            }
+        }
+
+        final List<T> result = new ArrayList<>();
+        for (Object item : pending) {
+            final List<T> data = item instanceof Future ? getData((Future<List<T>>) item)
+                    : (List<T>) item;
+            if (data != null) {
+                result.addAll(data);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drops all cached data.
+     */
+    public void clear() {
+        synchronized (mEntries) {
+            mEntries.clear();
+        }
+    }
+
+    /**
+     * @return the package shipping the provider of {@code bundle}.
+     */
+    private String getProviderPackage(SearchIndexableData bundle) {
+        // The providers are compiled in the package of this context.
+        return mContext.getPackageName();
+    }
+
+    @VisibleForTesting
+    String computeFingerprint(String packageName) {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(mContext.getResources().getConfiguration().getLocales().toLanguageTags());
+        builder.append('|').append(packageName);
+        try {
+            final PackageInfo packageInfo =
+                    mContext.getPackageManager().getPackageInfo(packageName, 0 /* flags */);
+            builder.append('|').append(packageInfo.getLongVersionCode());
+            builder.append('|').append(packageInfo.lastUpdateTime);
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.w(TAG, "Package not found: " + packageName, e);
+        }
+        return builder.toString();
+    }
+
+    private static <T> List<T> getData(Future<List<T>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.w(TAG, "Interrupted while collecting search data", e);
+            return null;
+        } catch (ExecutionException e) {
+            // Rethrow the original exception as it would be thrown by a serial loop.
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static ExecutorService createExecutor() {
+        return ThreadPoolUtils.newWorkerPool(MAX_POOL_SIZE, KEEP_ALIVE_SECONDS);
+    }
+
+    private static class Entry {
+        private final String mFingerprint;
+        private final List<?> mData;
+
+        Entry(String fingerprint, List<?> data) {
+            mFingerprint = fingerprint;
+            mData = data;
+        }
+    }
+}
@@ -60,7 +60,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -75,9 +74,10 @@ import java.util.stream.Collectors;
  * return an stub {@link Slice} with the correct {@link Uri} immediately. In the background, the
  * data corresponding to the key in the {@link Uri} is read by {@link SlicesDatabaseAccessor}, and
  * the entire row is converted into a {@link SliceData}. Once complete, it is stored in
- * {@link #mSliceWeakDataCache}, and then an update sent via the Slice framework to the Slice.
+ * {@link #mSliceDataCache}, and then an update sent via the Slice framework to the Slice.
  * The {@link Slice} displayed by the Slice-presenter will re-query this Slice-provider and find
- * the {@link SliceData} cached to build the full {@link Slice}.
+ * the {@link SliceData} cached to build the full {@link Slice}. The {@link SliceData} stays in
+ * the bounded {@link SliceDataCache} for the later binds, until the database is reindexed.
  *
  * <p>When an action is taken on that {@link Slice}, we receive the action in
  * {@link SliceBroadcastReceiver}, and use the
@@ -139,7 +139,7 @@ public class SettingsSliceProvider extends SliceProvider {
     SlicesDatabaseAccessor mSlicesDatabaseAccessor;
 
     @VisibleForTesting
-    Map<Uri, SliceData> mSliceWeakDataCache;
+    SliceDataCache mSliceDataCache;
 
     @VisibleForTesting
     final Map<Uri, SliceBackgroundWorker> mPinnedWorkers = new ArrayMap<>();
@@ -157,7 +157,7 @@ public class SettingsSliceProvider extends SliceProvider {
     public boolean onCreateSliceProvider() {
         Log.d(TAG, "onCreateSliceProvider");
         mSlicesDatabaseAccessor = new SlicesDatabaseAccessor(getContext());
-        mSliceWeakDataCache = new WeakHashMap<>();
+        mSliceDataCache = SliceDataCache.getInstance();
         return true;
     }
 
@@ -259,16 +259,12 @@ public class SettingsSliceProvider extends SliceProvider {
                         .createWifiCallingPreferenceSlice(sliceUri);
             }
 
-            final SliceData cachedSliceData = mSliceWeakDataCache.get(sliceUri);
+            final SliceData cachedSliceData = mSliceDataCache.get(sliceUri);
             if (cachedSliceData == null) {
                 loadSliceInBackground(sliceUri);
                 return getSliceStub(sliceUri);
             }
 
-            // Remove the SliceData from the cache after it has been used to prevent a memory-leak.
-            if (!getPinnedSlices().contains(sliceUri)) {
-                mSliceWeakDataCache.remove(sliceUri);
-            }
             return SliceBuilderUtils.buildSlice(getContext(), cachedSliceData);
         } finally {
             StrictMode.setThreadPolicy(oldPolicy);
@@ -396,12 +392,15 @@ public class SettingsSliceProvider extends SliceProvider {
     void loadSlice(Uri uri) {
         long startBuildTime = System.currentTimeMillis();
 
-        final SliceData sliceData;
-        try {
-            sliceData = mSlicesDatabaseAccessor.getSliceDataFromUri(uri);
-        } catch (IllegalStateException e) {
-            Log.d(TAG, "Could not create slicedata for uri: " + uri, e);
-            return;
+        final int generation = mSliceDataCache.getGeneration();
+        SliceData sliceData = mSliceDataCache.awaitPrefetch(uri);
+        if (sliceData == null) {
+            try {
+                sliceData = mSlicesDatabaseAccessor.getSliceDataFromUri(uri);
+            } catch (IllegalStateException e) {
+                Log.d(TAG, "Could not create slicedata for uri: " + uri, e);
+                return;
+            }
         }
 
         final BasePreferenceController controller = SliceBuilderUtils.getPreferenceController(
@@ -420,7 +419,7 @@ public class SettingsSliceProvider extends SliceProvider {
 
         ThreadUtils.postOnMainThread(() -> startBackgroundWorker(controller, uri));
 
-        mSliceWeakDataCache.put(uri, sliceData);
+        mSliceDataCache.put(uri, sliceData, generation);
         getContext().getContentResolver().notifyChange(uri, null /* content observer */);
 
         Log.d(TAG, "Built slice (" + uri + ") in: " +
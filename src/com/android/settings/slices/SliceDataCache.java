@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.LocaleList;
+import android.os.SystemClock;
+import android.provider.SettingsSlicesContract;
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+import androidx.collection.ArraySet;
+
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A size bounded LRU cache of the {@link SliceData} read from the slices database, shared by
+ * {@link SettingsSliceProvider} and the pages binding several Settings slices at once.
+ *
+ * <p>The cache is invalidated when {@link SlicesIndexer} rewrites the database or the locale
+ * changes. Data loaded before an invalidation is never cached.
+ */
+public class SliceDataCache {
+    private static final String TAG = "SliceDataCache";
+
+    @VisibleForTesting
+    static final int MAX_SIZE = 64;
+    @VisibleForTesting
+    static final long PREFETCH_TIMEOUT_MS = 500L;
+
+    private static SliceDataCache sInstance;
+
+    // All fields below are guarded by this.
+    private final LruCache<Uri, SliceData> mCache;
+    private final Set<Uri> mPendingUris = new ArraySet<>();
+    private int mGeneration;
+    private String mLocaleTags;
+
+    public static synchronized SliceDataCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new SliceDataCache(MAX_SIZE);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    SliceDataCache(int maxSize) {
+        mCache = new LruCache<>(maxSize);
+    }
+
+    /**
+     * @return the cached {@link SliceData} of {@code uri}, or {@code null} if it is not cached.
+     */
+    synchronized SliceData get(Uri uri) {
+        checkLocaleLocked();
+        return mCache.get(uri);
+    }
+
+    /**
+     * Waits for a pending prefetch of {@code uri}, if any, and returns the cached data.
+     */
+    @WorkerThread
+    synchronized SliceData awaitPrefetch(Uri uri) {
+        final long deadline = SystemClock.uptimeMillis() + PREFETCH_TIMEOUT_MS;
+        long remaining = PREFETCH_TIMEOUT_MS;
+        while (mPendingUris.contains(uri) && remaining > 0) {
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            remaining = deadline - SystemClock.uptimeMillis();
+        }
+        return get(uri);
+    }
+
+    /**
+     * @return the generation to be passed to {@link #put} for data about to be loaded.
+     */
+    synchronized int getGeneration() {
+        checkLocaleLocked();
+        return mGeneration;
+    }
+
+    /**
+     * Caches {@code data} loaded at {@code generation}. The data is dropped if the cache has been
+     * invalidated since.
+     */
+    synchronized void put(Uri uri, SliceData data, int generation) {
+        if (generation == mGeneration) {
+            mCache.put(uri, data);
+        }
+    }
+
+    @VisibleForTesting
+    synchronized void put(Uri uri, SliceData data) {
+        put(uri, data, mGeneration);
+    }
+
+    /**
+     * Drops all cached data, e.g. after the slices database is rewritten.
+     */
+    public synchronized void invalidate() {
+        mGeneration++;
+        mCache.evictAll();
+    }
+
+    /**
+     * Loads the {@link SliceData} of every indexed slice in {@code uris} with a single query in
+     * the background, so the following binds of these slices do not hit the database.
+     */
+    public void prefetch(Context context, Collection<Uri> uris) {
+        final List<Uri> missingUris = new ArrayList<>();
+        final int generation;
+        synchronized (this) {
+            checkLocaleLocked();
+            for (Uri uri : uris) {
+                if (isIndexedSliceUri(uri) && mCache.get(uri) == null
+                        && !mPendingUris.contains(uri)) {
+                    missingUris.add(uri);
+                }
+            }
+            if (missingUris.isEmpty()) {
+                return;
+            }
+            // Mark the uris before posting, so a bind racing with the query waits for it.
+            mPendingUris.addAll(missingUris);
+            generation = mGeneration;
+        }
+        final Context appContext = context.getApplicationContext();
+        ThreadUtils.postOnBackgroundThread(() -> loadPending(
+                new SlicesDatabaseAccessor(appContext), missingUris, generation));
+    }
+
+    @VisibleForTesting
+    void loadPending(SlicesDatabaseAccessor accessor, List<Uri> uris, int generation) {
+        Map<Uri, SliceData> result = null;
+        try {
+            result = accessor.getSliceDataFromUris(uris);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Could not prefetch " + uris.size() + " slices", e);
+        } finally {
+            synchronized (this) {
+                if (result != null) {
+                    for (Map.Entry<Uri, SliceData> entry : result.entrySet()) {
+                        put(entry.getKey(), entry.getValue(), generation);
+                    }
+                }
+                mPendingUris.removeAll(uris);
+                notifyAll();
+            }
+        }
+    }
+
+    private void checkLocaleLocked() {
+        final String localeTags = LocaleList.getDefault().toLanguageTags();
+        if (!TextUtils.equals(mLocaleTags, localeTags)) {
+            if (mLocaleTags != null) {
+                invalidate();
+            }
+            mLocaleTags = localeTags;
+        }
+    }
+
+    private static boolean isIndexedSliceUri(Uri uri) {
+        final String authority = uri.getAuthority();
+        return (TextUtils.equals(authority, SettingsSliceProvider.SLICE_AUTHORITY)
+                || TextUtils.equals(authority, SettingsSlicesContract.AUTHORITY))
+                && !CustomSliceRegistry.isValidUri(uri)
+                && SliceBuilderUtils.getPathData(uri) != null;
+    }
+}
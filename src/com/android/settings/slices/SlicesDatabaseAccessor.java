@@ -24,6 +24,7 @@ import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.Binder;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.Pair;
 
 import androidx.slice.Slice;
@@ -32,7 +33,10 @@ import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.slices.SlicesDatabaseHelper.IndexColumns;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Class used to map a {@link Uri} from {@link SettingsSliceProvider} to a Slice.
@@ -52,6 +56,14 @@ public class SlicesDatabaseAccessor {
             IndexColumns.UNAVAILABLE_SLICE_SUBTITLE,
     };
 
+    /**
+     * The number of keys bound by the batched queries. A batch is padded up to one of these
+     * sizes, so only a few distinct statements are compiled and they are reused from the
+     * statement cache of the database connection.
+     */
+    private static final int[] BATCH_SIZES = {1, 4, 16, 64, 256};
+    private static final String[] BATCH_QUERIES = new String[BATCH_SIZES.length];
+
     private final Context mContext;
     private final SlicesDatabaseHelper mHelper;
 
@@ -87,6 +99,39 @@ public class SlicesDatabaseAccessor {
         }
     }
 
+    /**
+     * Query the slices database once for all the {@param uris}, and return the {@link SliceData}
+     * of each {@link Uri} matching an indexed key. The invalid or unknown {@link Uri}s are not
+     * in the returned map.
+     * Used to prefetch the data of the {@link Slice}s about to be bound.
+     */
+    public Map<Uri, SliceData> getSliceDataFromUris(Collection<Uri> uris) {
+        final Map<Uri, SliceData> result = new ArrayMap<>();
+        // Several uris, e.g. the intent and action uris, can share the same key.
+        final Map<String, List<Uri>> uriByKey = new ArrayMap<>();
+        for (Uri uri : uris) {
+            final Pair<Boolean, String> pathData = SliceBuilderUtils.getPathData(uri);
+            if (pathData == null) {
+                continue;
+            }
+            List<Uri> keyUris = uriByKey.get(pathData.second);
+            if (keyUris == null) {
+                keyUris = new ArrayList<>();
+                uriByKey.put(pathData.second, keyUris);
+            }
+            keyUris.add(uri);
+        }
+
+        queryKeys(uriByKey.keySet(), cursor -> {
+            final String key = cursor.getString(0 /* KEY */);
+            for (Uri uri : uriByKey.get(key)) {
+                final boolean isIntentOnly = SliceBuilderUtils.getPathData(uri).first;
+                result.put(uri, buildSliceData(cursor, uri, isIntentOnly));
+            }
+        });
+        return result;
+    }
+
     /**
      * @return a list of Slice {@link Uri}s based on their visibility {@param isPublicSlice } and
      * {@param authority}.
@@ -118,11 +163,8 @@ public class SlicesDatabaseAccessor {
     private Cursor getIndexedSliceData(String path) {
         verifyIndexing();
 
-        final String whereClause = buildKeyMatchWhereClause();
-        final SQLiteDatabase database = mHelper.getReadableDatabase();
         final String[] selection = new String[]{path};
-        final Cursor resultCursor = database.query(TABLE_SLICES_INDEX, SELECT_COLUMNS_ALL,
-                whereClause, selection, null /* groupBy */, null /* having */, null /* orderBy */);
+        final Cursor resultCursor = mHelper.getReadableDatabase().rawQuery(getBatchQuery(0), selection);
 
         int numResults = resultCursor.getCount();
 
@@ -141,10 +183,52 @@ public class SlicesDatabaseAccessor {
         return resultCursor;
     }
 
-    private String buildKeyMatchWhereClause() {
-        return new StringBuilder(IndexColumns.KEY)
-                .append(" = ?")
-                .toString();
+    /**
+     * Runs the batched queries matching {@param keys}, and passes each resulting row to
+     * {@param rowConsumer} in a single pass over the cursors.
+     */
+    private void queryKeys(Collection<String> keys, Consumer<Cursor> rowConsumer) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        verifyIndexing();
+
+        final SQLiteDatabase database = mHelper.getReadableDatabase();
+        final int maxBatchSize = BATCH_SIZES[BATCH_SIZES.length - 1];
+        final List<String> keyList = new ArrayList<>(keys);
+        for (int start = 0; start < keyList.size(); start += maxBatchSize) {
+            final int count = Math.min(maxBatchSize, keyList.size() - start);
+            int batch = 0;
+            while (BATCH_SIZES[batch] < count) {
+                batch++;
+            }
+            // Pad with the last key, the duplicates do not add rows to an IN clause.
+            final String[] selection = new String[BATCH_SIZES[batch]];
+            for (int i = 0; i < selection.length; i++) {
+                selection[i] = keyList.get(start + Math.min(i, count - 1));
+            }
+            try (Cursor cursor = database.rawQuery(getBatchQuery(batch), selection)) {
+                while (cursor.moveToNext()) {
+                    rowConsumer.accept(cursor);
+                }
+            }
+        }
+    }
+
+    private static String getBatchQuery(int batch) {
+        synchronized (BATCH_QUERIES) {
+            if (BATCH_QUERIES[batch] == null) {
+                final StringBuilder builder = new StringBuilder("SELECT ")
+                        .append(TextUtils.join(",", SELECT_COLUMNS_ALL))
+                        .append(" FROM ").append(TABLE_SLICES_INDEX)
+                        .append(" WHERE ").append(IndexColumns.KEY).append(" IN (");
+                for (int i = 0; i < BATCH_SIZES[batch]; i++) {
+                    builder.append(i == 0 ? "?" : ",?");
+                }
+                BATCH_QUERIES[batch] = builder.append(')').toString();
+            }
+            return BATCH_QUERIES[batch];
+        }
     }
 
     private static SliceData buildSliceData(Cursor cursor, Uri uri, boolean isIntentOnly) {
@@ -36,10 +36,11 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "slices_index.db";
     private static final String SHARED_PREFS_TAG = "slices_shared_prefs";
 
-    private static final int DATABASE_VERSION = 8;
+    private static final int DATABASE_VERSION = 9;
 
     public interface Tables {
         String TABLE_SLICES_INDEX = "slices_index";
+        String TABLE_SLICES_INDEX_HASH = "slices_index_hash";
     }
 
     public interface IndexColumns {
@@ -105,6 +106,24 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
         String PUBLIC_SLICE = "public_slice";
     }
 
+    public interface HashColumns {
+        /**
+         * Primary key of the table. Same as {@link IndexColumns#KEY}.
+         */
+        String KEY = "key";
+
+        /**
+         * The docid of the row holding the slice in {@link Tables#TABLE_SLICES_INDEX}.
+         */
+        String DOC_ID = "doc_id";
+
+        /**
+         * Hash of the content of the row, used to skip the rows which did not change when the
+         * slices are indexed again.
+         */
+        String CONTENT_HASH = "content_hash";
+    }
+
     private static final String CREATE_SLICES_TABLE =
             "CREATE VIRTUAL TABLE " + Tables.TABLE_SLICES_INDEX + " USING fts4" +
                     "(" +
@@ -137,6 +156,17 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
                     +
                     ");";
 
+    private static final String CREATE_SLICES_HASH_TABLE =
+            "CREATE TABLE " + Tables.TABLE_SLICES_INDEX_HASH +
+                    "(" +
+                    HashColumns.KEY +
+                    " TEXT PRIMARY KEY, " +
+                    HashColumns.DOC_ID +
+                    " INTEGER NOT NULL, " +
+                    HashColumns.CONTENT_HASH +
+                    " INTEGER NOT NULL" +
+                    ");";
+
     private final Context mContext;
 
     private static SlicesDatabaseHelper sSingleton;
@@ -172,17 +202,25 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
      * {@link#isNewIndexingState(Context)} will return {@code true}.
      */
     void reconstruct(SQLiteDatabase db) {
+        clearIndexedState();
+        dropTables(db);
+        createDatabases(db);
+    }
+
+    /**
+     * Un-marks the state of the data, such that only the state set by the next
+     * {@link #setIndexedState()} is considered as indexed.
+     */
+    void clearIndexedState() {
         mContext.getSharedPreferences(SHARED_PREFS_TAG, Context.MODE_PRIVATE)
                 .edit()
                 .clear()
                 .apply();
-        dropTables(db);
-        createDatabases(db);
     }
 
     /**
      * Marks the current state of the device for the validity of the data. Should be called after
-     * a full index of the TABLE_SLICES_INDEX.
+     * the TABLE_SLICES_INDEX is brought up to date.
      */
     public void setIndexedState() {
         setBuildIndexed();
@@ -200,11 +238,13 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
 
     private void createDatabases(SQLiteDatabase db) {
         db.execSQL(CREATE_SLICES_TABLE);
+        db.execSQL(CREATE_SLICES_HASH_TABLE);
         Log.d(TAG, "Created databases");
     }
 
     private void dropTables(SQLiteDatabase db) {
         db.execSQL("DROP TABLE IF EXISTS " + Tables.TABLE_SLICES_INDEX);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.TABLE_SLICES_INDEX_HASH);
     }
 
     private void setBuildIndexed() {
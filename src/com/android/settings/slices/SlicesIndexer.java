@@ -16,9 +16,12 @@
 
 package com.android.settings.slices;
 
-import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
@@ -26,10 +29,14 @@ import androidx.annotation.VisibleForTesting;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.overlay.FeatureFactory;
+import com.android.settings.slices.SlicesDatabaseHelper.HashColumns;
 import com.android.settings.slices.SlicesDatabaseHelper.IndexColumns;
 import com.android.settings.slices.SlicesDatabaseHelper.Tables;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Manages the conversion of {@link DashboardFragment} and {@link BasePreferenceController} to
@@ -39,6 +46,47 @@ class SlicesIndexer implements Runnable {
 
     private static final String TAG = "SlicesIndexer";
 
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final String SLICE_COLUMNS = IndexColumns.KEY + ", "
+            + IndexColumns.SLICE_URI + ", "
+            + IndexColumns.TITLE + ", "
+            + IndexColumns.SUMMARY + ", "
+            + IndexColumns.SCREENTITLE + ", "
+            + IndexColumns.KEYWORDS + ", "
+            + IndexColumns.ICON_RESOURCE + ", "
+            + IndexColumns.FRAGMENT + ", "
+            + IndexColumns.CONTROLLER + ", "
+            + IndexColumns.SLICE_TYPE + ", "
+            + IndexColumns.UNAVAILABLE_SLICE_SUBTITLE + ", "
+            + IndexColumns.PUBLIC_SLICE;
+
+    private static final String QUERY_INDEXED_ROWS = "SELECT s.docid, s." + IndexColumns.KEY
+            + ", h." + HashColumns.CONTENT_HASH
+            + " FROM " + Tables.TABLE_SLICES_INDEX + " s LEFT JOIN "
+            + Tables.TABLE_SLICES_INDEX_HASH + " h ON s.docid = h." + HashColumns.DOC_ID
+            + " ORDER BY s.docid";
+
+    private static final String INSERT_SLICE = "INSERT INTO " + Tables.TABLE_SLICES_INDEX
+            + " (" + SLICE_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_SLICE = "UPDATE " + Tables.TABLE_SLICES_INDEX + " SET "
+            + SLICE_COLUMNS.replace(", ", " = ?, ") + " = ? WHERE docid = ?";
+
+    private static final int UPDATE_DOC_ID_INDEX = 13;
+
+    private static final String DELETE_SLICE = "DELETE FROM " + Tables.TABLE_SLICES_INDEX
+            + " WHERE docid = ?";
+
+    private static final String INSERT_HASH = "INSERT OR REPLACE INTO "
+            + Tables.TABLE_SLICES_INDEX_HASH + " (" + HashColumns.KEY + ", "
+            + HashColumns.DOC_ID + ", " + HashColumns.CONTENT_HASH + ") VALUES (?, ?, ?)";
+
+    private static final String DELETE_STALE_HASHES = "DELETE FROM "
+            + Tables.TABLE_SLICES_INDEX_HASH + " WHERE " + HashColumns.DOC_ID
+            + " NOT IN (SELECT docid FROM " + Tables.TABLE_SLICES_INDEX + ")";
+
     private Context mContext;
 
     private SlicesDatabaseHelper mHelper;
@@ -58,7 +106,7 @@ class SlicesIndexer implements Runnable {
 
     /**
      * Synchronously takes data obtained from {@link SliceDataConverter} and indexes it into a
-     * SQLite database
+     * SQLite database. Only the rows which changed since the last indexing are written.
      */
     protected void indexSliceData() {
         if (mHelper.isSliceDataIndexed()) {
@@ -66,15 +114,17 @@ class SlicesIndexer implements Runnable {
             return;
         }
 
-        final SQLiteDatabase database = mHelper.getWritableDatabase();
-
         long startTime = System.currentTimeMillis();
+        // Build the slice data before the transaction, so the stale data can still be read while
+        // the controllers and xml are parsed.
+        final List<SliceData> indexData = getSliceData();
+
+        final SQLiteDatabase database = mHelper.getWritableDatabase();
         database.beginTransaction();
         try {
-            mHelper.reconstruct(database);
-            List<SliceData> indexData = getSliceData();
-            insertSliceData(database, indexData);
+            updateSliceData(database, indexData);
 
+            mHelper.clearIndexedState();
             mHelper.setIndexedState();
 
             // TODO (b/71503044) Log indexing time.
@@ -84,6 +134,7 @@ class SlicesIndexer implements Runnable {
         } finally {
             database.endTransaction();
         }
+        SliceDataCache.getInstance().invalidate();
     }
 
     @VisibleForTesting
@@ -94,31 +145,140 @@ class SlicesIndexer implements Runnable {
                 .getSliceData();
     }
 
+    /**
+     * Applies the difference between the indexed rows and {@code indexData} to the database.
+     */
     @VisibleForTesting
-    void insertSliceData(SQLiteDatabase database, List<SliceData> indexData) {
-        ContentValues values;
-
-        for (SliceData dataRow : indexData) {
-            values = new ContentValues();
-            values.put(IndexColumns.KEY, dataRow.getKey());
-            values.put(IndexColumns.SLICE_URI, dataRow.getUri().toSafeString());
-            values.put(IndexColumns.TITLE, dataRow.getTitle());
-            values.put(IndexColumns.SUMMARY, dataRow.getSummary());
-            final CharSequence screenTitle = dataRow.getScreenTitle();
-            if (screenTitle != null) {
-                values.put(IndexColumns.SCREENTITLE, screenTitle.toString());
+    void updateSliceData(SQLiteDatabase database, List<SliceData> indexData) {
+        final Map<String, IndexedRow> indexedRows = new ArrayMap<>();
+        final List<Long> staleDocIds = new ArrayList<>();
+        try (Cursor cursor = database.rawQuery(QUERY_INDEXED_ROWS, null /* selectionArgs */)) {
+            while (cursor.moveToNext()) {
+                final long docId = cursor.getLong(0);
+                final String key = cursor.getString(1);
+                if (indexedRows.containsKey(key)) {
+                    staleDocIds.add(docId);
+                    continue;
+                }
+                final IndexedRow row = new IndexedRow(docId, !cursor.isNull(2),
+                        cursor.getLong(2));
+                indexedRows.put(key, row);
             }
-            values.put(IndexColumns.KEYWORDS, dataRow.getKeywords());
-            values.put(IndexColumns.ICON_RESOURCE, dataRow.getIconResource());
-            values.put(IndexColumns.FRAGMENT, dataRow.getFragmentClassName());
-            values.put(IndexColumns.CONTROLLER, dataRow.getPreferenceController());
-            values.put(IndexColumns.SLICE_TYPE, dataRow.getSliceType());
-            values.put(IndexColumns.UNAVAILABLE_SLICE_SUBTITLE,
-                    dataRow.getUnavailableSliceSubtitle());
-            values.put(IndexColumns.PUBLIC_SLICE, dataRow.isPublicSlice());
-
-            database.replaceOrThrow(Tables.TABLE_SLICES_INDEX, null /* nullColumnHack */,
-                    values);
+        }
+
+        int inserted = 0;
+        int updated = 0;
+        try (SQLiteStatement insert = database.compileStatement(INSERT_SLICE);
+             SQLiteStatement update = database.compileStatement(UPDATE_SLICE);
+             SQLiteStatement delete = database.compileStatement(DELETE_SLICE);
+             SQLiteStatement insertHash = database.compileStatement(INSERT_HASH)) {
+            final Set<String> keys = new ArraySet<>();
+            for (SliceData dataRow : indexData) {
+                final String key = dataRow.getKey();
+                if (!keys.add(key)) {
+                    Log.w(TAG, "Duplicate slice key " + key);
+                    continue;
+                }
+                final long hash = computeHash(dataRow);
+                final IndexedRow row = indexedRows.remove(key);
+                final long docId;
+                if (row == null) {
+                    bindSliceData(insert, dataRow);
+                    docId = insert.executeInsert();
+                    inserted++;
+                } else if (!row.mHasHash || row.mHash != hash) {
+                    bindSliceData(update, dataRow);
+                    update.bindLong(UPDATE_DOC_ID_INDEX, row.mDocId);
+                    update.executeUpdateDelete();
+                    docId = row.mDocId;
+                    updated++;
+                } else {
+                    continue;
+                }
+                insertHash.bindString(1, key);
+                insertHash.bindLong(2, docId);
+                insertHash.bindLong(3, hash);
+                insertHash.executeInsert();
+            }
+
+            for (IndexedRow row : indexedRows.values()) {
+                staleDocIds.add(row.mDocId);
+            }
+            for (long docId : staleDocIds) {
+                delete.bindLong(1, docId);
+                delete.executeUpdateDelete();
+            }
+        }
+        database.execSQL(DELETE_STALE_HASHES);
+        Log.d(TAG, "Slices inserted: " + inserted + ", updated: " + updated + ", deleted: "
+                + staleDocIds.size());
+    }
+
+    private static void bindSliceData(SQLiteStatement statement, SliceData dataRow) {
+        statement.clearBindings();
+        bindString(statement, 1, dataRow.getKey());
+        bindString(statement, 2, dataRow.getUri().toSafeString());
+        bindString(statement, 3, dataRow.getTitle());
+        bindString(statement, 4, dataRow.getSummary());
+        final CharSequence screenTitle = dataRow.getScreenTitle();
+        bindString(statement, 5, screenTitle != null ? screenTitle.toString() : null);
+        bindString(statement, 6, dataRow.getKeywords());
+        statement.bindLong(7, dataRow.getIconResource());
+        bindString(statement, 8, dataRow.getFragmentClassName());
+        bindString(statement, 9, dataRow.getPreferenceController());
+        statement.bindLong(10, dataRow.getSliceType());
+        bindString(statement, 11, dataRow.getUnavailableSliceSubtitle());
+        statement.bindLong(12, dataRow.isPublicSlice() ? 1 : 0);
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Computes a 64-bit FNV-1a hash of every indexed column of {@code dataRow}.
+     */
+    @VisibleForTesting
+    static long computeHash(SliceData dataRow) {
+        final CharSequence screenTitle = dataRow.getScreenTitle();
+        final Object[] fields = {
+                dataRow.getKey(),
+                dataRow.getUri().toSafeString(),
+                dataRow.getTitle(),
+                dataRow.getSummary(),
+                screenTitle != null ? screenTitle.toString() : null,
+                dataRow.getKeywords(),
+                dataRow.getIconResource(),
+                dataRow.getFragmentClassName(),
+                dataRow.getPreferenceController(),
+                dataRow.getSliceType(),
+                dataRow.getUnavailableSliceSubtitle(),
+                dataRow.isPublicSlice()};
+        long hash = FNV_OFFSET_BASIS;
+        for (Object field : fields) {
+            final String value = String.valueOf(field);
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+            }
+            // Separate the fields, so moving a character between two fields changes the hash.
+            hash = (hash ^ (field == null ? 0xFFFE : 0xFFFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static class IndexedRow {
+        private final long mDocId;
+        private final boolean mHasHash;
+        private final long mHash;
+
+        IndexedRow(long docId, boolean hasHash, long hash) {
+            mDocId = docId;
+            mHasHash = hasHash;
+            mHash = hash;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.utils;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the bounded pools running the background work of the settings pages, releasing
+ * their idle threads.
+ */
+public final class ThreadPoolUtils {
+
+    private ThreadPoolUtils() {
+    }
+
+    /**
+     * Create a pool of one thread per CPU core, at least 2 and at most {@code maxPoolSize}. The
+     * threads are released after being idle for {@code keepAliveSeconds}, so the pool costs
+     * nothing while its page isn't loading.
+     */
+    public static ThreadPoolExecutor newWorkerPool(int maxPoolSize, long keepAliveSeconds) {
+        return newWorkerPool(maxPoolSize, keepAliveSeconds, Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Same as {@link #newWorkerPool(int, long)}, creating the threads with
+     * {@code threadFactory}.
+     */
+    public static ThreadPoolExecutor newWorkerPool(int maxPoolSize, long keepAliveSeconds,
+            ThreadFactory threadFactory) {
+        final int poolSize = Math.max(2,
+                Math.min(maxPoolSize, Runtime.getRuntime().availableProcessors()));
+        return newPool(poolSize, keepAliveSeconds, threadFactory);
+    }
+
+    /**
+     * Create a pool of a single thread, running the tasks in order. Like the worker pools, the
+     * thread is released after being idle for {@code keepAliveSeconds}.
+     */
+    public static ThreadPoolExecutor newSingleThreadPool(long keepAliveSeconds) {
+        return newPool(1, keepAliveSeconds, Executors.defaultThreadFactory());
+    }
+
+    private static ThreadPoolExecutor newPool(int poolSize, long keepAliveSeconds,
+            ThreadFactory threadFactory) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize,
+                keepAliveSeconds, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
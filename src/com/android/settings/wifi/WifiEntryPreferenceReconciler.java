@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.wifi;
+
+import android.text.TextUtils;
+import android.util.ArrayMap;
+
+import androidx.preference.Preference;
+import androidx.preference.PreferenceGroup;
+
+import com.android.settingslib.wifi.LongPressWifiEntryPreference;
+import com.android.wifitrackerlib.WifiEntry;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reconciles the {@link LongPressWifiEntryPreference}s of a {@link PreferenceGroup} with a list
+ * of {@link WifiEntry}s, matching them by key.
+ *
+ * <p>Only the preferences of the entries which appeared, disappeared or are backed by a new
+ * {@link WifiEntry} object are added or removed, and the moved ones get their new order. The
+ * other preferences of the group are left untouched, so a scan result only notifies the list of
+ * what actually changed.
+ */
+public final class WifiEntryPreferenceReconciler {
+
+    /** Creates the preference of a {@link WifiEntry} which has none in the group yet. */
+    public interface PreferenceFactory {
+        /** @return the preference of {@code wifiEntry}, its key and order are set afterwards. */
+        LongPressWifiEntryPreference create(WifiEntry wifiEntry);
+    }
+
+    private WifiEntryPreferenceReconciler() {
+    }
+
+    /**
+     * Updates the preferences of {@code group} so it has one preference per entry of
+     * {@code wifiEntries}, ordered from 0 as in the list.
+     *
+     * @return the number of preferences created by {@code factory}
+     */
+    public static int reconcile(PreferenceGroup group, List<WifiEntry> wifiEntries,
+            PreferenceFactory factory) {
+        final int count = group.getPreferenceCount();
+        final Map<String, LongPressWifiEntryPreference> stalePrefs = new ArrayMap<>(count);
+        for (int i = 0; i < count; i++) {
+            final Preference pref = group.getPreference(i);
+            if (pref instanceof LongPressWifiEntryPreference
+                    && !TextUtils.isEmpty(pref.getKey())) {
+                stalePrefs.put(pref.getKey(), (LongPressWifiEntryPreference) pref);
+            }
+        }
+
+        int createdCount = 0;
+        final int size = wifiEntries.size();
+        for (int index = 0; index < size; index++) {
+            final WifiEntry wifiEntry = wifiEntries.get(index);
+            final String key = wifiEntry.getKey();
+            LongPressWifiEntryPreference pref = stalePrefs.remove(key);
+            if (pref != null && pref.getWifiEntry() != wifiEntry) {
+                // The preference listens to the former WifiEntry object, so it's replaced.
+                group.removePreference(pref);
+                pref = null;
+            }
+            if (pref == null) {
+                pref = factory.create(wifiEntry);
+                pref.setKey(key);
+                pref.setOrder(index);
+                group.addPreference(pref);
+                createdCount++;
+            } else {
+                // The preference refreshes itself on the updates of its WifiEntry, and
+                // setOrder() only notifies the list if the order changed.
+                pref.setOrder(index);
+            }
+        }
+
+        for (LongPressWifiEntryPreference pref : stalePrefs.values()) {
+            group.removePreference(pref);
+        }
+        return createdCount;
+    }
+}
@@ -82,6 +82,7 @@ import com.android.wifitrackerlib.WifiPickerTracker;
 
 import java.time.Clock;
 import java.time.ZoneOffset;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -747,85 +748,44 @@ public class WifiSettings extends RestrictedSettingsFragment
             return;
         }
 
-        boolean hasAvailableWifiEntries = false;
         mStatusMessagePreference.setVisible(false);
         mWifiEntryPreferenceCategory.setVisible(true);
 
         final WifiEntry connectedEntry = mWifiPickerTracker.getConnectedWifiEntry();
         mConnectedWifiEntryPreferenceCategory.setVisible(connectedEntry != null);
-        if (connectedEntry != null) {
-            final LongPressWifiEntryPreference connectedPref =
-                    mConnectedWifiEntryPreferenceCategory.findPreference(connectedEntry.getKey());
-            if (connectedPref == null || connectedPref.getWifiEntry() != connectedEntry) {
-                mConnectedWifiEntryPreferenceCategory.removeAll();
-                final ConnectedWifiEntryPreference pref =
-                        new ConnectedWifiEntryPreference(getPrefContext(), connectedEntry, this);
-                pref.setKey(connectedEntry.getKey());
-                pref.refresh();
-                mConnectedWifiEntryPreferenceCategory.addPreference(pref);
-                pref.setOnPreferenceClickListener(preference -> {
-                    if (connectedEntry.canSignIn()) {
-                        connectedEntry.signIn(null /* callback */);
-                    } else {
-                        launchNetworkDetailsFragment(pref);
-                    }
-                    return true;
-                });
-                pref.setOnGearClickListener(preference -> {
-                    launchNetworkDetailsFragment(pref);
-                });
-
-                if (mClickedConnect) {
-                    mClickedConnect = false;
-                    scrollToPreference(mConnectedWifiEntryPreferenceCategory);
-                }
-            }
-        } else {
-            mConnectedWifiEntryPreferenceCategory.removeAll();
+        final int connectedPrefCreated = WifiEntryPreferenceReconciler.reconcile(
+                mConnectedWifiEntryPreferenceCategory,
+                connectedEntry != null
+                        ? Collections.singletonList(connectedEntry)
+                        : Collections.emptyList(),
+                this::createConnectedPreference);
+        if (connectedPrefCreated > 0 && mClickedConnect) {
+            mClickedConnect = false;
+            scrollToPreference(mConnectedWifiEntryPreferenceCategory);
         }
 
-        int index = 0;
-        cacheRemoveAllPrefs(mWifiEntryPreferenceCategory);
-        List<WifiEntry> wifiEntries = mWifiPickerTracker.getWifiEntries();
-        for (WifiEntry wifiEntry : wifiEntries) {
-            hasAvailableWifiEntries = true;
-
-            String key = wifiEntry.getKey();
-            LongPressWifiEntryPreference pref =
-                    (LongPressWifiEntryPreference) getCachedPreference(key);
-            if (pref != null) {
-                if (pref.getWifiEntry() == wifiEntry) {
-                    pref.setOrder(index++);
-                    continue;
-                } else {
-                    // Create a new preference if the underlying WifiEntry object has changed
-                    removePreference(key);
-                }
-            }
-
-            pref = createLongPressWifiEntryPreference(wifiEntry);
-            pref.setKey(wifiEntry.getKey());
-            pref.setOrder(index++);
-            pref.refresh();
-
-            if (wifiEntry.getHelpUriString() != null) {
-                pref.setOnButtonClickListener(preference -> {
-                    openSubscriptionHelpPage(wifiEntry);
-                });
-            }
-            mWifiEntryPreferenceCategory.addPreference(pref);
-        }
-        removeCachedPrefs(mWifiEntryPreferenceCategory);
+        final List<WifiEntry> wifiEntries = mWifiPickerTracker.getWifiEntries();
+        final boolean hasAvailableWifiEntries = !wifiEntries.isEmpty();
+        WifiEntryPreferenceReconciler.reconcile(mWifiEntryPreferenceCategory, wifiEntries,
+                this::createWifiEntryPreference);
+        int index = wifiEntries.size();
 
+        Preference emptyPref = mWifiEntryPreferenceCategory.findPreference(
+                PREF_KEY_EMPTY_WIFI_LIST);
         if (!hasAvailableWifiEntries) {
             setProgressBarVisible(true);
-            Preference pref = new Preference(getPrefContext());
-            pref.setSelectable(false);
-            pref.setSummary(R.string.wifi_empty_list_wifi_on);
-            pref.setOrder(index++);
-            pref.setKey(PREF_KEY_EMPTY_WIFI_LIST);
-            mWifiEntryPreferenceCategory.addPreference(pref);
+            if (emptyPref == null) {
+                emptyPref = new Preference(getPrefContext());
+                emptyPref.setSelectable(false);
+                emptyPref.setSummary(R.string.wifi_empty_list_wifi_on);
+                emptyPref.setKey(PREF_KEY_EMPTY_WIFI_LIST);
+                mWifiEntryPreferenceCategory.addPreference(emptyPref);
+            }
+            emptyPref.setOrder(index++);
         } else {
+            if (emptyPref != null) {
+                mWifiEntryPreferenceCategory.removePreference(emptyPref);
+            }
             // Continuing showing progress bar for an additional delay to overlap with animation
             getView().postDelayed(mHideProgressBarRunnable, 1700 /* delay millis */);
         }
@@ -835,6 +795,35 @@ public class WifiSettings extends RestrictedSettingsFragment
         setAdditionalSettingsSummaries();
     }
 
+    private LongPressWifiEntryPreference createConnectedPreference(WifiEntry connectedEntry) {
+        final ConnectedWifiEntryPreference pref =
+                new ConnectedWifiEntryPreference(getPrefContext(), connectedEntry, this);
+        pref.refresh();
+        pref.setOnPreferenceClickListener(preference -> {
+            if (connectedEntry.canSignIn()) {
+                connectedEntry.signIn(null /* callback */);
+            } else {
+                launchNetworkDetailsFragment(pref);
+            }
+            return true;
+        });
+        pref.setOnGearClickListener(preference -> {
+            launchNetworkDetailsFragment(pref);
+        });
+        return pref;
+    }
+
+    private LongPressWifiEntryPreference createWifiEntryPreference(WifiEntry wifiEntry) {
+        final LongPressWifiEntryPreference pref = createLongPressWifiEntryPreference(wifiEntry);
+        pref.refresh();
+        if (wifiEntry.getHelpUriString() != null) {
+            pref.setOnButtonClickListener(preference -> {
+                openSubscriptionHelpPage(wifiEntry);
+            });
+        }
+        return pref;
+    }
+
     private void launchNetworkDetailsFragment(LongPressWifiEntryPreference pref) {
         final WifiEntry wifiEntry = pref.getWifiEntry();
         final Context context = getContext();
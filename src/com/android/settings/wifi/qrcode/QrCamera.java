@@ -18,6 +18,7 @@ package com.android.settings.wifi.qrcode;
 
 import android.content.Context;
 import android.content.res.Configuration;
+import android.graphics.ImageFormat;
 import android.graphics.Matrix;
 import android.graphics.Rect;
 import android.graphics.SurfaceTexture;
@@ -35,6 +36,8 @@ import android.view.WindowManager;
 
 import androidx.annotation.VisibleForTesting;
 
+import com.android.settings.utils.ThreadPoolUtils;
+
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.BinaryBitmap;
 import com.google.zxing.DecodeHintType;
@@ -48,7 +51,7 @@ import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Semaphore;
 
 /**
@@ -72,6 +75,13 @@ public class QrCamera extends Handler {
 
     private static final long AUTOFOCUS_INTERVAL_MS = 1500L;
 
+    // The camera fills one buffer while the decoder works on the other.
+    private static final int PREVIEW_BUFFER_COUNT = 2;
+    private static final long DECODE_THREAD_KEEP_ALIVE_SECONDS = 10L;
+
+    // Shared by all the scanners, so starting a scan doesn't create a new thread.
+    private static ExecutorService sDecodeExecutor;
+
     private static Map<DecodeHintType, List<BarcodeFormat>> HINTS = new ArrayMap<>();
     private static List<BarcodeFormat> FORMATS = new ArrayList<>();
 
@@ -88,6 +98,8 @@ public class QrCamera extends Handler {
     private MultiFormatReader mReader;
     private DecodingTask mDecodeTask;
     private int mCameraOrientation;
+    // Reused for the frames of the same crop size, only accessed by the decoding thread.
+    private QrYuvLuminanceSource mFrameImage;
     @VisibleForTesting
     Camera.Parameters mParameters;
 
@@ -108,7 +120,7 @@ public class QrCamera extends Handler {
         if (mDecodeTask == null) {
             mDecodeTask = new DecodingTask(surface);
             // Execute in the separate thread pool to prevent block other AsyncTask.
-            mDecodeTask.executeOnExecutor(Executors.newSingleThreadExecutor());
+            mDecodeTask.executeOnExecutor(getDecodeExecutor());
         }
     }
 
@@ -230,8 +242,10 @@ public class QrCamera extends Handler {
     }
 
     private class DecodingTask extends AsyncTask<Void, Void, String> {
-        private QrYuvLuminanceSource mImage;
+        private final Semaphore mFrameAvailable = new Semaphore(0);
         private SurfaceTexture mSurface;
+        // The latest preview frame which is not decoded yet. Guarded by this task.
+        private byte[] mPendingFrame;
 
         private DecodingTask(SurfaceTexture surface) {
             mSurface = surface;
@@ -243,24 +257,31 @@ public class QrCamera extends Handler {
                 return null;
             }
 
-            final Semaphore imageGot = new Semaphore(0);
+            // The preview frames are written into the same few buffers, which are given back to
+            // the camera once copied, instead of a new buffer per frame.
+            mCamera.setPreviewCallbackWithBuffer(this::onPreviewFrame);
+            final int bufferSize = mPreviewSize.getWidth() * mPreviewSize.getHeight()
+                    * ImageFormat.getBitsPerPixel(mParameters.getPreviewFormat()) / 8;
+            for (int i = 0; i < PREVIEW_BUFFER_COUNT; i++) {
+                mCamera.addCallbackBuffer(new byte[bufferSize]);
+            }
+
             while (true) {
-                // This loop will try to capture preview image continuously until a valid QR Code
-                // decoded. The caller can also call {@link #stop()} to interrupts scanning loop.
-                mCamera.setOneShotPreviewCallback(
-                        (imageData, camera) -> {
-                            mImage = getFrameImage(imageData);
-                            imageGot.release();
-                        });
+                // This loop will try to decode the preview frames continuously until a valid QR
+                // Code decoded. The caller can also call {@link #stop()} to interrupts scanning
+                // loop.
                 try {
                     // Semaphore.acquire() blocking until permit is available, or the thread is
                     // interrupted.
-                    imageGot.acquire();
+                    mFrameAvailable.acquire();
+                    final byte[] frame = takePendingFrame();
+                    final QrYuvLuminanceSource image = getFrameImage(frame);
+                    // The frame is copied into the image, the camera can fill it again.
+                    mCamera.addCallbackBuffer(frame);
                     Result qrCode = null;
                     try {
-                        qrCode =
-                                mReader.decodeWithState(
-                                        new BinaryBitmap(new HybridBinarizer(mImage)));
+                        qrCode = mReader.decodeWithState(
+                                new BinaryBitmap(new HybridBinarizer(image)));
                     } catch (ReaderException e) {
                         // No logging since every time the reader cannot decode the
                         // image, this ReaderException will be thrown.
@@ -286,6 +307,29 @@ public class QrCamera extends Handler {
             }
         }
 
+        private void onPreviewFrame(byte[] frame, Camera camera) {
+            if (frame == null) {
+                return;
+            }
+            final byte[] skippedFrame;
+            synchronized (this) {
+                skippedFrame = mPendingFrame;
+                mPendingFrame = frame;
+            }
+            if (skippedFrame != null) {
+                // The decoder is behind, only the latest frame is worth decoding.
+                camera.addCallbackBuffer(skippedFrame);
+            } else {
+                mFrameAvailable.release();
+            }
+        }
+
+        private synchronized byte[] takePendingFrame() {
+            final byte[] frame = mPendingFrame;
+            mPendingFrame = null;
+            return frame;
+        }
+
         private boolean initCamera(SurfaceTexture surface) {
             final int numberOfCameras = Camera.getNumberOfCameras();
             Camera.CameraInfo cameraInfo = new Camera.CameraInfo();
@@ -366,10 +410,22 @@ public class QrCamera extends Handler {
 
     private QrYuvLuminanceSource getFrameImage(byte[] imageData) {
         final Rect frame = mScannerCallback.getFramePosition(mPreviewSize, mCameraOrientation);
-        final QrYuvLuminanceSource image = new QrYuvLuminanceSource(imageData,
-                mPreviewSize.getWidth(), mPreviewSize.getHeight());
-        return (QrYuvLuminanceSource)
-                image.crop(frame.left, frame.top, frame.width(), frame.height());
+        if (mFrameImage == null || mFrameImage.getWidth() != frame.width()
+                || mFrameImage.getHeight() != frame.height()) {
+            mFrameImage = new QrYuvLuminanceSource(frame.width(), frame.height());
+        }
+        mFrameImage.setCroppedData(imageData, mPreviewSize.getWidth(), mPreviewSize.getHeight(),
+                frame.left, frame.top);
+        return mFrameImage;
+    }
+
+    private static synchronized ExecutorService getDecodeExecutor() {
+        if (sDecodeExecutor == null) {
+            // The thread is released while nothing is scanned.
+            sDecodeExecutor = ThreadPoolUtils.newSingleThreadPool(
+                    DECODE_THREAD_KEEP_ALIVE_SECONDS);
+        }
+        return sDecodeExecutor;
     }
 
     @Override
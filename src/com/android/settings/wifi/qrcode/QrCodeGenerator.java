@@ -18,21 +18,35 @@ package com.android.settings.wifi.qrcode;
 
 import android.graphics.Bitmap;
 import android.graphics.Color;
+import android.util.LruCache;
+
+import androidx.annotation.VisibleForTesting;
 
-import com.google.zxing.BarcodeFormat;
 import com.google.zxing.EncodeHintType;
-import com.google.zxing.MultiFormatWriter;
 import com.google.zxing.WriterException;
-import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
 
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 public final class QrCodeGenerator {
+    // The quiet zone around the code, in modules, as drawn by zxing's QRCodeWriter.
+    private static final int QUIET_ZONE_SIZE = 4;
+
+    @VisibleForTesting
+    static final int MAX_CACHE_SIZE = 4;
+
+    // Keyed by the size and the contents, so a recreated or rotated page doesn't encode again.
+    private static final LruCache<String, Bitmap> sCache = new LruCache<>(MAX_CACHE_SIZE);
+
     /**
-     * Generates a barcode image with {@code contents}.
+     * Generates a barcode image with {@code contents}. The returned bitmap is immutable and may
+     * be shared with the other callers of the same contents and size.
      *
      * @param contents The contents to encode in the barcode
      * @param size     The preferred image size in pixels
@@ -40,20 +54,70 @@ public final class QrCodeGenerator {
      */
     public static Bitmap encodeQrCode(String contents, int size)
             throws WriterException, IllegalArgumentException {
+        final String key = size + "/" + contents;
+        final Bitmap cachedBitmap = sCache.get(key);
+        if (cachedBitmap != null && !cachedBitmap.isRecycled()) {
+            return cachedBitmap;
+        }
+
+        if (contents.isEmpty()) {
+            throw new IllegalArgumentException("Found empty contents");
+        }
         final Map<EncodeHintType, Object> hints = new HashMap<>();
         if (!isIso88591(contents)) {
             hints.put(EncodeHintType.CHARACTER_SET, StandardCharsets.UTF_8.name());
         }
 
-        final BitMatrix qrBits = new MultiFormatWriter().encode(contents, BarcodeFormat.QR_CODE,
-                size, size, hints);
-        final Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.RGB_565);
-        for (int x = 0; x < size; x++) {
-            for (int y = 0; y < size; y++) {
-                bitmap.setPixel(x, y, qrBits.get(x, y) ? Color.BLACK : Color.WHITE);
+        final ByteMatrix modules = Encoder.encode(contents, ErrorCorrectionLevel.L, hints)
+                .getMatrix();
+        final Bitmap bitmap = Bitmap.createBitmap(renderPixels(modules, size), size, size,
+                Bitmap.Config.RGB_565);
+        sCache.put(key, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Draws the modules into a {@code size} x {@code size} pixel buffer, scaled and centered as
+     * zxing's QRCodeWriter does. Each row of modules is drawn once, then copied for the other
+     * pixel rows of the module.
+     */
+    @VisibleForTesting
+    static int[] renderPixels(ByteMatrix modules, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Requested dimensions are too small: " + size);
+        }
+        final int moduleCount = modules.getWidth();
+        final int codeWidth = moduleCount + QUIET_ZONE_SIZE * 2;
+        // The code is never scaled below one pixel per module, and clipped if it doesn't fit.
+        final int outputSize = Math.max(size, codeWidth);
+        final int multiple = outputSize / codeWidth;
+        final int padding = (outputSize - moduleCount * multiple) / 2;
+
+        final int[] pixels = new int[size * size];
+        Arrays.fill(pixels, Color.WHITE);
+        final int[] rowPixels = new int[size];
+        for (int moduleY = 0; moduleY < moduleCount; moduleY++) {
+            final int top = padding + moduleY * multiple;
+            if (top >= size) {
+                break;
+            }
+            Arrays.fill(rowPixels, Color.WHITE);
+            for (int moduleX = 0; moduleX < moduleCount; moduleX++) {
+                if (modules.get(moduleX, moduleY) != 1) {
+                    continue;
+                }
+                final int left = padding + moduleX * multiple;
+                if (left >= size) {
+                    break;
+                }
+                Arrays.fill(rowPixels, left, Math.min(left + multiple, size), Color.BLACK);
+            }
+            final int bottom = Math.min(top + multiple, size);
+            for (int y = top; y < bottom; y++) {
+                System.arraycopy(rowPixels, 0, pixels, y * size, size);
             }
         }
-        return bitmap;
+        return pixels;
     }
 
     private static boolean isIso88591(String contents) {
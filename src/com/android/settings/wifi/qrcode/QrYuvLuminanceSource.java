@@ -35,6 +35,14 @@ public class QrYuvLuminanceSource extends LuminanceSource {
         mYuvData = yuvData;
     }
 
+    /**
+     * Creates a source with its own buffer, to be filled by {@link #setCroppedData} for each
+     * preview frame.
+     */
+    public QrYuvLuminanceSource(int width, int height) {
+        this(new byte[width * height], width, height);
+    }
+
     @Override
     public boolean isCropSupported() {
         return true;
@@ -42,18 +50,26 @@ public class QrYuvLuminanceSource extends LuminanceSource {
 
     @Override
     public LuminanceSource crop(int left, int top, int crop_width, int crop_height) {
-        final byte[] newImage = new byte[crop_width * crop_height];
-        int inputOffset = top * mWidth + left;
+        final QrYuvLuminanceSource newImage = new QrYuvLuminanceSource(crop_width, crop_height);
+        newImage.setCroppedData(mYuvData, mWidth, mHeight, left, top);
+        return newImage;
+    }
 
-        if (left + crop_width > mWidth || top + crop_height > mHeight) {
+    /**
+     * Copies the area of the size of this source at {@code left}, {@code top} of a
+     * {@code dataWidth} x {@code dataHeight} picture into the buffer of this source, so the same
+     * source can be reused for every preview frame.
+     */
+    public void setCroppedData(byte[] yuvData, int dataWidth, int dataHeight, int left, int top) {
+        if (left + mWidth > dataWidth || top + mHeight > dataHeight) {
             throw new IllegalArgumentException("cropped rectangle does not fit within image data.");
         }
 
-        for (int y = 0; y < crop_height; y++) {
-            System.arraycopy(mYuvData, inputOffset, newImage, y * crop_width, crop_width);
-            inputOffset += mWidth;
+        int inputOffset = top * dataWidth + left;
+        for (int y = 0; y < mHeight; y++) {
+            System.arraycopy(yuvData, inputOffset, mYuvData, y * mWidth, mWidth);
+            inputOffset += dataWidth;
         }
-        return new QrYuvLuminanceSource(newImage, crop_width, crop_height);
     }
 
     @Override
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.tests.perf;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Bundle;
+import android.os.SystemClock;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Compares the former QrCodeGenerator, which set the bitmap pixel by pixel, with its current
+ * module level rendering into a pixel buffer, for the Wi-Fi sharing payloads of WPA3 networks at
+ * the size of the QR code on a xxhdpi screen.
+ *
+ * <p>Settings classes can't be loaded here, so the rendering of QrCodeGenerator is replayed by
+ * {@link #encodeByModules}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QrCodeGeneratorBenchmark {
+    private static final int QUIET_ZONE_SIZE = 4;
+    // qrcode_size is 264dp.
+    private static final int SIZE = 792;
+    private static final int TEST_TIME = 10;
+    private static final String[] PAYLOADS = {
+            "WIFI:S:HomeNetwork;T:SAE;P:correct-horse-battery-staple;;",
+            "WIFI:S:Office 5GHz guests;T:SAE;P:Zx8#kq2!Lm9@vT4$wR7%nB1^;H:true;;",
+            "DPP:C:81/1,115/36;I:SN=4774LH2b4044;M:010203040506;K:MDkwEwYHKoZIzj0CAQYIKoZIzj0DAQcD"
+                    + "IgADURzxmttZoIRIPWGoQMV00XHWCAQIhXruVWOz0NjlkIA=;;"};
+
+    private final Map<EncodeHintType, Object> mHints = Collections.emptyMap();
+    private Bundle mBundle;
+
+    @Before
+    public void setUp() {
+        mBundle = new Bundle();
+    }
+
+    @After
+    public void tearDown() {
+        getInstrumentation().sendStatus(0, mBundle);
+    }
+
+    @Test
+    public void moduleRendering_comparedToSetPixel() throws WriterException {
+        // Warm up, and check both give the same image.
+        for (String payload : PAYLOADS) {
+            final Bitmap expected = encodeBySetPixel(payload);
+            final Bitmap actual = encodeByModules(payload);
+            assertTrue(expected.sameAs(actual));
+            expected.recycle();
+            actual.recycle();
+        }
+
+        long setPixelNanos = 0;
+        long modulesNanos = 0;
+        for (int i = 0; i < TEST_TIME; i++) {
+            for (String payload : PAYLOADS) {
+                long start = SystemClock.elapsedRealtimeNanos();
+                final Bitmap setPixelBitmap = encodeBySetPixel(payload);
+                setPixelNanos += SystemClock.elapsedRealtimeNanos() - start;
+
+                start = SystemClock.elapsedRealtimeNanos();
+                final Bitmap modulesBitmap = encodeByModules(payload);
+                modulesNanos += SystemClock.elapsedRealtimeNanos() - start;
+
+                setPixelBitmap.recycle();
+                modulesBitmap.recycle();
+            }
+        }
+
+        final int count = TEST_TIME * PAYLOADS.length;
+        mBundle.putString("QrCodeGeneratorBenchmark_size", String.valueOf(SIZE));
+        mBundle.putString("QrCodeGeneratorBenchmark_set_pixel_avg_us",
+                String.valueOf(setPixelNanos / count / 1000));
+        mBundle.putString("QrCodeGeneratorBenchmark_modules_avg_us",
+                String.valueOf(modulesNanos / count / 1000));
+    }
+
+    /** The former QrCodeGenerator.encodeQrCode(). */
+    private Bitmap encodeBySetPixel(String contents) throws WriterException {
+        final BitMatrix qrBits = new MultiFormatWriter().encode(contents, BarcodeFormat.QR_CODE,
+                SIZE, SIZE, mHints);
+        final Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.RGB_565);
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                bitmap.setPixel(x, y, qrBits.get(x, y) ? Color.BLACK : Color.WHITE);
+            }
+        }
+        return bitmap;
+    }
+
+    /** The current QrCodeGenerator.encodeQrCode(), without its cache. */
+    private Bitmap encodeByModules(String contents) throws WriterException {
+        final ByteMatrix modules = Encoder.encode(contents, ErrorCorrectionLevel.L, mHints)
+                .getMatrix();
+        final int moduleCount = modules.getWidth();
+        final int multiple = SIZE / (moduleCount + QUIET_ZONE_SIZE * 2);
+        final int padding = (SIZE - moduleCount * multiple) / 2;
+
+        final int[] pixels = new int[SIZE * SIZE];
+        Arrays.fill(pixels, Color.WHITE);
+        final int[] rowPixels = new int[SIZE];
+        for (int moduleY = 0; moduleY < moduleCount; moduleY++) {
+            Arrays.fill(rowPixels, Color.WHITE);
+            for (int moduleX = 0; moduleX < moduleCount; moduleX++) {
+                if (modules.get(moduleX, moduleY) == 1) {
+                    final int left = padding + moduleX * multiple;
+                    Arrays.fill(rowPixels, left, left + multiple, Color.BLACK);
+                }
+            }
+            final int top = padding + moduleY * multiple;
+            for (int y = top; y < top + multiple; y++) {
+                System.arraycopy(rowPixels, 0, pixels, y * SIZE, SIZE);
+            }
+        }
+        return Bitmap.createBitmap(pixels, SIZE, SIZE, Bitmap.Config.RGB_565);
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.tests.perf;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertEquals;
+
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.SystemClock;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares how QrCamera used to decode each preview frame, with a new frame buffer, crop and
+ * luminance source per frame, with the reused buffers of its current pipeline, on NV21 frames
+ * of a Wi-Fi DPP QR code as the camera delivers them.
+ *
+ * <p>Settings classes can't be loaded here, so the luminance source of QrCamera is replayed by
+ * {@link FrameSource}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QrFrameDecodeBenchmark {
+    private static final String QR_CODE =
+            "DPP:I:SN=4774LH2b4044;M:010203040506;K:MDkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDIgADURzxmttZoIRIP"
+                    + "WGoQMV00XHWCAQIhXruVWOz0NjlkIA=;;";
+    private static final int PREVIEW_WIDTH = 1280;
+    private static final int PREVIEW_HEIGHT = 960;
+    private static final int CROP_SIZE = 720;
+    private static final int QR_SIZE = 480;
+    private static final int FRAME_COUNT = 30;
+    private static final int TEST_TIME = 5;
+
+    private final MultiFormatReader mReader = new MultiFormatReader();
+    private Bundle mBundle;
+    private List<byte[]> mFrames;
+    private int mCropLeft;
+    private int mCropTop;
+
+    /** The luminance source of QrCamera, cropping the luminance plane of a NV21 frame. */
+    private static final class FrameSource extends LuminanceSource {
+        private final byte[] mData;
+
+        FrameSource(int width, int height) {
+            super(width, height);
+            mData = new byte[width * height];
+        }
+
+        void setCroppedData(byte[] yuvData, int dataWidth, int left, int top) {
+            int inputOffset = top * dataWidth + left;
+            for (int y = 0; y < getHeight(); y++) {
+                System.arraycopy(yuvData, inputOffset, mData, y * getWidth(), getWidth());
+                inputOffset += dataWidth;
+            }
+        }
+
+        @Override
+        public byte[] getRow(int y, byte[] row) {
+            if (row == null || row.length < getWidth()) {
+                row = new byte[getWidth()];
+            }
+            System.arraycopy(mData, y * getWidth(), row, 0, getWidth());
+            return row;
+        }
+
+        @Override
+        public byte[] getMatrix() {
+            return mData;
+        }
+    }
+
+    @Before
+    public void setUp() throws WriterException {
+        final Map<DecodeHintType, Object> hints = Collections.singletonMap(
+                DecodeHintType.POSSIBLE_FORMATS, Collections.singletonList(BarcodeFormat.QR_CODE));
+        mReader.setHints(hints);
+        mBundle = new Bundle();
+        mCropLeft = (PREVIEW_WIDTH - CROP_SIZE) / 2;
+        mCropTop = (PREVIEW_HEIGHT - CROP_SIZE) / 2;
+        mFrames = createFrames();
+    }
+
+    @After
+    public void tearDown() {
+        getInstrumentation().sendStatus(0, mBundle);
+    }
+
+    @Test
+    public void reusedBuffers_comparedToAllocatingPerFrame() {
+        // Warm up, and check both pipelines decode every frame.
+        assertEquals(FRAME_COUNT, decodeAllocatingPerFrame());
+        assertEquals(FRAME_COUNT, decodeWithReusedBuffers());
+
+        long allocatingNanos = 0;
+        long reusedNanos = 0;
+        long allocatingGcCount = 0;
+        long reusedGcCount = 0;
+        for (int i = 0; i < TEST_TIME; i++) {
+            long gcCount = getGcCount();
+            long start = SystemClock.elapsedRealtimeNanos();
+            decodeAllocatingPerFrame();
+            allocatingNanos += SystemClock.elapsedRealtimeNanos() - start;
+            allocatingGcCount += getGcCount() - gcCount;
+
+            gcCount = getGcCount();
+            start = SystemClock.elapsedRealtimeNanos();
+            decodeWithReusedBuffers();
+            reusedNanos += SystemClock.elapsedRealtimeNanos() - start;
+            reusedGcCount += getGcCount() - gcCount;
+        }
+
+        final int frameCount = FRAME_COUNT * TEST_TIME;
+        mBundle.putString("QrFrameDecodeBenchmark_allocating_avg_us_per_frame",
+                String.valueOf(allocatingNanos / frameCount / 1000));
+        mBundle.putString("QrFrameDecodeBenchmark_reused_avg_us_per_frame",
+                String.valueOf(reusedNanos / frameCount / 1000));
+        mBundle.putString("QrFrameDecodeBenchmark_allocating_gc_count",
+                String.valueOf(allocatingGcCount));
+        mBundle.putString("QrFrameDecodeBenchmark_reused_gc_count",
+                String.valueOf(reusedGcCount));
+    }
+
+    /**
+     * The former pipeline: each one shot preview callback gets a new frame buffer, which is
+     * cropped into a new array and luminance source.
+     *
+     * @return the number of decoded frames
+     */
+    private int decodeAllocatingPerFrame() {
+        int decodedCount = 0;
+        for (byte[] recordedFrame : mFrames) {
+            final byte[] frame = recordedFrame.clone();
+            final FrameSource image = new FrameSource(CROP_SIZE, CROP_SIZE);
+            image.setCroppedData(frame, PREVIEW_WIDTH, mCropLeft, mCropTop);
+            decodedCount += decode(image);
+        }
+        return decodedCount;
+    }
+
+    /**
+     * The current pipeline: the camera writes into the same callback buffers, which are cropped
+     * into the same luminance source.
+     *
+     * @return the number of decoded frames
+     */
+    private int decodeWithReusedBuffers() {
+        final byte[] frame = new byte[mFrames.get(0).length];
+        final FrameSource image = new FrameSource(CROP_SIZE, CROP_SIZE);
+        int decodedCount = 0;
+        for (byte[] recordedFrame : mFrames) {
+            System.arraycopy(recordedFrame, 0, frame, 0, frame.length);
+            image.setCroppedData(frame, PREVIEW_WIDTH, mCropLeft, mCropTop);
+            decodedCount += decode(image);
+        }
+        return decodedCount;
+    }
+
+    private int decode(LuminanceSource image) {
+        Result qrCode = null;
+        try {
+            qrCode = mReader.decodeWithState(new BinaryBitmap(new HybridBinarizer(image)));
+        } catch (ReaderException e) {
+            // Not decoded.
+        } finally {
+            mReader.reset();
+        }
+        return qrCode != null && QR_CODE.equals(qrCode.getText()) ? 1 : 0;
+    }
+
+    /**
+     * @return NV21 preview frames showing the QR code in the scanning frame, slightly moving and
+     * with sensor noise from frame to frame.
+     */
+    private List<byte[]> createFrames() throws WriterException {
+        final BitMatrix qrCode = new QRCodeWriter().encode(QR_CODE, BarcodeFormat.QR_CODE,
+                QR_SIZE, QR_SIZE);
+        final Random random = new Random(0 /* seed */);
+        final List<byte[]> frames = new ArrayList<>(FRAME_COUNT);
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            // The luminance plane, then the interleaved chroma plane at half resolution.
+            final byte[] frame = new byte[PREVIEW_WIDTH * PREVIEW_HEIGHT * 3 / 2];
+            final int qrLeft = (PREVIEW_WIDTH - QR_SIZE) / 2 + random.nextInt(21) - 10;
+            final int qrTop = (PREVIEW_HEIGHT - QR_SIZE) / 2 + random.nextInt(21) - 10;
+            for (int y = 0; y < PREVIEW_HEIGHT; y++) {
+                for (int x = 0; x < PREVIEW_WIDTH; x++) {
+                    final int qrX = x - qrLeft;
+                    final int qrY = y - qrTop;
+                    final boolean isDark = qrX >= 0 && qrX < QR_SIZE && qrY >= 0 && qrY < QR_SIZE
+                            && qrCode.get(qrX, qrY);
+                    final int luminance = (isDark ? 40 : 210) + random.nextInt(31) - 15;
+                    frame[y * PREVIEW_WIDTH + x] = (byte) luminance;
+                }
+            }
+            for (int index = PREVIEW_WIDTH * PREVIEW_HEIGHT; index < frame.length; index++) {
+                frame[index] = (byte) 128;
+            }
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    private static long getGcCount() {
+        final String gcCount = Debug.getRuntimeStat("art.gc.gc-count");
+        return gcCount != null ? Long.parseLong(gcCount) : 0L;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.tests.perf;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.provider.MediaStore.Files.FileColumns;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+/**
+ * Compares the five sum queries the storage page used to run per user with the single grouped
+ * query of StorageAsyncLoader, on a synthetic files table shaped like the MediaStore one. It
+ * only measures the query shapes, StorageAsyncLoaderTest checks MediaStore accepts the real one.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StorageFilesSizeBenchmark {
+    private static final String TABLE = "files";
+    private static final int ROW_COUNT = 150_000;
+    private static final int TEST_TIME = 20;
+    private static final int[] MEDIA_TYPES = {
+            FileColumns.MEDIA_TYPE_NONE,
+            FileColumns.MEDIA_TYPE_IMAGE,
+            FileColumns.MEDIA_TYPE_AUDIO,
+            FileColumns.MEDIA_TYPE_VIDEO,
+            FileColumns.MEDIA_TYPE_DOCUMENT};
+
+    // The five queries of the former implementation: images, videos, audio,
+    // documents and other, then trash.
+    private static final String[] SEPARATE_SELECTIONS = {
+            "media_type=" + FileColumns.MEDIA_TYPE_IMAGE + " AND is_trashed=0",
+            "media_type=" + FileColumns.MEDIA_TYPE_VIDEO + " AND is_trashed=0",
+            "media_type=" + FileColumns.MEDIA_TYPE_AUDIO + " AND is_trashed=0",
+            "media_type!=" + FileColumns.MEDIA_TYPE_IMAGE
+                    + " AND media_type!=" + FileColumns.MEDIA_TYPE_VIDEO
+                    + " AND media_type!=" + FileColumns.MEDIA_TYPE_AUDIO
+                    + " AND mime_type IS NOT NULL AND is_trashed=0",
+            "is_trashed=1"};
+    private static final String GROUPED_QUERY =
+            "SELECT media_type, is_trashed, mime_type, sum(_size) FROM " + TABLE
+                    + " GROUP BY media_type, is_trashed, mime_type";
+
+    private SQLiteDatabase mDatabase;
+    private Bundle mBundle;
+
+    @Before
+    public void setUp() {
+        mBundle = new Bundle();
+        mDatabase = SQLiteDatabase.create(null /* factory */);
+        mDatabase.execSQL("CREATE TABLE " + TABLE + " (_id INTEGER PRIMARY KEY, "
+                + "media_type INTEGER, mime_type TEXT, is_trashed INTEGER, _size INTEGER)");
+
+        final Random random = new Random(0 /* seed */);
+        final SQLiteStatement insert = mDatabase.compileStatement("INSERT INTO " + TABLE
+                + " (media_type, mime_type, is_trashed, _size) VALUES (?, ?, ?, ?)");
+        mDatabase.beginTransaction();
+        try {
+            for (int i = 0; i < ROW_COUNT; i++) {
+                final int mediaType = MEDIA_TYPES[random.nextInt(MEDIA_TYPES.length)];
+                insert.bindLong(1, mediaType);
+                // Directories have no mime type.
+                if (mediaType == FileColumns.MEDIA_TYPE_NONE && random.nextInt(4) == 0) {
+                    insert.bindNull(2);
+                } else {
+                    insert.bindString(2, "application/octet-stream");
+                }
+                insert.bindLong(3, random.nextInt(50) == 0 ? 1 : 0);
+                insert.bindLong(4, random.nextInt(10_000_000));
+                insert.executeInsert();
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mDatabase.close();
+        getInstrumentation().sendStatus(0, mBundle);
+    }
+
+    @Test
+    public void groupedQuery_comparedToSeparateQueries() {
+        // Warm up the page cache, and check both approaches account the same sizes.
+        assertArrayEquals(querySeparately(), queryGrouped());
+
+        long separateNanos = 0;
+        long groupedNanos = 0;
+        for (int i = 0; i < TEST_TIME; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            querySeparately();
+            separateNanos += SystemClock.elapsedRealtimeNanos() - start;
+
+            start = SystemClock.elapsedRealtimeNanos();
+            queryGrouped();
+            groupedNanos += SystemClock.elapsedRealtimeNanos() - start;
+        }
+
+        mBundle.putString("StorageFilesSizeBenchmark_row_count", String.valueOf(ROW_COUNT));
+        mBundle.putString("StorageFilesSizeBenchmark_separate_avg_us",
+                String.valueOf(separateNanos / TEST_TIME / 1000));
+        mBundle.putString("StorageFilesSizeBenchmark_grouped_avg_us",
+                String.valueOf(groupedNanos / TEST_TIME / 1000));
+    }
+
+    /** @return the images, videos, audio, documents and other, and trash sizes. */
+    private long[] querySeparately() {
+        final long[] sizes = new long[SEPARATE_SELECTIONS.length];
+        for (int i = 0; i < SEPARATE_SELECTIONS.length; i++) {
+            try (Cursor cursor = mDatabase.rawQuery("SELECT sum(_size) FROM " + TABLE
+                    + " WHERE " + SEPARATE_SELECTIONS[i], null /* selectionArgs */)) {
+                sizes[i] = cursor.moveToFirst() ? cursor.getLong(0) : 0L;
+            }
+        }
+        return sizes;
+    }
+
+    /** @return the same sizes as {@link #querySeparately()}, bucketed from one query. */
+    private long[] queryGrouped() {
+        final long[] sizes = new long[SEPARATE_SELECTIONS.length];
+        try (Cursor cursor = mDatabase.rawQuery(GROUPED_QUERY, null /* selectionArgs */)) {
+            while (cursor.moveToNext()) {
+                final int mediaType = cursor.getInt(0);
+                final long size = cursor.getLong(3);
+                if (cursor.getInt(1) != 0) {
+                    sizes[4] += size;
+                } else if (mediaType == FileColumns.MEDIA_TYPE_IMAGE) {
+                    sizes[0] += size;
+                } else if (mediaType == FileColumns.MEDIA_TYPE_VIDEO) {
+                    sizes[1] += size;
+                } else if (mediaType == FileColumns.MEDIA_TYPE_AUDIO) {
+                    sizes[2] += size;
+                } else if (!cursor.isNull(2)) {
+                    sizes[3] += size;
+                }
+            }
+        }
+        return sizes;
+    }
+}
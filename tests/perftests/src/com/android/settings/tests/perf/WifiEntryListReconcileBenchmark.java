@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.tests.perf;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+
+import androidx.preference.Preference;
+import androidx.preference.PreferenceCategory;
+import androidx.preference.PreferenceGroup;
+import androidx.preference.PreferenceManager;
+import androidx.preference.PreferenceScreen;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares how the Wi-Fi list of WifiSettings and NetworkProviderSettings used to be rebuilt on
+ * every scan result with the keyed reconciliation of WifiEntryPreferenceReconciler, on a
+ * synthetic stream of 200-entry scan results.
+ *
+ * <p>Settings classes can't be loaded here, so both approaches are replayed on plain preferences
+ * which hold the object of their entry, like LongPressWifiEntryPreference holds its WifiEntry.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WifiEntryListReconcileBenchmark {
+    private static final int ENTRY_COUNT = 200;
+    private static final int SCAN_COUNT = 100;
+    // The number of entries which disappear, appear, get a new object or move in each scan.
+    private static final int CHANGES_PER_SCAN = 4;
+
+    private Context mContext;
+    private Bundle mBundle;
+    private List<List<Entry>> mScans;
+    private int mRebuildInsertedOrRemoved;
+    private int mReconcileInsertedOrRemoved;
+
+    /** Stands for a WifiEntry, its object is replaced when WifiPickerTracker recreates it. */
+    private static final class Entry {
+        final String mKey;
+
+        Entry(String key) {
+            mKey = key;
+        }
+    }
+
+    private static final class EntryPreference extends Preference {
+        final Entry mEntry;
+
+        EntryPreference(Context context, Entry entry) {
+            super(context);
+            mEntry = entry;
+            setKey(entry.mKey);
+            setPersistent(false);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mContext = getInstrumentation().getTargetContext();
+        mBundle = new Bundle();
+        mScans = createScans();
+    }
+
+    @After
+    public void tearDown() {
+        getInstrumentation().sendStatus(0, mBundle);
+    }
+
+    @Test
+    public void keyedReconcile_comparedToRebuild() {
+        final PreferenceCategory rebuiltCategory = createCategory();
+        final Preference rebuiltAddNetworkPref = createAddNetworkPreference();
+        final PreferenceCategory reconciledCategory = createCategory();
+        final Preference reconciledAddNetworkPref = createAddNetworkPreference();
+
+        long rebuildNanos = 0;
+        long reconcileNanos = 0;
+        for (List<Entry> scan : mScans) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            rebuild(rebuiltCategory, rebuiltAddNetworkPref, scan);
+            rebuildNanos += SystemClock.elapsedRealtimeNanos() - start;
+
+            start = SystemClock.elapsedRealtimeNanos();
+            reconcile(reconciledCategory, reconciledAddNetworkPref, scan);
+            reconcileNanos += SystemClock.elapsedRealtimeNanos() - start;
+
+            // Both approaches must show the same list.
+            assertEquals(getKeysInOrder(rebuiltCategory), getKeysInOrder(reconciledCategory));
+        }
+
+        mBundle.putString("WifiEntryListReconcileBenchmark_entry_count",
+                String.valueOf(ENTRY_COUNT));
+        mBundle.putString("WifiEntryListReconcileBenchmark_rebuild_avg_us",
+                String.valueOf(rebuildNanos / SCAN_COUNT / 1000));
+        mBundle.putString("WifiEntryListReconcileBenchmark_reconcile_avg_us",
+                String.valueOf(reconcileNanos / SCAN_COUNT / 1000));
+        mBundle.putString("WifiEntryListReconcileBenchmark_rebuild_inserted_or_removed",
+                String.valueOf(mRebuildInsertedOrRemoved));
+        mBundle.putString("WifiEntryListReconcileBenchmark_reconcile_inserted_or_removed",
+                String.valueOf(mReconcileInsertedOrRemoved));
+    }
+
+    /** Replays the former updateWifiEntryPreferences(), based on the preference cache. */
+    private void rebuild(PreferenceGroup group, Preference addNetworkPref, List<Entry> scan) {
+        // cacheRemoveAllPrefs()
+        final Map<String, Preference> cache = new ArrayMap<>();
+        for (int i = 0; i < group.getPreferenceCount(); i++) {
+            final Preference pref = group.getPreference(i);
+            cache.put(pref.getKey(), pref);
+        }
+        int index = 0;
+        for (Entry entry : scan) {
+            Preference pref = cache.remove(entry.mKey);
+            if (pref != null) {
+                if (((EntryPreference) pref).mEntry == entry) {
+                    pref.setOrder(index++);
+                    continue;
+                }
+                // removePreference(key)
+                group.removePreference(group.findPreference(entry.mKey));
+                mRebuildInsertedOrRemoved++;
+            }
+            pref = new EntryPreference(mContext, entry);
+            pref.setOrder(index++);
+            group.addPreference(pref);
+            mRebuildInsertedOrRemoved++;
+        }
+        // removeCachedPrefs(), which also removed the add network preference.
+        for (Preference pref : cache.values()) {
+            group.removePreference(pref);
+            mRebuildInsertedOrRemoved++;
+        }
+        addNetworkPref.setOrder(index);
+        if (addNetworkPref.getParent() == null) {
+            mRebuildInsertedOrRemoved++;
+        }
+        group.addPreference(addNetworkPref);
+    }
+
+    /** Replays WifiEntryPreferenceReconciler.reconcile() and the add network preference. */
+    private void reconcile(PreferenceGroup group, Preference addNetworkPref, List<Entry> scan) {
+        final int count = group.getPreferenceCount();
+        final Map<String, EntryPreference> stalePrefs = new ArrayMap<>(count);
+        for (int i = 0; i < count; i++) {
+            final Preference pref = group.getPreference(i);
+            if (pref instanceof EntryPreference) {
+                stalePrefs.put(pref.getKey(), (EntryPreference) pref);
+            }
+        }
+        final int size = scan.size();
+        for (int index = 0; index < size; index++) {
+            final Entry entry = scan.get(index);
+            EntryPreference pref = stalePrefs.remove(entry.mKey);
+            if (pref != null && pref.mEntry != entry) {
+                group.removePreference(pref);
+                mReconcileInsertedOrRemoved++;
+                pref = null;
+            }
+            if (pref == null) {
+                pref = new EntryPreference(mContext, entry);
+                pref.setOrder(index);
+                group.addPreference(pref);
+                mReconcileInsertedOrRemoved++;
+            } else {
+                pref.setOrder(index);
+            }
+        }
+        for (EntryPreference pref : stalePrefs.values()) {
+            group.removePreference(pref);
+            mReconcileInsertedOrRemoved++;
+        }
+        addNetworkPref.setOrder(size);
+        if (addNetworkPref.getParent() == null) {
+            mReconcileInsertedOrRemoved++;
+        }
+        group.addPreference(addNetworkPref);
+    }
+
+    private PreferenceCategory createCategory() {
+        final PreferenceManager preferenceManager = new PreferenceManager(mContext);
+        final PreferenceScreen screen = preferenceManager.createPreferenceScreen(mContext);
+        final PreferenceCategory category = new PreferenceCategory(mContext);
+        screen.addPreference(category);
+        return category;
+    }
+
+    private Preference createAddNetworkPreference() {
+        final Preference pref = new Preference(mContext);
+        pref.setKey("add_wifi_network");
+        pref.setPersistent(false);
+        return pref;
+    }
+
+    private static List<String> getKeysInOrder(PreferenceGroup group) {
+        final List<Preference> prefs = new ArrayList<>();
+        for (int i = 0; i < group.getPreferenceCount(); i++) {
+            prefs.add(group.getPreference(i));
+        }
+        Collections.sort(prefs, (pref1, pref2) ->
+                Integer.compare(pref1.getOrder(), pref2.getOrder()));
+        final List<String> keys = new ArrayList<>();
+        for (Preference pref : prefs) {
+            keys.add(pref.getKey());
+        }
+        return keys;
+    }
+
+    /**
+     * @return the scan results of a dense area: in each one a few access points disappear, new
+     * ones appear, some entries are recreated and the signal changes move others.
+     */
+    private static List<List<Entry>> createScans() {
+        final Random random = new Random(0 /* seed */);
+        final List<Entry> entries = new ArrayList<>(ENTRY_COUNT);
+        int nextId = 0;
+        for (; nextId < ENTRY_COUNT; nextId++) {
+            entries.add(new Entry("ssid" + nextId + ",PSK"));
+        }
+
+        final List<List<Entry>> scans = new ArrayList<>(SCAN_COUNT);
+        for (int scan = 0; scan < SCAN_COUNT; scan++) {
+            for (int i = 0; i < CHANGES_PER_SCAN; i++) {
+                entries.remove(random.nextInt(entries.size()));
+                entries.add(random.nextInt(entries.size()), new Entry("ssid" + nextId++ + ",PSK"));
+
+                final int recreated = random.nextInt(entries.size());
+                entries.set(recreated, new Entry(entries.get(recreated).mKey));
+
+                final int moved = random.nextInt(entries.size() - 1);
+                Collections.swap(entries, moved, moved + 1);
+            }
+            scans.add(new ArrayList<>(entries));
+        }
+        return scans;
+    }
+}
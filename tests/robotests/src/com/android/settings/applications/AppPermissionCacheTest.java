@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.app.AppOpsManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.IPackageManager;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.RemoteException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppPermissionCacheTest {
+    private static final String PERMISSION = "permission";
+    private static final String PACKAGE_NAME = "package";
+    private static final int USER_ID = 0;
+    private static final int OTHER_USER_ID = 10;
+    private static final int UID = 10001;
+    private static final int[] OPS = {AppOpsManager.OP_SYSTEM_ALERT_WINDOW};
+
+    @Mock
+    private IPackageManager mPackageManager;
+    @Mock
+    private AppOpsManager mAppOpsManager;
+
+    private AppPermissionCache mCache;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mCache = new AppPermissionCache(mPackageManager, mAppOpsManager);
+    }
+
+    @Test
+    public void getAppOpPermissionPackages_calledTwice_shouldQueryOnce() throws RemoteException {
+        when(mPackageManager.getAppOpPermissionPackages(PERMISSION))
+                .thenReturn(new String[]{PACKAGE_NAME});
+
+        mCache.getAppOpPermissionPackages(PERMISSION);
+        final String[] packages = mCache.getAppOpPermissionPackages(PERMISSION);
+
+        assertThat(packages).asList().containsExactly(PACKAGE_NAME);
+        verify(mPackageManager).getAppOpPermissionPackages(PERMISSION);
+    }
+
+    @Test
+    public void isPackageAvailable_shouldBeCachedPerUser() throws RemoteException {
+        when(mPackageManager.isPackageAvailable(PACKAGE_NAME, USER_ID)).thenReturn(true);
+
+        assertThat(mCache.isPackageAvailable(PACKAGE_NAME, USER_ID)).isTrue();
+        assertThat(mCache.isPackageAvailable(PACKAGE_NAME, OTHER_USER_ID)).isFalse();
+        assertThat(mCache.isPackageAvailable(PACKAGE_NAME, USER_ID)).isTrue();
+
+        verify(mPackageManager).isPackageAvailable(PACKAGE_NAME, USER_ID);
+        verify(mPackageManager).isPackageAvailable(PACKAGE_NAME, OTHER_USER_ID);
+    }
+
+    @Test
+    public void invalidatePackages_shouldQueryAgain() throws RemoteException {
+        mCache.isPackageAvailable(PACKAGE_NAME, USER_ID);
+
+        mCache.invalidatePackages();
+        mCache.isPackageAvailable(PACKAGE_NAME, USER_ID);
+
+        verify(mPackageManager, times(2)).isPackageAvailable(PACKAGE_NAME, USER_ID);
+    }
+
+    @Test
+    public void getAppOpPermissionPackages_invalidatedWhileLoading_shouldNotBeCached()
+            throws RemoteException {
+        when(mPackageManager.getAppOpPermissionPackages(PERMISSION)).thenAnswer(invocation -> {
+            mCache.invalidatePackages();
+            return new String[]{PACKAGE_NAME};
+        });
+
+        mCache.getAppOpPermissionPackages(PERMISSION);
+        mCache.getAppOpPermissionPackages(PERMISSION);
+
+        verify(mPackageManager, times(2)).getAppOpPermissionPackages(PERMISSION);
+    }
+
+    @Test
+    public void getPackagesForOps_opChanged_shouldQueryAgain() {
+        when(mAppOpsManager.getPackagesForOps(OPS)).thenReturn(new ArrayList<>());
+        mCache.getPackagesForOps(OPS);
+        mCache.getPackagesForOps(OPS);
+        verify(mAppOpsManager).getPackagesForOps(OPS);
+
+        final ArgumentCaptor<AppOpsManager.OnOpChangedListener> listener =
+                ArgumentCaptor.forClass(AppOpsManager.OnOpChangedListener.class);
+        verify(mAppOpsManager).startWatchingMode(eq(AppOpsManager.OP_SYSTEM_ALERT_WINDOW),
+                isNull(), listener.capture());
+        listener.getValue().onOpChanged(AppOpsManager.OPSTR_SYSTEM_ALERT_WINDOW, PACKAGE_NAME);
+        mCache.getPackagesForOps(OPS);
+
+        verify(mAppOpsManager, times(2)).getPackagesForOps(OPS);
+        // The op is only watched once.
+        verify(mAppOpsManager).startWatchingMode(anyInt(), any(),
+                any(AppOpsManager.OnOpChangedListener.class));
+    }
+
+    @Test
+    public void isPackageAvailable_permissionsChanged_shouldQueryAgain() throws RemoteException {
+        final Context context = mock(Context.class);
+        final PackageManager packageManager = mock(PackageManager.class);
+        when(context.getPackageManager()).thenReturn(packageManager);
+        mCache.registerPackageListeners(context);
+        final ArgumentCaptor<PackageManager.OnPermissionsChangedListener> listener =
+                ArgumentCaptor.forClass(PackageManager.OnPermissionsChangedListener.class);
+        verify(packageManager).addOnPermissionsChangeListener(listener.capture());
+        mCache.isPackageAvailable(PACKAGE_NAME, USER_ID);
+
+        listener.getValue().onPermissionsChanged(UID);
+        mCache.isPackageAvailable(PACKAGE_NAME, USER_ID);
+
+        verify(mPackageManager, times(2)).isPackageAvailable(PACKAGE_NAME, USER_ID);
+    }
+
+    @Test
+    public void getPackagesForOps_packageRemovedOrAdded_shouldQueryAgain() {
+        final Context context = mock(Context.class);
+        when(context.getPackageManager()).thenReturn(mock(PackageManager.class));
+        when(mAppOpsManager.getPackagesForOps(OPS)).thenReturn(new ArrayList<>());
+        mCache.registerPackageListeners(context);
+        final ArgumentCaptor<BroadcastReceiver> receiver =
+                ArgumentCaptor.forClass(BroadcastReceiver.class);
+        verify(context).registerReceiverForAllUsers(receiver.capture(), any(IntentFilter.class),
+                isNull(), isNull());
+        final Uri packageUri = Uri.fromParts("package", PACKAGE_NAME, null /* fragment */);
+        mCache.getPackagesForOps(OPS);
+
+        receiver.getValue().onReceive(context,
+                new Intent(Intent.ACTION_PACKAGE_REMOVED, packageUri));
+        mCache.getPackagesForOps(OPS);
+        receiver.getValue().onReceive(context,
+                new Intent(Intent.ACTION_PACKAGE_ADDED, packageUri));
+        mCache.getPackagesForOps(OPS);
+
+        verify(mAppOpsManager, times(3)).getPackagesForOps(OPS);
+    }
+}
@@ -33,6 +33,7 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -55,6 +56,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.android.settings.R;
 import com.android.settings.testutils.shadow.ShadowAppUtils;
+import com.android.settings.testutils.shadow.ShadowThreadUtils;
 import com.android.settings.testutils.shadow.ShadowUserManager;
 import com.android.settings.widget.LoadingViewController;
 import com.android.settingslib.applications.ApplicationsState;
@@ -339,6 +341,103 @@ public class ManageApplicationsTest {
         verify(adapter).notifyDataSetChanged();
     }
 
+    @Test
+    public void onPackageSizeChanged_sortedBySize_shouldOnlyMoveChangedApp() {
+        final RecyclerView recyclerView = mock(RecyclerView.class);
+        final ManageApplications.ApplicationsAdapter adapter =
+                spy(new ManageApplications.ApplicationsAdapter(mState, mFragment,
+                        AppFilterRegistry.getInstance().get(FILTER_APPS_ALL), new Bundle()));
+        adapter.onAttachedToRecyclerView(recyclerView);
+        final ArrayList<AppEntry> appList = new ArrayList<>();
+        appList.add(createSizedApp("pkg1", 30L));
+        appList.add(createSizedApp("pkg2", 20L));
+        appList.add(createSizedApp("pkg3", 10L));
+        ReflectionHelpers.setField(adapter, "mEntries", appList);
+        ReflectionHelpers.setField(adapter, "mOriginalEntries", appList);
+        ReflectionHelpers.setField(adapter, "mLastSortMode", R.id.sort_order_size);
+        ReflectionHelpers.setField(adapter, "mEntriesComparator",
+                ApplicationsState.SIZE_COMPARATOR);
+        ReflectionHelpers.setField(adapter, "mRebuildComparator",
+                ApplicationsState.SIZE_COMPARATOR);
+
+        appList.get(2).size = 40L;
+        adapter.onPackageSizeChanged("pkg3");
+
+        assertThat(adapter.getAppEntry(0).info.packageName).isEqualTo("pkg3");
+        assertThat(adapter.getAppEntry(1).info.packageName).isEqualTo("pkg1");
+        assertThat(adapter.getAppEntry(2).info.packageName).isEqualTo("pkg2");
+        verify(adapter).notifyItemMoved(2, 0);
+        verify(adapter, never()).notifyDataSetChanged();
+    }
+
+    @Test
+    public void onRebuildComplete_notSortedByRequestedOrder_shouldNotMoveChangedApp() {
+        final RecyclerView recyclerView = mock(RecyclerView.class);
+        final ManageApplications.ApplicationsAdapter adapter =
+                spy(new ManageApplications.ApplicationsAdapter(mState, mFragment,
+                        AppFilterRegistry.getInstance().get(FILTER_APPS_ALL), new Bundle()));
+        adapter.onAttachedToRecyclerView(recyclerView);
+        ReflectionHelpers.setField(mFragment, "mRecyclerView", recyclerView);
+        ReflectionHelpers.setField(
+                mFragment, "mFilterAdapter", mock(ManageApplications.FilterSpinnerAdapter.class));
+        ReflectionHelpers.setField(adapter, "mLoadingViewController",
+                mock(LoadingViewController.class));
+        ReflectionHelpers.setField(adapter, "mLastSortMode", R.id.sort_order_size);
+        ReflectionHelpers.setField(adapter, "mRebuildComparator",
+                ApplicationsState.SIZE_COMPARATOR);
+        final ArrayList<AppEntry> appList = new ArrayList<>();
+        appList.add(createSizedApp("pkg1", 10L));
+        appList.add(createSizedApp("pkg2", 20L));
+        appList.add(createSizedApp("pkg3", 30L));
+
+        // A result of an older rebuild, sorted in another order.
+        adapter.onRebuildComplete(appList);
+        appList.get(0).size = 40L;
+        adapter.onPackageSizeChanged("pkg1");
+
+        assertThat(adapter.getAppEntry(0).info.packageName).isEqualTo("pkg1");
+        verify(adapter, never()).notifyItemMoved(anyInt(), anyInt());
+
+        // The next result sorted by size moves the changed apps again.
+        final ArrayList<AppEntry> sortedList = new ArrayList<>(appList);
+        sortedList.sort(ApplicationsState.SIZE_COMPARATOR);
+        adapter.onRebuildComplete(sortedList);
+        sortedList.get(2).size = 50L;
+        adapter.onPackageSizeChanged(sortedList.get(2).info.packageName);
+
+        verify(adapter).notifyItemMoved(2, 0);
+    }
+
+    @Test
+    @Config(shadows = ShadowThreadUtils.class)
+    public void onRebuildComplete_sameOrder_shouldNotRebindAllApps() {
+        final RecyclerView recyclerView = mock(RecyclerView.class);
+        final ManageApplications.ApplicationsAdapter adapter =
+                spy(new ManageApplications.ApplicationsAdapter(mState, mFragment,
+                        AppFilterRegistry.getInstance().get(FILTER_APPS_ALL), new Bundle()));
+        adapter.onAttachedToRecyclerView(recyclerView);
+        ReflectionHelpers.setField(mFragment, "mRecyclerView", recyclerView);
+        ReflectionHelpers.setField(
+                mFragment, "mFilterAdapter", mock(ManageApplications.FilterSpinnerAdapter.class));
+        ReflectionHelpers.setField(adapter, "mLoadingViewController",
+                mock(LoadingViewController.class));
+        ReflectionHelpers.setField(adapter, "mRebuildComparator",
+                ApplicationsState.SIZE_COMPARATOR);
+        final ArrayList<AppEntry> appList = new ArrayList<>();
+        appList.add(createSizedApp("pkg1", 30L));
+        appList.add(createSizedApp("pkg2", 20L));
+        appList.add(createSizedApp("pkg3", 10L));
+        adapter.onRebuildComplete(appList);
+
+        final ArrayList<AppEntry> newAppList = new ArrayList<>(appList);
+        newAppList.remove(1);
+        adapter.onRebuildComplete(newAppList);
+
+        assertThat(adapter.getItemCount()).isEqualTo(2);
+        assertThat(adapter.getAppEntry(1).info.packageName).isEqualTo("pkg3");
+        verify(adapter, times(1)).notifyDataSetChanged();
+    }
+
     @Test
     public void applicationsAdapter_onBindViewHolder_notifications_wrongExtraInfo() {
         when(mUserManager.getProfileIdsWithDisabled(anyInt())).thenReturn(new int[]{});
@@ -624,6 +723,16 @@ public class ManageApplicationsTest {
         return appList;
     }
 
+    private AppEntry createSizedApp(String packageName, long size) {
+        final ApplicationInfo info = new ApplicationInfo();
+        info.packageName = packageName;
+        final AppEntry entry = mock(AppEntry.class);
+        entry.info = info;
+        entry.label = packageName;
+        entry.size = size;
+        return entry;
+    }
+
     private AppEntry createPowerAllowListApp(boolean isPowerAllowListed) {
         final ApplicationInfo info = new ApplicationInfo();
         info.sourceDir = "abc";
@@ -36,6 +36,7 @@ import android.util.Xml;
 import com.android.settings.R;
 import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -65,6 +66,11 @@ public class PreferenceXmlParserUtilsTest {
         mContext = getApplicationContext();
     }
 
+    @After
+    public void tearDown() {
+        PreferenceMetadataCache.clear();
+    }
+
     @Test
     public void testDataTitleValid_ReturnsPreferenceTitle() {
         XmlResourceParser parser = getChildByType(R.xml.display_settings,
@@ -189,6 +195,22 @@ public class PreferenceXmlParserUtilsTest {
         }
     }
 
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void extractMetadata_calledTwice_shouldReturnIndependentCopies()
+            throws IOException, XmlPullParserException {
+        final List<Bundle> metadata = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.location_settings, MetadataFlag.FLAG_NEED_KEY);
+        final String key = metadata.get(0).getString(METADATA_KEY);
+        metadata.get(0).putString(METADATA_KEY, "modified");
+
+        final List<Bundle> cachedMetadata = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.location_settings, MetadataFlag.FLAG_NEED_KEY);
+
+        assertThat(cachedMetadata).hasSize(metadata.size());
+        assertThat(cachedMetadata.get(0).getString(METADATA_KEY)).isEqualTo(key);
+    }
+
     @Test
     @Config(qualifiers = "mcc999")
     public void extractMetadata_requestTitle_shouldContainTitle()
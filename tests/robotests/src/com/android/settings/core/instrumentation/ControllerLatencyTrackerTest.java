@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core.instrumentation;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import android.app.settings.SettingsEnums;
+import android.os.SystemClock;
+
+import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class ControllerLatencyTrackerTest {
+    private static final int CATEGORY = SettingsEnums.SETTINGS_NETWORK_CATEGORY;
+
+    @Mock
+    private MetricsFeatureProvider mMetricsFeatureProvider;
+    private ControllerLatencyTracker mTracker;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mTracker = new ControllerLatencyTracker();
+    }
+
+    @Test
+    public void end_withinBudget_noMetricsLogged() {
+        mTracker.end(CATEGORY, this, ControllerLatencyTracker.PHASE_UPDATE_STATE,
+                ControllerLatencyTracker.begin(), mMetricsFeatureProvider);
+
+        verify(mMetricsFeatureProvider, never()).action(anyInt(), anyInt(), anyInt(),
+                anyString(), anyInt());
+    }
+
+    @Test
+    public void end_overBudget_logMetrics() {
+        final long begin = SystemClock.elapsedRealtimeNanos()
+                - (ControllerLatencyTracker.DEFAULT_BUDGET_MS + 10) * 1_000_000L;
+
+        mTracker.end(CATEGORY, this, ControllerLatencyTracker.PHASE_UPDATE_STATE, begin,
+                mMetricsFeatureProvider);
+
+        verify(mMetricsFeatureProvider).action(eq(SettingsEnums.PAGE_UNKNOWN),
+                eq(SettingsEnums.ACTION_CONTROLLER_UPDATE_STATE), eq(CATEGORY),
+                eq(getClass().getSimpleName()), anyInt());
+    }
+
+    @Test
+    public void end_availabilityOverBudget_noMetricsLogged() {
+        final long begin = SystemClock.elapsedRealtimeNanos()
+                - (ControllerLatencyTracker.DEFAULT_BUDGET_MS + 10) * 1_000_000L;
+
+        mTracker.end(CATEGORY, this, ControllerLatencyTracker.PHASE_AVAILABILITY, begin,
+                mMetricsFeatureProvider);
+
+        verify(mMetricsFeatureProvider, never()).action(anyInt(), anyInt(), anyInt(),
+                anyString(), anyInt());
+    }
+
+    @Test
+    public void setBudgetMs_raisedBudget_notOverBudget() throws Exception {
+        mTracker.setBudgetMs(ControllerLatencyTracker.DEFAULT_BUDGET_MS + 100);
+        final long begin = SystemClock.elapsedRealtimeNanos()
+                - (ControllerLatencyTracker.DEFAULT_BUDGET_MS + 10) * 1_000_000L;
+
+        mTracker.end(CATEGORY, this, ControllerLatencyTracker.PHASE_UPDATE_STATE, begin,
+                mMetricsFeatureProvider);
+
+        verify(mMetricsFeatureProvider, never()).action(anyInt(), anyInt(), anyInt(),
+                anyString(), anyInt());
+        assertThat(mTracker.dumpToJson().getJSONObject(0).getInt("over_budget")).isEqualTo(0);
+    }
+
+    @Test
+    public void dumpToJson_shouldContainPercentilesOfEachPhase() throws Exception {
+        mTracker.end(CATEGORY, this, ControllerLatencyTracker.PHASE_AVAILABILITY,
+                ControllerLatencyTracker.begin(), null /* metricsFeature */);
+        mTracker.end(CATEGORY, this, ControllerLatencyTracker.PHASE_DISPLAY_PREFERENCE,
+                ControllerLatencyTracker.begin(), null /* metricsFeature */);
+
+        final JSONArray array = mTracker.dumpToJson();
+
+        assertThat(array.length()).isEqualTo(2);
+        final JSONObject obj = array.getJSONObject(0);
+        assertThat(obj.getInt("category")).isEqualTo(CATEGORY);
+        assertThat(obj.getString("controller")).isEqualTo(getClass().getName());
+        assertThat(obj.getString("phase")).isEqualTo("getAvailabilityStatus");
+        assertThat(obj.getLong("count")).isEqualTo(1);
+        assertThat(obj.has("p90_us")).isTrue();
+    }
+
+    @Test
+    public void ringBuffer_overCapacity_keepMostRecentSamples() {
+        final ControllerLatencyTracker.LatencyRingBuffer buffer =
+                new ControllerLatencyTracker.LatencyRingBuffer(3);
+        for (int i = 1; i <= 5; i++) {
+            buffer.add(i);
+        }
+
+        assertThat(buffer.getCount()).isEqualTo(5);
+        assertThat(buffer.getSortedSamples()).asList().containsExactly(3, 4, 5).inOrder();
+    }
+
+    @Test
+    public void percentile_shouldUseNearestRank() {
+        final int[] sorted = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+
+        assertThat(ControllerLatencyTracker.percentile(sorted, 50)).isEqualTo(5);
+        assertThat(ControllerLatencyTracker.percentile(sorted, 90)).isEqualTo(9);
+        assertThat(ControllerLatencyTracker.percentile(sorted, 99)).isEqualTo(10);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.dashboard;
+
+import static com.android.settingslib.core.instrumentation.Instrumentable.METRICS_CATEGORY_UNKNOWN;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import android.content.Context;
+
+import androidx.preference.Preference;
+import androidx.preference.PreferenceManager;
+import androidx.preference.PreferenceScreen;
+
+import com.android.settingslib.core.AbstractPreferenceController;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class ControllerStateEngineTest {
+    private static final String KEY1 = "key1";
+    private static final String KEY2 = "key2";
+
+    private Context mContext;
+    private PreferenceScreen mScreen;
+    private List<Runnable> mPendingTasks;
+    private ControllerStateEngine mEngine;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        final PreferenceManager preferenceManager = new PreferenceManager(mContext);
+        mScreen = preferenceManager.createPreferenceScreen(mContext);
+        mPendingTasks = new ArrayList<>();
+        mEngine = new ControllerStateEngine(null /* metricsFeature */, METRICS_CATEGORY_UNKNOWN,
+                mPendingTasks::add);
+    }
+
+    @Test
+    public void update_notAllTasksFinished_noRunUpdateState() {
+        final ControllerTaskTest.TestPreferenceController controller1 = createController(KEY1);
+        final ControllerTaskTest.TestPreferenceController controller2 = createController(KEY2);
+
+        mEngine.update(mScreen, Arrays.asList(controller1, controller2));
+        mPendingTasks.get(0).run();
+
+        verify(controller1, never()).updateState(any(Preference.class));
+        verify(controller2, never()).updateState(any(Preference.class));
+    }
+
+    @Test
+    public void update_allTasksFinished_runUpdateStateInOrder() {
+        final ControllerTaskTest.TestPreferenceController controller1 = createController(KEY1);
+        final ControllerTaskTest.TestPreferenceController controller2 = createController(KEY2);
+
+        mEngine.update(mScreen, Arrays.asList(controller1, controller2));
+        mPendingTasks.get(1).run();
+        mPendingTasks.get(0).run();
+
+        final InOrder inOrder = inOrder(controller1, controller2);
+        inOrder.verify(controller1).updateState(any(Preference.class));
+        inOrder.verify(controller2).updateState(any(Preference.class));
+    }
+
+    @Test
+    public void update_controllerNotAvailable_noRunUpdateState() {
+        final ControllerTaskTest.TestPreferenceController controller = createController(KEY1);
+        controller.setAvailable(false);
+
+        mEngine.update(mScreen, Arrays.asList(controller));
+        mPendingTasks.forEach(Runnable::run);
+
+        verify(controller, never()).updateState(any(Preference.class));
+    }
+
+    @Test
+    public void update_cancelled_noRunUpdateState() {
+        final ControllerTaskTest.TestPreferenceController controller = createController(KEY1);
+
+        mEngine.update(mScreen, Arrays.asList(controller));
+        mEngine.cancel();
+        mPendingTasks.forEach(Runnable::run);
+
+        verify(controller, never()).updateState(any(Preference.class));
+    }
+
+    private ControllerTaskTest.TestPreferenceController createController(String key) {
+        final ControllerTaskTest.TestPreferenceController controller =
+                spy(new ControllerTaskTest.TestPreferenceController(mContext));
+        controller.setKey(key);
+        final Preference preference = new Preference(mContext);
+        preference.setKey(key);
+        mScreen.addPreference(preference);
+        return controller;
+    }
+}
@@ -235,6 +235,7 @@ public class DashboardFragmentTest {
         preferenceControllers.add(mockController2);
         when(mockController1.isAvailable()).thenReturn(false);
         when(mockController2.isAvailable()).thenReturn(true);
+        mTestFragment.setUsingControllerEnhancement(false);
         mTestFragment.onAttach(RuntimeEnvironment.application);
         mTestFragment.onResume();
 
@@ -242,6 +243,24 @@ public class DashboardFragmentTest {
         verify(mockController2, times(2)).getPreferenceKey();
     }
 
+    @Test
+    public void onResume_isParalleledControllers_updateStatesInParallel() {
+        final AbstractPreferenceController mockController =
+                mock(AbstractPreferenceController.class);
+        final Preference preference = new Preference(mContext);
+        when(mockController.isAvailable()).thenReturn(true);
+        when(mockController.getPreferenceKey()).thenReturn("key");
+        when(mTestFragment.mScreen.findPreference("key")).thenReturn(preference);
+        mTestFragment.addPreferenceController(mockController);
+        mTestFragment.setUsingControllerEnhancement(true);
+        mTestFragment.mStateEngine = new ControllerStateEngine(null /* metricsFeature */,
+                DASHBOARD_CONTAINER, Runnable::run);
+
+        mTestFragment.onResume();
+
+        verify(mockController).updateState(preference);
+    }
+
     @Test
     public void updateState_doesNotSkipControllersOfSameClass() {
         final AbstractPreferenceController mockController1 =
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import android.content.Context;
+import android.content.pm.UserInfo;
+import android.provider.Settings;
+import android.util.SparseArray;
+
+import com.android.settings.testutils.shadow.ShadowThreadUtils;
+import com.android.settingslib.deviceinfo.PrivateStorageInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+@RunWith(RobolectricTestRunner.class)
+public class StorageCacheHelperTest {
+    private static final String UUID = "uuid";
+    private static final int USER_ID = 0;
+    private static final int OTHER_USER_ID = 10;
+    private static final long MEDIA_GENERATION = 5L;
+    private static final long PACKAGE_SEQUENCE = 7L;
+    private static final long NOW = 100_000L;
+
+    private Context mContext;
+    private StorageCacheHelper mHelper;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mHelper = new StorageCacheHelper(mContext, UUID);
+    }
+
+    @Test
+    public void retrievePrivateStorageInfo_cached_shouldReturnCachedSizes() {
+        mHelper.cachePrivateStorageInfo(new PrivateStorageInfo(10L /* freeBytes */,
+                100L /* totalBytes */));
+
+        final PrivateStorageInfo info =
+                new StorageCacheHelper(mContext, UUID).retrievePrivateStorageInfo();
+
+        assertThat(info.freeBytes).isEqualTo(10L);
+        assertThat(info.totalBytes).isEqualTo(100L);
+        assertThat(new StorageCacheHelper(mContext, "other").retrievePrivateStorageInfo())
+                .isNull();
+    }
+
+    @Test
+    public void retrieveStorageResults_userNotCached_shouldReturnNull() {
+        mHelper.cacheStorageResult(USER_ID, buildResult(), MEDIA_GENERATION, PACKAGE_SEQUENCE,
+                NOW);
+
+        assertThat(mHelper.retrieveStorageResults(
+                Arrays.asList(buildUser(USER_ID), buildUser(OTHER_USER_ID)))).isNull();
+        final SparseArray<StorageAsyncLoader.StorageResult> results =
+                mHelper.retrieveStorageResults(Collections.singletonList(buildUser(USER_ID)));
+        assertThat(results.get(USER_ID).imagesSize).isEqualTo(1L);
+        assertThat(results.get(USER_ID).allAppsExceptGamesSize).isEqualTo(2L);
+    }
+
+    @Test
+    @Config(shadows = ShadowThreadUtils.class)
+    public void loadCachedSizes_cached_shouldNotifyListener() {
+        final StorageCacheHelper.OnCachedSizesLoadedListener listener =
+                mock(StorageCacheHelper.OnCachedSizesLoadedListener.class);
+        mHelper.cachePrivateStorageInfo(new PrivateStorageInfo(10L /* freeBytes */,
+                100L /* totalBytes */));
+        mHelper.cacheStorageResult(USER_ID, buildResult(), MEDIA_GENERATION, PACKAGE_SEQUENCE,
+                NOW);
+
+        StorageCacheHelper.loadCachedSizes(mContext, UUID,
+                Collections.singletonList(buildUser(USER_ID)), listener);
+
+        verify(listener).onCachedSizesLoaded(any(PrivateStorageInfo.class), any());
+    }
+
+    @Test
+    @Config(shadows = ShadowThreadUtils.class)
+    public void loadCachedSizes_userNotCached_shouldNotNotifyListener() {
+        final StorageCacheHelper.OnCachedSizesLoadedListener listener =
+                mock(StorageCacheHelper.OnCachedSizesLoadedListener.class);
+        mHelper.cachePrivateStorageInfo(new PrivateStorageInfo(10L /* freeBytes */,
+                100L /* totalBytes */));
+
+        StorageCacheHelper.loadCachedSizes(mContext, UUID,
+                Collections.singletonList(buildUser(USER_ID)), listener);
+
+        verify(listener, never()).onCachedSizesLoaded(any(), any());
+    }
+
+    @Test
+    public void retrieveValidStorageResult_nothingChanged_shouldReturnAllSizes() {
+        mHelper.cacheStorageResult(USER_ID, buildResult(), MEDIA_GENERATION, PACKAGE_SEQUENCE,
+                NOW);
+
+        final StorageAsyncLoader.StorageResult result = mHelper.retrieveValidStorageResult(
+                USER_ID, MEDIA_GENERATION, PACKAGE_SEQUENCE, NOW + 1);
+
+        assertThat(result.appsSizePending).isFalse();
+        assertThat(result.filesSizePending).isFalse();
+        assertThat(result.imagesSize).isEqualTo(1L);
+        assertThat(result.allAppsExceptGamesSize).isEqualTo(2L);
+    }
+
+    @Test
+    public void retrieveValidStorageResult_mediaChanged_shouldOnlyReturnAppsSize() {
+        mHelper.cacheStorageResult(USER_ID, buildResult(), MEDIA_GENERATION, PACKAGE_SEQUENCE,
+                NOW);
+
+        final StorageAsyncLoader.StorageResult result = mHelper.retrieveValidStorageResult(
+                USER_ID, MEDIA_GENERATION + 1, PACKAGE_SEQUENCE, NOW + 1);
+
+        assertThat(result.appsSizePending).isFalse();
+        assertThat(result.filesSizePending).isTrue();
+        assertThat(result.imagesSize).isEqualTo(0L);
+    }
+
+    @Test
+    public void retrieveValidStorageResult_packageChanged_shouldOnlyReturnFilesSize() {
+        mHelper.cacheStorageResult(USER_ID, buildResult(), MEDIA_GENERATION, PACKAGE_SEQUENCE,
+                NOW);
+
+        final StorageAsyncLoader.StorageResult result = mHelper.retrieveValidStorageResult(
+                USER_ID, MEDIA_GENERATION, PACKAGE_SEQUENCE + 1, NOW + 1);
+
+        assertThat(result.appsSizePending).isTrue();
+        assertThat(result.filesSizePending).isFalse();
+    }
+
+    @Test
+    public void retrieveValidStorageResult_appsSizeExpired_shouldOnlyReturnFilesSize() {
+        mHelper.cacheStorageResult(USER_ID, buildResult(), MEDIA_GENERATION, PACKAGE_SEQUENCE,
+                NOW);
+
+        final StorageAsyncLoader.StorageResult result = mHelper.retrieveValidStorageResult(
+                USER_ID, MEDIA_GENERATION, PACKAGE_SEQUENCE,
+                NOW + StorageCacheHelper.APPS_SIZE_MAX_AGE_MS);
+
+        assertThat(result.appsSizePending).isTrue();
+        assertThat(result.filesSizePending).isFalse();
+    }
+
+    @Test
+    public void retrieveValidStorageResult_rebooted_shouldReturnNull() {
+        mHelper.cacheStorageResult(USER_ID, buildResult(), MEDIA_GENERATION, PACKAGE_SEQUENCE,
+                NOW);
+        Settings.Global.putInt(mContext.getContentResolver(), Settings.Global.BOOT_COUNT,
+                Settings.Global.getInt(mContext.getContentResolver(),
+                        Settings.Global.BOOT_COUNT, 0) + 1);
+
+        assertThat(mHelper.retrieveValidStorageResult(USER_ID, MEDIA_GENERATION,
+                PACKAGE_SEQUENCE, NOW + 1)).isNull();
+    }
+
+    private static StorageAsyncLoader.StorageResult buildResult() {
+        final StorageAsyncLoader.StorageResult result = new StorageAsyncLoader.StorageResult();
+        result.imagesSize = 1L;
+        result.allAppsExceptGamesSize = 2L;
+        return result;
+    }
+
+    private static UserInfo buildUser(int userId) {
+        final UserInfo info = new UserInfo();
+        info.id = userId;
+        return info;
+    }
+}
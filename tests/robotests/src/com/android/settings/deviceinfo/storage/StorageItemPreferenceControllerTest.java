@@ -354,6 +354,25 @@ public class StorageItemPreferenceControllerTest {
         assertThat(mController.mTrashPreference.getSummary().toString()).isEqualTo("100 kB");
     }
 
+    @Test
+    @Config(shadows = ShadowUserManager.class)
+    public void onLoadFinished_filesSizePending_shouldShowCalculatingForFiles() {
+        mController.displayPreference(mPreferenceScreen);
+        final StorageAsyncLoader.StorageResult result = new StorageAsyncLoader.StorageResult();
+        result.allAppsExceptGamesSize = MEGABYTE_IN_BYTES * 90;
+        result.filesSizePending = true;
+        final SparseArray<StorageAsyncLoader.StorageResult> results = new SparseArray<>();
+        results.put(0, result);
+
+        mController.onLoadFinished(results, 0);
+
+        final String calculating = mContext.getString(R.string.memory_calculating_size);
+        assertThat(mController.mAppsPreference.getSummary().toString()).isEqualTo("90 MB");
+        assertThat(mController.mImagesPreference.getSummary().toString()).isEqualTo(calculating);
+        assertThat(mController.mTrashPreference.getSummary().toString()).isEqualTo(calculating);
+        assertThat(mController.mSystemPreference.getSummary().toString()).isEqualTo(calculating);
+    }
+
     @Test
     public void settingUserIdAppliesNewIcons() {
         mController.displayPreference(mPreferenceScreen);
@@ -234,6 +234,25 @@ public final class BatteryChartPreferenceControllerTest {
         assertThat(mBatteryChartPreferenceController.mBatteryIndexedMap).hasSize(13);
     }
 
+    @Test
+    public void testSetBatteryHistoryMap_sameSnapshot_notComputeAgain() {
+        final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap =
+            createBatteryHistoryMap();
+        mBatteryChartPreferenceController.setBatteryHistoryMap(batteryHistoryMap);
+        final Map<Integer, List<BatteryDiffEntry>> batteryIndexedMap =
+            mBatteryChartPreferenceController.mBatteryIndexedMap;
+        final BatteryUsageSlots batteryUsageSlots =
+            mBatteryChartPreferenceController.mBatteryUsageSlots;
+
+        mBatteryChartPreferenceController.setBatteryHistoryMap(batteryHistoryMap);
+
+        assertThat(mBatteryChartPreferenceController.mBatteryIndexedMap)
+            .isSameInstanceAs(batteryIndexedMap);
+        assertThat(mBatteryChartPreferenceController.mBatteryUsageSlots)
+            .isSameInstanceAs(batteryUsageSlots);
+        assertThat(batteryUsageSlots.contains(BatteryChartView.SELECTED_INDEX_ALL)).isTrue();
+    }
+
     @Test
     public void testRefreshUi_batteryIndexedMapIsNull_ignoreRefresh() {
         mBatteryChartPreferenceController.setBatteryHistoryMap(null);
@@ -286,7 +305,7 @@ public final class BatteryChartPreferenceControllerTest {
     }
 
     @Test
-    public void testRemoveAndCacheAllPrefs_buildCacheAndRemoveAllPreference() {
+    public void testRemoveAndCacheStalePrefs_buildCacheAndRemoveStalePreference() {
         final int trapezoidIndex = 1;
         doReturn(1).when(mAppListGroup).getPreferenceCount();
         doReturn(mPowerGaugePreference).when(mAppListGroup).getPreference(0);
@@ -299,7 +318,40 @@ public final class BatteryChartPreferenceControllerTest {
 
         assertThat(mBatteryChartPreferenceController.mPreferenceCache.get(PREF_KEY))
             .isEqualTo(mPowerGaugePreference);
-        verify(mAppListGroup).removeAll();
+        verify(mAppListGroup).removePreference(mPowerGaugePreference);
+        verify(mAppListGroup, never()).removeAll();
+    }
+
+    @Test
+    public void testRemoveAndCacheStalePrefs_entryWithoutAppResource_removePreference() {
+        doReturn(1).when(mAppListGroup).getPreferenceCount();
+        doReturn(mPowerGaugePreference).when(mAppListGroup).getPreference(0);
+        doReturn(PREF_KEY).when(mPowerGaugePreference).getKey();
+        doReturn(PREF_KEY).when(mBatteryHistEntry).getKey();
+        doReturn(null).when(mBatteryDiffEntry).getAppLabel();
+        doReturn(mDrawable).when(mBatteryDiffEntry).getAppIcon();
+
+        mBatteryChartPreferenceController.removeAndCacheStalePrefs(
+            Arrays.asList(mBatteryDiffEntry));
+
+        assertThat(mBatteryChartPreferenceController.mPreferenceCache.get(PREF_KEY))
+            .isEqualTo(mPowerGaugePreference);
+        verify(mAppListGroup).removePreference(mPowerGaugePreference);
+    }
+
+    @Test
+    public void testRemoveAndCacheStalePrefs_shownEntry_keepPreference() {
+        doReturn(1).when(mAppListGroup).getPreferenceCount();
+        doReturn(mPowerGaugePreference).when(mAppListGroup).getPreference(0);
+        doReturn(PREF_KEY).when(mPowerGaugePreference).getKey();
+        doReturn(PREF_KEY).when(mBatteryHistEntry).getKey();
+        doReturn("fake app label").when(mBatteryDiffEntry).getAppLabel();
+        doReturn(mDrawable).when(mBatteryDiffEntry).getAppIcon();
+
+        mBatteryChartPreferenceController.removeAndCacheStalePrefs(
+            Arrays.asList(mBatteryDiffEntry));
+
+        verify(mAppListGroup, never()).removePreference(any());
     }
 
     @Test
@@ -138,6 +138,41 @@ public class BatteryDatabaseManagerTest {
         assertThat(handledAppInfos).containsExactly(mOldAppInfo);
     }
 
+    @Test
+    public void flushPendingWrites_writeQueuedAnomalies() {
+        mBatteryDatabaseManager.enqueueAnomaly(UID_NEW, PACKAGE_NAME_NEW, TYPE_NEW,
+                AnomalyDatabaseHelper.State.NEW, NOW);
+        mBatteryDatabaseManager.enqueueAnomaly(UID_OLD, PACKAGE_NAME_OLD, TYPE_OLD,
+                AnomalyDatabaseHelper.State.HANDLED, NOW);
+
+        mBatteryDatabaseManager.flushPendingWrites();
+
+        assertThat(mBatteryDatabaseManager.queryAllAnomalies(ONE_DAY_BEFORE,
+                AnomalyDatabaseHelper.State.NEW)).containsExactly(mNewAppInfo);
+        assertThat(mBatteryDatabaseManager.queryAllAnomalies(ONE_DAY_BEFORE,
+                AnomalyDatabaseHelper.State.HANDLED)).containsExactly(mOldAppInfo);
+    }
+
+    @Test
+    public void queryAllAnomalies_containQueuedAnomalies() {
+        mBatteryDatabaseManager.enqueueAnomaly(UID_NEW, PACKAGE_NAME_NEW, TYPE_NEW,
+                AnomalyDatabaseHelper.State.NEW, NOW);
+
+        assertThat(mBatteryDatabaseManager.queryAllAnomalies(ONE_DAY_BEFORE,
+                AnomalyDatabaseHelper.State.NEW)).containsExactly(mNewAppInfo);
+    }
+
+    @Test
+    public void deleteAllAnomaliesBeforeTimeStamp_deleteQueuedAnomalies() {
+        mBatteryDatabaseManager.enqueueAnomaly(UID_OLD, PACKAGE_NAME_OLD, TYPE_OLD,
+                AnomalyDatabaseHelper.State.NEW, TWO_DAYS_BEFORE);
+
+        mBatteryDatabaseManager.deleteAllAnomaliesBeforeTimeStamp(ONE_DAY_BEFORE);
+
+        assertThat(mBatteryDatabaseManager.queryAllAnomalies(0 /* timeMsAfter */,
+                AnomalyDatabaseHelper.State.NEW)).isEmpty();
+    }
+
     @Test
     public void queryAnomalies_removeDuplicateByUid() {
         mBatteryDatabaseManager.insertAnomaly(UID_NEW, PACKAGE_NAME_NEW, TYPE_NEW,
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.fuelgauge;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ContentValues;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public final class BatteryHistoryStoreTest {
+
+    @Test
+    public void create_returnsColumnsOfRequestedTimestamps() {
+        final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap = new HashMap<>();
+        final BatteryHistEntry entry1 = createBatteryHistEntry(/*uid=*/ 2L, 5.0, 10L, 20L);
+        final BatteryHistEntry entry2 = createBatteryHistEntry(/*uid=*/ 1L, 7.0, 30L, 40L);
+        Map<String, BatteryHistEntry> entryMap = new HashMap<>();
+        entryMap.put(entry1.getKey(), entry1);
+        batteryHistoryMap.put(101L, entryMap);
+        entryMap = new HashMap<>();
+        entryMap.put(entry2.getKey(), entry2);
+        batteryHistoryMap.put(102L, entryMap);
+        // Not requested, it must not be copied.
+        entryMap = new HashMap<>();
+        entryMap.put("3", createBatteryHistEntry(/*uid=*/ 3L, 1.0, 1L, 1L));
+        batteryHistoryMap.put(104L, entryMap);
+
+        final BatteryHistoryStore store = BatteryHistoryStore.create(
+                new long[] {101L, 102L, 103L}, batteryHistoryMap);
+
+        assertThat(store.getTimestampCount()).isEqualTo(3);
+        assertThat(store.getKeyCount()).isEqualTo(2);
+        // The keys are sorted.
+        assertThat(store.getKey(0)).isEqualTo("1");
+        assertThat(store.getKey(1)).isEqualTo("2");
+        assertThat(store.hasData(0)).isTrue();
+        assertThat(store.hasData(1)).isTrue();
+        assertThat(store.hasData(2)).isFalse();
+        assertThat(store.getEntry(1, 0)).isSameInstanceAs(entry1);
+        assertThat(store.getEntry(1, 1)).isNull();
+        assertThat(store.getConsumePower(1, 0)).isEqualTo(5.0);
+        assertThat(store.getForegroundUsageTimeInMs(0, 1)).isEqualTo(30L);
+        assertThat(store.getBackgroundUsageTimeInMs(0, 1)).isEqualTo(40L);
+        assertThat(store.getBackgroundUsageTimeInMs(0, 0)).isEqualTo(0L);
+    }
+
+    private static BatteryHistEntry createBatteryHistEntry(long uid, double consumePower,
+            long foregroundUsageTimeInMs, long backgroundUsageTimeInMs) {
+        final ContentValues values = new ContentValues();
+        values.put(BatteryHistEntry.KEY_UID, Long.valueOf(uid));
+        values.put(BatteryHistEntry.KEY_CONSUMER_TYPE,
+                Integer.valueOf(ConvertUtils.CONSUMER_TYPE_UID_BATTERY));
+        values.put(BatteryHistEntry.KEY_CONSUME_POWER, consumePower);
+        values.put(BatteryHistEntry.KEY_FOREGROUND_USAGE_TIME,
+                Long.valueOf(foregroundUsageTimeInMs));
+        values.put(BatteryHistEntry.KEY_BACKGROUND_USAGE_TIME,
+                Long.valueOf(backgroundUsageTimeInMs));
+        return new BatteryHistEntry(values);
+    }
+}
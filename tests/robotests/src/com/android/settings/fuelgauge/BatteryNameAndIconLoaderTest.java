@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.fuelgauge;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import android.os.Process;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public final class BatteryNameAndIconLoaderTest {
+    private static final int APP_UID = 10123;
+
+    @Mock private BatteryEntry mBatteryEntry1;
+    @Mock private BatteryEntry mBatteryEntry2;
+    @Mock private BatteryEntry mSystemBatteryEntry;
+    @Mock private BatteryDiffEntry mBatteryDiffEntry1;
+    @Mock private BatteryDiffEntry mBatteryDiffEntry2;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        doReturn(APP_UID).when(mBatteryEntry1).getUid();
+        doReturn(APP_UID).when(mBatteryEntry2).getUid();
+        doReturn(Process.INVALID_UID).when(mSystemBatteryEntry).getUid();
+    }
+
+    @After
+    public void tearDown() {
+        BatteryNameAndIconLoader.stop();
+    }
+
+    @Test
+    public void newLruCache_exceedMaxSize_evictLeastRecentlyUsedEntry() {
+        final Map<String, Integer> cache = BatteryNameAndIconLoader.newLruCache(2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        // Uses "a" so "b" becomes the least recently used one.
+        cache.get("a");
+
+        cache.put("c", 3);
+
+        assertThat(cache.keySet()).containsExactly("a", "c");
+    }
+
+    @Test
+    public void enqueue_sameUid_coalesceRequests() {
+        BatteryNameAndIconLoader.enqueue(mBatteryEntry1);
+        BatteryNameAndIconLoader.enqueue(mBatteryEntry2);
+        BatteryNameAndIconLoader.enqueue(mSystemBatteryEntry);
+
+        assertThat(BatteryNameAndIconLoader.getPendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void stop_clearPendingRequests() {
+        BatteryNameAndIconLoader.enqueue(mBatteryEntry1);
+
+        BatteryNameAndIconLoader.stop();
+
+        assertThat(BatteryNameAndIconLoader.getPendingCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void loadLabelAndIcons_sameKey_loadOnceAndCopyIntoOtherEntries() {
+        doReturn("key").when(mBatteryDiffEntry1).getKey();
+        doReturn("key").when(mBatteryDiffEntry2).getKey();
+
+        BatteryNameAndIconLoader.loadLabelAndIcons(
+                Arrays.asList(mBatteryDiffEntry1, mBatteryDiffEntry2));
+
+        verify(mBatteryDiffEntry1).loadLabelAndIcon();
+        verify(mBatteryDiffEntry2, never()).loadLabelAndIcon();
+        verify(mBatteryDiffEntry2).copyLabelAndIcon(mBatteryDiffEntry1);
+        verify(mBatteryDiffEntry1, never()).copyLabelAndIcon(any());
+    }
+}
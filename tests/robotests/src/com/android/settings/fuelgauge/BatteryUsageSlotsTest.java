@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.fuelgauge;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ContentValues;
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public final class BatteryUsageSlotsTest {
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+    }
+
+    @Test
+    public void create_splitsFiltersAndSortsEntriesOfEachSlot() {
+        final BatteryDiffEntry lowAppEntry = createBatteryDiffEntry(
+            "low", ConvertUtils.CONSUMER_TYPE_UID_BATTERY, /*consumePower=*/ 10);
+        final BatteryDiffEntry highAppEntry = createBatteryDiffEntry(
+            "high", ConvertUtils.CONSUMER_TYPE_UID_BATTERY, /*consumePower=*/ 50);
+        final BatteryDiffEntry hiddenAppEntry = createBatteryDiffEntry(
+            "hidden", ConvertUtils.CONSUMER_TYPE_UID_BATTERY, /*consumePower=*/ 30);
+        final BatteryDiffEntry systemEntry = createBatteryDiffEntry(
+            "system", ConvertUtils.CONSUMER_TYPE_SYSTEM_BATTERY, /*consumePower=*/ 10);
+        final Map<Integer, List<BatteryDiffEntry>> indexedUsageMap = new HashMap<>();
+        indexedUsageMap.put(Integer.valueOf(BatteryChartView.SELECTED_INDEX_ALL),
+            Arrays.asList(lowAppEntry, systemEntry, hiddenAppEntry, highAppEntry));
+        indexedUsageMap.put(Integer.valueOf(0), Arrays.asList());
+
+        final BatteryUsageSlots slots = BatteryUsageSlots.create(
+            indexedUsageMap, entry -> !"hidden".equals(entry.getPackageName()));
+
+        assertThat(slots.getAppEntries(BatteryChartView.SELECTED_INDEX_ALL))
+            .containsExactly(highAppEntry, lowAppEntry).inOrder();
+        assertThat(slots.getSystemEntries(BatteryChartView.SELECTED_INDEX_ALL))
+            .containsExactly(systemEntry);
+        assertThat(slots.contains(0)).isTrue();
+        assertThat(slots.getAppEntries(0)).isEmpty();
+        assertThat(slots.contains(1)).isFalse();
+        assertThat(slots.getSystemEntries(1)).isEmpty();
+    }
+
+    private BatteryDiffEntry createBatteryDiffEntry(
+            String packageName, int consumerType, double consumePower) {
+        final ContentValues values = new ContentValues();
+        values.put(BatteryHistEntry.KEY_PACKAGE_NAME, packageName);
+        values.put(BatteryHistEntry.KEY_CONSUMER_TYPE, Integer.valueOf(consumerType));
+        final BatteryDiffEntry entry = new BatteryDiffEntry(
+            mContext,
+            /*foregroundUsageTimeInMs=*/ 0,
+            /*backgroundUsageTimeInMs=*/ 0,
+            consumePower,
+            new BatteryHistEntry(values));
+        entry.setTotalConsumePower(100);
+        return entry;
+    }
+}
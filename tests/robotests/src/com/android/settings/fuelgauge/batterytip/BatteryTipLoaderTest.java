@@ -27,12 +27,18 @@ import android.content.Intent;
 import android.os.BatteryUsageStats;
 import android.os.PowerManager;
 
+import com.android.settings.core.instrumentation.ControllerLatencyTracker;
 import com.android.settings.fuelgauge.BatteryInfo;
 import com.android.settings.fuelgauge.BatteryUtils;
+import com.android.settings.fuelgauge.batterytip.detectors.HighUsageDetector;
+import com.android.settings.fuelgauge.batterytip.detectors.LowBatteryDetector;
 import com.android.settings.fuelgauge.batterytip.tips.AppLabelPredicate;
 import com.android.settings.fuelgauge.batterytip.tips.AppRestrictionPredicate;
 import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -44,6 +50,7 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.util.ReflectionHelpers;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @RunWith(RobolectricTestRunner.class)
@@ -79,6 +86,7 @@ public class BatteryTipLoaderTest {
         doReturn(mBatteryInfo).when(mBatteryUtils).getBatteryInfo(any());
         mBatteryTipLoader = new BatteryTipLoader(mContext, mBatteryUsageStats);
         mBatteryTipLoader.mBatteryUtils = mBatteryUtils;
+        mBatteryTipLoader.mExecutor = Runnable::run;
     }
 
     @After
@@ -96,4 +104,67 @@ public class BatteryTipLoaderTest {
             assertThat(batteryTips.get(i).getType()).isEqualTo(TIP_ORDER[i]);
         }
     }
+
+    @Test
+    public void testLoadBackground_detectorsOverBudget_returnWithoutTheirTips() {
+        final List<Runnable> pendingDetections = new ArrayList<>();
+        mBatteryTipLoader.mExecutor = pendingDetections::add;
+
+        final List<BatteryTip> batteryTips = mBatteryTipLoader.loadInBackground();
+
+        assertThat(pendingDetections).hasSize(TIP_ORDER.length);
+        assertThat(batteryTips).isEmpty();
+    }
+
+    @Test
+    public void testLoadAllTips_detectorsOverBudget_containsAllTips() {
+        mBatteryTipLoader.mExecutor = runnable -> new Thread(() -> {
+            try {
+                Thread.sleep(BatteryTipLoader.SLOW_DETECTOR_TIMEOUT_MS + 100L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            runnable.run();
+        }).start();
+
+        final List<BatteryTip> batteryTips = mBatteryTipLoader.loadAllTips();
+
+        assertThat(batteryTips.size()).isEqualTo(TIP_ORDER.length);
+    }
+
+    @Test
+    public void testLoadBackground_recordDetectorLatency() throws Exception {
+        final long count = getDetectCount(LowBatteryDetector.class);
+
+        mBatteryTipLoader.loadInBackground();
+
+        assertThat(getDetectCount(LowBatteryDetector.class)).isEqualTo(count + 1);
+    }
+
+    @Test
+    public void testLoadBackground_detectorsOverBudget_recordLatencyOnceDetected()
+            throws Exception {
+        final List<Runnable> pendingDetections = new ArrayList<>();
+        mBatteryTipLoader.mExecutor = pendingDetections::add;
+        final long count = getDetectCount(HighUsageDetector.class);
+        mBatteryTipLoader.loadInBackground();
+        assertThat(getDetectCount(HighUsageDetector.class)).isEqualTo(count);
+
+        pendingDetections.forEach(Runnable::run);
+
+        assertThat(getDetectCount(HighUsageDetector.class)).isEqualTo(count + 1);
+    }
+
+    private static long getDetectCount(Class<?> detectorClass) throws JSONException {
+        final JSONArray array = ControllerLatencyTracker.getInstance().dumpToJson();
+        for (int i = 0; i < array.length(); i++) {
+            final JSONObject obj = array.getJSONObject(i);
+            if (obj.getInt("category") == ControllerLatencyTracker.CATEGORY_BATTERY_TIP_DETECTORS
+                    && obj.getString("controller").equals(detectorClass.getName())
+                    && obj.getString("phase").equals("detect")) {
+                return obj.getLong("count");
+            }
+        }
+        return 0;
+    }
 }
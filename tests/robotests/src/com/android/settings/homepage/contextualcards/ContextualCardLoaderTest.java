@@ -46,6 +46,7 @@ import org.robolectric.RuntimeEnvironment;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @RunWith(RobolectricTestRunner.class)
@@ -137,6 +138,32 @@ public class ContextualCardLoaderTest {
                 eq(SettingsEnums.ACTION_CONTEXTUAL_CARD_NOT_SHOW), any(String.class));
     }
 
+    @Test
+    public void filterEligibleCards_shouldCheckAllCardsOnSharedExecutor() {
+        final AtomicInteger executedCount = new AtomicInteger();
+        final ContextualCardLoader loader = new ContextualCardLoader(mContext, runnable -> {
+            executedCount.incrementAndGet();
+            runnable.run();
+        });
+        final List<ContextualCard> cards = getContextualCardList().stream()
+                .map(card -> card.mutate().setRankingScore(-1).build())
+                .collect(Collectors.toList());
+
+        final List<ContextualCard> result = loader.filterEligibleCards(cards);
+
+        assertThat(executedCount.get()).isEqualTo(cards.size());
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    public void isStreamedResult_firstResult_returnFalse() {
+        final List<ContextualCard> cards = getContextualCardList();
+
+        mContextualCardLoader.deliverResult(cards);
+
+        assertThat(mContextualCardLoader.isStreamedResult(cards)).isFalse();
+    }
+
     @Test
     public void getCardCount_noConfiguredCardCount_returnDefaultCardCount() {
         assertThat(mContextualCardLoader.getCardCount()).isEqualTo(DEFAULT_CARD_COUNT);
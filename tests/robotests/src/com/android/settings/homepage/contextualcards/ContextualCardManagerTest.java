@@ -328,6 +328,43 @@ public class ContextualCardManagerTest {
         verify(manager, never()).onContextualCardUpdated(anyMap());
     }
 
+    @Test
+    public void onFinishCardLoading_slowLoad_snapshotShown_shouldCallOnContextualCardUpdated() {
+        mManager.mStartTime = 0;
+        mManager.mIsSnapshotShown = true;
+        final ContextualCardManager manager = spy(mManager);
+        doNothing().when(manager).onContextualCardUpdated(anyMap());
+
+        manager.onFinishCardLoading(new ArrayList<>());
+
+        verify(manager).onContextualCardUpdated(nullable(Map.class));
+    }
+
+    @Test
+    public void onSnapshotLoaded_newLaunch_shouldShowSnapshotCards() {
+        mManager.setListener(mListener);
+        final List<ContextualCard> cards = new ArrayList<>();
+        cards.add(buildContextualCard(TEST_SLICE_URI));
+
+        mManager.onSnapshotLoaded(cards);
+
+        assertThat(mManager.mIsSnapshotShown).isTrue();
+        assertThat(mManager.mContextualCards).hasSize(1);
+    }
+
+    @Test
+    public void onSnapshotLoaded_cardsAlreadyLoaded_shouldIgnoreSnapshot() {
+        mManager.setListener(mListener);
+        mManager.mIsFirstLaunch = false;
+        final List<ContextualCard> cards = new ArrayList<>();
+        cards.add(buildContextualCard(TEST_SLICE_URI));
+
+        mManager.onSnapshotLoaded(cards);
+
+        assertThat(mManager.mIsSnapshotShown).isFalse();
+        assertThat(mManager.mContextualCards).isEmpty();
+    }
+
     @Test
     public void onFinishCardLoading_newLaunch_twoLoadedCards_shouldShowTwoCards() {
         mManager.mStartTime = System.currentTimeMillis();
@@ -350,6 +387,29 @@ public class ContextualCardManagerTest {
         assertThat(mManager.mIsFirstLaunch).isFalse();
     }
 
+    @Test
+    public void onStreamedCardLoading_afterFirstResult_shouldShowStreamedCards() {
+        mManager.setListener(mListener);
+        mManager.mIsFirstLaunch = false;
+        mManager.mContextualCards.add(buildContextualCard(TEST_SLICE_URI));
+        final ContextualCard lateCard =
+                new ContextualCard.Builder()
+                        .setName("test_name2")
+                        .setCardType(ContextualCard.CardType.SLICE)
+                        .setSliceUri(Uri.parse("content://test/test2"))
+                        .build();
+        final List<ContextualCard> streamedCards = new ArrayList<>();
+        streamedCards.add(buildContextualCard(TEST_SLICE_URI));
+        streamedCards.add(lateCard);
+
+        mManager.onStreamedCardLoading(streamedCards);
+
+        final List<String> actualCards = mManager.mContextualCards.stream()
+                .map(ContextualCard::getName)
+                .collect(Collectors.toList());
+        assertThat(actualCards).containsExactly(TEST_SLICE_NAME, "test_name2");
+    }
+
     @Test
     public void onFinishCardLoading_hasSavedCard_shouldOnlyShowSavedCard() {
         // test screen rotation
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.LocaleList;
+
+import androidx.slice.Slice;
+
+import com.android.settings.homepage.contextualcards.CardDatabaseHelper.CardColumns;
+import com.android.settings.homepage.contextualcards.slices.SliceContextualCardRenderer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+public class ContextualCardSnapshotTest {
+
+    private static final Uri TEST_SLICE_URI = Uri.parse("content://test/test");
+
+    private Context mContext;
+    private ContextualCardSnapshot mSnapshot;
+    private LocaleList mDefaultLocales;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mDefaultLocales = LocaleList.getDefault();
+        mSnapshot = spy(new ContextualCardSnapshot(mContext));
+        doReturn(new byte[]{1}).when(mSnapshot).serializeSlice(any(Slice.class));
+        doReturn(new Slice.Builder(TEST_SLICE_URI).build()).when(mSnapshot)
+                .parseSlice(any(byte[].class));
+    }
+
+    @After
+    public void tearDown() {
+        LocaleList.setDefault(mDefaultLocales);
+        CardDatabaseHelper.getInstance(mContext).close();
+        CardDatabaseHelper.sCardDatabaseHelper = null;
+    }
+
+    @Test
+    public void load_afterSave_shouldReturnCardsInOrder() {
+        final List<ContextualCard> cards = new ArrayList<>();
+        cards.add(buildCard("card2", true /* hasSlice */));
+        cards.add(buildCard("card1", true /* hasSlice */));
+
+        mSnapshot.save(cards);
+        final List<ContextualCard> result = mSnapshot.load();
+
+        assertThat(result).containsExactly(cards.get(0), cards.get(1)).inOrder();
+        assertThat(result.get(0).getSlice()).isNotNull();
+    }
+
+    @Test
+    public void save_cardWithoutSlice_shouldNotBeSaved() {
+        final List<ContextualCard> cards = new ArrayList<>();
+        cards.add(buildCard("card1", false /* hasSlice */));
+
+        mSnapshot.save(cards);
+
+        assertThat(mSnapshot.load()).isEmpty();
+    }
+
+    @Test
+    public void load_localeChanged_returnEmptyList() {
+        final List<ContextualCard> cards = new ArrayList<>();
+        cards.add(buildCard("card1", true /* hasSlice */));
+        mSnapshot.save(cards);
+
+        LocaleList.setDefault(new LocaleList(Locale.JAPAN));
+
+        assertThat(mSnapshot.load()).isEmpty();
+    }
+
+    @Test
+    public void load_halfWidthCard_shouldRestoreViewType() {
+        final List<ContextualCard> cards = new ArrayList<>();
+        cards.add(buildCard("card1", true /* hasSlice */).mutate()
+                .setViewType(SliceContextualCardRenderer.VIEW_TYPE_HALF_WIDTH).build());
+        cards.add(buildCard("card2", true /* hasSlice */));
+
+        mSnapshot.save(cards);
+        final List<ContextualCard> result = mSnapshot.load();
+
+        assertThat(result.get(0).getViewType())
+                .isEqualTo(SliceContextualCardRenderer.VIEW_TYPE_HALF_WIDTH);
+        assertThat(result.get(1).getViewType())
+                .isEqualTo(SliceContextualCardRenderer.VIEW_TYPE_FULL_WIDTH);
+    }
+
+    @Test
+    public void load_cardDismissedAfterSave_shouldNotBeRestored() {
+        final List<ContextualCard> cards = new ArrayList<>();
+        cards.add(buildCard("card1", true /* hasSlice */));
+        cards.add(buildCard("card2", true /* hasSlice */));
+        mSnapshot.save(cards);
+
+        final ContentValues values = new ContentValues();
+        values.put(CardColumns.NAME, "card1");
+        values.put(CardColumns.TYPE, ContextualCard.CardType.SLICE);
+        values.put(CardColumns.SCORE, 0.5);
+        values.put(CardColumns.SLICE_URI, TEST_SLICE_URI.toString());
+        values.put(CardColumns.PACKAGE_NAME, "com.android.settings");
+        values.put(CardColumns.APP_VERSION, 1);
+        values.put(CardColumns.DISMISSED_TIMESTAMP, System.currentTimeMillis());
+        CardDatabaseHelper.getInstance(mContext).getWritableDatabase()
+                .insert(CardDatabaseHelper.CARD_TABLE, null /* nullColumnHack */, values);
+
+        assertThat(mSnapshot.load()).containsExactly(cards.get(1));
+    }
+
+    private static ContextualCard buildCard(String name, boolean hasSlice) {
+        return new ContextualCard.Builder()
+                .setName(name)
+                .setCardType(ContextualCard.CardType.SLICE)
+                .setSliceUri(TEST_SLICE_URI)
+                .setSlice(hasSlice ? new Slice.Builder(TEST_SLICE_URI).build() : null)
+                .build();
+    }
+}
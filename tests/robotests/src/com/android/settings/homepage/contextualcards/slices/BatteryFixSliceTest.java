@@ -159,6 +159,11 @@ public class BatteryFixSliceTest {
             return sBatteryTips;
         }
 
+        @Implementation
+        protected List<BatteryTip> loadAllTips() {
+            return sBatteryTips;
+        }
+
         private static void setBatteryTips(List<BatteryTip> tips) {
             sBatteryTips = tips;
         }
@@ -48,9 +48,11 @@ import androidx.fragment.app.FragmentTransaction;
 import androidx.lifecycle.LifecycleOwner;
 import androidx.preference.SwitchPreference;
 
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.SubscriptionUtil;
 import com.android.settingslib.core.lifecycle.Lifecycle;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -94,6 +96,7 @@ public class ContactDiscoveryPreferenceControllerTest {
         doReturn(mImsRcsManager).when(mImsManager).getImsRcsManager(anyInt());
         doReturn(mRcsUceAdapter).when(mImsRcsManager).getUceAdapter();
         doReturn(mCarrierConfigManager).when(mContext).getSystemService(CarrierConfigManager.class);
+        CarrierConfigCache.setTestInstance(mCarrierConfigManager);
         doReturn(mCarrierConfig).when(mCarrierConfigManager).getConfigForSubId(eq(TEST_SUB_ID));
         // Start all tests with presence being disabled.
         setRcsPresenceConfig(false);
@@ -110,6 +113,11 @@ public class ContactDiscoveryPreferenceControllerTest {
         mPreferenceControllerUT.preference = mSwitchPreferenceUT;
     }
 
+    @After
+    public void tearDown() {
+        CarrierConfigCache.resetInstance();
+    }
+
     @Test
     public void testGetAvailabilityStatus() {
         assertEquals("Availability status should not be available.", CONDITIONALLY_UNAVAILABLE,
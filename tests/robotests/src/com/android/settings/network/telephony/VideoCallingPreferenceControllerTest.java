@@ -31,9 +31,11 @@ import android.telephony.ims.ProvisioningManager;
 import androidx.preference.PreferenceScreen;
 import androidx.preference.SwitchPreference;
 
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.ims.MockVolteQueryImsState;
 import com.android.settings.network.ims.MockVtQueryImsState;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -71,6 +73,7 @@ public class VideoCallingPreferenceControllerTest {
         doReturn(mTelephonyManager).when(mContext).getSystemService(TelephonyManager.class);
         doReturn(mCarrierConfigManager).when(mContext)
                 .getSystemService(CarrierConfigManager.class);
+        CarrierConfigCache.setTestInstance(mCarrierConfigManager);
         doReturn(mTelephonyManager).when(mTelephonyManager).createForSubscriptionId(SUB_ID);
 
         mCarrierConfig = new PersistableBundle();
@@ -99,6 +102,11 @@ public class VideoCallingPreferenceControllerTest {
         mController.mCallState = TelephonyManager.CALL_STATE_IDLE;
     }
 
+    @After
+    public void tearDown() {
+        CarrierConfigCache.resetInstance();
+    }
+
     @Test
     public void isVideoCallEnabled_allFlagsOn_returnTrue() {
         assertThat(mController.isVideoCallEnabled(SUB_ID)).isTrue();
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+
+import com.android.settings.display.AutoBrightnessSettings;
+import com.android.settingslib.search.SearchIndexableData;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+@RunWith(RobolectricTestRunner.class)
+public class SearchIndexableResultCacheTest {
+
+    private Context mContext;
+    private SearchIndexableResultCache mCache;
+    private List<SearchIndexableData> mBundles;
+    private List<String> mLoadedClasses;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mCache = spy(new SearchIndexableResultCache(mContext,
+                Executors.newSingleThreadExecutor()));
+        doReturn("fingerprint").when(mCache).computeFingerprint(anyString());
+        mBundles = Arrays.asList(
+                new SearchIndexableData(FakeSettingsFragment.class,
+                        FakeSettingsFragment.SEARCH_INDEX_DATA_PROVIDER),
+                new SearchIndexableData(AutoBrightnessSettings.class,
+                        AutoBrightnessSettings.SEARCH_INDEX_DATA_PROVIDER));
+        mLoadedClasses = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @Test
+    public void collect_shouldKeepBundleOrder() {
+        final List<String> result = collect(SearchIndexableResultCache.TYPE_RAW_DATA);
+
+        assertThat(result).containsExactly(FakeSettingsFragment.class.getName(),
+                AutoBrightnessSettings.class.getName()).inOrder();
+    }
+
+    @Test
+    public void collect_sameFingerprint_shouldNotLoadAgain() {
+        collect(SearchIndexableResultCache.TYPE_RAW_DATA);
+        mLoadedClasses.clear();
+
+        final List<String> result = collect(SearchIndexableResultCache.TYPE_RAW_DATA);
+
+        assertThat(result).hasSize(2);
+        assertThat(mLoadedClasses).isEmpty();
+    }
+
+    @Test
+    public void collect_fingerprintChanged_shouldLoadAgain() {
+        collect(SearchIndexableResultCache.TYPE_RAW_DATA);
+        mLoadedClasses.clear();
+        doReturn("new_fingerprint").when(mCache).computeFingerprint(anyString());
+
+        collect(SearchIndexableResultCache.TYPE_RAW_DATA);
+
+        assertThat(mLoadedClasses).hasSize(2);
+    }
+
+    @Test
+    public void collect_nullData_shouldBeSkipped() {
+        final List<String> result = mCache.collect(SearchIndexableResultCache.TYPE_RAW_DATA,
+                mBundles, bundle -> null);
+
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    public void collect_runtimeData_shouldLoadEveryTime() {
+        collect(SearchIndexableResultCache.TYPE_NON_INDEXABLE_KEYS);
+        collect(SearchIndexableResultCache.TYPE_DYNAMIC_RAW_DATA);
+        mLoadedClasses.clear();
+
+        collect(SearchIndexableResultCache.TYPE_NON_INDEXABLE_KEYS);
+        collect(SearchIndexableResultCache.TYPE_DYNAMIC_RAW_DATA);
+
+        assertThat(mLoadedClasses).hasSize(4);
+    }
+
+    @Test
+    public void computeFingerprint_otherPackageInstalled_shouldNotChange() {
+        final SearchIndexableResultCache cache = new SearchIndexableResultCache(mContext,
+                Executors.newSingleThreadExecutor());
+        final String fingerprint = cache.computeFingerprint(mContext.getPackageName());
+
+        final PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = "com.android.test";
+        shadowOf(mContext.getPackageManager()).installPackage(packageInfo);
+
+        assertThat(cache.computeFingerprint(mContext.getPackageName())).isEqualTo(fingerprint);
+    }
+
+    private List<String> collect(int type) {
+        return mCache.collect(type, mBundles, bundle -> {
+            final String className = bundle.getTargetClass().getName();
+            mLoadedClasses.add(className);
+            return Collections.singletonList(className);
+        });
+    }
+}
@@ -29,6 +29,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -41,6 +42,7 @@ import android.app.slice.SliceManager;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.res.Resources.Theme;
 import android.net.Uri;
 import android.os.StrictMode;
@@ -87,7 +89,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -149,7 +150,7 @@ public class SettingsSliceProviderTest {
 
         mProvider = spy(new SettingsSliceProvider());
         ShadowStrictMode.reset();
-        mProvider.mSliceWeakDataCache = new HashMap<>();
+        mProvider.mSliceDataCache = new SliceDataCache(SliceDataCache.MAX_SIZE);
         mProvider.mSlicesDatabaseAccessor = new SlicesDatabaseAccessor(mContext);
         when(mProvider.getContext()).thenReturn(mContext);
 
@@ -184,7 +185,7 @@ public class SettingsSliceProviderTest {
         SliceTestUtils.insertSliceToDb(mContext, KEY);
 
         mProvider.loadSlice(INTENT_SLICE_URI);
-        SliceData data = mProvider.mSliceWeakDataCache.get(INTENT_SLICE_URI);
+        SliceData data = mProvider.mSliceDataCache.get(INTENT_SLICE_URI);
 
         assertThat(data.getKey()).isEqualTo(KEY);
         assertThat(data.getTitle()).isEqualTo(SliceTestUtils.FAKE_TITLE);
@@ -214,15 +215,28 @@ public class SettingsSliceProviderTest {
     }
 
     @Test
-    public void testLoadSlice_cachedEntryRemovedOnBuild() {
+    public void testLoadSlice_cachedEntryKeptOnBuild() {
         SliceData data = getMockData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
         SliceTestUtils.insertSliceToDb(mContext, data.getKey());
 
-        SliceData cachedData = mProvider.mSliceWeakDataCache.get(data.getUri());
+        SliceData cachedData = mProvider.mSliceDataCache.get(data.getUri());
 
-        assertThat(cachedData).isNull();
+        assertThat(cachedData).isEqualTo(data);
+    }
+
+    @Test
+    public void loadSlice_cacheInvalidatedWhileLoading_shouldNotCacheData() {
+        SliceTestUtils.insertSliceToDb(mContext, KEY);
+        doAnswer(invocation -> {
+            mProvider.mSliceDataCache.invalidate();
+            return null;
+        }).when(mProvider).registerIntentToUri(any(IntentFilter.class), any(Uri.class));
+
+        mProvider.loadSlice(INTENT_SLICE_URI);
+
+        assertThat(mProvider.mSliceDataCache.get(INTENT_SLICE_URI)).isNull();
     }
 
     @Test
@@ -230,7 +244,7 @@ public class SettingsSliceProviderTest {
         ShadowThreadUtils.setIsMainThread(true);
         final StrictMode.ThreadPolicy oldThreadPolicy = StrictMode.getThreadPolicy();
         SliceData data = getMockData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
 
         final StrictMode.ThreadPolicy newThreadPolicy = StrictMode.getThreadPolicy();
@@ -244,7 +258,7 @@ public class SettingsSliceProviderTest {
         ShadowThreadUtils.setIsMainThread(false);
 
         SliceData data = getMockData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
 
         assertThat(ShadowStrictMode.isThreadPolicyOverridden()).isTrue();
@@ -272,7 +286,7 @@ public class SettingsSliceProviderTest {
     public void onBindSlice_nightModeChanged_shouldReloadTheme() {
         mContext.getResources().getConfiguration().uiMode = UI_MODE_NIGHT_NO;
         final SliceData data = getMockData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
 
         mContext.getResources().getConfiguration().uiMode = UI_MODE_NIGHT_YES;
@@ -285,7 +299,7 @@ public class SettingsSliceProviderTest {
     public void onBindSlice_nightModeNotChanged_shouldNotReloadTheme() {
         mContext.getResources().getConfiguration().uiMode = UI_MODE_NIGHT_NO;
         SliceData data = getMockData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
 
         mContext.getResources().getConfiguration().uiMode = UI_MODE_NIGHT_NO;
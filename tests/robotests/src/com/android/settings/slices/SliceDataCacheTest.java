@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.provider.SettingsSlicesContract;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class SliceDataCacheTest {
+
+    private SliceDataCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new SliceDataCache(2 /* maxSize */);
+    }
+
+    @Test
+    public void put_overMaxSize_shouldEvictLeastRecentlyUsed() {
+        final SliceData data1 = buildSliceData("key1");
+        final SliceData data2 = buildSliceData("key2");
+        final SliceData data3 = buildSliceData("key3");
+        mCache.put(data1.getUri(), data1);
+        mCache.put(data2.getUri(), data2);
+        mCache.get(data1.getUri());
+
+        mCache.put(data3.getUri(), data3);
+
+        assertThat(mCache.get(data1.getUri())).isEqualTo(data1);
+        assertThat(mCache.get(data2.getUri())).isNull();
+        assertThat(mCache.get(data3.getUri())).isEqualTo(data3);
+    }
+
+    @Test
+    public void invalidate_shouldDropCachedData() {
+        final SliceData data = buildSliceData("key");
+        mCache.put(data.getUri(), data);
+
+        mCache.invalidate();
+
+        assertThat(mCache.get(data.getUri())).isNull();
+    }
+
+    @Test
+    public void put_loadedBeforeInvalidation_shouldNotCache() {
+        final SliceData data = buildSliceData("key");
+        final int generation = mCache.getGeneration();
+        mCache.invalidate();
+
+        mCache.put(data.getUri(), data, generation);
+
+        assertThat(mCache.get(data.getUri())).isNull();
+    }
+
+    @Test
+    public void loadPending_shouldCacheAllLoadedData() {
+        final SliceData data1 = buildSliceData("key1");
+        final SliceData data2 = buildSliceData("key2");
+        final List<Uri> uris = Arrays.asList(data1.getUri(), data2.getUri());
+        final SlicesDatabaseAccessor accessor = mock(SlicesDatabaseAccessor.class);
+        final Map<Uri, SliceData> result = new HashMap<>();
+        result.put(data1.getUri(), data1);
+        result.put(data2.getUri(), data2);
+        when(accessor.getSliceDataFromUris(uris)).thenReturn(result);
+
+        mCache.loadPending(accessor, uris, mCache.getGeneration());
+
+        assertThat(mCache.awaitPrefetch(data1.getUri())).isEqualTo(data1);
+        assertThat(mCache.awaitPrefetch(data2.getUri())).isEqualTo(data2);
+    }
+
+    @Test
+    public void loadPending_queryFailed_shouldNotBlockWaiters() {
+        final SliceData data = buildSliceData("key");
+        final List<Uri> uris = Collections.singletonList(data.getUri());
+        final SlicesDatabaseAccessor accessor = mock(SlicesDatabaseAccessor.class);
+        when(accessor.getSliceDataFromUris(uris)).thenThrow(new IllegalStateException());
+
+        mCache.loadPending(accessor, uris, mCache.getGeneration());
+
+        assertThat(mCache.awaitPrefetch(data.getUri())).isNull();
+    }
+
+    private static SliceData buildSliceData(String key) {
+        final Uri uri = new Uri.Builder()
+                .scheme(ContentResolver.SCHEME_CONTENT)
+                .authority(SettingsSliceProvider.SLICE_AUTHORITY)
+                .appendPath(SettingsSlicesContract.PATH_SETTING_ACTION)
+                .appendPath(key)
+                .build();
+        return new SliceData.Builder()
+                .setKey(key)
+                .setTitle(SliceTestUtils.FAKE_TITLE)
+                .setFragmentName(SliceTestUtils.FAKE_FRAGMENT_NAME)
+                .setPreferenceControllerClassName(SliceTestUtils.FAKE_CONTROLLER_NAME)
+                .setUri(uri)
+                .build();
+    }
+}
@@ -55,8 +55,10 @@ import org.robolectric.shadow.api.Shadow;
 import org.robolectric.shadows.ShadowAccessibilityManager;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 @RunWith(RobolectricTestRunner.class)
 @Config(shadows = {ShadowUserManager.class, ShadowUtils.class,
@@ -167,6 +169,24 @@ public class SlicesDatabaseAccessorTest {
         mAccessor.getSliceDataFromUri(uri);
     }
 
+    @Test
+    public void getSliceDataFromUris_shouldReturnDataOfIndexedUris() {
+        SliceTestUtils.insertSliceToDb(mContext, "key1");
+        SliceTestUtils.insertSliceToDb(mContext, "key2");
+        final Uri intentUri = buildUri(SettingsSlicesContract.PATH_SETTING_INTENT, "key1");
+        final Uri actionUri = buildUri(SettingsSlicesContract.PATH_SETTING_ACTION, "key1");
+        final Uri otherUri = buildUri(SettingsSlicesContract.PATH_SETTING_ACTION, "key2");
+        final Uri unknownUri = buildUri(SettingsSlicesContract.PATH_SETTING_ACTION, "unknown");
+
+        final Map<Uri, SliceData> result = mAccessor.getSliceDataFromUris(
+                Arrays.asList(intentUri, actionUri, otherUri, unknownUri));
+
+        assertThat(result.keySet()).containsExactly(intentUri, actionUri, otherUri);
+        assertThat(result.get(intentUri).getKey()).isEqualTo("key1");
+        assertThat(result.get(actionUri).getUri()).isEqualTo(actionUri);
+        assertThat(result.get(otherUri).getKey()).isEqualTo("key2");
+    }
+
     @Test
     public void getDescendantUris_platformSlice_doesNotReturnOEMSlice() {
         final String key = "oem_key";
@@ -312,6 +332,15 @@ public class SlicesDatabaseAccessorTest {
         assertThat(data.getUnavailableSliceSubtitle()).isEqualTo(subtitle);
     }
 
+    private static Uri buildUri(String path, String key) {
+        return new Uri.Builder()
+                .scheme(ContentResolver.SCHEME_CONTENT)
+                .authority(SettingsSliceProvider.SLICE_AUTHORITY)
+                .appendPath(path)
+                .appendPath(key)
+                .build();
+    }
+
     @Implements(ApplicationPackageManager.class)
     public static class ShadowApplicationPackageManager extends
             org.robolectric.shadows.ShadowApplicationPackageManager {
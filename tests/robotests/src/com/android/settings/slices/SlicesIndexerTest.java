@@ -194,6 +194,72 @@ public class SlicesIndexerTest {
         }
     }
 
+    @Test
+    public void updateSliceData_dataChanged_onlyApplyDelta() {
+        final List<SliceData> sliceData = getMockIndexableData(false);
+        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+        mManager.updateSliceData(db, sliceData);
+        final long unchangedDocId = getDocId(db, KEYS[0]);
+        final List<SliceData> newSliceData = new ArrayList<>();
+        newSliceData.add(sliceData.get(0));
+        newSliceData.add(new SliceData.Builder()
+                .setKey(KEYS[1])
+                .setTitle("newTitle")
+                .setUri(URI)
+                .setPreferenceControllerClassName(PREF_CONTROLLER)
+                .build());
+
+        mManager.updateSliceData(db, newSliceData);
+
+        try (Cursor cursor = db.rawQuery("SELECT * FROM slices_index", null)) {
+            assertThat(cursor.getCount()).isEqualTo(2);
+        }
+        assertThat(getDocId(db, KEYS[0])).isEqualTo(unchangedDocId);
+        assertThat(getDocId(db, KEYS[2])).isEqualTo(-1);
+        try (Cursor cursor = db.rawQuery("SELECT title FROM slices_index WHERE key = ?",
+                new String[]{KEYS[1]})) {
+            cursor.moveToFirst();
+            assertThat(cursor.getString(0)).isEqualTo("newTitle");
+        }
+        try (Cursor cursor = db.rawQuery("SELECT * FROM slices_index_hash", null)) {
+            assertThat(cursor.getCount()).isEqualTo(2);
+        }
+        db.close();
+    }
+
+    @Test
+    public void updateSliceData_rowWithoutHash_shouldBeReplaced() {
+        insertSpecialCase(KEYS[0], "oldTitle");
+        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+
+        mManager.updateSliceData(db, getMockIndexableData(false));
+
+        try (Cursor cursor = db.rawQuery("SELECT title FROM slices_index WHERE key = ?",
+                new String[]{KEYS[0]})) {
+            assertThat(cursor.getCount()).isEqualTo(1);
+            cursor.moveToFirst();
+            assertThat(cursor.getString(0)).isEqualTo(TITLES[0]);
+        }
+        db.close();
+    }
+
+    @Test
+    public void computeHash_differentContent_differentHash() {
+        final List<SliceData> sliceData = getMockIndexableData(false);
+
+        assertThat(SlicesIndexer.computeHash(sliceData.get(0)))
+                .isEqualTo(SlicesIndexer.computeHash(getMockIndexableData(false).get(0)));
+        assertThat(SlicesIndexer.computeHash(sliceData.get(0)))
+                .isNotEqualTo(SlicesIndexer.computeHash(sliceData.get(1)));
+    }
+
+    private long getDocId(SQLiteDatabase db, String key) {
+        try (Cursor cursor = db.rawQuery("SELECT docid FROM slices_index WHERE key = ?",
+                new String[]{key})) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        }
+    }
+
     private void insertSpecialCase(String key, String title) {
         final ContentValues values = new ContentValues();
         values.put(IndexColumns.KEY, key);
@@ -20,6 +20,7 @@ import android.content.Context;
 
 import com.android.settings.fuelgauge.batterytip.AnomalyDatabaseHelper;
 import com.android.settings.fuelgauge.batterytip.BatteryDatabaseManager;
+import com.android.settings.slices.SliceDataCache;
 import com.android.settings.slices.SlicesDatabaseHelper;
 
 import org.robolectric.util.ReflectionHelpers;
@@ -37,6 +38,7 @@ public class DatabaseTestUtils {
         helper.close();
 
         ReflectionHelpers.setStaticField(SlicesDatabaseHelper.class, "sSingleton", null);
+        ReflectionHelpers.setStaticField(SliceDataCache.class, "sInstance", null);
     }
 
     private static void clearAnomalyDb(Context context) {
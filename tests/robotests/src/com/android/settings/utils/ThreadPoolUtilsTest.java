@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.utils;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class ThreadPoolUtilsTest {
+
+    @Test
+    public void newWorkerPool_shouldBeBoundedAndReleaseIdleThreads() {
+        final ThreadPoolExecutor executor = ThreadPoolUtils.newWorkerPool(
+                4 /* maxPoolSize */, 10L /* keepAliveSeconds */);
+
+        try {
+            assertThat(executor.getCorePoolSize()).isAtLeast(2);
+            assertThat(executor.getCorePoolSize()).isAtMost(4);
+            assertThat(executor.getMaximumPoolSize()).isEqualTo(executor.getCorePoolSize());
+            assertThat(executor.getKeepAliveTime(TimeUnit.SECONDS)).isEqualTo(10L);
+            assertThat(executor.allowsCoreThreadTimeOut()).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void newWorkerPool_maxPoolSizeBelowTwo_shouldStillUseTwoThreads() {
+        final ThreadPoolExecutor executor = ThreadPoolUtils.newWorkerPool(
+                1 /* maxPoolSize */, 10L /* keepAliveSeconds */);
+
+        try {
+            assertThat(executor.getCorePoolSize()).isEqualTo(2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void newSingleThreadPool_shouldUseOneThreadAndReleaseIt() {
+        final ThreadPoolExecutor executor = ThreadPoolUtils.newSingleThreadPool(
+                10L /* keepAliveSeconds */);
+
+        try {
+            assertThat(executor.getCorePoolSize()).isEqualTo(1);
+            assertThat(executor.getMaximumPoolSize()).isEqualTo(1);
+            assertThat(executor.getKeepAliveTime(TimeUnit.SECONDS)).isEqualTo(10L);
+            assertThat(executor.allowsCoreThreadTimeOut()).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.wifi;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+
+import androidx.preference.Preference;
+import androidx.preference.PreferenceCategory;
+import androidx.preference.PreferenceManager;
+import androidx.preference.PreferenceScreen;
+
+import com.android.settingslib.wifi.LongPressWifiEntryPreference;
+import com.android.wifitrackerlib.WifiEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+
+@RunWith(RobolectricTestRunner.class)
+public class WifiEntryPreferenceReconcilerTest {
+
+    private Context mContext;
+    private PreferenceCategory mCategory;
+    private WifiEntryPreferenceReconciler.PreferenceFactory mFactory;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        final PreferenceManager preferenceManager = new PreferenceManager(mContext);
+        final PreferenceScreen screen = preferenceManager.createPreferenceScreen(mContext);
+        mCategory = new PreferenceCategory(mContext);
+        screen.addPreference(mCategory);
+        mFactory = wifiEntry -> new LongPressWifiEntryPreference(mContext, wifiEntry,
+                null /* fragment */);
+    }
+
+    @Test
+    public void reconcile_newEntries_addPreferencesInOrder() {
+        final WifiEntry entryA = mockWifiEntry("a");
+        final WifiEntry entryB = mockWifiEntry("b");
+
+        final int createdCount = WifiEntryPreferenceReconciler.reconcile(mCategory,
+                Arrays.asList(entryA, entryB), mFactory);
+
+        assertThat(createdCount).isEqualTo(2);
+        assertThat(getPreference("a").getWifiEntry()).isSameInstanceAs(entryA);
+        assertThat(getPreference("a").getOrder()).isEqualTo(0);
+        assertThat(getPreference("b").getOrder()).isEqualTo(1);
+    }
+
+    @Test
+    public void reconcile_movedEntries_keepPreferencesAndUpdateOrder() {
+        final WifiEntry entryA = mockWifiEntry("a");
+        final WifiEntry entryB = mockWifiEntry("b");
+        WifiEntryPreferenceReconciler.reconcile(mCategory, Arrays.asList(entryA, entryB),
+                mFactory);
+        final LongPressWifiEntryPreference prefA = getPreference("a");
+        final LongPressWifiEntryPreference prefB = getPreference("b");
+
+        final int createdCount = WifiEntryPreferenceReconciler.reconcile(mCategory,
+                Arrays.asList(entryB, entryA), mFactory);
+
+        assertThat(createdCount).isEqualTo(0);
+        assertThat(getPreference("a")).isSameInstanceAs(prefA);
+        assertThat(getPreference("b")).isSameInstanceAs(prefB);
+        assertThat(prefA.getOrder()).isEqualTo(1);
+        assertThat(prefB.getOrder()).isEqualTo(0);
+    }
+
+    @Test
+    public void reconcile_newWifiEntryObject_replacePreference() {
+        WifiEntryPreferenceReconciler.reconcile(mCategory, Arrays.asList(mockWifiEntry("a")),
+                mFactory);
+        final LongPressWifiEntryPreference formerPref = getPreference("a");
+        final WifiEntry newEntryA = mockWifiEntry("a");
+
+        final int createdCount = WifiEntryPreferenceReconciler.reconcile(mCategory,
+                Arrays.asList(newEntryA), mFactory);
+
+        assertThat(createdCount).isEqualTo(1);
+        assertThat(mCategory.getPreferenceCount()).isEqualTo(1);
+        assertThat(getPreference("a")).isNotSameInstanceAs(formerPref);
+        assertThat(getPreference("a").getWifiEntry()).isSameInstanceAs(newEntryA);
+    }
+
+    @Test
+    public void reconcile_disappearedEntry_removeOnlyItsPreference() {
+        final Preference otherPref = new Preference(mContext);
+        otherPref.setKey("other");
+        mCategory.addPreference(otherPref);
+        final WifiEntry entryA = mockWifiEntry("a");
+        WifiEntryPreferenceReconciler.reconcile(mCategory,
+                Arrays.asList(entryA, mockWifiEntry("b")), mFactory);
+        final LongPressWifiEntryPreference prefA = getPreference("a");
+
+        WifiEntryPreferenceReconciler.reconcile(mCategory, Arrays.asList(entryA), mFactory);
+
+        assertThat(getPreference("a")).isSameInstanceAs(prefA);
+        assertThat(mCategory.<Preference>findPreference("b")).isNull();
+        assertThat(mCategory.<Preference>findPreference("other")).isSameInstanceAs(otherPref);
+    }
+
+    private LongPressWifiEntryPreference getPreference(String key) {
+        return mCategory.findPreference(key);
+    }
+
+    private static WifiEntry mockWifiEntry(String key) {
+        final WifiEntry wifiEntry = mock(WifiEntry.class);
+        when(wifiEntry.getKey()).thenReturn(key);
+        return wifiEntry;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.wifi.qrcode;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.Encoder;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Collections;
+
+@RunWith(RobolectricTestRunner.class)
+public class QrCodeGeneratorTest {
+    private static final String WIFI_QR_CODE = "WIFI:S:Settings;T:SAE;P:p4ssw0rd;;";
+
+    @Test
+    public void renderPixels_sameAsQrCodeWriter() throws WriterException {
+        final int size = 250;
+        final BitMatrix expected = new QRCodeWriter().encode(WIFI_QR_CODE,
+                BarcodeFormat.QR_CODE, size, size);
+
+        final int[] pixels = QrCodeGenerator.renderPixels(Encoder.encode(WIFI_QR_CODE,
+                ErrorCorrectionLevel.L, Collections.emptyMap()).getMatrix(), size);
+
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                assertThat(pixels[y * size + x])
+                        .isEqualTo(expected.get(x, y) ? Color.BLACK : Color.WHITE);
+            }
+        }
+    }
+
+    @Test
+    public void encodeQrCode_sameContentsAndSize_returnCachedBitmap() throws WriterException {
+        final Bitmap bitmap = QrCodeGenerator.encodeQrCode(WIFI_QR_CODE, 320);
+
+        assertThat(QrCodeGenerator.encodeQrCode(WIFI_QR_CODE, 320)).isSameInstanceAs(bitmap);
+        assertThat(QrCodeGenerator.encodeQrCode(WIFI_QR_CODE, 321)).isNotSameInstanceAs(bitmap);
+    }
+
+    @Test
+    public void encodeQrCode_cachedBitmapRecycled_encodeAgain() throws WriterException {
+        final Bitmap bitmap = QrCodeGenerator.encodeQrCode(WIFI_QR_CODE, 300);
+        bitmap.recycle();
+
+        final Bitmap newBitmap = QrCodeGenerator.encodeQrCode(WIFI_QR_CODE, 300);
+
+        assertThat(newBitmap).isNotSameInstanceAs(bitmap);
+        assertThat(newBitmap.isRecycled()).isFalse();
+    }
+}
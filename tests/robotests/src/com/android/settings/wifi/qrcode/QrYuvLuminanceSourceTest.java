@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.wifi.qrcode;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class QrYuvLuminanceSourceTest {
+
+    // A 4x3 picture.
+    private static final byte[] PICTURE = {
+            0, 1, 2, 3,
+            4, 5, 6, 7,
+            8, 9, 10, 11};
+
+    @Test
+    public void setCroppedData_copyAreaIntoSameBuffer() {
+        final QrYuvLuminanceSource source = new QrYuvLuminanceSource(2, 2);
+        final byte[] buffer = source.getMatrix();
+
+        source.setCroppedData(PICTURE, 4, 3, 1, 1);
+
+        assertThat(source.getMatrix()).isSameInstanceAs(buffer);
+        assertThat(source.getMatrix()).isEqualTo(new byte[] {5, 6, 9, 10});
+
+        source.setCroppedData(PICTURE, 4, 3, 2, 0);
+
+        assertThat(source.getMatrix()).isEqualTo(new byte[] {2, 3, 6, 7});
+    }
+
+    @Test
+    public void crop_returnCroppedArea() {
+        final QrYuvLuminanceSource source = new QrYuvLuminanceSource(PICTURE, 4, 3);
+
+        assertThat(source.crop(0, 1, 3, 2).getMatrix()).isEqualTo(new byte[] {4, 5, 6, 8, 9, 10});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setCroppedData_outsidePicture_throwException() {
+        new QrYuvLuminanceSource(2, 2).setCroppedData(PICTURE, 4, 3, 3, 0);
+    }
+}
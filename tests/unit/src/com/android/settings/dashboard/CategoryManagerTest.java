@@ -42,6 +42,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -315,6 +316,65 @@ public class CategoryManagerTest {
         assertThat(category.getTilesCount()).isEqualTo(1);
     }
 
+    @Test
+    public void publishCategories_sameTiles_shouldReusePublishedCategory() {
+        final CategoryManager categoryManager = new CategoryManager(mContext);
+        final Tile tile = createActivityTile(CATEGORY_HOMEPAGE, "pkg", "class1", 100);
+        final DashboardCategory category = new DashboardCategory(CATEGORY_HOMEPAGE);
+        category.addTile(tile);
+        publish(categoryManager, category);
+        final DashboardCategory reloadedCategory = new DashboardCategory(CATEGORY_HOMEPAGE);
+        reloadedCategory.addTile(tile);
+
+        publish(categoryManager, reloadedCategory);
+
+        assertThat(categoryManager.getTilesByCategory(mContext, CATEGORY_HOMEPAGE))
+                .isSameInstanceAs(category);
+        assertThat(categoryManager.getCategories(mContext)).containsExactly(category);
+    }
+
+    @Test
+    public void publishCategories_tileChanged_shouldPublishNewCategory() {
+        final CategoryManager categoryManager = new CategoryManager(mContext);
+        final DashboardCategory category = new DashboardCategory(CATEGORY_HOMEPAGE);
+        category.addTile(createActivityTile(CATEGORY_HOMEPAGE, "pkg", "class1", 100));
+        publish(categoryManager, category);
+        final DashboardCategory reloadedCategory = new DashboardCategory(CATEGORY_HOMEPAGE);
+        reloadedCategory.addTile(createActivityTile(CATEGORY_HOMEPAGE, "pkg", "class1", 100));
+
+        publish(categoryManager, reloadedCategory);
+
+        assertThat(categoryManager.getTilesByCategory(mContext, CATEGORY_HOMEPAGE))
+                .isSameInstanceAs(reloadedCategory);
+        assertThat(categoryManager.getCategories(mContext)).containsExactly(reloadedCategory);
+    }
+
+    @Test
+    public void updateCategoryFromDenylist_shouldNotModifyPublishedCategory() {
+        final CategoryManager categoryManager = new CategoryManager(mContext);
+        final Tile tile1 = createActivityTile(CATEGORY_HOMEPAGE, "pkg", "class1", 100);
+        final Tile tile2 = createActivityTile(CATEGORY_HOMEPAGE, "pkg", "class2", 50);
+        final DashboardCategory category = new DashboardCategory(CATEGORY_HOMEPAGE);
+        category.addTile(tile1);
+        category.addTile(tile2);
+        publish(categoryManager, category);
+
+        categoryManager.updateCategoryFromDenylist(
+                Collections.singleton(tile1.getIntent().getComponent()));
+
+        final DashboardCategory filteredCategory =
+                categoryManager.getTilesByCategory(mContext, CATEGORY_HOMEPAGE);
+        assertThat(filteredCategory.getTiles()).containsExactly(tile2);
+        assertThat(categoryManager.getCategories(mContext)).containsExactly(filteredCategory);
+        assertThat(category.getTiles()).containsExactly(tile1, tile2).inOrder();
+    }
+
+    private static void publish(CategoryManager categoryManager, DashboardCategory category) {
+        final Map<String, DashboardCategory> categoryByKeyMap = new HashMap<>();
+        categoryByKeyMap.put(category.key, category);
+        categoryManager.publishCategories(Collections.singletonList(category), categoryByKeyMap);
+    }
+
     private Tile createActivityTile(String categoryKey, String packageName, String className,
             int order) {
         final ActivityInfo activityInfo = new ActivityInfo();
@@ -20,22 +20,30 @@ import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import android.content.ContentResolver;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.pm.UserInfo;
 import android.content.res.Resources;
+import android.database.Cursor;
 import android.net.TrafficStats;
+import android.net.Uri;
+import android.os.Bundle;
 import android.os.UserHandle;
 import android.os.UserManager;
+import android.provider.MediaStore;
+import android.provider.MediaStore.Files.FileColumns;
 import android.util.SparseArray;
 
 import androidx.test.core.app.ApplicationProvider;
@@ -82,7 +90,8 @@ public class StorageAsyncLoaderTest {
         MockitoAnnotations.initMocks(this);
         mContext = spy(ApplicationProvider.getApplicationContext());
         mInfo = new ArrayList<>();
-        mLoader = new StorageAsyncLoader(mContext, mUserManager, "id", mSource, mPackageManager);
+        mLoader = new StorageAsyncLoader(mContext, mUserManager, "id", mSource, mPackageManager,
+                Runnable::run, null /* cacheHelper */);
         when(mPackageManager.getInstalledApplicationsAsUser(eq(PRIMARY_USER_ID), anyInt()))
                 .thenReturn(mInfo);
         UserInfo info = new UserInfo();
@@ -208,6 +217,138 @@ public class StorageAsyncLoaderTest {
         assertThat(result.get(PRIMARY_USER_ID).allAppsExceptGamesSize).isEqualTo(33L);
     }
 
+    @Test
+    public void testSharedPackageCodeSizeIsDuplicatedForLaterUsers() throws Exception {
+        UserInfo info = new UserInfo();
+        info.id = SECONDARY_USER_ID;
+        mUsers.add(0, info);
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+
+        SparseArray<StorageAsyncLoader.StorageResult> result = mLoader.loadInBackground();
+
+        assertThat(result.size()).isEqualTo(2);
+        assertThat(result.get(PRIMARY_USER_ID).duplicateCodeSize).isEqualTo(0L);
+        assertThat(result.get(SECONDARY_USER_ID).duplicateCodeSize).isEqualTo(1L);
+    }
+
+    @Test
+    public void testCompleteResultIsNotPending() throws Exception {
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+
+        SparseArray<StorageAsyncLoader.StorageResult> result = mLoader.loadInBackground();
+
+        assertThat(StorageAsyncLoader.StorageResult.isComplete(result)).isTrue();
+    }
+
+    @Test
+    public void testValidCachedFilesSizeIsReused() throws Exception {
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+        final StorageAsyncLoader.StorageResult cached = new StorageAsyncLoader.StorageResult();
+        cached.appsSizePending = true;
+        cached.imagesSize = 100L;
+        final StorageCacheHelper cacheHelper = mock(StorageCacheHelper.class);
+        when(cacheHelper.retrieveValidStorageResult(anyInt(), anyLong(), anyLong(), anyLong()))
+                .thenReturn(cached);
+        mLoader = new StorageAsyncLoader(mContext, mUserManager, "id", mSource, mPackageManager,
+                Runnable::run, cacheHelper);
+
+        SparseArray<StorageAsyncLoader.StorageResult> result = mLoader.loadInBackground();
+
+        assertThat(result.get(PRIMARY_USER_ID).imagesSize).isEqualTo(100L);
+        assertThat(result.get(PRIMARY_USER_ID).allAppsExceptGamesSize).isEqualTo(11L);
+        verify(cacheHelper).cacheStorageResult(eq(PRIMARY_USER_ID),
+                any(StorageAsyncLoader.StorageResult.class), anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void testPartialResultReplacesMeasuredCachedSizes() {
+        final StorageAsyncLoader.StorageResult partial = new StorageAsyncLoader.StorageResult();
+        partial.appsSizePending = true;
+        partial.imagesSize = 1L;
+        final StorageAsyncLoader.StorageResult cached = new StorageAsyncLoader.StorageResult();
+        cached.imagesSize = 100L;
+        cached.allAppsExceptGamesSize = 200L;
+        final SparseArray<StorageAsyncLoader.StorageResult> results = new SparseArray<>();
+        results.put(PRIMARY_USER_ID, partial);
+        final SparseArray<StorageAsyncLoader.StorageResult> fallback = new SparseArray<>();
+        fallback.put(PRIMARY_USER_ID, cached);
+
+        SparseArray<StorageAsyncLoader.StorageResult> result =
+                StorageAsyncLoader.StorageResult.withFallback(results, fallback);
+
+        assertThat(result.get(PRIMARY_USER_ID).imagesSize).isEqualTo(1L);
+        assertThat(result.get(PRIMARY_USER_ID).allAppsExceptGamesSize).isEqualTo(200L);
+        assertThat(StorageAsyncLoader.StorageResult.isComplete(result)).isTrue();
+    }
+
+    @Test
+    public void testFilesSizesMatchTheSumsOfMediaStore() {
+        final ContentResolver contentResolver =
+                ApplicationProvider.getApplicationContext().getContentResolver();
+        final StorageAsyncLoader.StorageResult result = new StorageAsyncLoader.StorageResult();
+
+        // Runs against the real MediaStore, which must accept the projection and the grouping.
+        StorageAsyncLoader.queryFilesSize(contentResolver, result);
+
+        final Bundle documentsAndOtherQueryArgs = new Bundle();
+        documentsAndOtherQueryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+                FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_IMAGE
+                + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_VIDEO
+                + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_AUDIO
+                + " AND " + FileColumns.MIME_TYPE + " IS NOT NULL");
+        final Bundle trashQueryArgs = new Bundle();
+        trashQueryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_ONLY);
+        assertThat(result.imagesSize).isEqualTo(querySize(contentResolver,
+                MediaStore.Images.Media.EXTERNAL_CONTENT_URI, null /* queryArgs */));
+        assertThat(result.videosSize).isEqualTo(querySize(contentResolver,
+                MediaStore.Video.Media.EXTERNAL_CONTENT_URI, null /* queryArgs */));
+        assertThat(result.audioSize).isEqualTo(querySize(contentResolver,
+                MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, null /* queryArgs */));
+        assertThat(result.documentsAndOtherSize).isEqualTo(querySize(contentResolver,
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL),
+                documentsAndOtherQueryArgs));
+        assertThat(result.trashSize).isEqualTo(querySize(contentResolver,
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL), trashQueryArgs));
+    }
+
+    @Test
+    public void testFilesSizesAreBucketedByMediaTypeAndTrashedState() {
+        final StorageAsyncLoader.StorageResult result = new StorageAsyncLoader.StorageResult();
+
+        StorageAsyncLoader.addFilesSize(result, FileColumns.MEDIA_TYPE_IMAGE,
+                false /* isTrashed */, true /* hasMimeType */, 1L);
+        StorageAsyncLoader.addFilesSize(result, FileColumns.MEDIA_TYPE_VIDEO,
+                false /* isTrashed */, true /* hasMimeType */, 2L);
+        StorageAsyncLoader.addFilesSize(result, FileColumns.MEDIA_TYPE_AUDIO,
+                false /* isTrashed */, true /* hasMimeType */, 4L);
+        StorageAsyncLoader.addFilesSize(result, FileColumns.MEDIA_TYPE_DOCUMENT,
+                false /* isTrashed */, true /* hasMimeType */, 8L);
+        StorageAsyncLoader.addFilesSize(result, FileColumns.MEDIA_TYPE_NONE,
+                false /* isTrashed */, true /* hasMimeType */, 16L);
+        StorageAsyncLoader.addFilesSize(result, FileColumns.MEDIA_TYPE_NONE,
+                false /* isTrashed */, false /* hasMimeType */, 32L);
+        StorageAsyncLoader.addFilesSize(result, FileColumns.MEDIA_TYPE_IMAGE,
+                true /* isTrashed */, true /* hasMimeType */, 64L);
+        StorageAsyncLoader.addFilesSize(result, FileColumns.MEDIA_TYPE_NONE,
+                true /* isTrashed */, false /* hasMimeType */, 128L);
+
+        assertThat(result.imagesSize).isEqualTo(1L);
+        assertThat(result.videosSize).isEqualTo(2L);
+        assertThat(result.audioSize).isEqualTo(4L);
+        assertThat(result.documentsAndOtherSize).isEqualTo(24L);
+        assertThat(result.trashSize).isEqualTo(192L);
+    }
+
+    /** Returns the size of the files of {@code uri}, summed like the storage page used to. */
+    private static long querySize(ContentResolver contentResolver, Uri uri, Bundle queryArgs) {
+        try (Cursor cursor = contentResolver.query(uri,
+                new String[] {"sum(" + MediaStore.MediaColumns.SIZE + ")"}, queryArgs,
+                null /* cancellationSignal */)) {
+            assertThat(cursor).isNotNull();
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0L;
+        }
+    }
+
     private ApplicationInfo addPackage(String packageName, long cacheSize, long codeSize,
             long dataSize, int category) throws Exception {
         StorageStatsSource.AppStorageStats storageStats =
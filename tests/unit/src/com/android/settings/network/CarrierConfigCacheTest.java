@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.network;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.os.PersistableBundle;
+import android.telephony.CarrierConfigManager;
+import android.telephony.SubscriptionManager;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+@RunWith(AndroidJUnit4.class)
+public class CarrierConfigCacheTest {
+    private static final int SUB_ID_1 = 1;
+    private static final int SUB_ID_2 = 2;
+
+    @Mock
+    private CarrierConfigManager mCarrierConfigManager;
+
+    private PersistableBundle mCarrierConfig1;
+    private PersistableBundle mCarrierConfig2;
+    private CarrierConfigCache mCarrierConfigCache;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        final Context context = ApplicationProvider.getApplicationContext();
+
+        mCarrierConfig1 = new PersistableBundle();
+        mCarrierConfig1.putBoolean(CarrierConfigManager.KEY_WORLD_PHONE_BOOL, true);
+        mCarrierConfig1.putInt(CarrierConfigManager.KEY_ENHANCED_4G_LTE_TITLE_VARIANT_INT, 2);
+        mCarrierConfig1.putString(CarrierConfigManager.KEY_CARRIER_CONFIG_VERSION_STRING, "v1");
+        mCarrierConfig2 = new PersistableBundle();
+        when(mCarrierConfigManager.getConfigForSubId(SUB_ID_1)).thenReturn(mCarrierConfig1);
+        when(mCarrierConfigManager.getConfigForSubId(SUB_ID_2)).thenReturn(mCarrierConfig2);
+
+        CarrierConfigCache.setTestInstance(mCarrierConfigManager);
+        mCarrierConfigCache = CarrierConfigCache.getInstance(context);
+    }
+
+    @After
+    public void tearDown() {
+        CarrierConfigCache.resetInstance();
+    }
+
+    @Test
+    public void getConfigForSubId_readTwice_fetchOnce() {
+        assertThat(mCarrierConfigCache.getConfigForSubId(SUB_ID_1)).isSameInstanceAs(
+                mCarrierConfig1);
+        assertThat(mCarrierConfigCache.getConfigForSubId(SUB_ID_1)).isSameInstanceAs(
+                mCarrierConfig1);
+
+        verify(mCarrierConfigManager, times(1)).getConfigForSubId(SUB_ID_1);
+    }
+
+    @Test
+    public void getConfigForSubId_invalidSubId_notCached() {
+        mCarrierConfigCache.getConfigForSubId(SubscriptionManager.INVALID_SUBSCRIPTION_ID);
+        mCarrierConfigCache.getConfigForSubId(SubscriptionManager.INVALID_SUBSCRIPTION_ID);
+
+        verify(mCarrierConfigManager, times(2)).getConfigForSubId(
+                SubscriptionManager.INVALID_SUBSCRIPTION_ID);
+    }
+
+    @Test
+    public void invalidate_oneSubId_fetchOnlyItsConfigAgain() {
+        mCarrierConfigCache.getConfigForSubId(SUB_ID_1);
+        mCarrierConfigCache.getConfigForSubId(SUB_ID_2);
+
+        mCarrierConfigCache.invalidate(SUB_ID_1);
+        mCarrierConfigCache.getConfigForSubId(SUB_ID_1);
+        mCarrierConfigCache.getConfigForSubId(SUB_ID_2);
+
+        verify(mCarrierConfigManager, times(2)).getConfigForSubId(SUB_ID_1);
+        verify(mCarrierConfigManager, times(1)).getConfigForSubId(SUB_ID_2);
+    }
+
+    @Test
+    public void invalidate_invalidSubId_fetchAllConfigsAgain() {
+        mCarrierConfigCache.getConfigForSubId(SUB_ID_1);
+        mCarrierConfigCache.getConfigForSubId(SUB_ID_2);
+
+        mCarrierConfigCache.invalidate(SubscriptionManager.INVALID_SUBSCRIPTION_ID);
+        mCarrierConfigCache.getConfigForSubId(SUB_ID_1);
+        mCarrierConfigCache.getConfigForSubId(SUB_ID_2);
+
+        verify(mCarrierConfigManager, times(2)).getConfigForSubId(SUB_ID_1);
+        verify(mCarrierConfigManager, times(2)).getConfigForSubId(SUB_ID_2);
+    }
+
+    @Test
+    public void typedAccessors_configAvailable_returnConfigValues() {
+        assertThat(mCarrierConfigCache.getBoolean(SUB_ID_1,
+                CarrierConfigManager.KEY_WORLD_PHONE_BOOL, false)).isTrue();
+        assertThat(mCarrierConfigCache.getInt(SUB_ID_1,
+                CarrierConfigManager.KEY_ENHANCED_4G_LTE_TITLE_VARIANT_INT, 0)).isEqualTo(2);
+        assertThat(mCarrierConfigCache.getString(SUB_ID_1,
+                CarrierConfigManager.KEY_CARRIER_CONFIG_VERSION_STRING)).isEqualTo("v1");
+        verify(mCarrierConfigManager, times(1)).getConfigForSubId(SUB_ID_1);
+    }
+
+    @Test
+    public void typedAccessors_nullConfig_returnDefaultValues() {
+        when(mCarrierConfigManager.getConfigForSubId(SUB_ID_1)).thenReturn(null);
+
+        assertThat(mCarrierConfigCache.getBoolean(SUB_ID_1,
+                CarrierConfigManager.KEY_WORLD_PHONE_BOOL, true)).isTrue();
+        assertThat(mCarrierConfigCache.getInt(SUB_ID_1,
+                CarrierConfigManager.KEY_ENHANCED_4G_LTE_TITLE_VARIANT_INT, 1)).isEqualTo(1);
+        assertThat(mCarrierConfigCache.getString(SUB_ID_1,
+                CarrierConfigManager.KEY_CARRIER_CONFIG_VERSION_STRING)).isNull();
+    }
+}
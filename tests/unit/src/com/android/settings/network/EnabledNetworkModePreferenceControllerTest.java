@@ -51,9 +51,11 @@ import androidx.test.annotation.UiThreadTest;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.telephony.TelephonyConstants.TelephonyManagerConstants;
 import com.android.settingslib.core.lifecycle.Lifecycle;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -94,6 +96,7 @@ public class EnabledNetworkModePreferenceControllerTest {
 
         when(mContext.getSystemService(CarrierConfigManager.class)).thenReturn(
                 mCarrierConfigManager);
+        CarrierConfigCache.setTestInstance(mCarrierConfigManager);
         when(mContext.getSystemService(Context.TELEPHONY_SERVICE)).thenReturn(mTelephonyManager);
         when(mContext.getSystemService(TelephonyManager.class)).thenReturn(mTelephonyManager);
         doReturn(mTelephonyManager).when(mTelephonyManager).createForSubscriptionId(SUB_ID);
@@ -111,6 +114,11 @@ public class EnabledNetworkModePreferenceControllerTest {
         mPreference.setKey(mController.getPreferenceKey());
     }
 
+    @After
+    public void tearDown() {
+        CarrierConfigCache.resetInstance();
+    }
+
     @UiThreadTest
     @Test
     public void getAvailabilityStatus_hideCarrierNetworkSettings_returnUnavailable() {
@@ -43,8 +43,10 @@ import android.telephony.TelephonyManager;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settingslib.RestrictedPreference;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -83,14 +85,19 @@ public class CarrierPreferenceControllerTest {
                 SubscriptionManager.INVALID_SUBSCRIPTION_ID);
         when(mContext.getSystemService(CarrierConfigManager.class)).thenReturn(
                 mCarrierConfigManager);
+        CarrierConfigCache.setTestInstance(mCarrierConfigManager);
 
         mPreference = new RestrictedPreference(mContext);
         mController = new CarrierPreferenceController(mContext, "mobile_data");
         mController.init(SUB_ID);
-        mController.mCarrierConfigManager = mCarrierConfigManager;
         mPreference.setKey(mController.getPreferenceKey());
     }
 
+    @After
+    public void tearDown() {
+        CarrierConfigCache.resetInstance();
+    }
+
     @Test
     public void getAvailabilityStatus_cdmaWithFlagOff_returnUnavailable() {
         doReturn(TelephonyManager.PHONE_TYPE_CDMA).when(mTelephonyManager).getPhoneType();
@@ -28,6 +28,9 @@ import android.telephony.CarrierConfigManager;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import com.android.settings.network.CarrierConfigCache;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -47,10 +50,16 @@ public class CarrierSettingsVersionPreferenceControllerTest {
         MockitoAnnotations.initMocks(this);
         Context context = spy(ApplicationProvider.getApplicationContext());
         when(context.getSystemService(CarrierConfigManager.class)).thenReturn(mCarrierConfigManager);
+        CarrierConfigCache.setTestInstance(mCarrierConfigManager);
         mController = new CarrierSettingsVersionPreferenceController(context, "mock_key");
         mController.init(mSubscriptionId);
     }
 
+    @After
+    public void tearDown() {
+        CarrierConfigCache.resetInstance();
+    }
+
     @Test
     public void getSummary_nullConfig_noCrash() {
         doReturn(null).when(mCarrierConfigManager).getConfigForSubId(mSubscriptionId);
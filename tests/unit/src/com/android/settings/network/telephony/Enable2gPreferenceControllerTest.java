@@ -35,6 +35,9 @@ import android.telephony.TelephonyManager;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import com.android.settings.network.CarrierConfigCache;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -65,6 +68,7 @@ public final class Enable2gPreferenceControllerTest {
         when(mContext.getSystemService(TelephonyManager.class)).thenReturn(mTelephonyManager);
         when(mContext.getSystemService(CarrierConfigManager.class))
               .thenReturn(mCarrierConfigManager);
+        CarrierConfigCache.setTestInstance(mCarrierConfigManager);
 
         doReturn(mTelephonyManager).when(mTelephonyManager).createForSubscriptionId(SUB_ID);
         doReturn(mInvalidTelephonyManager).when(mTelephonyManager).createForSubscriptionId(
@@ -78,6 +82,11 @@ public final class Enable2gPreferenceControllerTest {
         mController.init(SUB_ID);
     }
 
+    @After
+    public void tearDown() {
+        CarrierConfigCache.resetInstance();
+    }
+
     @Test
     public void getAvailabilityStatus_invalidSubId_returnUnavailable() {
         mController.init(SubscriptionManager.INVALID_SUBSCRIPTION_ID);
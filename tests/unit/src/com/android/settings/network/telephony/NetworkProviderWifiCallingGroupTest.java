@@ -45,9 +45,11 @@ import androidx.preference.PreferenceScreen;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.ims.MockWfcQueryImsState;
 import com.android.settingslib.core.lifecycle.Lifecycle;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -99,6 +101,7 @@ public class NetworkProviderWifiCallingGroupTest {
         mContext = spy(ApplicationProvider.getApplicationContext());
         when(mContext.getSystemService(CarrierConfigManager.class)).thenReturn(
                 mCarrierConfigManager);
+        CarrierConfigCache.setTestInstance(mCarrierConfigManager);
         when(mContext.getSystemService(SubscriptionManager.class)).thenReturn(mSubscriptionManager);
         when(mContext.getSystemService(TelecomManager.class)).thenReturn(mTelecomManager);
         when(mContext.getSystemService(TelephonyManager.class)).thenReturn(mTelephonyManager);
@@ -130,6 +133,11 @@ public class NetworkProviderWifiCallingGroupTest {
                 mContext, mLifecycle, KEY_PREFERENCE_WFC_CATEGORY));
     }
 
+    @After
+    public void tearDown() {
+        CarrierConfigCache.resetInstance();
+    }
+
     @Test
     public void shouldShowWifiCallingForSub_invalidSubId_returnFalse() {
         assertThat(mNetworkProviderWifiCallingGroup.shouldShowWifiCallingForSub(
@@ -105,6 +105,42 @@ public class NetworkSelectSettingsTest {
         assertThat(preference.getOperatorName()).isEqualTo("CarrierB");
     }
 
+    @Test
+    @UiThreadTest
+    public void updateAllPreferenceCategory_sameOperators_reusePreferences() {
+        mNetworkSelectSettings.updateAllPreferenceCategory();
+        final NetworkOperatorPreference preferenceA =
+                (NetworkOperatorPreference) mPreferenceCategory.getPreference(0);
+        final NetworkOperatorPreference preferenceB =
+                (NetworkOperatorPreference) mPreferenceCategory.getPreference(1);
+        mNetworkSelectSettings.mCellInfoList =
+                Arrays.asList(createLteCellInfo(true, 124, "123", "232", "CarrierA"),
+                        createGsmCellInfo(false, 124, "123", "232", "CarrierB"));
+
+        mNetworkSelectSettings.updateAllPreferenceCategory();
+
+        assertThat(mPreferenceCategory.getPreferenceCount()).isEqualTo(2);
+        assertThat(mPreferenceCategory.getPreference(0)).isSameInstanceAs(preferenceA);
+        assertThat(mPreferenceCategory.getPreference(1)).isSameInstanceAs(preferenceB);
+        assertThat(preferenceB.getCellInfo())
+                .isSameInstanceAs(mNetworkSelectSettings.mCellInfoList.get(1));
+    }
+
+    @Test
+    @UiThreadTest
+    public void mergeScanResults_sameOperatorAgain_replaceCellInPlace() {
+        final CellInfo cellInfoA = createLteCellInfo(true, 123, "123", "232", "CarrierA");
+        final CellInfo cellInfoB = createGsmCellInfo(false, 123, "123", "232", "CarrierB");
+        final CellInfo newCellInfoA = createLteCellInfo(true, 124, "123", "232", "CarrierA");
+        final CellInfo cellInfoC = createLteCellInfo(false, 125, "123", "233", "CarrierC");
+        mNetworkSelectSettings.mergeScanResults(Arrays.asList(cellInfoA, cellInfoB));
+
+        final List<CellInfo> merged =
+                mNetworkSelectSettings.mergeScanResults(Arrays.asList(cellInfoC, newCellInfoA));
+
+        assertThat(merged).containsExactly(newCellInfoA, cellInfoB, cellInfoC).inOrder();
+    }
+
     @Test
     @UiThreadTest
     public void updateForbiddenPlmns_forbiddenPlmnsNull_shouldNotCrash() {
@@ -41,9 +41,11 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 
 import com.android.internal.R;
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.ims.MockWifiCallingQueryImsState;
 import com.android.settings.network.ims.WifiCallingQueryImsState;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -85,8 +87,8 @@ public class WifiCallingPreferenceControllerTest {
         mQueryImsState.setIsEnabledByUser(true);
         mQueryImsState.setIsProvisionedOnDevice(true);
 
+        CarrierConfigCache.setTestInstance(mCarrierConfigManager);
         mController = new TestWifiCallingPreferenceController(mContext, "wifi_calling");
-        mController.mCarrierConfigManager = mCarrierConfigManager;
         mController.init(SUB_ID);
         mController.mCallState = TelephonyManager.CALL_STATE_IDLE;
         mCarrierConfig = new PersistableBundle();
@@ -99,6 +101,11 @@ public class WifiCallingPreferenceControllerTest {
         mScreen.addPreference(mPreference);
     }
 
+    @After
+    public void tearDown() {
+        CarrierConfigCache.resetInstance();
+    }
+
     @Test
     @UiThreadTest
     public void updateState_noSimCallManager_setCorrectSummary() {
@@ -36,8 +36,10 @@ import androidx.preference.SwitchPreference;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.testutils.ResourcesUtils;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -80,6 +82,7 @@ public class AutoSelectPreferenceControllerTest {
         when(mContext.getSystemService(SubscriptionManager.class)).thenReturn(mSubscriptionManager);
         when(mContext.getSystemService(CarrierConfigManager.class)).thenReturn(
             mCarrierConfigManager);
+        CarrierConfigCache.setTestInstance(mCarrierConfigManager);
         when(mTelephonyManager.createForSubscriptionId(SUB_ID)).thenReturn(mTelephonyManager);
 
         mCarrierConfig = new PersistableBundle();
@@ -94,6 +97,11 @@ public class AutoSelectPreferenceControllerTest {
         mController.init(mLifecycle, SUB_ID);
     }
 
+    @After
+    public void tearDown() {
+        CarrierConfigCache.resetInstance();
+    }
+
     @Test
     public void setChecked_isChecked_showProgressDialog() {
         when(mTelephonyManager.getNetworkSelectionMode()).thenReturn(
@@ -137,6 +145,8 @@ public class AutoSelectPreferenceControllerTest {
     @Test
     public void init_carrierConfigNull_shouldNotCrash() {
         when(mCarrierConfigManager.getConfigForSubId(SUB_ID)).thenReturn(null);
+        // Drops the config cached by the init of setUp().
+        CarrierConfigCache.getInstance(mContext).invalidate(SUB_ID);
 
         // Should not crash
         mController.init(mLifecycle, SUB_ID);